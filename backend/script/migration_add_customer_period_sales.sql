@@ -0,0 +1,37 @@
+-- Migration: Add per-customer revenue by day / month / year (customer leaderboard)
+-- Maintained by CustomerLeaderboardService; top customers of a month/year are read through the rank index with LIMIT
+
+CREATE TABLE IF NOT EXISTS customer_period_sales (
+    period VARCHAR(10) NOT NULL,
+    period_start DATE NOT NULL,
+    user_id BIGINT NOT NULL,
+    revenue DECIMAL(19,2) NOT NULL DEFAULT 0,
+    order_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (period, period_start, user_id),
+    INDEX idx_customer_period_sales_rank (period, period_start, revenue)
+);
+
+-- Backfill từ dữ liệu hiện có (đơn PAID/SHIPPED/COMPLETED)
+INSERT INTO customer_period_sales (period, period_start, user_id, revenue, order_count)
+SELECT 'DAY', DATE(o.created_at), o.user_id, SUM(oi.price * oi.quantity), COUNT(DISTINCT o.id)
+FROM orders o
+JOIN order_items oi ON oi.order_id = o.id
+WHERE o.status IN ('PAID', 'SHIPPED', 'COMPLETED')
+GROUP BY DATE(o.created_at), o.user_id
+ON DUPLICATE KEY UPDATE revenue = VALUES(revenue), order_count = VALUES(order_count);
+
+INSERT INTO customer_period_sales (period, period_start, user_id, revenue, order_count)
+SELECT 'MONTH', DATE_FORMAT(o.created_at, '%Y-%m-01'), o.user_id, SUM(oi.price * oi.quantity), COUNT(DISTINCT o.id)
+FROM orders o
+JOIN order_items oi ON oi.order_id = o.id
+WHERE o.status IN ('PAID', 'SHIPPED', 'COMPLETED')
+GROUP BY DATE_FORMAT(o.created_at, '%Y-%m-01'), o.user_id
+ON DUPLICATE KEY UPDATE revenue = VALUES(revenue), order_count = VALUES(order_count);
+
+INSERT INTO customer_period_sales (period, period_start, user_id, revenue, order_count)
+SELECT 'YEAR', MAKEDATE(YEAR(o.created_at), 1), o.user_id, SUM(oi.price * oi.quantity), COUNT(DISTINCT o.id)
+FROM orders o
+JOIN order_items oi ON oi.order_id = o.id
+WHERE o.status IN ('PAID', 'SHIPPED', 'COMPLETED')
+GROUP BY MAKEDATE(YEAR(o.created_at), 1), o.user_id
+ON DUPLICATE KEY UPDATE revenue = VALUES(revenue), order_count = VALUES(order_count);
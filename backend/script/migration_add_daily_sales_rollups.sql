@@ -0,0 +1,51 @@
+-- Migration: Add daily sales rollup tables
+-- Per-day order counts/revenue and per-product units, keyed by the order's creation date;
+-- maintained by SalesRollupService and read by the monthly/yearly report endpoints
+
+CREATE TABLE IF NOT EXISTS daily_sales_rollups (
+    sales_date DATE NOT NULL PRIMARY KEY,
+    total_orders BIGINT NOT NULL DEFAULT 0,
+    pending_orders BIGINT NOT NULL DEFAULT 0,
+    fulfilled_orders BIGINT NOT NULL DEFAULT 0,
+    cancelled_orders BIGINT NOT NULL DEFAULT 0,
+    revenue DECIMAL(19,2) NOT NULL DEFAULT 0,
+    units_sold BIGINT NOT NULL DEFAULT 0
+);
+
+CREATE TABLE IF NOT EXISTS daily_product_sales (
+    sales_date DATE NOT NULL,
+    product_id BIGINT NOT NULL,
+    units_sold BIGINT NOT NULL DEFAULT 0,
+    revenue DECIMAL(19,2) NOT NULL DEFAULT 0,
+    PRIMARY KEY (sales_date, product_id)
+);
+
+-- Backfill từ dữ liệu hiện có (có thể chạy lại bằng --backfill-sales-rollup hoặc POST /api/reports/rollups/rebuild)
+INSERT INTO daily_sales_rollups (sales_date, total_orders, pending_orders, fulfilled_orders, cancelled_orders, revenue, units_sold)
+SELECT DATE(o.created_at),
+       COUNT(*),
+       SUM(o.status = 'PENDING'),
+       SUM(o.status IN ('PAID', 'SHIPPED', 'COMPLETED')),
+       SUM(o.status = 'CANCELLED'),
+       COALESCE(SUM(CASE WHEN o.status IN ('PAID', 'SHIPPED', 'COMPLETED') THEN o.total_amount ELSE 0 END), 0),
+       COALESCE(SUM(CASE WHEN o.status IN ('PAID', 'SHIPPED', 'COMPLETED') THEN o.total_quantity ELSE 0 END), 0)
+FROM orders o
+WHERE o.created_at IS NOT NULL
+GROUP BY DATE(o.created_at)
+ON DUPLICATE KEY UPDATE
+    total_orders = VALUES(total_orders),
+    pending_orders = VALUES(pending_orders),
+    fulfilled_orders = VALUES(fulfilled_orders),
+    cancelled_orders = VALUES(cancelled_orders),
+    revenue = VALUES(revenue),
+    units_sold = VALUES(units_sold);
+
+INSERT INTO daily_product_sales (sales_date, product_id, units_sold, revenue)
+SELECT DATE(o.created_at), oi.product_id, SUM(oi.quantity), SUM(oi.price * oi.quantity)
+FROM order_items oi
+JOIN orders o ON o.id = oi.order_id
+WHERE o.status IN ('PAID', 'SHIPPED', 'COMPLETED')
+GROUP BY DATE(o.created_at), oi.product_id
+ON DUPLICATE KEY UPDATE
+    units_sold = VALUES(units_sold),
+    revenue = VALUES(revenue);
@@ -0,0 +1,11 @@
+-- Migration: Add daily HyperLogLog sketches for distinct products / customers
+-- One 4 KB register array per column per day, maintained by SalesSketchService and merged for approximate reports
+
+CREATE TABLE IF NOT EXISTS daily_sales_sketches (
+    sales_date DATE NOT NULL PRIMARY KEY,
+    products VARBINARY(4096) NOT NULL,
+    customers VARBINARY(4096) NOT NULL
+);
+
+-- Không dựng được sketch bằng SQL: backfill bằng --backfill-sales-rollup hoặc POST /api/reports/rollups/rebuild,
+-- mỗi ngày được tính lại sẽ dựng lại sketch của ngày đó
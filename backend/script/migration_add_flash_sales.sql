@@ -0,0 +1,16 @@
+-- Migration: Add flash sale allocator state
+-- flash_sales lists products whose stock is reserved through the in-memory counter;
+-- order_items.stock_deferred marks lines not yet written back to inventories
+
+CREATE TABLE IF NOT EXISTS flash_sales (
+    product_id BIGINT NOT NULL PRIMARY KEY,
+    enabled_at DATETIME(6) NOT NULL,
+    enabled_by BIGINT NULL,
+    CONSTRAINT fk_flash_sales_enabled_by FOREIGN KEY (enabled_by) REFERENCES users(id)
+);
+
+ALTER TABLE order_items
+    ADD COLUMN IF NOT EXISTS stock_deferred BIT(1) NOT NULL DEFAULT 0;
+
+-- Tác vụ ghi bù chỉ quét các dòng chưa ghi bù của từng sản phẩm
+CREATE INDEX idx_order_items_stock_deferred ON order_items(stock_deferred, product_id);
@@ -0,0 +1,17 @@
+-- Migration: Create idempotency_keys table
+-- Idempotency-Key results for order and VNPay payment creation are shared by every node;
+-- the unique (scope, idempotency_key) row is inserted before the request runs so only one node runs it
+
+CREATE TABLE IF NOT EXISTS idempotency_keys (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    scope VARCHAR(100) NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    fingerprint VARCHAR(64) NOT NULL,
+    response VARCHAR(4000) NULL,
+    created_at DATETIME(6) NOT NULL,
+    expires_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_idempotency_keys_scope_key UNIQUE (scope, idempotency_key)
+);
+
+CREATE INDEX idx_idempotency_keys_expires_at ON idempotency_keys(expires_at);
@@ -0,0 +1,33 @@
+-- Migration: Add inventory movement ledger and daily inventory snapshots
+-- Every stock change (order deduction, cancellation restock, admin adjustment) appends a row to inventory_movements;
+-- inventory_snapshots holds per-product stock at 00:00 so stock-on-date replays from the nearest snapshot
+
+-- Hibernate cấp id theo khối 50 (pooled), bước tăng của sequence phải khớp allocationSize
+CREATE SEQUENCE IF NOT EXISTS inventory_movements_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS inventory_movements (
+    id BIGINT NOT NULL,
+    product_id BIGINT NOT NULL,
+    quantity INT NOT NULL,
+    movement_type VARCHAR(30) NOT NULL,
+    order_id BIGINT NULL,
+    reason VARCHAR(255) NULL,
+    actor VARCHAR(100) NULL,
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_inventory_movements_created ON inventory_movements(created_at);
+CREATE INDEX idx_inventory_movements_product_created ON inventory_movements(product_id, created_at);
+
+CREATE TABLE IF NOT EXISTS inventory_snapshots (
+    snapshot_date DATE NOT NULL,
+    product_id BIGINT NOT NULL,
+    stock BIGINT NOT NULL,
+    PRIMARY KEY (snapshot_date, product_id)
+);
+
+-- Số dư đầu sổ: tồn kho hiện tại của từng sản phẩm
+INSERT INTO inventory_movements (id, product_id, quantity, movement_type, reason, created_at)
+SELECT NEXT VALUE FOR inventory_movements_seq, s.product_id, s.stock, 'OPENING', 'Số dư khi bắt đầu ghi sổ', NOW(6)
+FROM (SELECT product_id, SUM(stock) AS stock FROM inventories GROUP BY product_id HAVING SUM(stock) <> 0) s;
@@ -0,0 +1,4 @@
+-- Migration: Add index for keyset pagination of orders
+-- Cursor paging seeks on (created_at, id) instead of OFFSET + count(*)
+
+CREATE INDEX idx_orders_created_at_id ON orders(created_at, id);
@@ -0,0 +1,19 @@
+-- Migration: Add persisted order totals
+-- total_amount / total_quantity are kept in sync with order_items so min/max total filters and
+-- sorting run in SQL and order listings do not load item collections
+
+ALTER TABLE orders
+    ADD COLUMN IF NOT EXISTS total_amount DECIMAL(15,2) NOT NULL DEFAULT 0,
+    ADD COLUMN IF NOT EXISTS total_quantity INT NOT NULL DEFAULT 0;
+
+-- Backfill from existing order items
+UPDATE orders o
+LEFT JOIN (
+    SELECT order_id, SUM(price * quantity) AS amount, SUM(quantity) AS quantity
+    FROM order_items
+    GROUP BY order_id
+) t ON t.order_id = o.id
+SET o.total_amount = COALESCE(t.amount, 0),
+    o.total_quantity = COALESCE(t.quantity, 0);
+
+CREATE INDEX idx_orders_total_amount ON orders(total_amount);
@@ -0,0 +1,21 @@
+-- Migration: Create outbox_events table
+-- Order side effects (confirmation email, status notification, cart cleanup) are written in the
+-- same transaction as the order change and drained in batches by OutboxDispatcher
+
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    event_type VARCHAR(50) NOT NULL,
+    aggregate_id BIGINT NOT NULL,
+    payload VARCHAR(500) NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    next_attempt_at DATETIME(6) NOT NULL,
+    claim_token VARCHAR(36) NULL,
+    last_error VARCHAR(1000) NULL,
+    created_at DATETIME(6) NOT NULL,
+    processed_at DATETIME(6) NULL,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_outbox_events_status_next_attempt ON outbox_events(status, next_attempt_at);
+CREATE INDEX idx_outbox_events_claim_token ON outbox_events(claim_token);
@@ -0,0 +1,5 @@
+-- Migration: Allow REFUND_PENDING payment status
+-- A VNPay success that arrives after the order was already cancelled (and its stock released) is recorded
+-- and flagged for refund instead of reviving the order; widen payment_status in case it was created as an ENUM
+
+ALTER TABLE orders MODIFY payment_status VARCHAR(20) NULL;
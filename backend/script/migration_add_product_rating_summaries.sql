@@ -0,0 +1,39 @@
+-- Migration: Create product_rating_summaries table
+-- Per-product review count, rating sum and 1-5 star histogram maintained by ReviewService
+
+CREATE TABLE IF NOT EXISTS product_rating_summaries (
+    product_id BIGINT NOT NULL,
+    review_count BIGINT NOT NULL DEFAULT 0,
+    rating_sum BIGINT NOT NULL DEFAULT 0,
+    one_star BIGINT NOT NULL DEFAULT 0,
+    two_star BIGINT NOT NULL DEFAULT 0,
+    three_star BIGINT NOT NULL DEFAULT 0,
+    four_star BIGINT NOT NULL DEFAULT 0,
+    five_star BIGINT NOT NULL DEFAULT 0,
+    updated_at DATETIME(6) NULL,
+    PRIMARY KEY (product_id)
+);
+
+-- Backfill from existing reviews
+INSERT INTO product_rating_summaries
+    (product_id, review_count, rating_sum, one_star, two_star, three_star, four_star, five_star, updated_at)
+SELECT r.product_id,
+       COUNT(*),
+       SUM(r.rating),
+       SUM(CASE WHEN r.rating = 1 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN r.rating = 2 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN r.rating = 3 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN r.rating = 4 THEN 1 ELSE 0 END),
+       SUM(CASE WHEN r.rating = 5 THEN 1 ELSE 0 END),
+       NOW()
+FROM reviews r
+GROUP BY r.product_id
+ON DUPLICATE KEY UPDATE
+    review_count = VALUES(review_count),
+    rating_sum = VALUES(rating_sum),
+    one_star = VALUES(one_star),
+    two_star = VALUES(two_star),
+    three_star = VALUES(three_star),
+    four_star = VALUES(four_star),
+    five_star = VALUES(five_star),
+    updated_at = VALUES(updated_at);
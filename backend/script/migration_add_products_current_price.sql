@@ -0,0 +1,18 @@
+-- Migration: Add current_price column to products table
+-- Denormalized copy of the current product_prices row so price sort/filter run in SQL
+
+ALTER TABLE products
+ADD COLUMN current_price DECIMAL(15, 2) NULL;
+
+-- Backfill from the first current price row (same rule as Product.getCurrentPrice)
+UPDATE products p
+SET p.current_price = (
+    SELECT pp.price
+    FROM product_prices pp
+    WHERE pp.product_id = p.id AND pp.is_current = 1
+    ORDER BY pp.id
+    LIMIT 1
+);
+
+-- Add index for price sorting and range filters
+CREATE INDEX idx_products_current_price ON products(current_price);
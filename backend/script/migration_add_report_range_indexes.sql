@@ -0,0 +1,7 @@
+-- Migration: Add indexes for report range queries
+-- Report queries filter created_at with half-open [start, end) ranges instead of YEAR()/MONTH()/DATE(),
+-- so these indexes can serve them with range scans
+
+CREATE INDEX idx_orders_status_created_at ON orders(status, created_at);
+
+CREATE INDEX idx_users_created_at ON users(created_at);
@@ -0,0 +1,11 @@
+-- Migration: Add scheduler leases and VNPay expiry index
+-- scheduler_locks holds one lease row per scheduled job so only one node runs it at a time;
+-- idx_orders_vnpay_expiry lets the unpaid VNPay sweeper range-scan on updated_at
+
+CREATE TABLE IF NOT EXISTS scheduler_locks (
+    name VARCHAR(64) NOT NULL PRIMARY KEY,
+    locked_until DATETIME(6) NOT NULL,
+    locked_by VARCHAR(100) NULL
+);
+
+CREATE INDEX idx_orders_vnpay_expiry ON orders(payment_method, status, payment_status, updated_at);
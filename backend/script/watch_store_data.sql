@@ -137,6 +137,15 @@ INSERT INTO `product_prices` (`id`, `product_id`, `price`, `price_type`, `is_cur
 (14, 4, 5270000.00, 'SALE', 1, NOW(), DATE_ADD(NOW(), INTERVAL 30 DAY)),
 (15, 8, 960000.00, 'SALE', 1, NOW(), DATE_ADD(NOW(), INTERVAL 30 DAY));
 
+-- Sync denormalized current price on products
+UPDATE `products` p
+SET p.`current_price` = (
+    SELECT pp.`price` FROM `product_prices` pp
+    WHERE pp.`product_id` = p.`id` AND pp.`is_current` = 1
+    ORDER BY pp.`id`
+    LIMIT 1
+);
+
 -- ============================================
 -- 8. PRODUCT_SPECS TABLE
 -- ============================================
@@ -241,6 +250,13 @@ INSERT INTO `reviews` (`id`, `product_id`, `user_id`, `rating`, `comment`, `crea
 (7, 8, 4, 4, 'Giá rẻ mà chất lượng ok. Đáng mua!', DATE_SUB(NOW(), INTERVAL 2 DAY), DATE_SUB(NOW(), INTERVAL 2 DAY)),
 (8, 3, 5, 5, 'Seiko 5 rất tốt, chạy ổn định!', DATE_SUB(NOW(), INTERVAL 1 DAY), DATE_SUB(NOW(), INTERVAL 1 DAY));
 
+-- 10a. PRODUCT_RATING_SUMMARIES (tổng hợp từ reviews)
+INSERT INTO `product_rating_summaries` (`product_id`, `review_count`, `rating_sum`, `one_star`, `two_star`, `three_star`, `four_star`, `five_star`, `updated_at`)
+SELECT `product_id`, COUNT(*), SUM(`rating`),
+       SUM(`rating` = 1), SUM(`rating` = 2), SUM(`rating` = 3), SUM(`rating` = 4), SUM(`rating` = 5), NOW()
+FROM `reviews`
+GROUP BY `product_id`;
+
 -- 10b. NOTIFICATIONS TABLE
 INSERT INTO `notifications` (`id`, `user_id`, `title`, `message`, `is_read`, `created_at`) VALUES
 (1, 2, 'Chào mừng đến Watch Store', 'Chúc bạn có trải nghiệm mua sắm tuyệt vời cùng Watch Store!', 0, DATE_SUB(NOW(), INTERVAL 2 DAY)),
@@ -1,5 +1,6 @@
 package iuh.fit.se.backend.config;
 
+import iuh.fit.se.backend.service.IdempotencyStore;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
@@ -17,6 +18,7 @@ public class CorsConfig {
                     .allowedOrigins("http://localhost:5173", "http://localhost:5174") // domain frontend
                     .allowedMethods("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS")
                         .allowedHeaders("*")
+                        .exposedHeaders(IdempotencyStore.REPLAYED_HEADER)
                         .allowCredentials(true);
             }
         };
@@ -0,0 +1,10 @@
+package iuh.fit.se.backend.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+// Bật @Scheduled cho các tác vụ nền (outbox, ...)
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -16,7 +16,9 @@ import iuh.fit.se.backend.dto.response.LoginResponse;
 import iuh.fit.se.backend.entity.User;
 import iuh.fit.se.backend.entity.enums.Role;
 import iuh.fit.se.backend.service.UserService;
+import iuh.fit.se.backend.service.DashboardReportService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -41,6 +43,7 @@ public class AuthController {
     private final org.springframework.core.env.Environment env;
     private final iuh.fit.se.backend.repository.UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @PostMapping("/login")
@@ -191,6 +194,7 @@ public class AuthController {
                         .build();
 
                 user = userRepository.save(newUser);
+                eventPublisher.publishEvent(new DashboardReportService.DataChanged("users"));
             }
 
             String token = jwtService.generateToken(user.getUsername(), user.getRole().toString());
@@ -262,6 +266,7 @@ public class AuthController {
                         .build();
 
                 user = userRepository.save(newUser);
+                eventPublisher.publishEvent(new DashboardReportService.DataChanged("users"));
             }
 
             String token = jwtService.generateToken(user.getUsername(), user.getRole().toString());
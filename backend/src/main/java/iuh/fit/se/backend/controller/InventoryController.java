@@ -1,9 +1,13 @@
 package iuh.fit.se.backend.controller;
 
 import iuh.fit.se.backend.dto.request.InventoryUpdateRequest;
+import iuh.fit.se.backend.dto.response.FlashSaleStatusResponse;
 import iuh.fit.se.backend.entity.Inventory;
+import iuh.fit.se.backend.entity.InventoryMovement;
 import iuh.fit.se.backend.entity.User;
 import iuh.fit.se.backend.repository.UserRepository;
+import iuh.fit.se.backend.service.FlashSaleAllocator;
+import iuh.fit.se.backend.service.InventoryLedgerService;
 import iuh.fit.se.backend.service.InventoryService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
@@ -19,6 +23,8 @@ import java.util.List;
 @RequiredArgsConstructor
 public class InventoryController {
     private final InventoryService inventoryService;
+    private final FlashSaleAllocator flashSaleAllocator;
+    private final InventoryLedgerService inventoryLedgerService;
     private final UserRepository userRepository;
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -58,6 +64,60 @@ public class InventoryController {
         return ResponseEntity.ok(updated);
     }
 
+    // Sổ biến động tồn kho của sản phẩm, mới nhất trước
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/product/{productId}/movements")
+    public List<InventoryMovement> getMovements(
+            @PathVariable Long productId,
+            @RequestParam(defaultValue = "50") int limit
+    ) {
+        return inventoryLedgerService.getMovements(productId, Math.max(1, Math.min(limit, 500)));
+    }
+
+    // Chia tồn kho của sản phẩm bán chạy ra nhiều dòng trước đợt flash sale (shards=1 để gộp lại)
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/product/{productId}/stripe")
+    public List<Inventory> stripe(
+            @PathVariable Long productId,
+            @RequestParam(defaultValue = "8") int shards,
+            @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        User admin = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return inventoryService.stripeStock(productId, shards, admin);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/flash-sales")
+    public List<FlashSaleStatusResponse> getFlashSales() {
+        return flashSaleAllocator.statuses();
+    }
+
+    // Bật flash sale: nạp tồn kho vào bộ đếm trong bộ nhớ, đơn hàng giữ hàng không cần UPDATE inventories
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/product/{productId}/flash-sale")
+    public FlashSaleStatusResponse enableFlashSale(
+            @PathVariable Long productId,
+            @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        User admin = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return flashSaleAllocator.enable(productId, admin);
+    }
+
+    // Ghi bù số đã bán và nạp lại bộ đếm từ inventories (sau khi sửa tồn kho trong lúc flash sale)
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/product/{productId}/flash-sale/reconcile")
+    public FlashSaleStatusResponse reconcileFlashSale(@PathVariable Long productId) {
+        return flashSaleAllocator.reconcile(productId);
+    }
+
+    @PreAuthorize("hasRole('ADMIN')")
+    @DeleteMapping("/product/{productId}/flash-sale")
+    public FlashSaleStatusResponse disableFlashSale(@PathVariable Long productId) {
+        return flashSaleAllocator.disable(productId);
+    }
+
     @PreAuthorize("hasRole('ADMIN')")
     @PutMapping("/{id}")
     public Inventory update(@PathVariable Long id, @RequestBody Inventory inventory) {
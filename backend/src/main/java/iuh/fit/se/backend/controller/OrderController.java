@@ -7,16 +7,22 @@ import iuh.fit.se.backend.entity.Order;
 import iuh.fit.se.backend.entity.User;
 import iuh.fit.se.backend.entity.enums.OrderStatus;
 import iuh.fit.se.backend.repository.UserRepository;
+import iuh.fit.se.backend.service.IdempotencyStore;
 import iuh.fit.se.backend.service.OrderService;
+import iuh.fit.se.backend.service.ReportExportService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 
 @RestController
@@ -26,9 +32,11 @@ import java.time.LocalDateTime;
 public class OrderController {
     private final OrderService orderService;
     private final UserRepository userRepository;
+    private final IdempotencyStore idempotencyStore;
+    private final ReportExportService reportExportService;
 
     @GetMapping
-    public ResponseEntity<Page<OrderResponse>> getOrders(
+    public ResponseEntity<?> getOrders(
             @RequestParam(required = false) String customerName,
             @RequestParam(required = false) String username,
             @RequestParam(required = false) Long userId,
@@ -40,8 +48,15 @@ public class OrderController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "createdAt") String sortBy,
-            @RequestParam(defaultValue = "desc") String sortDir
+            @RequestParam(defaultValue = "desc") String sortDir,
+            @RequestParam(required = false) String after
     ) {
+        // Có tham số `after` (rỗng cho trang đầu) -> phân trang keyset, bỏ OFFSET và count(*)
+        if (after != null) {
+            return ResponseEntity.ok(orderService.getAdminOrdersAfter(
+                    customerName, username, userId, status, fromDate, toDate, minTotal, maxTotal, after, size, sortBy, sortDir
+            ));
+        }
         return ResponseEntity.ok(orderService.getAdminOrders(
                 customerName,
             username,
@@ -58,9 +73,35 @@ public class OrderController {
         ));
     }
 
+    // Export CSV toàn bộ kết quả tìm kiếm (cùng bộ lọc với GET /api/orders), ghi dạng stream
+    @GetMapping("/export")
+    public void exportOrders(
+            @RequestParam(required = false) String customerName,
+            @RequestParam(required = false) String username,
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) LocalDateTime fromDate,
+            @RequestParam(required = false) LocalDateTime toDate,
+            @RequestParam(required = false) Double minTotal,
+            @RequestParam(required = false) Double maxTotal,
+            @RequestParam(defaultValue = "createdAt") String sortBy,
+            @RequestParam(defaultValue = "desc") String sortDir,
+            HttpServletResponse response
+    ) throws IOException {
+        ReportExportService.validateOrderSort(sortBy);
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                ContentDisposition.attachment().filename("orders.csv").build().toString());
+        reportExportService.exportOrders(customerName, username, userId, status, fromDate, toDate,
+                minTotal, maxTotal, sortBy, sortDir, response.getOutputStream());
+    }
+
     @GetMapping("/user/{userId}")
     public ResponseEntity<?> getByUser(
             @PathVariable Long userId,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeStock,
             @AuthenticationPrincipal UserDetails userDetails
     ) {
         // Get current user from authentication using username
@@ -74,7 +115,27 @@ public class OrderController {
             return ResponseEntity.status(403).body("Bạn không có quyền xem đơn hàng của người khác");
         }
         
-        return ResponseEntity.ok(orderService.getOrdersByUser(userId));
+        // Có `page` -> trả về trang; không có thì giữ kiểu danh sách cũ
+        if (page != null) {
+            return ResponseEntity.ok(orderService.getOrdersByUser(userId, page, size, includeStock));
+        }
+        return ResponseEntity.ok(orderService.getOrdersByUser(userId, includeStock));
+    }
+
+    // Đơn hàng của tôi, phân trang, mới nhất trước
+    @GetMapping("/me")
+    public ResponseEntity<?> getMyOrders(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "10") int size,
+            @RequestParam(defaultValue = "false") boolean includeStock,
+            @AuthenticationPrincipal UserDetails userDetails
+    ) {
+        if (userDetails == null) {
+            return ResponseEntity.status(401).body("Vui lòng đăng nhập để xem đơn hàng");
+        }
+        User currentUser = userRepository.findByUsername(userDetails.getUsername())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+        return ResponseEntity.ok(orderService.getOrdersByUser(currentUser.getId(), page, size, includeStock));
     }
 
     @GetMapping("/{id}/detail")
@@ -88,9 +149,24 @@ public class OrderController {
     }
 
     @PostMapping
-    public ResponseEntity<Order> create(@RequestBody OrderRequest request) {
-        Order saved = orderService.saveOrder(request);
-        return ResponseEntity.ok(saved);
+    public ResponseEntity<Order> create(
+            @RequestBody OrderRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey
+    ) {
+        // Chỉ giữ id đơn theo key; request lặp lại đọc lại đơn đã tạo thay vì đặt hàng và trừ kho lần nữa
+        Order[] created = new Order[1];
+        IdempotencyStore.Result<Long> result = idempotencyStore.execute(
+                "orders:" + request.getUserId(), idempotencyKey, request, Long.class,
+                () -> {
+                    created[0] = orderService.saveOrder(request);
+                    return created[0].getId();
+                });
+        if (result.replayed()) {
+            return ResponseEntity.ok()
+                    .header(IdempotencyStore.REPLAYED_HEADER, "true")
+                    .body(orderService.getOrder(result.value()));
+        }
+        return ResponseEntity.ok(created[0]);
     }
 
     @PutMapping("/{id}")
@@ -154,7 +230,7 @@ public class OrderController {
     }
 
     @GetMapping("/search")
-    public ResponseEntity<Page<Order>> searchOrders(
+    public ResponseEntity<?> searchOrders(
             @RequestParam(required = false) String customerName,
             @RequestParam(required = false) String username,
             @RequestParam(required = false) Long userId,
@@ -166,8 +242,14 @@ public class OrderController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(required = false) String after
     ) {
+        if (after != null) {
+            return ResponseEntity.ok(orderService.searchOrdersAfter(
+                    customerName, username, userId, status, fromDate, toDate, minTotal, maxTotal, after, size, sortBy, sortDir
+            ));
+        }
         return ResponseEntity.ok(orderService.searchOrders(
                 customerName, username, userId, status, fromDate, toDate, minTotal, maxTotal, page, size, sortBy, sortDir
         ));
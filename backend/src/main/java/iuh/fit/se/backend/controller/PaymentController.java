@@ -8,6 +8,7 @@ import iuh.fit.se.backend.entity.enums.PaymentMethod;
 import iuh.fit.se.backend.entity.enums.PaymentStatus;
 import iuh.fit.se.backend.service.OrderService;
 import iuh.fit.se.backend.service.PaymentService;
+import iuh.fit.se.backend.service.IdempotencyStore;
 import iuh.fit.se.backend.service.VNPayService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -31,10 +32,13 @@ public class PaymentController {
     @PostMapping("/create-payment")
     public ResponseEntity<ApiResponse<VNPayPaymentResponse>> createPayment(
             @RequestBody VNPayPaymentRequest paymentRequest,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
             HttpServletRequest request) {
         try {
-            VNPayPaymentResponse response = vnPayService.createPayment(paymentRequest, request);
-            return ResponseEntity.ok(ApiResponse.success(response));
+            IdempotencyStore.Result<VNPayPaymentResponse> result = vnPayService.createPayment(paymentRequest, request, idempotencyKey);
+            return ResponseEntity.ok()
+                    .header(IdempotencyStore.REPLAYED_HEADER, String.valueOf(result.replayed()))
+                    .body(ApiResponse.success(result.value()));
         } catch (Exception e) {
             return ResponseEntity.ok(ApiResponse.failure("Error: " + e.getMessage()));
         }
@@ -1,6 +1,8 @@
 package iuh.fit.se.backend.controller;
 
 import iuh.fit.se.backend.dto.request.ProductRequest;
+import iuh.fit.se.backend.dto.response.CacheStatsResponse;
+import iuh.fit.se.backend.dto.response.ProductFacetResponse;
 import iuh.fit.se.backend.dto.response.ProductResponse;
 import iuh.fit.se.backend.entity.*;
 import iuh.fit.se.backend.entity.enums.ProductStatus;
@@ -9,7 +11,6 @@ import iuh.fit.se.backend.repository.CategoryRepository;
 import iuh.fit.se.backend.repository.SupplierRepository;
 import iuh.fit.se.backend.service.ProductService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
@@ -31,8 +32,9 @@ public class ProductController {
 //        return productService.getAllProducts();
 //    }
 
+    // view=card (mặc định) trả về dữ liệu gọn cho thẻ sản phẩm, view=full trả về đầy đủ collections cho trang admin
     @GetMapping
-    public Page<ProductResponse> searchProducts(
+    public Object searchProducts(
             @RequestParam(required = false) String name,
             @RequestParam(required = false) String category,
             @RequestParam(required = false) String brand,
@@ -40,12 +42,38 @@ public class ProductController {
             @RequestParam(required = false) String status,
             @RequestParam(required = false) Double minPrice,
             @RequestParam(required = false) Double maxPrice,
+            @RequestParam(required = false) Double minRating,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int size,
             @RequestParam(defaultValue = "id") String sortBy,
-            @RequestParam(defaultValue = "desc") String order
+            @RequestParam(defaultValue = "desc") String order,
+            @RequestParam(defaultValue = "card") String view,
+            @RequestParam(required = false) String after
     ) {
-        return productService.searchProducts(name, category, brand, supplier, minPrice, maxPrice, status, page, size, sortBy, order);
+        // Có tham số `after` (kể cả rỗng cho trang đầu) -> phân trang keyset, không đếm tổng
+        if (after != null) {
+            if ("full".equalsIgnoreCase(view)) {
+                return productService.searchProductsAfter(name, category, brand, supplier, minPrice, maxPrice, minRating, status, after, size, sortBy, order);
+            }
+            return productService.searchProductCardsAfter(name, category, brand, supplier, minPrice, maxPrice, minRating, status, after, size, sortBy, order);
+        }
+        if ("full".equalsIgnoreCase(view)) {
+            return productService.searchProducts(name, category, brand, supplier, minPrice, maxPrice, minRating, status, page, size, sortBy, order);
+        }
+        return productService.searchProductCards(name, category, brand, supplier, minPrice, maxPrice, minRating, status, page, size, sortBy, order);
+    }
+
+    @GetMapping("/facets")
+    public ProductFacetResponse getFacets(
+            @RequestParam(required = false) String name,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) String supplier,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) Double minPrice,
+            @RequestParam(required = false) Double maxPrice
+    ) {
+        return productService.getFacets(name, category, brand, supplier, minPrice, maxPrice, status);
     }
 
     @GetMapping("/price-range")
@@ -55,60 +83,13 @@ public class ProductController {
 
     @GetMapping("/{id}")
     public ProductResponse getOne(@PathVariable Long id) {
-        Product product = productService.getProduct(id);
-        
-        // Convert to ProductResponse with full info
-        ProductResponse response = new ProductResponse();
-        response.setId(product.getId());
-        response.setName(product.getName());
-        response.setDescription(product.getDescription());
-        response.setStatus(product.getStatus().toString());
-        
-        // Brand info
-        response.setBrand(product.getBrand().getName());
-        response.setBrandId(product.getBrand().getId());
-        
-        // Category info
-        response.setCategoryName(product.getCategory().getName());
-        response.setCategoryId(product.getCategory().getId());
-        
-        // Supplier info
-        response.setSupplierName(product.getSupplier().getName());
-        response.setSupplierId(product.getSupplier().getId());
-        
-        // Price, stock, images
-        response.setProductPrices(product.getProductPrices());
-        response.setInventories(product.getInventories());
-        response.setProductImages(product.getProductImages());
-        response.setProductSpecs(product.getProductSpecs());
-
-        // Current price and stock
-        if (!product.getProductPrices().isEmpty()) {
-            ProductPrice currentPrice = product.getProductPrices().stream()
-                .filter(p -> Boolean.TRUE.equals(p.getIsCurrent()))
-                .findFirst()
-                .orElse(product.getProductPrices().get(0));
-            response.setPrice(currentPrice.getPrice());
-        }
-        
-        if (!product.getInventories().isEmpty()) {
-            response.setStockQuantity(product.getInventories().get(0).getStock());
-        }
-        
-        // Primary image
-        if (!product.getProductImages().isEmpty()) {
-            String primaryImage = product.getProductImages().stream()
-                .filter(img -> Boolean.TRUE.equals(img.getIsPrimary()))
-                .map(ProductImage::getImageUrl)
-                .findFirst()
-                .orElse(product.getProductImages().get(0).getImageUrl());
-            response.setImageUrl(primaryImage);
-        }
+        return productService.getProductDetail(id);
+    }
 
-        // CreatedAt
-        response.setCreatedAt(product.getCreatedAt());
-        
-        return response;
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/cache/stats")
+    public CacheStatsResponse getCacheStats() {
+        return productService.getProductDetailCacheStats();
     }
 
     @GetMapping("/search")
@@ -152,15 +133,7 @@ public class ProductController {
                     .isCurrent(true)
                     .build();
             product.getProductPrices().add(price);
-        }
-        
-        // Add inventory if provided
-        if (request.getStockQuantity() != null) {
-            Inventory inventory = Inventory.builder()
-                    .product(product)
-                    .stock(request.getStockQuantity())
-                    .build();
-            product.getInventories().add(inventory);
+            product.setCurrentPrice(price.getPrice());
         }
         
         // Add images if provided
@@ -186,7 +159,8 @@ public class ProductController {
             }
         }
         
-        return productService.saveProduct(product);
+        // Tồn kho ban đầu được tạo cùng transaction với dòng sổ tồn kho
+        return productService.saveProduct(product, request.getStockQuantity());
     }
 
     @PreAuthorize("hasRole('ADMIN')")
@@ -229,21 +203,7 @@ public class ProductController {
                     .isCurrent(true)
                     .build();
             product.getProductPrices().add(newPrice);
-        }
-        
-        // Update inventory if provided
-        if (request.getStockQuantity() != null) {
-            if (product.getInventories().isEmpty()) {
-                // Create new inventory if none exists
-                Inventory inventory = Inventory.builder()
-                        .product(product)
-                        .stock(request.getStockQuantity())
-                        .build();
-                product.getInventories().add(inventory);
-            } else {
-                // Update existing inventory
-                product.getInventories().get(0).setStock(request.getStockQuantity());
-            }
+            product.setCurrentPrice(newPrice.getPrice());
         }
         
         // Update images if provided
@@ -275,7 +235,8 @@ public class ProductController {
             }
         }
         
-        return productService.saveProduct(product);
+        // Tồn kho (chia đều nếu sản phẩm có nhiều shard) được đặt cùng transaction với dòng sổ tồn kho
+        return productService.saveProduct(product, request.getStockQuantity());
     }
 
     @PreAuthorize("hasRole('ADMIN')")
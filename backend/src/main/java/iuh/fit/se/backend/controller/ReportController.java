@@ -6,8 +6,11 @@ import iuh.fit.se.backend.dto.CustomerMonthlySignupPoint;
 import iuh.fit.se.backend.dto.CustomerRevenuePoint;
 import iuh.fit.se.backend.dto.CustomerSummaryReport;
 import iuh.fit.se.backend.dto.CustomerYearlySignupPoint;
+import iuh.fit.se.backend.dto.DashboardSnapshot;
+import iuh.fit.se.backend.dto.DistinctCountReport;
 import iuh.fit.se.backend.dto.InventoryDailyPoint;
 import iuh.fit.se.backend.dto.InventoryMonthlyPoint;
+import iuh.fit.se.backend.dto.InventoryStockPoint;
 import iuh.fit.se.backend.dto.InventorySummaryReport;
 import iuh.fit.se.backend.dto.InventoryYearlyPoint;
 import iuh.fit.se.backend.dto.OrderDailyPoint;
@@ -19,23 +22,39 @@ import iuh.fit.se.backend.dto.RevenueDailyPoint;
 import iuh.fit.se.backend.dto.RevenueMonthlyPoint;
 import iuh.fit.se.backend.dto.RevenueSummaryReport;
 import iuh.fit.se.backend.dto.RevenueYearlyPoint;
+import iuh.fit.se.backend.dto.response.SalesCubeResponse;
 import iuh.fit.se.backend.service.CustomerReportService;
+import iuh.fit.se.backend.service.DashboardReportService;
 import iuh.fit.se.backend.service.InventoryReportService;
 import iuh.fit.se.backend.service.OrderReportService;
+import iuh.fit.se.backend.service.ReportExportService;
 import iuh.fit.se.backend.service.RevenueReportService;
+import iuh.fit.se.backend.service.SalesCube;
+import iuh.fit.se.backend.service.SalesRollupService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.Year;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/api/reports")
@@ -46,6 +65,16 @@ public class ReportController {
     private final RevenueReportService revenueReportService;
     private final InventoryReportService inventoryReportService;
     private final OrderReportService orderReportService;
+    private final SalesRollupService salesRollupService;
+    private final DashboardReportService dashboardReportService;
+    private final ReportExportService reportExportService;
+    private final SalesCube salesCube;
+
+    // Bốn báo cáo tổng quan trong một request, tính song song và cache ngắn hạn
+    @GetMapping("/dashboard")
+    public ResponseEntity<ApiResponse<DashboardSnapshot>> getDashboard() {
+        return ResponseEntity.ok(ApiResponse.success(dashboardReportService.getDashboard()));
+    }
 
     @GetMapping("/customers/summary")
     public ResponseEntity<ApiResponse<CustomerSummaryReport>> getCustomerSummary() {
@@ -105,6 +134,21 @@ public class ReportController {
         }
     }
 
+    // Tồn kho từng sản phẩm cuối ngày (mặc định hôm nay)
+    @GetMapping("/inventory/stock")
+    public ResponseEntity<ApiResponse<List<InventoryStockPoint>>> getInventoryStockOnDate(
+            @RequestParam(value = "date", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date
+    ) {
+        try {
+            List<InventoryStockPoint> data = inventoryReportService.getStockOnDate(date != null ? date : LocalDate.now());
+            return ResponseEntity.ok(ApiResponse.success(data));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.failure(ex.getMessage()));
+        }
+    }
+
     @GetMapping("/orders/daily")
     public ResponseEntity<ApiResponse<List<OrderDailyPoint>>> getOrderDailyReport(
             @RequestParam(value = "startDate", required = false)
@@ -136,10 +180,11 @@ public class ReportController {
 
     @GetMapping("/inventory/monthly")
     public ResponseEntity<ApiResponse<List<InventoryMonthlyPoint>>> getInventoryMonthlyReport(
-            @RequestParam(value = "year", required = false) Integer year
+            @RequestParam(value = "year", required = false) Integer year,
+            @RequestParam(value = "approximate", defaultValue = "false") boolean approximate
     ) {
         int targetYear = year != null ? year : Year.now().getValue();
-        List<InventoryMonthlyPoint> data = inventoryReportService.getMonthlyInventory(targetYear);
+        List<InventoryMonthlyPoint> data = inventoryReportService.getMonthlyInventory(targetYear, approximate);
         return ResponseEntity.ok(ApiResponse.success(data));
     }
 
@@ -173,14 +218,15 @@ public class ReportController {
     @GetMapping("/inventory/yearly")
     public ResponseEntity<ApiResponse<List<InventoryYearlyPoint>>> getInventoryYearlyReport(
             @RequestParam(value = "startYear", required = false) Integer startYear,
-            @RequestParam(value = "endYear", required = false) Integer endYear
+            @RequestParam(value = "endYear", required = false) Integer endYear,
+            @RequestParam(value = "approximate", defaultValue = "false") boolean approximate
     ) {
         int currentYear = Year.now().getValue();
         int resolvedStart = startYear != null ? startYear : currentYear - 4;
         int resolvedEnd = endYear != null ? endYear : currentYear;
 
         try {
-            List<InventoryYearlyPoint> data = inventoryReportService.getYearlyInventory(resolvedStart, resolvedEnd);
+            List<InventoryYearlyPoint> data = inventoryReportService.getYearlyInventory(resolvedStart, resolvedEnd, approximate);
             return ResponseEntity.ok(ApiResponse.success(data));
         } catch (IllegalArgumentException ex) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
@@ -217,7 +263,7 @@ public class ReportController {
         LocalDateTime startDateTime = startDate != null ? startDate.atStartOfDay() : null;
         LocalDateTime endDateTime = null;
         if (endDate != null) {
-            endDateTime = endDate.plusDays(1).atStartOfDay().minusNanos(1);
+            endDateTime = endDate.plusDays(1).atStartOfDay();
         }
         int resolvedLimit = limit != null && limit > 0 ? limit : 10;
 
@@ -309,4 +355,125 @@ public class ReportController {
         List<CustomerRevenuePoint> data = revenueReportService.getCustomerRevenueByYear(resolvedYear, resolvedLimit);
         return ResponseEntity.ok(ApiResponse.success(data));
     }
+
+    // Tính lại bảng tổng hợp doanh số theo ngày từ orders/order_items (backfill hoặc sửa lệch), endDate tính cả ngày đó
+    @PostMapping("/rollups/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Integer>> rebuildSalesRollups(
+            @RequestParam(value = "startDate")
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(value = "endDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate
+    ) {
+        try {
+            LocalDate resolvedEnd = endDate != null ? endDate : LocalDate.now();
+            int days = salesRollupService.rebuild(startDate, resolvedEnd.plusDays(1));
+            return ResponseEntity.ok(ApiResponse.success(days));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.failure(ex.getMessage()));
+        }
+    }
+
+    // Số sản phẩm / khách hàng khác nhau đã mua trong khoảng; approximate=true gộp sketch theo ngày cho khoảng dài
+    @GetMapping("/orders/distinct")
+    public ResponseEntity<ApiResponse<DistinctCountReport>> getDistinctCounts(
+            @RequestParam(value = "startDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(value = "endDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(value = "approximate", defaultValue = "false") boolean approximate
+    ) {
+        try {
+            LocalDate resolvedEnd = endDate != null ? endDate : LocalDate.now();
+            LocalDate resolvedStart = startDate != null ? startDate : resolvedEnd.minusDays(29);
+            DistinctCountReport data = orderReportService.getDistinctCounts(resolvedStart, resolvedEnd, approximate);
+            return ResponseEntity.ok(ApiResponse.success(data));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.failure(ex.getMessage()));
+        }
+    }
+
+    // Cắt lát doanh số tuỳ ý trên khối dữ liệu trong bộ nhớ, vd. groupBy=brand,month&categoryId=3&startDate=2025-01-01
+    @GetMapping("/cube")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<SalesCubeResponse>> querySalesCube(
+            @RequestParam(value = "groupBy", required = false) List<String> groupBy,
+            @RequestParam(value = "startDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(value = "endDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            @RequestParam(value = "productId", required = false) List<Long> productIds,
+            @RequestParam(value = "brandId", required = false) List<Long> brandIds,
+            @RequestParam(value = "categoryId", required = false) List<Long> categoryIds,
+            @RequestParam(value = "supplierId", required = false) List<Long> supplierIds,
+            @RequestParam(value = "customerId", required = false) List<Long> customerIds,
+            @RequestParam(value = "limit", defaultValue = "100") int limit
+    ) {
+        try {
+            List<SalesCube.Dimension> dimensions = groupBy != null
+                    ? groupBy.stream().map(SalesCube.Dimension::parse).toList()
+                    : List.of();
+            Map<SalesCube.Dimension, Set<Long>> filters = new EnumMap<>(SalesCube.Dimension.class);
+            putFilter(filters, SalesCube.Dimension.PRODUCT, productIds);
+            putFilter(filters, SalesCube.Dimension.BRAND, brandIds);
+            putFilter(filters, SalesCube.Dimension.CATEGORY, categoryIds);
+            putFilter(filters, SalesCube.Dimension.SUPPLIER, supplierIds);
+            putFilter(filters, SalesCube.Dimension.CUSTOMER, customerIds);
+
+            SalesCubeResponse data = salesCube.query(dimensions, startDate, endDate, filters, limit);
+            return ResponseEntity.ok(ApiResponse.success(data));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(ApiResponse.failure(ex.getMessage()));
+        }
+    }
+
+    // Export CSV dạng stream (khoảng ngày giống báo cáo theo ngày, mặc định 30 ngày gần nhất)
+    @GetMapping("/revenue/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exportDailyRevenue(
+            @RequestParam(value = "startDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(value = "endDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            HttpServletResponse response
+    ) throws IOException {
+        LocalDate resolvedEnd = endDate != null ? endDate : LocalDate.now();
+        LocalDate resolvedStart = startDate != null ? startDate : resolvedEnd.minusDays(29);
+        startCsv(response, resolvedStart, resolvedEnd, "revenue");
+        reportExportService.exportDailyRevenue(resolvedStart, resolvedEnd, response.getOutputStream());
+    }
+
+    @GetMapping("/revenue/customers/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exportCustomerRevenue(
+            @RequestParam(value = "startDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam(value = "endDate", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate,
+            HttpServletResponse response
+    ) throws IOException {
+        LocalDate resolvedEnd = endDate != null ? endDate : LocalDate.now();
+        LocalDate resolvedStart = startDate != null ? startDate : resolvedEnd.minusDays(29);
+        startCsv(response, resolvedStart, resolvedEnd, "customer-revenue");
+        reportExportService.exportCustomerRevenue(resolvedStart, resolvedEnd, response.getOutputStream());
+    }
+
+    private static void putFilter(Map<SalesCube.Dimension, Set<Long>> filters, SalesCube.Dimension dimension, List<Long> ids) {
+        if (ids != null && !ids.isEmpty()) {
+            filters.put(dimension, new HashSet<>(ids));
+        }
+    }
+
+    // Kiểm tra tham số trước khi ghi header: sau khi bắt đầu stream thì không đổi được status nữa
+    private static void startCsv(HttpServletResponse response, LocalDate start, LocalDate end, String name) {
+        if (start.isAfter(end)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Start date must be before or equal to end date");
+        }
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(name + "-" + start + "-" + end + ".csv").build().toString());
+    }
 }
@@ -3,6 +3,7 @@ package iuh.fit.se.backend.controller;
 import iuh.fit.se.backend.dto.ApiResponse;
 import iuh.fit.se.backend.dto.request.VNPayPaymentRequest;
 import iuh.fit.se.backend.dto.response.VNPayPaymentResponse;
+import iuh.fit.se.backend.service.IdempotencyStore;
 import iuh.fit.se.backend.service.VNPayService;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -23,11 +24,14 @@ public class VNPayController {
     @PostMapping("/create-payment")
     public ResponseEntity<ApiResponse<VNPayPaymentResponse>> createPayment(
             @RequestBody VNPayPaymentRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
             HttpServletRequest httpRequest) {
         try {
             log.info("Creating VNPay payment for order: {}", request.getOrderId());
-            VNPayPaymentResponse response = vnPayService.createPayment(request, httpRequest);
-            return ResponseEntity.ok(ApiResponse.success(response));
+            IdempotencyStore.Result<VNPayPaymentResponse> result = vnPayService.createPayment(request, httpRequest, idempotencyKey);
+            return ResponseEntity.ok()
+                    .header(IdempotencyStore.REPLAYED_HEADER, String.valueOf(result.replayed()))
+                    .body(ApiResponse.success(result.value()));
         } catch (Exception e) {
             log.error("Error creating VNPay payment", e);
             return ResponseEntity.ok(ApiResponse.failure("Error creating payment: " + e.getMessage()));
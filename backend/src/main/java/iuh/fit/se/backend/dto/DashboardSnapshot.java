@@ -0,0 +1,23 @@
+package iuh.fit.se.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DashboardSnapshot {
+
+    private RevenueSummaryReport revenue;
+    private OrderSummaryReport orders;
+    private InventorySummaryReport inventory;
+    private CustomerSummaryReport customers;
+    private LocalDateTime generatedAt;
+}
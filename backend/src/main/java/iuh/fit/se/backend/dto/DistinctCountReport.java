@@ -0,0 +1,25 @@
+package iuh.fit.se.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DistinctCountReport {
+
+    private LocalDate startDate;
+    private LocalDate endDate;
+    // Sản phẩm / khách hàng khác nhau trong các đơn PAID/SHIPPED/COMPLETED của khoảng
+    private long distinctProducts;
+    private long distinctCustomers;
+    // true: ước lượng từ sketch HyperLogLog theo ngày (sai số ~2%)
+    private boolean approximate;
+}
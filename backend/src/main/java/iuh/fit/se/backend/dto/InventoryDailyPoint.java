@@ -19,4 +19,6 @@ public class InventoryDailyPoint {
     private long unitsSold;
     private long distinctProductsSold;
     private long ordersCount;
+    // Tổng tồn kho cuối ngày, phát lại từ sổ biến động tồn kho
+    private long unitsOnHand;
 }
@@ -0,0 +1,19 @@
+package iuh.fit.se.backend.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InventoryStockPoint {
+
+    private Long productId;
+    private String productName;
+    private long stock;
+}
@@ -0,0 +1,25 @@
+package iuh.fit.se.backend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheStatsResponse {
+    private long hits;
+    private long misses;
+    // Số lần thực sự gọi loader (các request trùng key chờ chung một lần load)
+    private long loads;
+    // Bị đẩy ra vì vượt giới hạn dung lượng
+    private long evictions;
+    // Bị xoá do dữ liệu thay đổi
+    private long invalidations;
+    private long entries;
+    private long weightBytes;
+    private long maxWeightBytes;
+    private double hitRate;
+}
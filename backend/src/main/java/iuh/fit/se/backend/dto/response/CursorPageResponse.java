@@ -0,0 +1,32 @@
+package iuh.fit.se.backend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Một trang theo con trỏ (keyset): không có tổng số phần tử, chỉ có con trỏ để lấy trang kế tiếp.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CursorPageResponse<T> {
+    private List<T> content;
+    private int size;
+    private boolean hasNext;
+    // Truyền lại vào tham số `after` để lấy trang sau; null khi đã hết dữ liệu
+    private String nextCursor;
+
+    /**
+     * Dựng trang từ kết quả truy vấn lấy dư một dòng (size + 1): dòng dư chỉ dùng để biết còn trang sau.
+     */
+    public static <T> CursorPageResponse<T> of(List<T> rows, int size, Function<T, String> cursorOf) {
+        boolean hasNext = rows.size() > size;
+        List<T> content = hasNext ? rows.subList(0, size) : rows;
+        String nextCursor = hasNext ? cursorOf.apply(content.get(content.size() - 1)) : null;
+        return new CursorPageResponse<>(content, content.size(), hasNext, nextCursor);
+    }
+}
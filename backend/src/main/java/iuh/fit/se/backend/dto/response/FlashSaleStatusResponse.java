@@ -0,0 +1,25 @@
+package iuh.fit.se.backend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FlashSaleStatusResponse {
+    private Long productId;
+    private LocalDateTime enabledAt;
+    // Số lượng bộ đếm trong bộ nhớ của node này còn cho phép bán
+    private int available;
+    // Đã giữ trong bộ đếm nhưng đơn chưa commit
+    private int inFlight;
+    // Đơn đã commit nhưng chưa ghi bù vào inventories
+    private long pendingWriteBack;
+    // Tổng tồn kho hiện tại trong inventories
+    private long databaseStock;
+}
@@ -0,0 +1,30 @@
+package iuh.fit.se.backend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Dữ liệu gọn cho thẻ sản phẩm ở trang danh sách, dựng từ một truy vấn projection
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductCardResponse {
+    private Long id;
+    private String name;
+    private String brand;
+    private Long brandId;
+    private String categoryName;
+    private Long categoryId;
+    private BigDecimal price;
+    private String imageUrl;
+    private Integer stockQuantity;
+    private Double rating;
+    private Long numOfRating;
+    private String status;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,35 @@
+package iuh.fit.se.backend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ProductFacetResponse {
+    // Số sản phẩm khớp toàn bộ bộ lọc hiện tại
+    private long total;
+    private List<FacetCount> brands;
+    private List<FacetCount> categories;
+    private List<FacetCount> suppliers;
+    private List<FacetCount> priceRanges;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class FacetCount {
+        private Long id;
+        private String name;
+        // Chỉ có với khoảng giá; maxPrice null nghĩa là không giới hạn trên
+        private BigDecimal minPrice;
+        private BigDecimal maxPrice;
+        private long count;
+    }
+}
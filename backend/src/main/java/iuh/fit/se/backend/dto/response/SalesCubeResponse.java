@@ -0,0 +1,36 @@
+package iuh.fit.se.backend.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SalesCubeResponse {
+    private List<String> groupBy;
+    // Số nhóm và tổng trên mọi dòng khớp bộ lọc, trước khi cắt theo limit
+    private long groups;
+    private long totalQuantity;
+    private BigDecimal totalRevenue;
+    private List<Cell> cells;
+
+    @Data
+    @Builder
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Cell {
+        // Tên chiều -> giá trị (ngày, tháng yyyy-MM, năm hoặc id), theo thứ tự groupBy
+        private Map<String, Object> key;
+        // Số dòng đơn được tính doanh thu
+        private long lines;
+        private long quantity;
+        private BigDecimal revenue;
+    }
+}
@@ -0,0 +1,69 @@
+package iuh.fit.se.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Doanh thu và số đơn PAID/SHIPPED/COMPLETED của từng khách theo ngày, tháng và năm tạo đơn (bảng xếp hạng khách
+ * hàng). Dòng tháng/năm được cộng delta khi đơn vào/ra nhóm doanh thu, nên top khách của một kỳ là một lần quét
+ * index (period, period_start, revenue) có LIMIT thay vì aggregate cả kỳ; dòng ngày dùng để tính lại một ngày.
+ */
+@Entity
+@Table(name = "customer_period_sales", indexes = {
+        @Index(name = "idx_customer_period_sales_rank", columnList = "period, period_start, revenue")
+})
+@IdClass(CustomerPeriodSales.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class CustomerPeriodSales {
+
+    public enum Period {
+        DAY, MONTH, YEAR;
+
+        // Ngày đầu kỳ chứa ngày cho trước
+        public LocalDate startOf(LocalDate date) {
+            return switch (this) {
+                case DAY -> date;
+                case MONTH -> date.withDayOfMonth(1);
+                case YEAR -> date.withDayOfYear(1);
+            };
+        }
+    }
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "period", length = 10)
+    private Period period;
+
+    @Id
+    @Column(name = "period_start")
+    private LocalDate periodStart;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Column(name = "revenue", nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Column(name = "order_count", nullable = false)
+    private long orderCount;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Period period;
+        private LocalDate periodStart;
+        private Long userId;
+    }
+}
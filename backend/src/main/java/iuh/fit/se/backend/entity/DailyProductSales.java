@@ -0,0 +1,47 @@
+package iuh.fit.se.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Số lượng bán theo (ngày, sản phẩm) của các đơn PAID/SHIPPED/COMPLETED; dùng để đếm số sản phẩm khác nhau
+ * đã bán trong ngày/tháng/năm (không cộng dồn được từ tổng theo ngày).
+ */
+@Entity
+@Table(name = "daily_product_sales")
+@IdClass(DailyProductSales.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class DailyProductSales {
+
+    @Id
+    @Column(name = "sales_date")
+    private LocalDate salesDate;
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "units_sold", nullable = false)
+    private long unitsSold;
+
+    @Column(name = "revenue", nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate salesDate;
+        private Long productId;
+    }
+}
@@ -0,0 +1,46 @@
+package iuh.fit.se.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Tổng hợp đơn hàng theo ngày tạo đơn, được SalesRollupService cập nhật cùng transaction khi đơn được tạo
+ * hoặc đổi trạng thái, để báo cáo tháng/năm không phải aggregate lại orders ⨝ order_items.
+ * Doanh thu và số lượng chỉ tính đơn PAID/SHIPPED/COMPLETED.
+ */
+@Entity
+@Table(name = "daily_sales_rollups")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class DailySalesRollup {
+
+    @Id
+    @Column(name = "sales_date")
+    private LocalDate salesDate;
+
+    @Column(name = "total_orders", nullable = false)
+    private long totalOrders;
+
+    @Column(name = "pending_orders", nullable = false)
+    private long pendingOrders;
+
+    @Column(name = "fulfilled_orders", nullable = false)
+    private long fulfilledOrders;
+
+    @Column(name = "cancelled_orders", nullable = false)
+    private long cancelledOrders;
+
+    @Column(name = "revenue", nullable = false, precision = 19, scale = 2)
+    @Builder.Default
+    private BigDecimal revenue = BigDecimal.ZERO;
+
+    @Column(name = "units_sold", nullable = false)
+    private long unitsSold;
+}
@@ -0,0 +1,33 @@
+package iuh.fit.se.backend.entity;
+
+import iuh.fit.se.backend.util.HyperLogLog;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDate;
+
+/**
+ * Sketch HyperLogLog theo ngày của các sản phẩm và khách hàng khác nhau trong đơn PAID/SHIPPED/COMPLETED,
+ * để đếm xấp xỉ số phân biệt của một khoảng bất kỳ bằng cách gộp các ngày thay vì count(distinct) trên bảng gốc.
+ */
+@Entity
+@Table(name = "daily_sales_sketches")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString(onlyExplicitlyIncluded = true)
+public class DailySalesSketch {
+
+    @Id
+    @Column(name = "sales_date")
+    @ToString.Include
+    private LocalDate salesDate;
+
+    @Column(name = "products", nullable = false, length = HyperLogLog.SIZE)
+    private byte[] products;
+
+    @Column(name = "customers", nullable = false, length = HyperLogLog.SIZE)
+    private byte[] customers;
+}
@@ -0,0 +1,31 @@
+package iuh.fit.se.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sản phẩm đang bật chế độ flash sale (giữ hàng bằng bộ đếm trong bộ nhớ). Lưu trong DB để sau khi
+ * khởi động lại, bộ đếm được nạp lại từ tồn kho thay vì quay về giữ hàng trực tiếp trên inventories.
+ */
+@Entity
+@Table(name = "flash_sales")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FlashSale {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "enabled_at", nullable = false)
+    private LocalDateTime enabledAt;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "enabled_by")
+    private User enabledBy;
+}
@@ -0,0 +1,55 @@
+package iuh.fit.se.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một Idempotency-Key đã được nhận: dòng được INSERT trước khi chạy request (unique theo scope + key nên chỉ
+ * một node giành được), response null nghĩa là request đầu còn đang chạy.
+ */
+@Entity
+@Table(name = "idempotency_keys",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_idempotency_keys_scope_key", columnNames = {"scope", "idempotency_key"})
+        },
+        indexes = {
+                // Dọn key hết hạn theo expires_at
+                @Index(name = "idx_idempotency_keys_expires_at", columnList = "expires_at")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Phạm vi của key, ví dụ "orders:{userId}"
+    @Column(name = "scope", nullable = false, length = 100)
+    private String scope;
+
+    @Column(name = "idempotency_key", nullable = false, length = 255)
+    private String idempotencyKey;
+
+    // SHA-256 (hex) nội dung request
+    @Column(name = "fingerprint", nullable = false, length = 64)
+    private String fingerprint;
+
+    // Kết quả lần đầu dạng JSON để phát lại
+    @Column(name = "response", length = 4000)
+    private String response;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Khi còn đang chạy là hạn lease của request đầu; khi đã xong là hạn TTL của key
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+}
@@ -0,0 +1,58 @@
+package iuh.fit.se.backend.entity;
+
+import iuh.fit.se.backend.entity.enums.InventoryMovementType;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Sổ biến động tồn kho, chỉ thêm không sửa: mỗi dòng là một lần cộng/trừ tồn kho của sản phẩm cùng lý do và
+ * người thực hiện. Tồn kho tại một thời điểm = ảnh chụp gần nhất trước đó + tổng các dòng từ ảnh chụp tới thời điểm đó.
+ * Id lấy từ sequence (cấp theo khối) để các dòng của một transaction được INSERT theo lô.
+ */
+@Entity
+@Table(name = "inventory_movements", indexes = {
+        // Cộng dồn theo khoảng thời gian (ảnh chụp, tồn kho theo ngày) và lịch sử của một sản phẩm
+        @Index(name = "idx_inventory_movements_created", columnList = "created_at"),
+        @Index(name = "idx_inventory_movements_product_created", columnList = "product_id, created_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class InventoryMovement {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "inventory_movements_seq")
+    @SequenceGenerator(name = "inventory_movements_seq", sequenceName = "inventory_movements_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    // Số lượng có dấu: âm là xuất kho, dương là nhập kho
+    @Column(name = "quantity", nullable = false)
+    private int quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "movement_type", nullable = false, length = 30)
+    private InventoryMovementType type;
+
+    @Column(name = "order_id")
+    private Long orderId;
+
+    @Column(name = "reason", length = 255)
+    private String reason;
+
+    // Username của người thực hiện; null với tác vụ nền
+    @Column(name = "actor", length = 100)
+    private String actor;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,42 @@
+package iuh.fit.se.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Tồn kho của từng sản phẩm lúc 00:00 ngày snapshot_date, cộng dồn từ ảnh chụp trước đó và sổ biến động.
+ * Sản phẩm tồn 0 không có dòng.
+ */
+@Entity
+@Table(name = "inventory_snapshots")
+@IdClass(InventorySnapshot.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class InventorySnapshot {
+
+    @Id
+    @Column(name = "snapshot_date")
+    private LocalDate snapshotDate;
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "stock", nullable = false)
+    private long stock;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate snapshotDate;
+        private Long productId;
+    }
+}
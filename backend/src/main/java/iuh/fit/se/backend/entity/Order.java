@@ -7,15 +7,26 @@ import iuh.fit.se.backend.entity.enums.PaymentMethod;
 import iuh.fit.se.backend.entity.enums.PaymentStatus;
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.Hibernate;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // Phân trang keyset theo (created_at, id)
+        @Index(name = "idx_orders_created_at_id", columnList = "created_at, id"),
+        // Lọc/sắp xếp theo tổng tiền ngay trong SQL
+        @Index(name = "idx_orders_total_amount", columnList = "total_amount"),
+        // Quét đơn VNPay chưa thanh toán đã quá hạn bằng range scan theo updated_at
+        @Index(name = "idx_orders_vnpay_expiry", columnList = "payment_method, status, payment_status, updated_at"),
+        // Báo cáo doanh thu theo kỳ: status in (...) and created_at trong [start, end)
+        @Index(name = "idx_orders_status_created_at", columnList = "status, created_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -75,6 +86,15 @@ public class Order {
     @Column(name = "payment_method")
     private PaymentMethod paymentMethod;
 
+    // Tổng tiền / tổng số lượng lưu sẵn, tính lại mỗi khi dòng đơn thay đổi
+    @Column(name = "total_amount", nullable = false, precision = 15, scale = 2)
+    @Builder.Default
+    private BigDecimal totalAmount = BigDecimal.ZERO;
+
+    @Column(name = "total_quantity", nullable = false)
+    @Builder.Default
+    private Integer totalQuantity = 0;
+
     @ManyToOne
     @JoinColumn(name = "user_id", nullable = false)
     @JsonBackReference(value = "user-orders")
@@ -84,4 +104,30 @@ public class Order {
     @JsonManagedReference(value = "order-items")
     @Builder.Default
     private List<OrderItem> orderItems = new ArrayList<>();
+
+    // Chỉ tính lại khi danh sách dòng đơn đã được nạp: chưa nạp thì entity này không thể làm nó thay đổi
+    @PrePersist
+    @PreUpdate
+    public void syncTotals() {
+        if (Hibernate.isInitialized(orderItems)) {
+            recalculateTotals();
+        }
+    }
+
+    public void recalculateTotals() {
+        BigDecimal amount = BigDecimal.ZERO;
+        int quantity = 0;
+        for (OrderItem item : orderItems) {
+            // Giá chưa snapshot (OrderItem#prePersist chạy sau) thì dùng giá hiện tại như snapshot sẽ làm
+            BigDecimal price = item.getPrice() != null ? item.getPrice()
+                    : item.getProduct() != null ? item.getProduct().getCurrentPrice() : null;
+            int itemQuantity = item.getQuantity() != null ? item.getQuantity() : 0;
+            if (price != null) {
+                amount = amount.add(price.multiply(BigDecimal.valueOf(itemQuantity)));
+            }
+            quantity += itemQuantity;
+        }
+        this.totalAmount = amount;
+        this.totalQuantity = quantity;
+    }
 }
@@ -7,7 +7,10 @@ import lombok.*;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "order_items")
+@Table(name = "order_items", indexes = {
+        // Tác vụ ghi bù flash sale chỉ quét các dòng chưa ghi bù của từng sản phẩm
+        @Index(name = "idx_order_items_stock_deferred", columnList = "stock_deferred, product_id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -33,12 +36,18 @@ public class OrderItem {
     @Column(name = "product_image_url", length = 500)
     private String productImageUrl;
 
+    // true: hàng giữ qua bộ đếm flash sale trong bộ nhớ, chưa trừ vào inventories (FlashSaleAllocator ghi bù sau)
+    @Column(name = "stock_deferred", nullable = false)
+    @Builder.Default
+    private boolean stockDeferred = false;
+
     @ManyToOne
     @JoinColumn(name = "order_id", nullable = false)
     @JsonBackReference(value = "order-items")
     private Order order;
 
-    @ManyToOne
+    // LAZY: lịch sử đơn đọc snapshot tên/ảnh ở trên, không cần nạp sản phẩm
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
     @JsonBackReference(value = "product-orderItems")
     private Product product;
@@ -0,0 +1,70 @@
+package iuh.fit.se.backend.entity;
+
+import iuh.fit.se.backend.entity.enums.OutboxEventType;
+import iuh.fit.se.backend.entity.enums.OutboxStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tác vụ phụ của đơn hàng (email, thông báo, dọn giỏ hàng) được ghi cùng transaction với thay đổi đơn,
+ * sau đó OutboxDispatcher xử lý nền theo lô và retry khi lỗi.
+ */
+@Entity
+@Table(name = "outbox_events", indexes = {
+        // Worker quét các sự kiện đến hạn theo (status, next_attempt_at)
+        @Index(name = "idx_outbox_events_status_next_attempt", columnList = "status, next_attempt_at"),
+        @Index(name = "idx_outbox_events_claim_token", columnList = "claim_token")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 50)
+    private OutboxEventType type;
+
+    // Id đơn hàng mà sự kiện thuộc về
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    // Dữ liệu bổ sung nhỏ, ví dụ "PENDING>SHIPPING" cho thông báo đổi trạng thái
+    @Column(name = "payload", length = 500)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    @Builder.Default
+    private OutboxStatus status = OutboxStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    @Builder.Default
+    private int attempts = 0;
+
+    // Thời điểm được xử lý (lại); với PROCESSING là hạn lease của worker đang giữ
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+}
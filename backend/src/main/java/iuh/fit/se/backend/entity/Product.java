@@ -1,6 +1,7 @@
 package iuh.fit.se.backend.entity;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonManagedReference;
 import iuh.fit.se.backend.entity.enums.ProductStatus;
 import jakarta.persistence.*;
@@ -14,7 +15,9 @@ import java.util.Comparator;
 import java.util.List;
 
 @Entity
-@Table(name = "products")
+@Table(name = "products", indexes = {
+        @Index(name = "idx_products_current_price", columnList = "current_price")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -39,6 +42,10 @@ public class Product {
     @Column(columnDefinition = "TEXT")
     private String description;
 
+    // Giá hiện tại được đồng bộ từ productPrices để sort/filter trực tiếp bằng SQL
+    @Column(name = "current_price", precision = 15, scale = 2)
+    private BigDecimal currentPrice;
+
     @Enumerated(EnumType.STRING)
     @Column(nullable = false, length = 20)
     private ProductStatus status = ProductStatus.ACTIVE;
@@ -106,8 +113,28 @@ public class Product {
     @ToString.Exclude
     private List<Banner> banners = new ArrayList<>();
 
+    // Danh mục/trạng thái lúc entity được load, để CategoryTreeCache tính chênh lệch số sản phẩm khi lưu
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    private Long loadedCategoryId;
+
+    @Transient
+    @JsonIgnore
+    @ToString.Exclude
+    private ProductStatus loadedStatus;
+
+    @PostLoad
+    public void rememberLoadedState() {
+        loadedCategoryId = category != null ? category.getId() : null;
+        loadedStatus = status;
+    }
+
     // Helper method to get current price
     public BigDecimal getCurrentPrice() {
+        if (currentPrice != null) {
+            return currentPrice;
+        }
         return productPrices.stream()
                 .filter(p -> Boolean.TRUE.equals(p.getIsCurrent()))
                 .findFirst()
@@ -115,6 +142,12 @@ public class Product {
                 .orElse(BigDecimal.ZERO);
     }
 
+    // Khoá sắp xếp theo giá, đúng coalesce(current_price, 0) của truy vấn: không fallback sang productPrices
+    @JsonIgnore
+    public BigDecimal getSortPrice() {
+        return currentPrice != null ? currentPrice : BigDecimal.ZERO;
+    }
+
     // Helper method to get primary image
     public String getPrimaryImageUrl() {
         return productImages.stream()
@@ -129,4 +162,12 @@ public class Product {
                 .mapToInt(Inventory::getStock)
                 .sum();
     }
+
+    // Đặt tổng tồn kho: chia đều cho các dòng hiện có (sản phẩm đã chia shard vẫn giữ số shard)
+    public void setStockQuantity(int total) {
+        int n = inventories.size();
+        for (int i = 0; i < n; i++) {
+            inventories.get(i).setStock(total / n + (i < total % n ? 1 : 0));
+        }
+    }
 }
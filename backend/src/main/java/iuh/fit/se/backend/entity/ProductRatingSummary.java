@@ -0,0 +1,63 @@
+package iuh.fit.se.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tổng hợp đánh giá theo sản phẩm, được ReviewService cập nhật trong cùng transaction
+ * để danh sách sản phẩm không phải aggregate bảng reviews cho từng sản phẩm.
+ */
+@Entity
+@Table(name = "product_rating_summaries")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class ProductRatingSummary {
+
+    @Id
+    @Column(name = "product_id")
+    private Long productId;
+
+    @Column(name = "review_count", nullable = false)
+    @Builder.Default
+    private long reviewCount = 0;
+
+    @Column(name = "rating_sum", nullable = false)
+    @Builder.Default
+    private long ratingSum = 0;
+
+    // Histogram 1–5 sao
+    @Column(name = "one_star", nullable = false)
+    @Builder.Default
+    private long oneStar = 0;
+
+    @Column(name = "two_star", nullable = false)
+    @Builder.Default
+    private long twoStar = 0;
+
+    @Column(name = "three_star", nullable = false)
+    @Builder.Default
+    private long threeStar = 0;
+
+    @Column(name = "four_star", nullable = false)
+    @Builder.Default
+    private long fourStar = 0;
+
+    @Column(name = "five_star", nullable = false)
+    @Builder.Default
+    private long fiveStar = 0;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    public double getAverageRating() {
+        return reviewCount > 0 ? (double) ratingSum / reviewCount : 0.0;
+    }
+}
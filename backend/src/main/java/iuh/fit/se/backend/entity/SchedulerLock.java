@@ -0,0 +1,30 @@
+package iuh.fit.se.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lease cho tác vụ định kỳ chạy trên nhiều node: node nào cập nhật được locked_until thì được chạy,
+ * các node khác bỏ qua lượt đó. Node chết giữa chừng thì lease tự hết hạn.
+ */
+@Entity
+@Table(name = "scheduler_locks")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SchedulerLock {
+
+    @Id
+    @Column(name = "name", length = 64)
+    private String name;
+
+    @Column(name = "locked_until", nullable = false)
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+}
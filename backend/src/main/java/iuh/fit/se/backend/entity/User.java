@@ -13,7 +13,10 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        // Báo cáo khách hàng mới theo ngày/tháng/năm
+        @Index(name = "idx_users_created_at", columnList = "created_at")
+})
 @Getter
 @Setter
 @NoArgsConstructor
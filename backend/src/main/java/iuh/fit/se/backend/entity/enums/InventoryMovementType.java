@@ -0,0 +1,10 @@
+package iuh.fit.se.backend.entity.enums;
+
+public enum InventoryMovementType {
+
+    OPENING,             // Tồn đầu: sản phẩm mới hoặc số dư khi bắt đầu ghi sổ
+    ORDER_DEDUCTION,     // Trừ kho cho đơn hàng (kể cả ghi bù flash sale)
+    ORDER_CANCELLATION,  // Hoàn kho khi huỷ đơn
+    ADJUSTMENT           // Admin sửa tồn kho
+
+}
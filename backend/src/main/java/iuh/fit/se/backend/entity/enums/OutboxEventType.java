@@ -0,0 +1,9 @@
+package iuh.fit.se.backend.entity.enums;
+
+public enum OutboxEventType {
+
+    ORDER_CONFIRMATION_EMAIL,   // Email xác nhận đơn hàng
+    ORDER_STATUS_NOTIFICATION,  // Thông báo đổi trạng thái đơn
+    CART_CLEANUP                // Xoá sản phẩm đã mua khỏi giỏ hàng
+
+}
@@ -0,0 +1,10 @@
+package iuh.fit.se.backend.entity.enums;
+
+public enum OutboxStatus {
+
+    PENDING,     // Chờ xử lý (kể cả đang chờ retry)
+    PROCESSING,  // Đã được một worker nhận, hết lease thì được nhận lại
+    DONE,        // Đã xử lý xong
+    FAILED       // Hết số lần retry
+
+}
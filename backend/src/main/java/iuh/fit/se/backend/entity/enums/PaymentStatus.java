@@ -1,5 +1,6 @@
 package iuh.fit.se.backend.entity.enums;
 
 public enum PaymentStatus {
-    PENDING, PAID, FAILED
+    PENDING, PAID, FAILED,
+    REFUND_PENDING  // Đã nhận tiền nhưng đơn đã bị huỷ, chờ hoàn tiền
 }
@@ -0,0 +1,51 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.CustomerPeriodSales;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface CustomerPeriodSalesRepository extends JpaRepository<CustomerPeriodSales, CustomerPeriodSales.Key> {
+
+    @Modifying
+    @Query(value = """
+        insert into customer_period_sales (period, period_start, user_id, revenue, order_count)
+        values (:period, :periodStart, :userId, :revenue, :orders)
+        on duplicate key update
+            revenue = revenue + :revenue,
+            order_count = order_count + :orders
+        """, nativeQuery = true)
+    int applyDelta(@Param("period") String period,
+                   @Param("periodStart") LocalDate periodStart,
+                   @Param("userId") Long userId,
+                   @Param("revenue") BigDecimal revenue,
+                   @Param("orders") long orders);
+
+    List<CustomerPeriodSales> findByPeriodAndPeriodStart(CustomerPeriodSales.Period period, LocalDate periodStart);
+
+    // Khách không còn đơn nào được tính trong kỳ
+    @Modifying
+    @Query("""
+        delete from CustomerPeriodSales c
+        where c.period = :period and c.periodStart = :periodStart and c.orderCount = 0
+        """)
+    int deleteEmpty(@Param("period") CustomerPeriodSales.Period period, @Param("periodStart") LocalDate periodStart);
+
+    // Top khách theo doanh thu của một kỳ: (userId, fullName, email, revenue, orderCount); LIMIT lấy từ pageable
+    @Query("""
+        select c.userId, u.fullName, u.email, c.revenue, c.orderCount
+        from CustomerPeriodSales c
+        join User u on u.id = c.userId
+        where c.period = :period and c.periodStart = :periodStart and c.orderCount > 0
+        order by c.revenue desc, c.userId
+        """)
+    List<Object[]> findTopByRevenue(@Param("period") CustomerPeriodSales.Period period,
+                                    @Param("periodStart") LocalDate periodStart,
+                                    Pageable pageable);
+}
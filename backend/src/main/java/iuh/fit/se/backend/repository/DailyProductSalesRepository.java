@@ -0,0 +1,59 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.DailyProductSales;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+public interface DailyProductSalesRepository extends JpaRepository<DailyProductSales, DailyProductSales.Key> {
+
+    @Modifying
+    @Query(value = """
+        insert into daily_product_sales (sales_date, product_id, units_sold, revenue)
+        values (:date, :productId, :units, :revenue)
+        on duplicate key update
+            units_sold = units_sold + :units,
+            revenue = revenue + :revenue
+        """, nativeQuery = true)
+    int applyDelta(@Param("date") LocalDate date,
+                   @Param("productId") Long productId,
+                   @Param("units") long units,
+                   @Param("revenue") BigDecimal revenue);
+
+    // (productId, units, revenue) các dòng của ngày
+    @Query("select p.productId, p.unitsSold, p.revenue from DailyProductSales p where p.salesDate = :date")
+    List<Object[]> findTotals(@Param("date") LocalDate date);
+
+    // Sản phẩm không còn bán được gì trong ngày
+    @Modifying
+    @Query("delete from DailyProductSales p where p.salesDate = :date and p.unitsSold = 0 and p.revenue = 0")
+    int deleteEmpty(@Param("date") LocalDate date);
+
+    // Số sản phẩm khác nhau đã bán trong từng ngày / tháng / năm của khoảng [start, end)
+
+    @Query("""
+        select p.salesDate, count(distinct p.productId) from DailyProductSales p
+        where p.salesDate >= :start and p.salesDate < :end and p.unitsSold > 0
+        group by p.salesDate
+        """)
+    List<Object[]> countDistinctProductsByDay(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    @Query("""
+        select month(p.salesDate), count(distinct p.productId) from DailyProductSales p
+        where p.salesDate >= :start and p.salesDate < :end and p.unitsSold > 0
+        group by month(p.salesDate)
+        """)
+    List<Object[]> countDistinctProductsByMonth(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    @Query("""
+        select year(p.salesDate), count(distinct p.productId) from DailyProductSales p
+        where p.salesDate >= :start and p.salesDate < :end and p.unitsSold > 0
+        group by year(p.salesDate)
+        """)
+    List<Object[]> countDistinctProductsByYear(@Param("start") LocalDate start, @Param("end") LocalDate end);
+}
@@ -0,0 +1,92 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.DailySalesRollup;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface DailySalesRollupRepository extends JpaRepository<DailySalesRollup, LocalDate> {
+
+    // Cộng delta vào dòng của ngày bằng một câu upsert nguyên tử (đơn đầu tiên trong ngày tạo dòng)
+    @Modifying
+    @Query(value = """
+        insert into daily_sales_rollups
+            (sales_date, total_orders, pending_orders, fulfilled_orders, cancelled_orders, revenue, units_sold)
+        values (:date, :total, :pending, :fulfilled, :cancelled, :revenue, :units)
+        on duplicate key update
+            total_orders = total_orders + :total,
+            pending_orders = pending_orders + :pending,
+            fulfilled_orders = fulfilled_orders + :fulfilled,
+            cancelled_orders = cancelled_orders + :cancelled,
+            revenue = revenue + :revenue,
+            units_sold = units_sold + :units
+        """, nativeQuery = true)
+    int applyDelta(@Param("date") LocalDate date,
+                   @Param("total") long total,
+                   @Param("pending") long pending,
+                   @Param("fulfilled") long fulfilled,
+                   @Param("cancelled") long cancelled,
+                   @Param("revenue") BigDecimal revenue,
+                   @Param("units") long units);
+
+    // Khoá dòng của ngày (FOR UPDATE) mà không nạp entity, để lần đọc thường sau đó vẫn là ảnh chụp của transaction
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r.salesDate from DailySalesRollup r where r.salesDate = :date")
+    List<LocalDate> lockDay(@Param("date") LocalDate date);
+
+    // (total, pending, fulfilled, cancelled, revenue, units) của ngày; không có dòng thì rỗng
+    @Query("""
+        select r.totalOrders, r.pendingOrders, r.fulfilledOrders, r.cancelledOrders, r.revenue, r.unitsSold
+        from DailySalesRollup r
+        where r.salesDate = :date
+        """)
+    List<Object[]> findTotals(@Param("date") LocalDate date);
+
+    // Các truy vấn báo cáo dùng khoảng nửa mở [start, end) trên khoá chính sales_date
+
+    List<DailySalesRollup> findBySalesDateGreaterThanEqualAndSalesDateLessThanOrderBySalesDate(LocalDate start, LocalDate end);
+
+    // Export CSV: đọc theo cursor, trả cột thay vì entity để persistence context không phình theo số dòng
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+        select r.salesDate, r.totalOrders, r.fulfilledOrders, r.pendingOrders, r.cancelledOrders, r.unitsSold, r.revenue
+        from DailySalesRollup r
+        where r.salesDate >= :start and r.salesDate < :end
+        order by r.salesDate
+        """)
+    Stream<Object[]> streamDays(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    @Query("""
+        select month(r.salesDate), sum(r.revenue), sum(r.unitsSold), sum(r.totalOrders),
+               sum(r.fulfilledOrders), sum(r.pendingOrders), sum(r.cancelledOrders)
+        from DailySalesRollup r
+        where r.salesDate >= :start and r.salesDate < :end
+        group by month(r.salesDate)
+        """)
+    List<Object[]> sumByMonth(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    @Query("""
+        select year(r.salesDate), sum(r.revenue), sum(r.unitsSold), sum(r.totalOrders),
+               sum(r.fulfilledOrders), sum(r.pendingOrders), sum(r.cancelledOrders)
+        from DailySalesRollup r
+        where r.salesDate >= :start and r.salesDate < :end
+        group by year(r.salesDate)
+        """)
+    List<Object[]> sumByYear(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    @Query("""
+        select r.salesDate from DailySalesRollup r where r.salesDate >= :start and r.salesDate < :end
+        """)
+    List<LocalDate> findDatesBetween(@Param("start") LocalDate start, @Param("end") LocalDate end);
+}
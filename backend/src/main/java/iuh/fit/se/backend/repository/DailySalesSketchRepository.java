@@ -0,0 +1,36 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.DailySalesSketch;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface DailySalesSketchRepository extends JpaRepository<DailySalesSketch, LocalDate> {
+
+    List<DailySalesSketch> findBySalesDateGreaterThanEqualAndSalesDateLessThan(LocalDate start, LocalDate end);
+
+    // (ngày, sketch sản phẩm) trong [start, end), không đọc cột khách hàng
+    @Query("select s.salesDate, s.products from DailySalesSketch s where s.salesDate >= :start and s.salesDate < :end")
+    List<Object[]> findProductSketches(@Param("start") LocalDate start, @Param("end") LocalDate end);
+
+    // Tạo dòng rỗng của ngày nếu chưa có; hai đơn đầu tiên của ngày chạy đồng thời không lỗi trùng khoá
+    @Modifying
+    @Query(value = """
+        insert into daily_sales_sketches (sales_date, products, customers)
+        values (:day, :empty, :empty)
+        on duplicate key update sales_date = sales_date
+        """, nativeQuery = true)
+    int insertIfAbsent(@Param("day") LocalDate day, @Param("empty") byte[] empty);
+
+    // Đọc có khoá (FOR UPDATE) nên thấy sketch đã commit mới nhất, kể cả khi transaction đang ở REPEATABLE READ
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from DailySalesSketch s where s.salesDate = :day")
+    Optional<DailySalesSketch> findByIdForUpdate(@Param("day") LocalDate day);
+}
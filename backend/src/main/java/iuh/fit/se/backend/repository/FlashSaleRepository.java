@@ -0,0 +1,7 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.FlashSale;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface FlashSaleRepository extends JpaRepository<FlashSale, Long> {
+}
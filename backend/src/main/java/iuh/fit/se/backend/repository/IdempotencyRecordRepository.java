@@ -0,0 +1,31 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, Long> {
+
+    Optional<IdempotencyRecord> findByScopeAndIdempotencyKey(String scope, String idempotencyKey);
+
+    // Bỏ key đã hết hạn để key đó được nhận lại
+    @Modifying
+    @Query("""
+        delete from IdempotencyRecord r
+        where r.scope = :scope and r.idempotencyKey = :key and r.expiresAt <= :now
+        """)
+    int deleteExpired(@Param("scope") String scope, @Param("key") String key, @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("update IdempotencyRecord r set r.response = :response, r.expiresAt = :expiresAt where r.id = :id")
+    int complete(@Param("id") Long id, @Param("response") String response, @Param("expiresAt") LocalDateTime expiresAt);
+
+    @Modifying
+    @Query("delete from IdempotencyRecord r where r.expiresAt <= :now")
+    int deleteAllExpired(@Param("now") LocalDateTime now);
+}
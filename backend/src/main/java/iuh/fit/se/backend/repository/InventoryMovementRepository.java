@@ -0,0 +1,35 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.InventoryMovement;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface InventoryMovementRepository extends JpaRepository<InventoryMovement, Long> {
+
+    // Lịch sử biến động của một sản phẩm, mới nhất trước
+    List<InventoryMovement> findByProductIdOrderByIdDesc(Long productId, Pageable pageable);
+
+    // (productId, tổng số lượng) của các biến động trong [start, end)
+    @Query("""
+        select m.productId, sum(m.quantity) from InventoryMovement m
+        where m.createdAt >= :start and m.createdAt < :end
+        group by m.productId
+        """)
+    List<Object[]> sumQuantityByProduct(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("select coalesce(sum(m.quantity), 0) from InventoryMovement m where m.createdAt >= :start and m.createdAt < :end")
+    Long sumQuantity(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // (ngày, tổng số lượng) theo ngày trong [start, end)
+    @Query("""
+        select date(m.createdAt), sum(m.quantity) from InventoryMovement m
+        where m.createdAt >= :start and m.createdAt < :end
+        group by date(m.createdAt)
+        """)
+    List<Object[]> sumQuantityByDay(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+}
@@ -1,14 +1,25 @@
 package iuh.fit.se.backend.repository;
 
 import iuh.fit.se.backend.entity.Inventory;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface InventoryRepository extends JpaRepository<Inventory, Long> {
-    Optional<Inventory> findByProductId(Long productId);
+    // Sản phẩm có thể có nhiều dòng tồn kho (shard), lấy dòng đầu tiên
+    Optional<Inventory> findFirstByProductIdOrderByIdAsc(Long productId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i from Inventory i join fetch i.product where i.product.id = :productId order by i.id")
+    List<Inventory> findByProductIdForUpdate(@Param("productId") Long productId);
 
     @Query("select coalesce(sum(i.stock), 0) from Inventory i")
     Long sumTotalStock();
@@ -24,4 +35,47 @@ public interface InventoryRepository extends JpaRepository<Inventory, Long> {
 
     @Query("select max(i.updatedAt) from Inventory i")
     LocalDateTime findLatestUpdatedAt();
+
+    // (id, stock) các dòng tồn kho của sản phẩm, luôn theo thứ tự id để mọi giao dịch khoá dòng cùng một thứ tự
+    @Query("select i.id, i.stock from Inventory i where i.product.id = :productId order by i.id")
+    List<Object[]> findStockRowsByProductId(@Param("productId") Long productId);
+
+    // (productId, id, stock) các dòng tồn kho của nhiều sản phẩm trong một truy vấn, theo (productId, id)
+    @Query("select i.product.id, i.id, i.stock from Inventory i where i.product.id in :productIds order by i.product.id, i.id")
+    List<Object[]> findStockRowsByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    // Tổng tồn kho theo sản phẩm cho nhiều sản phẩm trong một truy vấn
+    @Query("select i.product.id, coalesce(sum(i.stock), 0) from Inventory i where i.product.id in :productIds group by i.product.id")
+    List<Object[]> sumStockByProductIdIn(@Param("productIds") Collection<Long> productIds);
+
+    @Query("select i.stock from Inventory i where i.id = :id")
+    Integer findStockById(@Param("id") Long id);
+
+    // Đọc có khoá (FOR UPDATE) nên thấy giá trị đã commit mới nhất, kể cả khi transaction đang ở REPEATABLE READ
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select i.stock from Inventory i where i.id = :id")
+    Integer findStockByIdForUpdate(@Param("id") Long id);
+
+    // Trừ có điều kiện: trả về 0 nếu dòng không còn đủ hàng (đã bị đơn khác lấy trước)
+    @Modifying
+    @Query("update Inventory i set i.stock = i.stock - :quantity, i.updatedAt = current_timestamp where i.id = :id and i.stock >= :quantity")
+    int decrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    @Modifying
+    @Query("update Inventory i set i.stock = i.stock + :quantity, i.updatedAt = current_timestamp where i.id = :id")
+    int incrementStock(@Param("id") Long id, @Param("quantity") int quantity);
+
+    // Hoàn hàng cho cả lô đơn trong một câu UPDATE: mỗi sản phẩm cộng tổng số lượng của các đơn vào dòng tồn kho
+    // có id nhỏ nhất (cùng dòng với releaseStock)
+    @Modifying
+    @Query("""
+        update Inventory i
+        set i.stock = i.stock + (select sum(oi.quantity) from OrderItem oi
+                                 where oi.order.id in :orderIds and oi.product.id = i.product.id),
+            i.updatedAt = current_timestamp
+        where i.id in (select min(i2.id) from Inventory i2
+                       where i2.product.id in (select oi2.product.id from OrderItem oi2 where oi2.order.id in :orderIds)
+                       group by i2.product.id)
+        """)
+    int restockForOrders(@Param("orderIds") Collection<Long> orderIds);
 }
@@ -0,0 +1,26 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.InventorySnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface InventorySnapshotRepository extends JpaRepository<InventorySnapshot, InventorySnapshot.Key> {
+
+    // Ảnh chụp gần nhất không muộn hơn date; null nếu chưa có
+    @Query("select max(s.snapshotDate) from InventorySnapshot s where s.snapshotDate <= :date")
+    LocalDate findLatestDateOnOrBefore(@Param("date") LocalDate date);
+
+    List<InventorySnapshot> findBySnapshotDate(LocalDate snapshotDate);
+
+    @Query("select coalesce(sum(s.stock), 0) from InventorySnapshot s where s.snapshotDate = :date")
+    Long sumStock(@Param("date") LocalDate date);
+
+    @Modifying
+    @Query("delete from InventorySnapshot s where s.snapshotDate = :date")
+    int deleteBySnapshotDate(@Param("date") LocalDate date);
+}
@@ -1,7 +1,80 @@
 package iuh.fit.se.backend.repository;
 
 import iuh.fit.se.backend.entity.OrderItem;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
 
 public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
+
+    // (productId, tổng số lượng) của một lô đơn, dùng khi hoàn kho cho cả lô
+    @Query("select oi.product.id, sum(oi.quantity) from OrderItem oi where oi.order.id in :orderIds group by oi.product.id")
+    List<Object[]> sumQuantityByProductForOrders(@Param("orderIds") Collection<Long> orderIds);
+
+    // Sản phẩm còn dòng đơn flash sale chưa ghi bù vào inventories
+    @Query("select distinct oi.product.id from OrderItem oi where oi.stockDeferred = true")
+    List<Long> findDeferredProductIds();
+
+    // (id, quantity) các dòng đơn flash sale chưa ghi bù của sản phẩm, theo id
+    @Query("select oi.id, oi.quantity from OrderItem oi where oi.product.id = :productId and oi.stockDeferred = true order by oi.id")
+    List<Object[]> findDeferredByProductId(@Param("productId") Long productId, Pageable pageable);
+
+    @Query("select coalesce(sum(oi.quantity), 0) from OrderItem oi where oi.product.id = :productId and oi.stockDeferred = true")
+    long sumDeferredQuantityByProductId(@Param("productId") Long productId);
+
+    // Đánh dấu đã ghi bù; có điều kiện để hai node không trừ kho hai lần cho cùng một dòng đơn
+    @Modifying
+    @Query("update OrderItem oi set oi.stockDeferred = false where oi.id in :ids and oi.stockDeferred = true")
+    int settleDeferred(@Param("ids") Collection<Long> ids);
+
+    // (productId, số lượng, doanh thu) theo sản phẩm của các đơn tạo trong [start, end) có trạng thái cho trước
+    @Query("""
+        select oi.product.id, sum(oi.quantity), sum(oi.price * oi.quantity)
+        from OrderItem oi
+        where oi.order.createdAt >= :start and oi.order.createdAt < :end
+          and oi.order.status in :statuses
+        group by oi.product.id
+        """)
+    List<Object[]> sumByProductForOrdersCreatedBetween(@Param("start") LocalDateTime start,
+                                                       @Param("end") LocalDateTime end,
+                                                       @Param("statuses") Collection<OrderStatus> statuses);
+
+    @Query("""
+        select count(distinct oi.product.id)
+        from OrderItem oi
+        where oi.order.createdAt >= :start and oi.order.createdAt < :end
+          and oi.order.status in :statuses
+        """)
+    long countDistinctProductsForOrdersCreatedBetween(@Param("start") LocalDateTime start,
+                                                      @Param("end") LocalDateTime end,
+                                                      @Param("statuses") Collection<OrderStatus> statuses);
+
+    // Dòng đơn dạng cột cho SalesCube: (createdAt, productId, brandId, categoryId, supplierId, userId, quantity, price)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+        select o.createdAt, p.id, b.id, c.id, s.id, u.id, oi.quantity, oi.price
+        from OrderItem oi
+        join oi.order o
+        join oi.product p
+        left join p.brand b
+        left join p.category c
+        left join p.supplier s
+        left join o.user u
+        where o.createdAt >= :start and o.createdAt < :end
+          and o.status in :statuses
+        """)
+    Stream<Object[]> streamSalesFacts(@Param("start") LocalDateTime start,
+                                      @Param("end") LocalDateTime end,
+                                      @Param("statuses") Collection<OrderStatus> statuses);
 }
@@ -2,114 +2,145 @@ package iuh.fit.se.backend.repository;
 
 import iuh.fit.se.backend.entity.Order;
 import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.entity.enums.PaymentMethod;
+import iuh.fit.se.backend.entity.enums.PaymentStatus;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
-import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, JpaSpecificationExecutor<Order> {
 
     List<Order> findByUserId(Long userId);
+
+    // Trang id đơn của user; tách khỏi fetch join để LIMIT/OFFSET chạy trong SQL thay vì trong bộ nhớ
+    @Query(value = "select o.id from Order o where o.user.id = :userId",
+           countQuery = "select count(o) from Order o where o.user.id = :userId")
+    Page<Long> findIdsByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @EntityGraph(attributePaths = {"user", "orderItems"})
+    @Query("select distinct o from Order o where o.user.id = :userId order by o.createdAt desc, o.id desc")
+    List<Order> findWithItemsByUserId(@Param("userId") Long userId);
     
     Optional<Order> findByTransactionId(String transactionId);
 
-    Page<Order> findAll(Specification<Order> spec, Pageable pageable);
-
+    // Tính lại tổng lưu sẵn của đơn từ order_items (khi dòng đơn được sửa trực tiếp, không qua Order)
+    @Modifying
     @Query("""
-        select date(o.createdAt) as orderDate, sum(oi.price * oi.quantity) as revenue
-        from Order o
-        join o.orderItems oi
-        where date(o.createdAt) between :startDate and :endDate
-          and o.status in :statuses
-        group by orderDate
-        order by orderDate
+        update Order o
+        set o.totalAmount = coalesce((select sum(i.price * i.quantity) from OrderItem i where i.order.id = :id), 0),
+            o.totalQuantity = coalesce((select sum(i.quantity) from OrderItem i where i.order.id = :id), 0)
+        where o.id = :id
         """)
-    List<Object[]> sumRevenueByDayRange(@Param("startDate") LocalDate startDate,
-                    @Param("endDate") LocalDate endDate,
-                    @Param("statuses") List<OrderStatus> statuses);
+    int refreshTotals(@Param("id") Long id);
 
-    @Query("""
-        select date(o.createdAt) as orderDate,
-               sum(oi.quantity) as unitsSold,
-               count(distinct oi.product.id) as distinctProducts,
-               count(distinct o.id) as ordersCount
-        from Order o
-        join o.orderItems oi
-        where date(o.createdAt) between :startDate and :endDate
-          and o.status in :statuses
-        group by orderDate
-        order by orderDate
-        """)
-    List<Object[]> sumUnitsSoldByDayRange(@Param("startDate") LocalDate startDate,
-                     @Param("endDate") LocalDate endDate,
-                     @Param("statuses") List<OrderStatus> statuses);
+    // Nạp một lô đơn kèm user và dòng đơn trong một truy vấn (dùng cho xử lý outbox theo lô)
+    @EntityGraph(attributePaths = {"user", "orderItems"})
+    @Query("select distinct o from Order o where o.id in :ids")
+    List<Order> findWithItemsByIdIn(@Param("ids") Collection<Long> ids);
 
-    @Query("""
-        select year(o.createdAt) as yearValue,
-           month(o.createdAt) as monthValue,
-           sum(oi.price * oi.quantity) as revenue
-        from Order o
-        join o.orderItems oi
-        where year(o.createdAt) = :year
-          and o.status in :statuses
-        group by yearValue, monthValue
-        order by monthValue
-        """)
-    List<Object[]> sumRevenueByMonth(@Param("year") int year,
-                     @Param("statuses") List<OrderStatus> statuses);
+    Page<Order> findAll(Specification<Order> spec, Pageable pageable);
 
+    // Một lô id đơn chờ thanh toán đã quá hạn, khoá dòng để callback thanh toán chạy cùng lúc phải chờ lô này xong.
+    // Điều kiện bằng trên (payment_method, status, payment_status) + khoảng updated_at dùng idx_orders_vnpay_expiry
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("""
-        select year(o.createdAt) as yearValue,
-           month(o.createdAt) as monthValue,
-           sum(oi.quantity) as unitsSold,
-           count(distinct oi.product.id) as distinctProducts
-        from Order o
-        join o.orderItems oi
-        where year(o.createdAt) = :year
-          and o.status in :statuses
-        group by yearValue, monthValue
-        order by monthValue
+        select o.id from Order o
+        where o.paymentMethod = :method
+          and o.status = :status
+          and o.paymentStatus = :paymentStatus
+          and o.updatedAt < :cutoff
+        order by o.updatedAt, o.id
         """)
-    List<Object[]> sumUnitsSoldByMonth(@Param("year") int year,
-                     @Param("statuses") List<OrderStatus> statuses);
+    List<Long> findStaleIdsForUpdate(@Param("method") PaymentMethod method,
+                                     @Param("status") OrderStatus status,
+                                     @Param("paymentStatus") PaymentStatus paymentStatus,
+                                     @Param("cutoff") LocalDateTime cutoff,
+                                     Pageable pageable);
 
+    // Huỷ cả lô trong một câu UPDATE; điều kiện trạng thái lặp lại để không đụng đơn vừa được thanh toán
+    @Modifying
     @Query("""
-        select year(o.createdAt) as yearValue,
-           sum(oi.price * oi.quantity) as revenue
-        from Order o
-        join o.orderItems oi
-        where year(o.createdAt) between :startYear and :endYear
-          and o.status in :statuses
-        group by yearValue
-        order by yearValue
+        update Order o
+        set o.status = :to, o.paymentStatus = :paymentTo, o.updatedAt = current_timestamp
+        where o.id in :ids and o.status = :from and o.paymentStatus = :paymentFrom
         """)
-    List<Object[]> sumRevenueByYearRange(@Param("startYear") int startYear,
-                     @Param("endYear") int endYear,
-                     @Param("statuses") List<OrderStatus> statuses);
+    int updateStatusesIfCurrent(@Param("ids") Collection<Long> ids,
+                                @Param("from") OrderStatus from,
+                                @Param("paymentFrom") PaymentStatus paymentFrom,
+                                @Param("to") OrderStatus to,
+                                @Param("paymentTo") PaymentStatus paymentTo);
 
+    // Tổng hợp một ngày từ bảng gốc cho daily_sales_rollups: (tổng đơn, chờ, hoàn tất, huỷ, doanh thu, số lượng)
     @Query("""
-        select year(o.createdAt) as yearValue,
-           sum(oi.quantity) as unitsSold,
-           count(distinct oi.product.id) as distinctProducts
+        select count(o),
+               coalesce(sum(case when o.status = :pendingStatus then 1 else 0 end), 0),
+               coalesce(sum(case when o.status in :fulfilledStatuses then 1 else 0 end), 0),
+               coalesce(sum(case when o.status = :cancelledStatus then 1 else 0 end), 0),
+               coalesce(sum(case when o.status in :fulfilledStatuses then o.totalAmount else 0 end), 0),
+               coalesce(sum(case when o.status in :fulfilledStatuses then o.totalQuantity else 0 end), 0)
         from Order o
-        join o.orderItems oi
-        where year(o.createdAt) between :startYear and :endYear
-          and o.status in :statuses
-        group by yearValue
-        order by yearValue
+        where o.createdAt >= :start and o.createdAt < :end
         """)
-    List<Object[]> sumUnitsSoldByYearRange(@Param("startYear") int startYear,
-                     @Param("endYear") int endYear,
-                     @Param("statuses") List<OrderStatus> statuses);
+    List<Object[]> summarizeCreatedBetween(@Param("start") LocalDateTime start,
+                                           @Param("end") LocalDateTime end,
+                                           @Param("fulfilledStatuses") Collection<OrderStatus> fulfilledStatuses,
+                                           @Param("pendingStatus") OrderStatus pendingStatus,
+                                           @Param("cancelledStatus") OrderStatus cancelledStatus);
+
+    // Các ngày (theo created_at) có đơn trong khoảng [start, end)
+    @Query("select distinct date(o.createdAt) from Order o where o.createdAt >= :start and o.createdAt < :end")
+    List<Object> findOrderDatesBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("select min(o.createdAt) from Order o")
+    LocalDateTime findEarliestCreatedAt();
+
+    // Khách hàng khác nhau có đơn tạo trong [start, end) với trạng thái cho trước
+    @Query("select distinct o.user.id from Order o where o.createdAt >= :start and o.createdAt < :end and o.status in :statuses")
+    List<Long> findCustomerIdsCreatedBetween(@Param("start") LocalDateTime start,
+                                             @Param("end") LocalDateTime end,
+                                             @Param("statuses") Collection<OrderStatus> statuses);
 
+    @Query("select count(distinct o.user.id) from Order o where o.createdAt >= :start and o.createdAt < :end and o.status in :statuses")
+    long countDistinctCustomersCreatedBetween(@Param("start") LocalDateTime start,
+                                              @Param("end") LocalDateTime end,
+                                              @Param("statuses") Collection<OrderStatus> statuses);
+
+    // (ngày tạo, số đơn) của một lô đơn
+    @Query("select date(o.createdAt), count(o) from Order o where o.id in :ids group by date(o.createdAt)")
+    List<Object[]> countByCreatedDateForIds(@Param("ids") Collection<Long> ids);
+
+    // Chuyển trạng thái có điều kiện: trả về 0 nếu đơn đã bị request khác đổi trạng thái trước
+    @Modifying
+    @Query("update Order o set o.status = :to where o.id = :id and o.status = :from")
+    int updateStatusIfCurrent(@Param("id") Long id, @Param("from") OrderStatus from, @Param("to") OrderStatus to);
+
+    // Chỉ ghi cột thanh toán, không đụng tới status (đơn có thể vừa được transaction khác đổi trạng thái)
+    @Modifying
+    @Query("update Order o set o.paymentStatus = :paymentStatus, o.transactionId = :transactionId where o.id = :id")
+    int updatePaymentStatus(@Param("id") Long id,
+                            @Param("paymentStatus") PaymentStatus paymentStatus,
+                            @Param("transactionId") String transactionId);
+
+    // Báo cáo theo kỳ lọc created_at theo khoảng nửa mở [start, end) thay vì date()/year()/month() trên cột,
+    // để range scan được trên idx_orders_created_at_id / idx_orders_status_created_at
       @Query("""
         select date(o.createdAt) as orderDate,
              count(o.id) as totalOrders,
@@ -117,12 +148,12 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
              sum(case when o.status = :pendingStatus then 1 else 0 end) as pendingOrders,
              sum(case when o.status = :cancelledStatus then 1 else 0 end) as cancelledOrders
         from Order o
-        where date(o.createdAt) between :startDate and :endDate
+        where o.createdAt >= :start and o.createdAt < :end
         group by orderDate
         order by orderDate
         """)
-      List<Object[]> countOrdersByDayRange(@Param("startDate") LocalDate startDate,
-                @Param("endDate") LocalDate endDate,
+      List<Object[]> countOrdersByDayRange(@Param("start") LocalDateTime start,
+                @Param("end") LocalDateTime end,
                 @Param("fulfilledStatuses") List<OrderStatus> fulfilledStatuses,
                 @Param("pendingStatus") OrderStatus pendingStatus,
                 @Param("cancelledStatus") OrderStatus cancelledStatus);
@@ -135,11 +166,12 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
              sum(case when o.status = :pendingStatus then 1 else 0 end) as pendingOrders,
              sum(case when o.status = :cancelledStatus then 1 else 0 end) as cancelledOrders
         from Order o
-        where year(o.createdAt) = :year
+        where o.createdAt >= :start and o.createdAt < :end
         group by yearValue, monthValue
         order by monthValue
         """)
-      List<Object[]> countOrdersByMonth(@Param("year") int year,
+      List<Object[]> countOrdersByMonth(@Param("start") LocalDateTime start,
+                @Param("end") LocalDateTime end,
                 @Param("fulfilledStatuses") List<OrderStatus> fulfilledStatuses,
                 @Param("pendingStatus") OrderStatus pendingStatus,
                 @Param("cancelledStatus") OrderStatus cancelledStatus);
@@ -151,12 +183,12 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
              sum(case when o.status = :pendingStatus then 1 else 0 end) as pendingOrders,
              sum(case when o.status = :cancelledStatus then 1 else 0 end) as cancelledOrders
         from Order o
-        where year(o.createdAt) between :startYear and :endYear
+        where o.createdAt >= :start and o.createdAt < :end
         group by yearValue
         order by yearValue
         """)
-      List<Object[]> countOrdersByYearRange(@Param("startYear") int startYear,
-                 @Param("endYear") int endYear,
+      List<Object[]> countOrdersByYearRange(@Param("start") LocalDateTime start,
+                 @Param("end") LocalDateTime end,
                  @Param("fulfilledStatuses") List<OrderStatus> fulfilledStatuses,
                  @Param("pendingStatus") OrderStatus pendingStatus,
                  @Param("cancelledStatus") OrderStatus cancelledStatus);
@@ -174,31 +206,29 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
         from Order o
         join o.orderItems oi
         where o.status in :statuses
-          and o.createdAt >= :startDate
-          and o.createdAt <= :endDate
+          and o.createdAt >= :start
+          and o.createdAt < :end
         """)
-    BigDecimal sumRevenueInRange(@Param("startDate") LocalDateTime startDate,
-                 @Param("endDate") LocalDateTime endDate,
+    BigDecimal sumRevenueInRange(@Param("start") LocalDateTime start,
+                 @Param("end") LocalDateTime end,
                  @Param("statuses") List<OrderStatus> statuses);
 
+    // (userId, doanh thu, số đơn) theo khách của các đơn tạo trong [start, end), dùng để tính lại bảng xếp hạng một ngày
     @Query("""
-        select o.user.id,
-           o.user.fullName,
-           o.user.email,
-           sum(oi.price * oi.quantity) as revenue,
-           count(distinct o.id) as orderCount
+        select o.user.id, sum(oi.price * oi.quantity), count(distinct o.id)
         from Order o
         join o.orderItems oi
         where o.status in :statuses
-          and year(o.createdAt) = :year
-          and month(o.createdAt) = :month
-        group by o.user.id, o.user.fullName, o.user.email
-        order by revenue desc
+          and o.createdAt >= :start
+          and o.createdAt < :end
+        group by o.user.id
         """)
-    List<Object[]> sumCustomerRevenueByMonth(@Param("year") int year,
-                         @Param("month") int month,
-                         @Param("statuses") List<OrderStatus> statuses);
+    List<Object[]> sumRevenueByCustomerCreatedBetween(@Param("start") LocalDateTime start,
+                                                      @Param("end") LocalDateTime end,
+                                                      @Param("statuses") Collection<OrderStatus> statuses);
 
+    // Đọc dạng stream (cursor chỉ tiến, fetch size 500): bảng xếp hạng chỉ lấy top N, export CSV đọc hết mà không nạp cả danh sách
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
     @Query("""
         select o.user.id,
            o.user.fullName,
@@ -208,12 +238,14 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
         from Order o
         join o.orderItems oi
         where o.status in :statuses
-          and year(o.createdAt) = :year
+          and o.createdAt >= :start
+          and o.createdAt < :end
         group by o.user.id, o.user.fullName, o.user.email
         order by revenue desc
         """)
-    List<Object[]> sumCustomerRevenueByYear(@Param("year") int year,
-                        @Param("statuses") List<OrderStatus> statuses);
+    Stream<Object[]> streamCustomerRevenueInRange(@Param("start") LocalDateTime start,
+                         @Param("end") LocalDateTime end,
+                         @Param("statuses") List<OrderStatus> statuses);
 
     long countByStatusIn(List<OrderStatus> statuses);
 
@@ -240,10 +272,11 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
         from Order o
         join o.orderItems oi
         where (:startDate is null or o.createdAt >= :startDate)
-          and (:endDate is null or o.createdAt <= :endDate)
+          and (:endDate is null or o.createdAt < :endDate)
         group by o.user.id, o.user.username, o.user.fullName, o.user.email
-        order by ordersCount desc, totalAmount desc
+        order by ordersCount desc, totalAmount desc, o.user.id
         """)
     List<Object[]> summarizeOrdersByUser(@Param("startDate") LocalDateTime startDate,
-                                         @Param("endDate") LocalDateTime endDate);
+                                         @Param("endDate") LocalDateTime endDate,
+                                         Pageable pageable);
 }
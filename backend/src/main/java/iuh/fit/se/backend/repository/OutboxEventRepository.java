@@ -0,0 +1,81 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.OutboxEvent;
+import iuh.fit.se.backend.entity.enums.OutboxStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    // Id các sự kiện đến hạn: PENDING tới giờ retry, hoặc PROCESSING đã hết lease (worker chết giữa chừng)
+    @Query("""
+        select e.id from OutboxEvent e
+        where e.status in (iuh.fit.se.backend.entity.enums.OutboxStatus.PENDING,
+                           iuh.fit.se.backend.entity.enums.OutboxStatus.PROCESSING)
+          and e.nextAttemptAt <= :now
+        order by e.id
+        """)
+    List<Long> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    // Nhận lô bằng UPDATE có điều kiện: nhiều node cùng quét thì mỗi sự kiện chỉ một node nhận được
+    @Modifying
+    @Query("""
+        update OutboxEvent e
+        set e.status = iuh.fit.se.backend.entity.enums.OutboxStatus.PROCESSING,
+            e.claimToken = :token,
+            e.nextAttemptAt = :leaseUntil
+        where e.id in :ids
+          and e.status in (iuh.fit.se.backend.entity.enums.OutboxStatus.PENDING,
+                           iuh.fit.se.backend.entity.enums.OutboxStatus.PROCESSING)
+          and e.nextAttemptAt <= :now
+        """)
+    int claim(@Param("ids") Collection<Long> ids,
+              @Param("token") String token,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    List<OutboxEvent> findByClaimTokenOrderById(String claimToken);
+
+    @Modifying
+    @Query("""
+        update OutboxEvent e
+        set e.status = iuh.fit.se.backend.entity.enums.OutboxStatus.DONE,
+            e.processedAt = :now,
+            e.claimToken = null,
+            e.lastError = null
+        where e.id in :ids and e.claimToken = :token
+        """)
+    int markDone(@Param("ids") Collection<Long> ids, @Param("token") String token, @Param("now") LocalDateTime now);
+
+    // Ghi nhận lần xử lý lỗi: hẹn giờ retry (PENDING) hoặc bỏ cuộc (FAILED)
+    @Modifying
+    @Query("""
+        update OutboxEvent e
+        set e.status = :status,
+            e.attempts = :attempts,
+            e.nextAttemptAt = :nextAttemptAt,
+            e.lastError = :lastError,
+            e.claimToken = null
+        where e.id = :id and e.claimToken = :token
+        """)
+    int reschedule(@Param("id") Long id,
+                   @Param("token") String token,
+                   @Param("status") OutboxStatus status,
+                   @Param("attempts") int attempts,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("lastError") String lastError);
+
+    long countByStatus(OutboxStatus status);
+
+    // Dọn sự kiện đã xong lâu để bảng outbox không phình ra
+    @Modifying
+    @Query("delete from OutboxEvent e where e.status = iuh.fit.se.backend.entity.enums.OutboxStatus.DONE and e.processedAt < :before")
+    int deleteDoneBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,16 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.dto.response.ProductCardResponse;
+import iuh.fit.se.backend.entity.Product;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface ProductCardRepository {
+
+    Page<ProductCardResponse> findCards(Specification<Product> spec, Pageable pageable);
+
+    List<ProductCardResponse> findCards(Specification<Product> spec, int limit);
+}
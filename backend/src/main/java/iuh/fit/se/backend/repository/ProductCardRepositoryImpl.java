@@ -0,0 +1,146 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.dto.response.ProductCardResponse;
+import iuh.fit.se.backend.entity.Inventory;
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.ProductImage;
+import iuh.fit.se.backend.entity.ProductRatingSummary;
+import iuh.fit.se.backend.entity.enums.ProductStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Listing dạng thẻ: lấy đúng các cột cần hiển thị bằng một truy vấn tuple
+ * (giá, ảnh chính, tồn kho, rating là subquery) thay vì load entity và các collection lazy.
+ */
+public class ProductCardRepositoryImpl implements ProductCardRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Page<ProductCardResponse> findCards(Specification<Product> spec, Pageable pageable) {
+        List<ProductCardResponse> content = selectCards(spec, pageable.getSort(),
+                pageable.isPaged() ? (int) pageable.getOffset() : 0,
+                pageable.isPaged() ? pageable.getPageSize() : null);
+        return PageableExecutionUtils.getPage(content, pageable, () -> count(spec));
+    }
+
+    @Override
+    public List<ProductCardResponse> findCards(Specification<Product> spec, int limit) {
+        // Chế độ keyset: thứ tự do specification quyết định, không chạy count
+        return selectCards(spec, Sort.unsorted(), 0, limit);
+    }
+
+    private List<ProductCardResponse> selectCards(Specification<Product> spec, Sort sort, int offset, Integer limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Product> root = query.from(Product.class);
+
+        Subquery<String> primaryImage = query.subquery(String.class);
+        Root<ProductImage> image = primaryImage.from(ProductImage.class);
+        primaryImage.select(cb.least(image.<String>get("imageUrl")))
+                .where(cb.equal(image.get("product"), root), cb.isTrue(image.get("isPrimary")));
+
+        Subquery<Integer> stock = query.subquery(Integer.class);
+        Root<Inventory> inventory = stock.from(Inventory.class);
+        stock.select(cb.sum(inventory.<Integer>get("stock")))
+                .where(cb.equal(inventory.get("product"), root));
+
+        Subquery<Long> reviewCount = query.subquery(Long.class);
+        Root<ProductRatingSummary> countSummary = reviewCount.from(ProductRatingSummary.class);
+        reviewCount.select(countSummary.get("reviewCount"))
+                .where(cb.equal(countSummary.get("productId"), root.get("id")));
+
+        Subquery<Long> ratingSum = query.subquery(Long.class);
+        Root<ProductRatingSummary> sumSummary = ratingSum.from(ProductRatingSummary.class);
+        ratingSum.select(sumSummary.get("ratingSum"))
+                .where(cb.equal(sumSummary.get("productId"), root.get("id")));
+
+        query.multiselect(
+                root.get("id").alias("id"),
+                root.get("name").alias("name"),
+                root.get("brand").get("name").alias("brand"),
+                root.get("brand").get("id").alias("brandId"),
+                root.get("category").get("name").alias("categoryName"),
+                root.get("category").get("id").alias("categoryId"),
+                root.get("currentPrice").alias("price"),
+                primaryImage.alias("imageUrl"),
+                stock.alias("stockQuantity"),
+                reviewCount.alias("reviewCount"),
+                ratingSum.alias("ratingSum"),
+                root.get("status").alias("status"),
+                root.get("createdAt").alias("createdAt")
+        );
+
+        Predicate predicate = spec != null ? spec.toPredicate(root, query, cb) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        if (sort.isSorted()) {
+            query.orderBy(QueryUtils.toOrders(sort, root, cb));
+        }
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query);
+        typedQuery.setFirstResult(offset);
+        if (limit != null) {
+            typedQuery.setMaxResults(limit);
+        }
+        return typedQuery.getResultList().stream()
+                .map(this::toCard)
+                .toList();
+    }
+
+    private long count(Specification<Product> spec) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Product> root = query.from(Product.class);
+        Predicate predicate = spec != null ? spec.toPredicate(root, query, cb) : null;
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.select(cb.count(root));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    private ProductCardResponse toCard(Tuple tuple) {
+        Number stock = tuple.get("stockQuantity", Number.class);
+        Long count = tuple.get("reviewCount", Long.class);
+        Long sum = tuple.get("ratingSum", Long.class);
+        ProductStatus status = tuple.get("status", ProductStatus.class);
+        BigDecimal price = tuple.get("price", BigDecimal.class);
+
+        return ProductCardResponse.builder()
+                .id(tuple.get("id", Long.class))
+                .name(tuple.get("name", String.class))
+                .brand(tuple.get("brand", String.class))
+                .brandId(tuple.get("brandId", Long.class))
+                .categoryName(tuple.get("categoryName", String.class))
+                .categoryId(tuple.get("categoryId", Long.class))
+                .price(price != null ? price : BigDecimal.ZERO)
+                .imageUrl(tuple.get("imageUrl", String.class))
+                .stockQuantity(stock != null ? stock.intValue() : 0)
+                .rating(count != null && count > 0 && sum != null ? (double) sum / count : 0.0)
+                .numOfRating(count != null ? count : 0L)
+                .status(status != null ? status.toString() : null)
+                .createdAt(tuple.get("createdAt", LocalDateTime.class))
+                .build();
+    }
+}
@@ -0,0 +1,45 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.ProductRatingSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ProductRatingSummaryRepository extends JpaRepository<ProductRatingSummary, Long> {
+
+    List<ProductRatingSummary> findByProductIdIn(Collection<Long> productIds);
+
+    /**
+     * Cộng/trừ một đánh giá vào tổng hợp bằng một câu upsert nguyên tử: sản phẩm chưa có dòng tổng hợp
+     * (đánh giá đầu tiên) thì INSERT, đã có thì cộng dồn, nên hai đánh giá đầu tiên đồng thời không đụng khoá chính.
+     * Đánh giá có từ trước bảng này đã được backfill bởi migration_add_product_rating_summaries.sql.
+     */
+    @Modifying
+    @Query(value = """
+        insert into product_rating_summaries
+            (product_id, review_count, rating_sum, one_star, two_star, three_star, four_star, five_star, updated_at)
+        values (:productId, :countDelta, :countDelta * :rating,
+                case when :rating = 1 then :countDelta else 0 end,
+                case when :rating = 2 then :countDelta else 0 end,
+                case when :rating = 3 then :countDelta else 0 end,
+                case when :rating = 4 then :countDelta else 0 end,
+                case when :rating = 5 then :countDelta else 0 end,
+                current_timestamp)
+        on duplicate key update
+            review_count = review_count + :countDelta,
+            rating_sum = rating_sum + :countDelta * :rating,
+            one_star = one_star + case when :rating = 1 then :countDelta else 0 end,
+            two_star = two_star + case when :rating = 2 then :countDelta else 0 end,
+            three_star = three_star + case when :rating = 3 then :countDelta else 0 end,
+            four_star = four_star + case when :rating = 4 then :countDelta else 0 end,
+            five_star = five_star + case when :rating = 5 then :countDelta else 0 end,
+            updated_at = current_timestamp
+        """, nativeQuery = true)
+    int applyRatingDelta(@Param("productId") Long productId,
+                         @Param("rating") long rating,
+                         @Param("countDelta") long countDelta);
+}
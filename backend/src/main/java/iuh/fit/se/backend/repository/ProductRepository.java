@@ -1,15 +1,36 @@
 package iuh.fit.se.backend.repository;
 
 import iuh.fit.se.backend.entity.Product;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
-public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product> {
+public interface ProductRepository extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product>, ProductCardRepository {
     List<Product> findByNameContainingIgnoreCase(String name);
 
     List<Product> findByCategoryId(Long categoryId);
 
     List<Product> findTop8ByBrand_IdOrderByCreatedAtDesc(Long brandId);
+
+    // Nạp toàn bộ sản phẩm kèm thông số để dựng chỉ mục tìm kiếm trong một truy vấn
+    @Query("select distinct p from Product p left join fetch p.productSpecs")
+    List<Product> findAllWithSpecs();
+
+    // Số sản phẩm ACTIVE theo danh mục trong một truy vấn group by
+    @Query("select p.category.id, count(p) from Product p where p.status = iuh.fit.se.backend.entity.enums.ProductStatus.ACTIVE group by p.category.id")
+    List<Object[]> countActiveByCategory();
+
+    // (id, name) của nhiều sản phẩm, không nạp entity
+    @Query("select p.id, p.name from Product p where p.id in :ids")
+    List<Object[]> findNamesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Nạp một lần mọi sản phẩm của đơn kèm brand/category/supplier và ảnh (để snapshot ảnh chính)
+    @EntityGraph(attributePaths = {"brand", "category", "supplier", "productImages"})
+    @Query("select distinct p from Product p where p.id in :ids")
+    List<Product> findAllForOrderByIdIn(@Param("ids") Collection<Long> ids);
 }
@@ -0,0 +1,28 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.SchedulerLock;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+public interface SchedulerLockRepository extends JpaRepository<SchedulerLock, String> {
+
+    // Nhận lease nếu đã hết hạn (hoặc chính node này đang giữ); trả về 0 nếu node khác đang giữ
+    @Modifying
+    @Query("""
+        update SchedulerLock l
+        set l.lockedUntil = :until, l.lockedBy = :owner
+        where l.name = :name and (l.lockedUntil <= :now or l.lockedBy = :owner)
+        """)
+    int tryAcquire(@Param("name") String name,
+                   @Param("owner") String owner,
+                   @Param("now") LocalDateTime now,
+                   @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("update SchedulerLock l set l.lockedUntil = :now where l.name = :name and l.lockedBy = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now);
+}
@@ -19,11 +19,13 @@ public interface UserRepository extends JpaRepository<User, Long> {
     long countByActiveFalse();
     long countByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
 
+    // Khoảng nửa mở [start, end) trên created_at để dùng idx_users_created_at
+
     @Query("""
       SELECT DATE(u.createdAt) AS day,
        COUNT(u.id) AS total
       FROM User u
-      WHERE u.createdAt >= :start AND u.createdAt <= :end
+      WHERE u.createdAt >= :start AND u.createdAt < :end
       GROUP BY DATE(u.createdAt)
       ORDER BY day
       """)
@@ -35,22 +37,23 @@ public interface UserRepository extends JpaRepository<User, Long> {
        MONTH(u.createdAt) AS month,
        COUNT(u.id) AS total
       FROM User u
-      WHERE YEAR(u.createdAt) = :year
+      WHERE u.createdAt >= :start AND u.createdAt < :end
       GROUP BY YEAR(u.createdAt), MONTH(u.createdAt)
       ORDER BY month
       """)
-    List<Object[]> countNewUsersByMonth(@Param("year") int year);
+    List<Object[]> countNewUsersByMonth(@Param("start") LocalDateTime start,
+             @Param("end") LocalDateTime end);
 
     @Query("""
       SELECT YEAR(u.createdAt) AS year,
        COUNT(u.id) AS total
       FROM User u
-      WHERE YEAR(u.createdAt) BETWEEN :startYear AND :endYear
+      WHERE u.createdAt >= :start AND u.createdAt < :end
       GROUP BY YEAR(u.createdAt)
       ORDER BY year
       """)
-    List<Object[]> countNewUsersByYearRange(@Param("startYear") int startYear,
-              @Param("endYear") int endYear);
+    List<Object[]> countNewUsersByYearRange(@Param("start") LocalDateTime start,
+              @Param("end") LocalDateTime end);
 
     @Query("""
             SELECT u
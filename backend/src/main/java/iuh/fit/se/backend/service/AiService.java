@@ -6,6 +6,7 @@ import iuh.fit.se.backend.entity.Brand;
 import iuh.fit.se.backend.entity.Product;
 import iuh.fit.se.backend.repository.BrandRepository;
 import iuh.fit.se.backend.repository.ProductRepository;
+import iuh.fit.se.backend.util.TextNormalizer;
 import jakarta.annotation.PostConstruct;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -23,7 +24,6 @@ import org.springframework.util.StringUtils;
 
 import java.io.IOException;
 import java.math.BigDecimal;
-import java.text.Normalizer;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -273,12 +273,7 @@ public class AiService {
     }
 
     private String normalize(String value) {
-        if (!StringUtils.hasText(value)) {
-            return "";
-        }
-        String normalized = Normalizer.normalize(value, Normalizer.Form.NFD)
-                .replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-        return normalized.toLowerCase();
+        return TextNormalizer.fold(value);
     }
 
     private String resolveGroqApiKey() {
@@ -12,6 +12,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class BrandService {
     private final BrandRepository brandRepository;
+    private final ProductDetailCache productDetailCache;
 
 
     public List<Brand> getAllBrands() {
@@ -29,7 +30,10 @@ public class BrandService {
         if (brand.getStatus() == null) {
             brand.setStatus(Status.ACTIVE);
         }
-        return brandRepository.save(brand);
+        Brand saved = brandRepository.save(brand);
+        // Tên thương hiệu nằm trong ProductResponse đã cache, đổi tên thì xoá toàn bộ (thao tác admin hiếm)
+        productDetailCache.clear();
+        return saved;
     }
 
     public void deleteBrand(Long id) {
@@ -14,15 +14,12 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class CategoryService {
     private final CategoryRepository categoryRepository;
+    private final ProductDetailCache productDetailCache;
+    private final CategoryTreeCache categoryTreeCache;
 
     public List<CategoryResponse> getAllCategories() {
-        List<Category> categories = categoryRepository.findAll(org.springframework.data.domain.Sort.by(
-            org.springframework.data.domain.Sort.Direction.DESC, "id"
-        ));
-        
-        return categories.stream()
-            .map(category -> convertToCategoryResponse(category, false))
-            .collect(Collectors.toList());
+        // Served from memory: categories + active product counts from one grouped query
+        return categoryTreeCache.getCategories();
     }
 
     public Category getCategoryById(Long id) {return categoryRepository.findById(id).orElse(null);}
@@ -35,7 +32,11 @@ public class CategoryService {
     }
     
     public Category saveCategory(Category category) {
-        return categoryRepository.save(category);
+        Category saved = categoryRepository.save(category);
+        // Tên danh mục nằm trong ProductResponse đã cache, đổi tên thì xoá toàn bộ (thao tác admin hiếm)
+        productDetailCache.clear();
+        categoryTreeCache.invalidate();
+        return saved;
     }
 
     public void deleteCategory(Long id) {
@@ -43,6 +44,7 @@ public class CategoryService {
             .orElseThrow(null);
         category.setStatus(Status.INACTIVE);
         categoryRepository.save(category);
+        categoryTreeCache.invalidate();
     }
     
     private CategoryResponse convertToCategoryResponse(Category category, boolean includeProducts) {
@@ -51,7 +53,7 @@ public class CategoryService {
             .name(category.getName())
             .description(category.getDescription())
             .status(category.getStatus() != null ? category.getStatus().name() : "ACTIVE")
-            .productCount(category.getProducts() != null ? category.getProducts().size() : 0);
+            .productCount(categoryTreeCache.getActiveCount(category.getId()));
         
         if (includeProducts && category.getProducts() != null) {
             builder.products(category.getProducts().stream()
@@ -0,0 +1,120 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.response.CategoryResponse;
+import iuh.fit.se.backend.entity.Category;
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.enums.ProductStatus;
+import iuh.fit.se.backend.repository.CategoryRepository;
+import iuh.fit.se.backend.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Danh sách danh mục kèm số sản phẩm ACTIVE, giữ trong bộ nhớ để /api/categories không chạm database.
+ * Số lượng được nạp bằng một truy vấn group by, sau đó cập nhật tăng/giảm khi sản phẩm được tạo,
+ * xoá (DISCONTINUED), đổi trạng thái hoặc đổi danh mục. Danh mục thay đổi thì nạp lại toàn bộ.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CategoryTreeCache {
+
+    private final CategoryRepository categoryRepository;
+    private final ProductRepository productRepository;
+
+    // Thay nguyên khối khi reload; số lượng trong snapshot được cộng/trừ tại chỗ
+    private volatile Snapshot snapshot;
+
+    public List<CategoryResponse> getCategories() {
+        Snapshot current = current();
+        return current.categories().stream()
+                .map(node -> CategoryResponse.builder()
+                        .id(node.id())
+                        .name(node.name())
+                        .description(node.description())
+                        .status(node.status())
+                        .productCount(count(current, node.id()))
+                        .build())
+                .toList();
+    }
+
+    public int getActiveCount(Long categoryId) {
+        return count(current(), categoryId);
+    }
+
+    public synchronized void reload() {
+        List<CategoryNode> nodes = categoryRepository.findAll(Sort.by(Sort.Direction.DESC, "id")).stream()
+                .map(CategoryNode::of)
+                .toList();
+
+        Map<Long, AtomicInteger> counts = new ConcurrentHashMap<>();
+        for (Object[] row : productRepository.countActiveByCategory()) {
+            counts.put((Long) row[0], new AtomicInteger(((Number) row[1]).intValue()));
+        }
+        snapshot = new Snapshot(nodes, counts);
+        log.info("Category cache loaded: {} categories", nodes.size());
+    }
+
+    // Danh mục được tạo/sửa/xoá: lần đọc sau sẽ nạp lại
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    /**
+     * Gọi sau khi lưu sản phẩm: so sánh danh mục/trạng thái lúc load với hiện tại rồi cộng/trừ số lượng.
+     */
+    public synchronized void onProductSaved(Product product) {
+        Long before = product.getLoadedStatus() == ProductStatus.ACTIVE ? product.getLoadedCategoryId() : null;
+        Long after = product.getStatus() == ProductStatus.ACTIVE && product.getCategory() != null
+                ? product.getCategory().getId() : null;
+        // Lần lưu tiếp theo trên cùng entity phải so với trạng thái vừa lưu
+        product.rememberLoadedState();
+
+        Snapshot current = snapshot;
+        if (Objects.equals(before, after) || current == null) {
+            return;
+        }
+        if (before != null) {
+            current.activeCounts().computeIfAbsent(before, id -> new AtomicInteger()).decrementAndGet();
+        }
+        if (after != null) {
+            current.activeCounts().computeIfAbsent(after, id -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    private static int count(Snapshot snapshot, Long categoryId) {
+        AtomicInteger count = snapshot.activeCounts().get(categoryId);
+        return count != null ? count.get() : 0;
+    }
+
+    private record Snapshot(List<CategoryNode> categories, Map<Long, AtomicInteger> activeCounts) {
+    }
+
+    public record CategoryNode(Long id, String name, String description, String status) {
+        static CategoryNode of(Category category) {
+            return new CategoryNode(category.getId(), category.getName(), category.getDescription(),
+                    category.getStatus() != null ? category.getStatus().name() : "ACTIVE");
+        }
+    }
+}
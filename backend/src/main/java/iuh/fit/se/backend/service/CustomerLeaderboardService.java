@@ -0,0 +1,105 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.CustomerPeriodSales;
+import iuh.fit.se.backend.entity.CustomerPeriodSales.Period;
+import iuh.fit.se.backend.repository.CustomerPeriodSalesRepository;
+import iuh.fit.se.backend.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Duy trì customer_period_sales (bảng xếp hạng khách theo ngày/tháng/năm) từ sự kiện của SalesRollupService,
+ * ngay trước khi transaction của đơn commit. Đơn vào/ra nhóm doanh thu cộng/trừ delta nguyên tử vào cả ba kỳ;
+ * ngày được tính lại thì so dòng ngày cũ với bảng gốc và cộng phần chênh lệch, nên các kỳ tháng/năm không bao giờ
+ * bị ghi đè bởi transaction khác.
+ */
+@Service
+@RequiredArgsConstructor
+public class CustomerLeaderboardService {
+
+    private static final Period[] PERIODS = Period.values();
+
+    private final CustomerPeriodSalesRepository customerPeriodSalesRepository;
+    private final OrderRepository orderRepository;
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onOrderLines(SalesCube.OrderLines event) {
+        if (event.customerId() == null) {
+            return;
+        }
+        BigDecimal revenue = event.lines().stream()
+                .map(SalesCube.Line::revenue)
+                .reduce(BigDecimal.ZERO, BigDecimal::add)
+                .multiply(BigDecimal.valueOf(event.sign()));
+        apply(event.day(), event.customerId(), revenue, event.sign());
+        if (event.sign() < 0) {
+            deleteEmpty(event.day());
+        }
+    }
+
+    /**
+     * Ngày được tính lại từ orders/order_items. Chạy trong khoá dòng daily_sales_rollups của ngày nên dòng ngày
+     * không đổi giữa lúc đọc và lúc ghi.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onDayChanged(SalesCube.DayChanged event) {
+        LocalDate day = event.day();
+        // userId -> {doanh thu, số đơn}; theo thứ tự id để các transaction khoá dòng cùng một thứ tự
+        Map<Long, Object[]> deltas = new TreeMap<>();
+        for (Object[] row : orderRepository.sumRevenueByCustomerCreatedBetween(day.atStartOfDay(),
+                day.plusDays(1).atStartOfDay(), SalesRollupService.FULFILLED_STATUSES)) {
+            deltas.put((Long) row[0], new Object[]{toBigDecimal(row[1]), ((Number) row[2]).longValue()});
+        }
+        for (CustomerPeriodSales current : customerPeriodSalesRepository.findByPeriodAndPeriodStart(Period.DAY, day)) {
+            Object[] delta = deltas.computeIfAbsent(current.getUserId(), id -> new Object[]{BigDecimal.ZERO, 0L});
+            delta[0] = ((BigDecimal) delta[0]).subtract(current.getRevenue());
+            delta[1] = (Long) delta[1] - current.getOrderCount();
+        }
+        deltas.forEach((userId, delta) -> {
+            if (((BigDecimal) delta[0]).signum() != 0 || (Long) delta[1] != 0) {
+                apply(day, userId, (BigDecimal) delta[0], (Long) delta[1]);
+            }
+        });
+        deleteEmpty(day);
+    }
+
+    /**
+     * Top khách theo doanh thu của kỳ chứa ngày cho trước (tháng hoặc năm):
+     * (userId, fullName, email, revenue, orderCount).
+     */
+    @Transactional(readOnly = true)
+    public List<Object[]> top(Period period, LocalDate date, int limit) {
+        return customerPeriodSalesRepository.findTopByRevenue(period, period.startOf(date), PageRequest.ofSize(limit));
+    }
+
+    private void apply(LocalDate day, Long userId, BigDecimal revenue, long orders) {
+        for (Period period : PERIODS) {
+            customerPeriodSalesRepository.applyDelta(period.name(), period.startOf(day), userId, revenue, orders);
+        }
+    }
+
+    private void deleteEmpty(LocalDate day) {
+        for (Period period : PERIODS) {
+            customerPeriodSalesRepository.deleteEmpty(period, period.startOf(day));
+        }
+    }
+
+    // Không đi qua double để không mất độ chính xác của số tiền
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        return value instanceof Number number ? new BigDecimal(number.toString()) : BigDecimal.ZERO;
+    }
+}
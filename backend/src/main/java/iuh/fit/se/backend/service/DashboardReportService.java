@@ -0,0 +1,16 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.DashboardSnapshot;
+
+public interface DashboardReportService {
+
+    DashboardSnapshot getDashboard();
+
+    void invalidate();
+
+    /**
+     * Phát khi dữ liệu mà dashboard tổng hợp thay đổi (đơn hàng, người dùng); snapshot đang cache bị bỏ sau commit.
+     */
+    record DataChanged(String source) {
+    }
+}
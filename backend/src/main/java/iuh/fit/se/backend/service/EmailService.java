@@ -74,29 +74,50 @@ public class EmailService {
 
     // Gửi email xác nhận đơn hàng
     public void sendOrderConfirmationEmail(Order order) {
+        SimpleMailMessage message = buildOrderConfirmationEmail(order);
+        if (message == null) {
+            return;
+        }
+
+        try {
+            mailSender.send(message);
+            log.info("Sent order confirmation email for order {}", order.getId());
+        } catch (MailException e) {
+            log.error("Failed to send order confirmation email for order {}", order.getId(), e);
+        }
+    }
+
+    // Dựng email xác nhận đơn hàng; null nếu không có địa chỉ để gửi
+    public SimpleMailMessage buildOrderConfirmationEmail(Order order) {
         if (order == null) {
             log.warn("Skipping order confirmation email because order is null");
-            return;
+            return null;
         }
 
         User user = order.getUser();
         if (user == null || !StringUtils.hasText(user.getEmail())) {
             log.warn("Skipping email for order {} because user email is missing", order.getId());
-            return;
+            return null;
         }
 
-        try {
-            SimpleMailMessage message = new SimpleMailMessage();
-            message.setTo(user.getEmail());
-            if (StringUtils.hasText(fromEmail)) message.setFrom(fromEmail);
-            message.setSubject(String.format("[Watch Store] Xác nhận đơn hàng #%s", order.getId()));
-            message.setText(buildEmailBody(order));
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo(user.getEmail());
+        if (StringUtils.hasText(fromEmail)) message.setFrom(fromEmail);
+        message.setSubject(String.format("[Watch Store] Xác nhận đơn hàng #%s", order.getId()));
+        message.setText(buildEmailBody(order));
+        return message;
+    }
 
-            mailSender.send(message);
-            log.info("Sent order confirmation email for order {}", order.getId());
-        } catch (MailException e) {
-            log.error("Failed to send order confirmation email for order {}", order.getId(), e);
+    /**
+     * Gửi nhiều email qua một kết nối SMTP. Không nuốt lỗi: MailSendException#getFailedMessages cho biết
+     * email nào lỗi để outbox retry đúng các email đó.
+     */
+    public void sendBatch(List<SimpleMailMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
         }
+        mailSender.send(messages.toArray(new SimpleMailMessage[0]));
+        log.info("Sent {} emails in one batch", messages.size());
     }
 
     private String buildEmailBody(Order order) {
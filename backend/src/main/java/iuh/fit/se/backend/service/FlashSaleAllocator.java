@@ -0,0 +1,295 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.response.FlashSaleStatusResponse;
+import iuh.fit.se.backend.entity.FlashSale;
+import iuh.fit.se.backend.entity.Inventory;
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.User;
+import iuh.fit.se.backend.entity.enums.InventoryMovementType;
+import iuh.fit.se.backend.repository.FlashSaleRepository;
+import iuh.fit.se.backend.repository.InventoryRepository;
+import iuh.fit.se.backend.repository.OrderItemRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Giữ hàng flash sale bằng bộ đếm nguyên tử trong bộ nhớ: đơn của sản phẩm đang bật flash sale được nhận
+ * hoặc từ chối mà không UPDATE inventories. Dòng đơn được đánh dấu stock_deferred và được ghi bù vào
+ * inventories theo lô bởi tác vụ định kỳ, nên số đã bán luôn nằm bền vững trong order_items:
+ * sau khi khởi động lại, bộ đếm = tồn kho - phần chưa ghi bù, không mất và không trừ hai lần.
+ * <p>
+ * Bộ đếm là của từng node; chạy nhiều node thì mỗi node nhận 1/{@code app.flash-sale.node-count} số hàng.
+ * Hoàn hàng khi huỷ đơn vẫn cộng vào inventories như cũ và cộng lại vào bộ đếm sau commit.
+ */
+@Service
+@Slf4j
+public class FlashSaleAllocator {
+
+    private final FlashSaleRepository flashSaleRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final InventoryRepository inventoryRepository;
+    private final ProductDetailCache productDetailCache;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int nodeCount;
+    private final int writeBackBatchSize;
+
+    private final Map<Long, Allocation> allocations = new ConcurrentHashMap<>();
+
+    public FlashSaleAllocator(FlashSaleRepository flashSaleRepository,
+                              OrderItemRepository orderItemRepository,
+                              InventoryRepository inventoryRepository,
+                              ProductDetailCache productDetailCache,
+                              InventoryLedgerService inventoryLedgerService,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${app.flash-sale.node-count:1}") int nodeCount,
+                              @Value("${app.flash-sale.write-back-batch-size:500}") int writeBackBatchSize) {
+        this.flashSaleRepository = flashSaleRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.inventoryRepository = inventoryRepository;
+        this.productDetailCache = productDetailCache;
+        this.inventoryLedgerService = inventoryLedgerService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.nodeCount = Math.max(1, nodeCount);
+        this.writeBackBatchSize = writeBackBatchSize;
+    }
+
+    public boolean isActive(Long productId) {
+        return allocations.containsKey(productId);
+    }
+
+    /**
+     * Giữ hàng trong bộ đếm, phải gọi trong transaction của đơn: đơn rollback thì số lượng được trả lại.
+     * @return false nếu sản phẩm không bật flash sale (giữ hàng trên inventories như thường)
+     */
+    public boolean tryReserve(Product product, int quantity) {
+        Allocation allocation = allocations.get(product.getId());
+        if (allocation == null) {
+            return false;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Flash sale reservation requires an active transaction");
+        }
+        if (quantity <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Số lượng sản phẩm " + product.getName() + " không hợp lệ");
+        }
+        int current;
+        do {
+            current = allocation.available.get();
+            if (current < quantity) {
+                throw new RuntimeException("Sản phẩm " + product.getName() + " chỉ còn " + current + " trong kho");
+            }
+        } while (!allocation.available.compareAndSet(current, current - quantity));
+        allocation.inFlight.addAndGet(quantity);
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                allocation.inFlight.addAndGet(-quantity);
+                if (status != STATUS_COMMITTED) {
+                    allocation.available.addAndGet(quantity);
+                }
+            }
+        });
+        return true;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onStockReleased(InventoryService.StockReleased event) {
+        Allocation allocation = allocations.get(event.productId());
+        if (allocation != null) {
+            allocation.available.addAndGet(event.quantity());
+        }
+    }
+
+    public FlashSaleStatusResponse enable(Long productId, User admin) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!flashSaleRepository.existsById(productId)) {
+                flashSaleRepository.save(FlashSale.builder()
+                        .productId(productId).enabledAt(LocalDateTime.now()).enabledBy(admin).build());
+            }
+            // Khoá các dòng tồn kho: đơn đang trừ trực tiếp trên inventories phải commit xong trước khi nạp bộ đếm.
+            // Bộ đếm được nạp xong rồi mới đưa vào map để đơn mới không thấy bộ đếm rỗng
+            long stock = lockStockRows(productId);
+            Allocation allocation = allocations.getOrDefault(productId, new Allocation());
+            load(allocation, productId, stock);
+            allocations.putIfAbsent(productId, allocation);
+        });
+        log.info("⚡ Bật flash sale cho sản phẩm #{}: {} sản phẩm trong bộ đếm", productId, allocations.get(productId).available.get());
+        return status(productId);
+    }
+
+    public FlashSaleStatusResponse disable(Long productId) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (flashSaleRepository.existsById(productId)) {
+                flashSaleRepository.deleteById(productId);
+            }
+        });
+        allocations.remove(productId);
+        writeBack(productId);
+        log.info("Tắt flash sale cho sản phẩm #{}", productId);
+        return status(productId);
+    }
+
+    /**
+     * Ghi bù phần đã bán rồi nạp lại bộ đếm từ inventories, dùng sau khi admin sửa tồn kho trong lúc flash sale.
+     */
+    public FlashSaleStatusResponse reconcile(Long productId) {
+        if (!isActive(productId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product " + productId + " is not in flash sale mode");
+        }
+        writeBack(productId);
+        transactionTemplate.executeWithoutResult(status -> {
+            Allocation allocation = allocations.get(productId);
+            if (allocation != null) {
+                load(allocation, productId, lockStockRows(productId));
+            }
+        });
+        return status(productId);
+    }
+
+    public List<FlashSaleStatusResponse> statuses() {
+        List<FlashSaleStatusResponse> result = new ArrayList<>();
+        for (FlashSale flashSale : flashSaleRepository.findAll()) {
+            result.add(status(flashSale.getProductId()));
+        }
+        return result;
+    }
+
+    // Khởi động lại: nạp bộ đếm cho mọi sản phẩm còn bật flash sale trong DB
+    @EventListener(ApplicationReadyEvent.class)
+    public void restore() {
+        for (FlashSale flashSale : flashSaleRepository.findAll()) {
+            Allocation allocation = new Allocation();
+            transactionTemplate.executeWithoutResult(status ->
+                    load(allocation, flashSale.getProductId(), stockOf(flashSale.getProductId())));
+            allocations.putIfAbsent(flashSale.getProductId(), allocation);
+            log.info("⚡ Khôi phục flash sale sản phẩm #{}: {} sản phẩm trong bộ đếm",
+                    flashSale.getProductId(), allocations.get(flashSale.getProductId()).available.get());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.flash-sale.write-back-interval:2000}")
+    public void scheduledWriteBack() {
+        try {
+            writeBack();
+        } catch (Exception e) {
+            log.error("Flash sale write-back failed", e);
+        }
+    }
+
+    /**
+     * Ghi bù mọi dòng đơn flash sale đã commit vào inventories (kể cả sản phẩm vừa tắt flash sale).
+     * @return tổng số lượng đã trừ
+     */
+    public int writeBack() {
+        int total = 0;
+        for (Long productId : orderItemRepository.findDeferredProductIds()) {
+            total += writeBack(productId);
+        }
+        return total;
+    }
+
+    private int writeBack(Long productId) {
+        int total = 0;
+        while (true) {
+            Integer written = transactionTemplate.execute(status -> writeBackBatch(productId));
+            if (written == null || written == 0) {
+                return total;
+            }
+            total += written;
+        }
+    }
+
+    // Một lô: đánh dấu đã ghi bù (có điều kiện) và trừ tổng số lượng vào inventories trong cùng transaction
+    private int writeBackBatch(Long productId) {
+        List<Object[]> rows = orderItemRepository.findDeferredByProductId(productId, PageRequest.of(0, writeBackBatchSize));
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<Long> ids = new ArrayList<>(rows.size());
+        int quantity = 0;
+        for (Object[] row : rows) {
+            ids.add((Long) row[0]);
+            quantity += (Integer) row[1];
+        }
+        // Node khác đã ghi bù một phần lô này: rollback, lần sau đọc lại
+        if (orderItemRepository.settleDeferred(ids) != ids.size()) {
+            throw new IllegalStateException("Flash sale items of product " + productId + " were written back concurrently");
+        }
+        int remaining = quantity;
+        for (Object[] row : inventoryRepository.findStockRowsByProductId(productId)) {
+            int toDeduct = Math.min((Integer) row[1], remaining);
+            if (toDeduct > 0 && inventoryRepository.decrementStock((Long) row[0], toDeduct) == 1) {
+                remaining -= toDeduct;
+            }
+            if (remaining == 0) {
+                break;
+            }
+        }
+        if (remaining > 0) {
+            // Tồn kho bị sửa thấp hơn số đã bán trong lúc flash sale
+            log.warn("⚠️ Flash sale write-back for product #{} is short by {} units", productId, remaining);
+        }
+        productDetailCache.invalidate(productId);
+        inventoryLedgerService.record(productId, remaining - quantity, InventoryMovementType.ORDER_DEDUCTION, null,
+                "Ghi bù flash sale " + ids.size() + " dòng đơn", null);
+        return quantity;
+    }
+
+    // Bộ đếm = (tồn kho - phần đã bán chưa ghi bù - phần đang giữ chưa commit) / số node.
+    // Đọc inFlight trước khi đọc DB: đơn commit xen giữa bị tính hai lần (bán thiếu) chứ không bị bỏ sót (bán vượt)
+    private void load(Allocation allocation, Long productId, long stock) {
+        int inFlight = allocation.inFlight.get();
+        long deferred = orderItemRepository.sumDeferredQuantityByProductId(productId);
+        long sellable = Math.max(0, stock - deferred - inFlight) / nodeCount;
+        allocation.available.set((int) Math.min(Integer.MAX_VALUE, sellable));
+    }
+
+    private long lockStockRows(Long productId) {
+        return inventoryRepository.findByProductIdForUpdate(productId).stream().mapToLong(Inventory::getStock).sum();
+    }
+
+    private long stockOf(Long productId) {
+        return inventoryRepository.findStockRowsByProductId(productId).stream()
+                .mapToLong(row -> (Integer) row[1]).sum();
+    }
+
+    private FlashSaleStatusResponse status(Long productId) {
+        Allocation allocation = allocations.get(productId);
+        return FlashSaleStatusResponse.builder()
+                .productId(productId)
+                .enabledAt(flashSaleRepository.findById(productId).map(FlashSale::getEnabledAt).orElse(null))
+                .available(allocation != null ? allocation.available.get() : 0)
+                .inFlight(allocation != null ? allocation.inFlight.get() : 0)
+                .pendingWriteBack(orderItemRepository.sumDeferredQuantityByProductId(productId))
+                .databaseStock(stockOf(productId))
+                .build();
+    }
+
+    private static final class Allocation {
+        private final AtomicInteger available = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+    }
+}
@@ -0,0 +1,194 @@
+package iuh.fit.se.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.backend.entity.IdempotencyRecord;
+import iuh.fit.se.backend.repository.IdempotencyRecordRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Lưu kết quả theo header Idempotency-Key trong bảng idempotency_keys để request lặp lại (double-click, mobile retry)
+ * nhận lại đúng kết quả lần đầu thay vì tạo thêm đơn / thêm giao dịch, kể cả khi retry rơi vào node khác.
+ * - Request đầu INSERT dòng (scope, key) trước khi chạy; unique key bảo đảm chỉ một request trên mọi node được chạy.
+ * - Request trùng key đến khi lần đầu còn đang chạy sẽ chờ (đọc lại dòng) tới khi có kết quả, không chạy lại.
+ * - Lần đầu lỗi hoặc kết quả không được giữ thì dòng bị xoá để client có thể thử lại với cùng key.
+ * - Request đầu chạy quá app.idempotency.wait bị coi như node đã chết: key được nhận lại.
+ */
+@Service
+@Slf4j
+public class IdempotencyStore {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    private static final int MAX_KEY_LENGTH = 255;
+    private static final long POLL_MILLIS = 50;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final Duration ttl;
+    private final Duration wait;
+
+    public IdempotencyStore(IdempotencyRecordRepository idempotencyRecordRepository,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.idempotency.ttl:24h}") Duration ttl,
+                            @Value("${app.idempotency.wait:30s}") Duration wait) {
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ttl = ttl;
+        this.wait = wait;
+    }
+
+    /**
+     * Chạy {@code action} đúng một lần cho mỗi (scope, key) trong thời gian TTL.
+     *
+     * @param scope   phạm vi của key, ví dụ "orders:{userId}", để hai người dùng trùng key không đụng nhau
+     * @param key     giá trị header Idempotency-Key; null hoặc rỗng thì chạy bình thường
+     * @param request nội dung request; dùng lại key với nội dung khác trả về 422
+     * @param type    kiểu kết quả, để đọc lại kết quả đã lưu
+     * @param keep    kết quả nào được giữ lại để phát lại (kết quả lỗi mềm như code "99" thì không)
+     */
+    public <T> Result<T> execute(String scope, String key, Object request, Class<T> type,
+                                 Supplier<T> action, Predicate<T> keep) {
+        if (key == null || key.isBlank()) {
+            return new Result<>(action.get(), false);
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, HEADER + " is too long");
+        }
+        String fingerprint = fingerprint(request);
+        long deadline = System.currentTimeMillis() + wait.toMillis();
+        while (true) {
+            Optional<IdempotencyRecord> existing = transactionTemplate.execute(status ->
+                    idempotencyRecordRepository.findByScopeAndIdempotencyKey(scope, key));
+            if (existing == null || existing.isEmpty() || !existing.get().getExpiresAt().isAfter(LocalDateTime.now())) {
+                IdempotencyRecord mine = claim(scope, key, fingerprint);
+                if (mine != null) {
+                    return new Result<>(run(mine, action, keep), false);
+                }
+                // Request khác vừa giành được key: vòng sau đọc dòng của nó
+            } else {
+                IdempotencyRecord record = existing.get();
+                if (!record.getFingerprint().equals(fingerprint)) {
+                    throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                            HEADER + " đã được dùng cho một request khác");
+                }
+                if (record.getResponse() != null) {
+                    return new Result<>(read(record.getResponse(), type), true);
+                }
+                sleep();
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Request với " + HEADER + " này vẫn đang được xử lý");
+            }
+        }
+    }
+
+    public <T> Result<T> execute(String scope, String key, Object request, Class<T> type, Supplier<T> action) {
+        return execute(scope, key, request, type, action, value -> true);
+    }
+
+    // Dọn key hết hạn hằng đêm; key hết hạn chưa dọn vẫn được nhận lại khi có request mới
+    @Scheduled(cron = "${app.idempotency.cleanup-cron:0 45 3 * * *}")
+    public void purgeExpired() {
+        Integer deleted = transactionTemplate.execute(status ->
+                idempotencyRecordRepository.deleteAllExpired(LocalDateTime.now()));
+        log.info("Idempotency cleanup removed {} expired keys", deleted);
+    }
+
+    // INSERT dòng đang chạy; trả về null nếu request khác (trên bất kỳ node nào) đã giữ key
+    private IdempotencyRecord claim(String scope, String key, String fingerprint) {
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            return transactionTemplate.execute(status -> {
+                idempotencyRecordRepository.deleteExpired(scope, key, now);
+                return idempotencyRecordRepository.saveAndFlush(IdempotencyRecord.builder()
+                        .scope(scope)
+                        .idempotencyKey(key)
+                        .fingerprint(fingerprint)
+                        .expiresAt(now.plus(wait))
+                        .build());
+            });
+        } catch (DataIntegrityViolationException e) {
+            return null;
+        }
+    }
+
+    private <T> T run(IdempotencyRecord mine, Supplier<T> action, Predicate<T> keep) {
+        T value;
+        try {
+            value = action.get();
+        } catch (RuntimeException e) {
+            release(mine);
+            throw e;
+        }
+        if (!keep.test(value)) {
+            release(mine);
+            return value;
+        }
+        String response = write(value);
+        transactionTemplate.executeWithoutResult(status ->
+                idempotencyRecordRepository.complete(mine.getId(), response, LocalDateTime.now().plus(ttl)));
+        return value;
+    }
+
+    private void release(IdempotencyRecord mine) {
+        transactionTemplate.executeWithoutResult(status -> idempotencyRecordRepository.deleteById(mine.getId()));
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(hash);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Cannot fingerprint request", e);
+        }
+    }
+
+    private String write(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot store idempotent response", e);
+        }
+    }
+
+    private <T> T read(String response, Class<T> type) {
+        try {
+            return objectMapper.readValue(response, type);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot read stored idempotent response", e);
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Interrupted while waiting for original request");
+        }
+    }
+
+    public record Result<T>(T value, boolean replayed) {
+    }
+}
@@ -0,0 +1,226 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.InventoryMovement;
+import iuh.fit.se.backend.entity.InventorySnapshot;
+import iuh.fit.se.backend.entity.enums.InventoryMovementType;
+import iuh.fit.se.backend.repository.InventoryMovementRepository;
+import iuh.fit.se.backend.repository.InventorySnapshotRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Sổ biến động tồn kho (inventory_movements) và ảnh chụp tồn kho theo ngày (inventory_snapshots).
+ * Biến động ghi trong một transaction được gom lại và INSERT theo lô ngay trước khi commit, nên sổ luôn commit
+ * cùng thay đổi trên inventories. Tồn kho tại một ngày được tính bằng ảnh chụp gần nhất cộng các biến động sau đó,
+ * không phải quét lại orders.
+ */
+@Service
+@Slf4j
+public class InventoryLedgerService {
+
+    static final int BATCH_SIZE = 50;
+
+    private static final String LOCK_NAME = "inventory-snapshot";
+    private static final Duration LEASE = Duration.ofMinutes(10);
+
+    private final InventoryMovementRepository inventoryMovementRepository;
+    private final InventorySnapshotRepository inventorySnapshotRepository;
+    private final SchedulerLockService schedulerLockService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public InventoryLedgerService(InventoryMovementRepository inventoryMovementRepository,
+                                  InventorySnapshotRepository inventorySnapshotRepository,
+                                  SchedulerLockService schedulerLockService,
+                                  EntityManager entityManager,
+                                  PlatformTransactionManager transactionManager) {
+        this.inventoryMovementRepository = inventoryMovementRepository;
+        this.inventorySnapshotRepository = inventorySnapshotRepository;
+        this.schedulerLockService = schedulerLockService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Ghi một biến động (số lượng có dấu) vào sổ. Trong transaction thì ghi cùng lô lúc commit, rollback thì bỏ;
+     * ngoài transaction thì ghi ngay. {@code actor} null thì lấy người dùng đang đăng nhập.
+     */
+    public void record(Long productId, int quantity, InventoryMovementType type, Long orderId, String reason, String actor) {
+        if (productId == null || quantity == 0) {
+            return;
+        }
+        InventoryMovement movement = InventoryMovement.builder()
+                .productId(productId)
+                .quantity(quantity)
+                .type(type)
+                .orderId(orderId)
+                .reason(reason)
+                .actor(actor != null ? actor : currentActor())
+                .build();
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            inventoryMovementRepository.save(movement);
+            return;
+        }
+        pendingMovements().add(movement);
+    }
+
+    @Transactional(readOnly = true)
+    public List<InventoryMovement> getMovements(Long productId, int limit) {
+        return inventoryMovementRepository.findByProductIdOrderByIdDesc(productId, PageRequest.ofSize(limit));
+    }
+
+    // Chụp tồn kho đầu ngày hôm nay; chạy sau nửa đêm một chút để các đơn cuối ngày hôm trước đã commit
+    @Scheduled(cron = "${app.inventory.snapshot-cron:0 15 0 * * *}")
+    public void snapshotDaily() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, LEASE)) {
+            log.debug("Skip inventory snapshot, lease is held by another node");
+            return;
+        }
+        try {
+            takeSnapshot(LocalDate.now());
+        } catch (Exception e) {
+            log.error("Inventory snapshot failed", e);
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    /**
+     * Dựng (lại) ảnh chụp tồn kho lúc 00:00 của {@code date} từ ảnh chụp trước đó và các biến động ở giữa.
+     * @return số sản phẩm còn hàng trong ảnh chụp
+     */
+    public int takeSnapshot(LocalDate date) {
+        Integer saved = transactionTemplate.execute(status -> {
+            Map<Long, Long> stock = stockAt(date.minusDays(1), date);
+            inventorySnapshotRepository.deleteBySnapshotDate(date);
+            List<InventorySnapshot> rows = new ArrayList<>();
+            stock.forEach((productId, units) -> {
+                if (units != 0) {
+                    rows.add(InventorySnapshot.builder().snapshotDate(date).productId(productId).stock(units).build());
+                }
+            });
+            inventorySnapshotRepository.saveAll(rows);
+            return rows.size();
+        });
+        log.info("📦 Inventory snapshot for {}: {} products in stock", date, saved);
+        return saved != null ? saved : 0;
+    }
+
+    // Tồn kho của từng sản phẩm cuối ngày date (sản phẩm tồn 0 không có trong map)
+    @Transactional(readOnly = true)
+    public Map<Long, Long> getStockOnDate(LocalDate date) {
+        Map<Long, Long> stock = stockAt(date, date.plusDays(1));
+        stock.values().removeIf(units -> units == 0);
+        return stock;
+    }
+
+    // Tổng tồn kho cuối mỗi ngày trong [start, end)
+    @Transactional(readOnly = true)
+    public Map<LocalDate, Long> getUnitsOnHandByDay(LocalDate start, LocalDate end) {
+        LocalDate base = latestSnapshotOnOrBefore(start);
+        long units = inventorySnapshotRepository.sumStock(base)
+                + inventoryMovementRepository.sumQuantity(base.atStartOfDay(), start.atStartOfDay());
+        Map<LocalDate, Long> changes = new HashMap<>();
+        for (Object[] row : inventoryMovementRepository.sumQuantityByDay(start.atStartOfDay(), end.atStartOfDay())) {
+            changes.put(toLocalDate(row[0]), ((Number) row[1]).longValue());
+        }
+        Map<LocalDate, Long> result = new TreeMap<>();
+        for (LocalDate day = start; day.isBefore(end); day = day.plusDays(1)) {
+            units += changes.getOrDefault(day, 0L);
+            result.put(day, units);
+        }
+        return result;
+    }
+
+    // Tồn kho lúc 00:00 của {@code until}, phát lại từ ảnh chụp gần nhất không muộn hơn {@code latestBase}
+    private Map<Long, Long> stockAt(LocalDate latestBase, LocalDate until) {
+        LocalDate base = latestSnapshotOnOrBefore(latestBase);
+        Map<Long, Long> stock = new HashMap<>();
+        for (InventorySnapshot snapshot : inventorySnapshotRepository.findBySnapshotDate(base)) {
+            stock.put(snapshot.getProductId(), snapshot.getStock());
+        }
+        for (Object[] row : inventoryMovementRepository.sumQuantityByProduct(base.atStartOfDay(), until.atStartOfDay())) {
+            stock.merge((Long) row[0], ((Number) row[1]).longValue(), Long::sum);
+        }
+        return stock;
+    }
+
+    // Chưa có ảnh chụp thì phát lại từ đầu sổ
+    private LocalDate latestSnapshotOnOrBefore(LocalDate date) {
+        LocalDate latest = inventorySnapshotRepository.findLatestDateOnOrBefore(date);
+        return latest != null ? latest : LocalDate.EPOCH;
+    }
+
+    // Lô biến động của transaction hiện tại; transaction lồng (REQUIRES_NEW) có lô riêng
+    private List<InventoryMovement> pendingMovements() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingMovements pending) {
+                return pending.movements;
+            }
+        }
+        PendingMovements pending = new PendingMovements();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending.movements;
+    }
+
+    private final class PendingMovements implements TransactionSynchronization {
+
+        private final List<InventoryMovement> movements = new ArrayList<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            if (movements.isEmpty()) {
+                return;
+            }
+            // Bật JDBC batch cho lần flush này: các dòng sổ đi chung một câu INSERT theo lô
+            Session session = entityManager.unwrap(Session.class);
+            Integer previousBatchSize = session.getJdbcBatchSize();
+            session.setJdbcBatchSize(BATCH_SIZE);
+            try {
+                inventoryMovementRepository.saveAll(movements);
+                entityManager.flush();
+            } finally {
+                session.setJdbcBatchSize(previousBatchSize);
+            }
+        }
+    }
+
+    private static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated() || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate localDate) {
+            return localDate;
+        }
+        if (value instanceof Date sqlDate) {
+            return sqlDate.toLocalDate();
+        }
+        throw new IllegalArgumentException("Unsupported date value: " + value);
+    }
+}
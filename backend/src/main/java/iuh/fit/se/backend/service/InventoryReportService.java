@@ -2,6 +2,7 @@ package iuh.fit.se.backend.service;
 
 import iuh.fit.se.backend.dto.InventoryDailyPoint;
 import iuh.fit.se.backend.dto.InventoryMonthlyPoint;
+import iuh.fit.se.backend.dto.InventoryStockPoint;
 import iuh.fit.se.backend.dto.InventorySummaryReport;
 import iuh.fit.se.backend.dto.InventoryYearlyPoint;
 
@@ -14,7 +15,11 @@ public interface InventoryReportService {
 
     List<InventoryDailyPoint> getDailyInventory(LocalDate startDate, LocalDate endDate);
 
-    List<InventoryMonthlyPoint> getMonthlyInventory(int year);
+    // approximate: số sản phẩm khác nhau ước lượng từ sketch theo ngày thay vì count(distinct)
+    List<InventoryMonthlyPoint> getMonthlyInventory(int year, boolean approximate);
 
-    List<InventoryYearlyPoint> getYearlyInventory(int startYear, int endYear);
+    List<InventoryYearlyPoint> getYearlyInventory(int startYear, int endYear, boolean approximate);
+
+    // Tồn kho từng sản phẩm cuối ngày, phát lại từ ảnh chụp tồn kho gần nhất
+    List<InventoryStockPoint> getStockOnDate(LocalDate date);
 }
@@ -1,29 +1,76 @@
 package iuh.fit.se.backend.service;
 
 import iuh.fit.se.backend.entity.Inventory;
+import iuh.fit.se.backend.entity.Product;
 import iuh.fit.se.backend.entity.User;
+import iuh.fit.se.backend.entity.enums.InventoryMovementType;
 import iuh.fit.se.backend.repository.InventoryRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class InventoryService {
+    static final int MAX_SHARDS = 64;
+
     private final InventoryRepository inventoryRepository;
+    private final ProductDetailCache productDetailCache;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Phát ra sau khi hàng được hoàn vào inventories (bộ đếm flash sale cộng lại sau commit)
+    public record StockReleased(Long productId, int quantity) {
+    }
+
+    // Shard chọn theo ảnh chụp tồn kho vừa bị đơn khác trừ mất: huỷ transaction (nhả khoá) rồi đặt lại theo thứ tự id
+    public static class StockContentionException extends ResponseStatusException {
+        public StockContentionException(String productName) {
+            super(HttpStatus.CONFLICT, "Tồn kho sản phẩm " + productName + " vừa thay đổi, vui lòng thử lại");
+        }
+    }
 
     public List<Inventory> getAll() { return inventoryRepository.findAll(); }
     public Inventory get(Long id) { return inventoryRepository.findById(id).orElse(null); }
     public Inventory getByProduct(Long productId) {
-        return inventoryRepository.findByProductId(productId)
+        return inventoryRepository.findFirstByProductIdOrderByIdAsc(productId)
                 .orElseThrow(() -> new RuntimeException("No inventory found for product id " + productId));
     }
-    public Inventory save(Inventory inventory) { return inventoryRepository.save(inventory); }
-    public void delete(Long id) { inventoryRepository.deleteById(id); }
+    @Transactional
+    public Inventory save(Inventory inventory) {
+        Integer oldStock = inventory.getId() != null ? inventoryRepository.findStockById(inventory.getId()) : null;
+        Inventory saved = inventoryRepository.save(inventory);
+        invalidateProduct(saved);
+        if (saved.getProduct() != null) {
+            inventoryLedgerService.record(saved.getProduct().getId(), saved.getStock() - (oldStock != null ? oldStock : 0),
+                    InventoryMovementType.ADJUSTMENT, null, null, null);
+        }
+        return saved;
+    }
+    @Transactional
+    public void delete(Long id) {
+        inventoryRepository.findById(id).ifPresent(inventory -> {
+            invalidateProduct(inventory);
+            if (inventory.getProduct() != null) {
+                inventoryLedgerService.record(inventory.getProduct().getId(), -inventory.getStock(),
+                        InventoryMovementType.ADJUSTMENT, null, "Xoá dòng tồn kho #" + id, null);
+            }
+        });
+        inventoryRepository.deleteById(id);
+    }
     
+    @Transactional
     public Inventory updateStock(Long inventoryId, Integer newStock, User admin, String reason) {
         Inventory inventory = inventoryRepository.findById(inventoryId)
                 .orElseThrow(() -> new RuntimeException("Inventory not found"));
@@ -33,10 +80,220 @@ public class InventoryService {
         inventory.setUpdatedBy(admin);
         
         Inventory saved = inventoryRepository.save(inventory);
+        invalidateProduct(saved);
+        inventoryLedgerService.record(saved.getProduct().getId(), newStock - oldStock, InventoryMovementType.ADJUSTMENT,
+                null, reason, admin.getUsername());
         
         log.info("📝 Admin '{}' cập nhật số lượng tồn kho #{}: {} → {} (Lý do: {})",
                 admin.getUsername(), inventoryId, oldStock, newStock, reason != null ? reason : "Không ghi");
         
         return saved;
     }
+
+    /**
+     * Đặt tổng tồn kho của sản phẩm từ form sản phẩm (chia đều cho các shard hiện có, chưa có dòng nào thì tạo một dòng)
+     * và ghi chênh lệch so với tồn kho đang có trong DB vào sổ, cùng transaction với việc lưu sản phẩm.
+     */
+    @Transactional
+    public void setProductStock(Product product, int total, InventoryMovementType type, String reason) {
+        // Khoá các dòng trước khi đọc tồn kho hiện tại để đơn đang giữ hàng không trừ xen vào giữa
+        List<Inventory> rows = inventoryRepository.findByProductIdForUpdate(product.getId());
+        // Cộng từ chính các dòng vừa khoá: đọc thường theo snapshot (REPEATABLE READ) có thể bỏ sót đơn vừa commit
+        int previous = rows.stream().mapToInt(Inventory::getStock).sum();
+        if (rows.isEmpty()) {
+            Inventory inventory = Inventory.builder().product(product).stock(total).build();
+            product.getInventories().add(inventory);
+            inventoryRepository.save(inventory);
+        } else {
+            rows.get(0).getProduct().setStockQuantity(total);
+        }
+        productDetailCache.invalidate(product.getId());
+        inventoryLedgerService.record(product.getId(), total - previous, type, null, reason, null);
+    }
+
+    // Tồn kho hiện tại (tổng các dòng) của nhiều sản phẩm; sản phẩm không có dòng tồn kho không có trong map
+    public Map<Long, Integer> getStockByProductIds(Collection<Long> productIds) {
+        Map<Long, Integer> stock = new HashMap<>();
+        if (productIds.isEmpty()) {
+            return stock;
+        }
+        for (Object[] row : inventoryRepository.sumStockByProductIdIn(productIds)) {
+            stock.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        return stock;
+    }
+
+    /**
+     * Giữ hàng cho đơn: trừ lần lượt trên các dòng tồn kho của sản phẩm (theo id tăng dần) bằng
+     * UPDATE ... WHERE stock >= ?, nên hai đơn đồng thời không thể cùng lấy một món hàng cuối.
+     * Không đủ hàng thì ném lỗi để transaction của đơn rollback toàn bộ phần đã trừ.
+     */
+    @Transactional
+    public void reserveStock(Product product, int quantity) {
+        reserveStock(product, quantity, inventoryRepository.findStockRowsByProductId(product.getId()));
+    }
+
+    /**
+     * Giữ hàng cho cả đơn: đọc tồn kho của mọi sản phẩm trong một truy vấn rồi trừ theo thứ tự
+     * duyệt của {@code quantities} (nên truyền map sắp theo id sản phẩm để các đơn khoá cùng thứ tự).
+     */
+    @Transactional
+    public void reserveStock(Map<Product, Integer> quantities) {
+        reserveStock(quantities, Thread.currentThread().threadId());
+    }
+
+    /**
+     * Như {@link #reserveStock(Map)}, nhưng sản phẩm có nhiều dòng tồn kho (shard) thì lấy từ shard
+     * chọn theo {@code stripeKey} (thường là id người mua) để các đơn đồng thời khoá các dòng khác nhau.
+     * {@code stripeKey} null thì luôn trừ theo thứ tự id dòng tồn kho.
+     * @throws StockContentionException shard đã chọn vừa hết hàng; gọi lại trong transaction mới với stripeKey null
+     */
+    @Transactional
+    public void reserveStock(Map<Product, Integer> quantities, Long stripeKey) {
+        if (quantities.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Object[]>> rowsByProduct = new HashMap<>();
+        List<Long> productIds = quantities.keySet().stream().map(Product::getId).toList();
+        for (Object[] row : inventoryRepository.findStockRowsByProductIdIn(productIds)) {
+            rowsByProduct.computeIfAbsent((Long) row[0], id -> new ArrayList<>()).add(new Object[]{row[1], row[2]});
+        }
+        quantities.forEach((product, quantity) ->
+                reserveStock(product, quantity, rowsByProduct.getOrDefault(product.getId(), List.of()), stripeKey));
+    }
+
+    private void reserveStock(Product product, int quantity, List<Object[]> stockRows) {
+        reserveStock(product, quantity, stockRows, null);
+    }
+
+    private void reserveStock(Product product, int quantity, List<Object[]> stockRows, Long stripeKey) {
+        if (quantity <= 0) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Số lượng sản phẩm " + product.getName() + " không hợp lệ");
+        }
+        // Nhiều shard: lấy trọn số lượng từ shard đầu tiên đủ hàng theo ảnh chụp tồn kho, bắt đầu ở shard của stripeKey
+        // rồi xoay vòng. Chỉ thử đúng một shard: UPDATE không khớp vẫn giữ khoá dòng (REPEATABLE READ), nếu thử tiếp hay
+        // gom theo thứ tự id ở dưới thì các đơn khoá lệch thứ tự nhau và có thể deadlock. Không shard nào đủ một mình
+        // (sắp hết hàng) thì không khoá gì ở đây, gom từ nhiều dòng theo thứ tự id như bình thường
+        if (stripeKey != null && stockRows.size() > 1) {
+            int start = shardIndex(stripeKey, stockRows.size());
+            for (int k = 0; k < stockRows.size(); k++) {
+                Object[] row = stockRows.get((start + k) % stockRows.size());
+                if ((Integer) row[1] < quantity) {
+                    continue;
+                }
+                if (inventoryRepository.decrementStock((Long) row[0], quantity) == 0) {
+                    throw new StockContentionException(product.getName());
+                }
+                productDetailCache.invalidate(product.getId());
+                return;
+            }
+        }
+        int remaining = quantity;
+        for (Object[] row : stockRows) {
+            Long inventoryId = (Long) row[0];
+            int toDeduct = Math.min((Integer) row[1], remaining);
+            if (toDeduct > 0 && inventoryRepository.decrementStock(inventoryId, toDeduct) == 0) {
+                // Dòng vừa bị đơn khác trừ: đọc lại có khoá, vì đọc thường ở REPEATABLE READ (MariaDB) chỉ trả lại ảnh
+                // chụp cũ. Đang giữ khoá dòng nên lần UPDATE sau phải khớp; không khớp thì bỏ cuộc thay vì lặp mãi
+                Integer current = inventoryRepository.findStockByIdForUpdate(inventoryId);
+                toDeduct = Math.min(current != null ? current : 0, remaining);
+                if (toDeduct > 0 && inventoryRepository.decrementStock(inventoryId, toDeduct) == 0) {
+                    throw new StockContentionException(product.getName());
+                }
+            }
+            if (toDeduct > 0) {
+                remaining -= toDeduct;
+                log.info("Trừ {} sản phẩm từ inventory #{}", toDeduct, inventoryId);
+            }
+            if (remaining == 0) {
+                break;
+            }
+        }
+        if (remaining > 0) {
+            throw new RuntimeException("Sản phẩm " + product.getName() + " chỉ còn " + (quantity - remaining) + " trong kho");
+        }
+        productDetailCache.invalidate(product.getId());
+    }
+
+    // Hoàn hàng khi huỷ đơn: cộng nguyên tử vào dòng tồn kho đầu tiên của sản phẩm
+    @Transactional
+    public void releaseStock(Product product, int quantity, Long orderId) {
+        List<Object[]> rows = inventoryRepository.findStockRowsByProductId(product.getId());
+        if (rows.isEmpty()) {
+            return;
+        }
+        Long inventoryId = (Long) rows.get(0)[0];
+        inventoryRepository.incrementStock(inventoryId, quantity);
+        productDetailCache.invalidate(product.getId());
+        inventoryLedgerService.record(product.getId(), quantity, InventoryMovementType.ORDER_CANCELLATION, orderId, null, null);
+        eventPublisher.publishEvent(new StockReleased(product.getId(), quantity));
+        log.info("✅ Hoàn {} sản phẩm '{}' vào inventory #{}", quantity, product.getName(), inventoryId);
+    }
+
+    /**
+     * Chia tồn kho của sản phẩm ra {@code shards} dòng bằng nhau (chênh nhau tối đa 1) để đơn hàng của
+     * sản phẩm bán chạy không cùng tranh khoá một dòng. Tổng tồn kho giữ nguyên; dòng thừa bị xoá.
+     */
+    @Transactional
+    public List<Inventory> stripeStock(Long productId, int shards, User admin) {
+        if (shards < 1 || shards > MAX_SHARDS) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Số shard phải từ 1 đến " + MAX_SHARDS);
+        }
+        // Khoá mọi dòng hiện có để đơn đang giữ hàng không trừ xen vào giữa lúc chia lại
+        List<Inventory> rows = new ArrayList<>(inventoryRepository.findByProductIdForUpdate(productId));
+        if (rows.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "No inventory found for product id " + productId);
+        }
+        Product product = rows.get(0).getProduct();
+        int total = rows.stream().mapToInt(Inventory::getStock).sum();
+
+        while (rows.size() > shards) {
+            Inventory extra = rows.remove(rows.size() - 1);
+            product.getInventories().remove(extra);
+            inventoryRepository.delete(extra);
+        }
+        while (rows.size() < shards) {
+            Inventory shard = Inventory.builder().product(product).stock(0).build();
+            product.getInventories().add(shard);
+            rows.add(shard);
+        }
+        // Các shard đầu nhận phần dư
+        for (int i = 0; i < shards; i++) {
+            rows.get(i).setStock(total / shards + (i < total % shards ? 1 : 0));
+            rows.get(i).setUpdatedBy(admin);
+        }
+        List<Inventory> saved = inventoryRepository.saveAll(rows);
+        productDetailCache.invalidate(productId);
+        log.info("🔀 Chia tồn kho {} của sản phẩm #{} ra {} shard", total, productId, shards);
+        return saved;
+    }
+
+    // Trộn bit của key trước khi lấy modulo để id liên tiếp không dồn về cùng vài shard
+    static int shardIndex(long stripeKey, int shardCount) {
+        return Math.floorMod(Long.hashCode(stripeKey * 0x9E3779B97F4A7C15L), shardCount);
+    }
+
+    // Hoàn hàng cho một lô đơn bị huỷ bằng một câu UPDATE thay vì từng sản phẩm
+    @Transactional
+    public int releaseStockForOrders(Collection<Long> orderIds, Map<Long, Integer> quantitiesByProduct) {
+        if (orderIds.isEmpty()) {
+            return 0;
+        }
+        int updated = inventoryRepository.restockForOrders(orderIds);
+        String reason = "Huỷ " + orderIds.size() + " đơn quá hạn thanh toán";
+        quantitiesByProduct.forEach((productId, quantity) -> {
+            productDetailCache.invalidate(productId);
+            inventoryLedgerService.record(productId, quantity, InventoryMovementType.ORDER_CANCELLATION, null, reason, null);
+            eventPublisher.publishEvent(new StockReleased(productId, quantity));
+        });
+        return updated;
+    }
+
+    private void invalidateProduct(Inventory inventory) {
+        if (inventory.getProduct() != null) {
+            productDetailCache.invalidate(inventory.getProduct().getId());
+        } else {
+            productDetailCache.clear();
+        }
+    }
 }
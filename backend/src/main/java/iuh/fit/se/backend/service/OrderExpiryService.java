@@ -0,0 +1,144 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.entity.enums.OutboxEventType;
+import iuh.fit.se.backend.entity.enums.PaymentMethod;
+import iuh.fit.se.backend.entity.enums.PaymentStatus;
+import iuh.fit.se.backend.repository.OrderItemRepository;
+import iuh.fit.se.backend.repository.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Huỷ đơn VNPay bị bỏ dở: đơn đã trừ kho lúc tạo nhưng khách không thanh toán (link VNPay hết hạn sau 15 phút).
+ * Chạy định kỳ trên một node nhờ lease trong scheduler_locks; mỗi lô là một transaction gồm
+ * khoá lô id, một UPDATE huỷ cả lô, một UPDATE hoàn kho cho cả lô và ghi thông báo vào outbox.
+ */
+@Service
+@Slf4j
+public class OrderExpiryService {
+
+    static final String LOCK_NAME = "vnpay-order-expiry";
+
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final InventoryService inventoryService;
+    private final OutboxService outboxService;
+    private final SchedulerLockService schedulerLockService;
+    private final SalesRollupService salesRollupService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Duration expireAfter;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Duration lease;
+
+    public OrderExpiryService(OrderRepository orderRepository,
+                              OrderItemRepository orderItemRepository,
+                              InventoryService inventoryService,
+                              OutboxService outboxService,
+                              SchedulerLockService schedulerLockService,
+                              SalesRollupService salesRollupService,
+                              PlatformTransactionManager transactionManager,
+                              // Hạn link VNPay (15 phút) + khoảng dự phòng cho IPN đến trễ
+                              @Value("${app.orders.vnpay-expiry:20m}") Duration expireAfter,
+                              @Value("${app.orders.expiry-batch-size:200}") int batchSize,
+                              @Value("${app.orders.expiry-max-batches:50}") int maxBatches,
+                              @Value("${app.orders.expiry-lease:5m}") Duration lease) {
+        this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.inventoryService = inventoryService;
+        this.outboxService = outboxService;
+        this.schedulerLockService = schedulerLockService;
+        this.salesRollupService = salesRollupService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.expireAfter = expireAfter;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.lease = lease;
+    }
+
+    @Scheduled(fixedDelayString = "${app.orders.expiry-sweep-interval:60000}",
+               initialDelayString = "${app.orders.expiry-sweep-interval:60000}")
+    public void sweep() {
+        try {
+            expireUnpaidOrders();
+        } catch (Exception e) {
+            log.error("VNPay order expiry sweep failed", e);
+        }
+    }
+
+    /**
+     * Huỷ các đơn VNPay chưa thanh toán quá hạn, tối đa maxBatches lô mỗi lượt.
+     * @return số đơn đã huỷ; 0 nếu node khác đang giữ lease
+     */
+    public int expireUnpaidOrders() {
+        if (!schedulerLockService.tryAcquire(LOCK_NAME, lease)) {
+            log.debug("Skip VNPay order expiry, lease is held by another node");
+            return 0;
+        }
+        try {
+            LocalDateTime cutoff = LocalDateTime.now().minus(expireAfter);
+            int total = 0;
+            for (int batch = 0; batch < maxBatches; batch++) {
+                BatchResult result = transactionTemplate.execute(status -> expireBatch(cutoff));
+                if (result == null) {
+                    break;
+                }
+                total += result.expired();
+                if (result.scanned() < batchSize) {
+                    break;
+                }
+                // Gia hạn lease trước lô tiếp theo để lượt chạy dài không bị node khác chen vào
+                if (!schedulerLockService.tryAcquire(LOCK_NAME, lease)) {
+                    break;
+                }
+            }
+            if (total > 0) {
+                log.info("⏰ Đã huỷ {} đơn VNPay chưa thanh toán quá {} và hoàn kho", total, expireAfter);
+            }
+            return total;
+        } finally {
+            schedulerLockService.release(LOCK_NAME);
+        }
+    }
+
+    private BatchResult expireBatch(LocalDateTime cutoff) {
+        List<Long> ids = orderRepository.findStaleIdsForUpdate(PaymentMethod.VNPAY, OrderStatus.PENDING,
+                PaymentStatus.PENDING, cutoff, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return new BatchResult(0, 0);
+        }
+        // Các dòng đã bị khoá nên UPDATE có điều kiện huỷ đúng toàn bộ lô; nếu không khớp thì rollback để lần sau thử lại
+        int expired = orderRepository.updateStatusesIfCurrent(ids, OrderStatus.PENDING, PaymentStatus.PENDING,
+                OrderStatus.CANCELLED, PaymentStatus.FAILED);
+        if (expired != ids.size()) {
+            throw new IllegalStateException("Expected to expire " + ids.size() + " orders but updated " + expired);
+        }
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (Object[] row : orderItemRepository.sumQuantityByProductForOrders(ids)) {
+            quantities.put((Long) row[0], ((Number) row[1]).intValue());
+        }
+        inventoryService.releaseStockForOrders(ids, quantities);
+        salesRollupService.recordBulkStatusChange(ids, OrderStatus.PENDING, OrderStatus.CANCELLED);
+        for (Long id : ids) {
+            outboxService.enqueue(OutboxEventType.ORDER_STATUS_NOTIFICATION, id,
+                    OrderStatus.PENDING.name() + ">" + OrderStatus.CANCELLED.name());
+        }
+        return new BatchResult(ids.size(), expired);
+    }
+
+    private record BatchResult(int scanned, int expired) {
+    }
+}
@@ -2,8 +2,10 @@ package iuh.fit.se.backend.service;
 
 import iuh.fit.se.backend.entity.OrderItem;
 import iuh.fit.se.backend.repository.OrderItemRepository;
+import iuh.fit.se.backend.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -11,9 +13,39 @@ import java.util.List;
 @RequiredArgsConstructor
 public class OrderItemService {
     private final OrderItemRepository orderItemRepository;
+    private final OrderRepository orderRepository;
+    private final SalesRollupService salesRollupService;
 
     public List<OrderItem> getAll() { return orderItemRepository.findAll(); }
     public OrderItem get(Long id) { return orderItemRepository.findById(id).orElse(null); }
-    public OrderItem save(OrderItem item) { return orderItemRepository.save(item); }
-    public void delete(Long id) { orderItemRepository.deleteById(id); }
+
+    // Sửa dòng đơn trực tiếp thì tính lại tổng lưu sẵn trên đơn trong cùng transaction
+    @Transactional
+    public OrderItem save(OrderItem item) {
+        OrderItem saved = orderItemRepository.saveAndFlush(item);
+        if (saved.getOrder() != null) {
+            orderRepository.refreshTotals(saved.getOrder().getId());
+            refreshRollup(saved.getOrder().getId());
+        }
+        return saved;
+    }
+
+    @Transactional
+    public void delete(Long id) {
+        orderItemRepository.findById(id).ifPresent(item -> {
+            Long orderId = item.getOrder() != null ? item.getOrder().getId() : null;
+            orderItemRepository.delete(item);
+            orderItemRepository.flush();
+            if (orderId != null) {
+                orderRepository.refreshTotals(orderId);
+                refreshRollup(orderId);
+            }
+        });
+    }
+
+    // Doanh thu theo ngày của đơn thay đổi theo dòng đơn: tính lại ngày tạo đơn
+    private void refreshRollup(Long orderId) {
+        orderRepository.findById(orderId).ifPresent(order ->
+                salesRollupService.refreshDay(order.getCreatedAt().toLocalDate()));
+    }
 }
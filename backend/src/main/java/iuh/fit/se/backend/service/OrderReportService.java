@@ -1,5 +1,6 @@
 package iuh.fit.se.backend.service;
 
+import iuh.fit.se.backend.dto.DistinctCountReport;
 import iuh.fit.se.backend.dto.OrderDailyPoint;
 import iuh.fit.se.backend.dto.OrderMonthlyPoint;
 import iuh.fit.se.backend.dto.OrderSummaryReport;
@@ -21,4 +22,6 @@ public interface OrderReportService {
     List<OrderYearlyPoint> getYearlyOrders(int startYear, int endYear);
 
     List<OrderUserSummary> getOrdersByUser(LocalDateTime startDate, LocalDateTime endDate, int limit);
+
+    DistinctCountReport getDistinctCounts(LocalDate startDate, LocalDate endDate, boolean approximate);
 }
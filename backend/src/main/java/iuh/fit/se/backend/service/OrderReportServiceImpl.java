@@ -1,13 +1,16 @@
 package iuh.fit.se.backend.service;
 
+import iuh.fit.se.backend.dto.DistinctCountReport;
 import iuh.fit.se.backend.dto.OrderDailyPoint;
 import iuh.fit.se.backend.dto.OrderMonthlyPoint;
 import iuh.fit.se.backend.dto.OrderSummaryReport;
 import iuh.fit.se.backend.dto.OrderUserSummary;
 import iuh.fit.se.backend.dto.OrderYearlyPoint;
 import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.repository.OrderItemRepository;
 import iuh.fit.se.backend.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
@@ -34,6 +37,7 @@ public class OrderReportServiceImpl implements OrderReportService {
     private static final OrderStatus CANCELLED_STATUS = OrderStatus.CANCELLED;
 
     private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
 
     @Override
     @Transactional(readOnly = true)
@@ -74,8 +78,8 @@ public class OrderReportServiceImpl implements OrderReportService {
         validateRange(startDate, endDate);
 
         List<Object[]> rows = orderRepository.countOrdersByDayRange(
-                startDate,
-                endDate,
+                startDate.atStartOfDay(),
+                endDate.plusDays(1).atStartOfDay(),
                 FULFILLED_STATUSES,
                 PENDING_STATUS,
                 CANCELLED_STATUS
@@ -118,7 +122,8 @@ public class OrderReportServiceImpl implements OrderReportService {
     @Transactional(readOnly = true)
     public List<OrderMonthlyPoint> getMonthlyOrders(int year) {
         List<Object[]> rows = orderRepository.countOrdersByMonth(
-                year,
+                LocalDate.of(year, 1, 1).atStartOfDay(),
+                LocalDate.of(year + 1, 1, 1).atStartOfDay(),
                 FULFILLED_STATUSES,
                 PENDING_STATUS,
                 CANCELLED_STATUS
@@ -163,8 +168,8 @@ public class OrderReportServiceImpl implements OrderReportService {
         }
 
         List<Object[]> rows = orderRepository.countOrdersByYearRange(
-                startYear,
-                endYear,
+                LocalDate.of(startYear, 1, 1).atStartOfDay(),
+                LocalDate.of(endYear + 1, 1, 1).atStartOfDay(),
                 FULFILLED_STATUSES,
                 PENDING_STATUS,
                 CANCELLED_STATUS
@@ -205,13 +210,9 @@ public class OrderReportServiceImpl implements OrderReportService {
     @Transactional(readOnly = true)
     public List<OrderUserSummary> getOrdersByUser(LocalDateTime startDate, LocalDateTime endDate, int limit) {
         int resolvedLimit = limit > 0 ? limit : 10;
-        List<Object[]> rows = orderRepository.summarizeOrdersByUser(startDate, endDate);
+        List<Object[]> rows = orderRepository.summarizeOrdersByUser(startDate, endDate, PageRequest.ofSize(resolvedLimit));
         List<OrderUserSummary> result = new ArrayList<>();
-        int index = 0;
         for (Object[] row : rows) {
-            if (index >= resolvedLimit) {
-                break;
-            }
             Long userId = toLong(row[0]);
             String username = row[1] != null ? row[1].toString() : null;
             String fullName = row[2] != null ? row[2].toString() : null;
@@ -232,11 +233,26 @@ public class OrderReportServiceImpl implements OrderReportService {
                     .latestOrderAt(latestOrderAt)
                     .build();
             result.add(summary);
-            index++;
         }
         return result;
     }
 
+    // Không có sketch ở bản này: luôn đếm chính xác
+    @Override
+    @Transactional(readOnly = true)
+    public DistinctCountReport getDistinctCounts(LocalDate startDate, LocalDate endDate, boolean approximate) {
+        validateRange(startDate, endDate);
+        LocalDateTime start = startDate.atStartOfDay();
+        LocalDateTime end = endDate.plusDays(1).atStartOfDay();
+        return DistinctCountReport.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .distinctProducts(orderItemRepository.countDistinctProductsForOrdersCreatedBetween(start, end, FULFILLED_STATUSES))
+                .distinctCustomers(orderRepository.countDistinctCustomersCreatedBetween(start, end, FULFILLED_STATUSES))
+                .approximate(false)
+                .build();
+    }
+
     private void validateRange(LocalDate startDate, LocalDate endDate) {
         if (startDate == null || endDate == null) {
             throw new IllegalArgumentException("Start date and end date are required");
@@ -2,34 +2,52 @@ package iuh.fit.se.backend.service;
 
 import iuh.fit.se.backend.dto.request.OrderItemRequest;
 import iuh.fit.se.backend.dto.request.OrderRequest;
+import iuh.fit.se.backend.dto.response.CursorPageResponse;
 import iuh.fit.se.backend.dto.response.OrderItemResponse;
 import iuh.fit.se.backend.dto.response.OrderResponse;
-import iuh.fit.se.backend.entity.Inventory;
 import iuh.fit.se.backend.entity.Order;
 import iuh.fit.se.backend.entity.OrderItem;
 import iuh.fit.se.backend.entity.Product;
 import iuh.fit.se.backend.entity.User;
+import iuh.fit.se.backend.entity.enums.InventoryMovementType;
 import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.entity.enums.OutboxEventType;
 import iuh.fit.se.backend.entity.enums.PaymentMethod;
 import iuh.fit.se.backend.entity.enums.PaymentStatus;
 import iuh.fit.se.backend.repository.OrderRepository;
 import iuh.fit.se.backend.repository.ProductRepository;
 import iuh.fit.se.backend.repository.UserRepository;
+import iuh.fit.se.backend.specification.KeysetSpecification;
 import iuh.fit.se.backend.specification.OrderSpecification;
+import iuh.fit.se.backend.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -38,23 +56,78 @@ import java.util.stream.Collectors;
 public class OrderService {
     private final OrderRepository orderRepository;
     private final UserRepository userRepository;
-    private final CartService cartService;
     private final ProductRepository productRepository;
-    private final EmailService emailService;
-    private final NotificationService notificationService;
-
-    public List<OrderResponse> getOrdersByUser(Long userId) {
-        return orderRepository.findByUserId(userId)
-                .stream()
-                .map(this::toOrderResponse)
-                .collect(Collectors.toList());
+    private final OutboxService outboxService;
+    private final InventoryService inventoryService;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final FlashSaleAllocator flashSaleAllocator;
+    private final SalesRollupService salesRollupService;
+    private final PlatformTransactionManager transactionManager;
+
+    // Toàn bộ đơn của user trong một truy vấn fetch join, dòng đơn đọc từ snapshot
+    @Transactional(readOnly = true)
+    public List<OrderResponse> getOrdersByUser(Long userId, boolean includeStock) {
+        List<Order> orders = orderRepository.findWithItemsByUserId(userId);
+        return toCustomerOrderResponses(orders, includeStock);
+    }
+
+    /**
+     * Lịch sử đơn của khách theo trang (mới nhất trước): một truy vấn lấy trang id, một truy vấn fetch join
+     * đơn + dòng đơn + user. Tồn kho hiện tại chỉ được đọc (một truy vấn group by) khi includeStock = true.
+     */
+    @Transactional(readOnly = true)
+    public Page<OrderResponse> getOrdersByUser(Long userId, int page, int size, boolean includeStock) {
+        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Order.desc("createdAt"), Sort.Order.desc("id")));
+        Page<Long> ids = orderRepository.findIdsByUserId(userId, pageable);
+        if (ids.isEmpty()) {
+            return ids.map(id -> null);
+        }
+
+        Map<Long, Order> ordersById = orderRepository.findWithItemsByIdIn(ids.getContent()).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+        List<Order> orders = ids.getContent().stream().map(ordersById::get).toList();
+        return new PageImpl<>(toCustomerOrderResponses(orders, includeStock), pageable, ids.getTotalElements());
+    }
+
+    private List<OrderResponse> toCustomerOrderResponses(List<Order> orders, boolean includeStock) {
+        Map<Long, Integer> stock = Map.of();
+        if (includeStock) {
+            Set<Long> productIds = orders.stream()
+                    .flatMap(order -> order.getOrderItems().stream())
+                    .map(OrderItem::getProductId)
+                    .collect(Collectors.toSet());
+            stock = inventoryService.getStockByProductIds(productIds);
+        }
+        Map<Long, Integer> stockByProduct = stock;
+        return orders.stream()
+                .map(order -> toOrderResponse(order, item -> toSnapshotItemResponse(item,
+                        includeStock ? stockByProduct.getOrDefault(item.getProductId(), 0) : null)))
+                .toList();
     }
 
     public Order getOrder(Long id) {
         return orderRepository.findById(id).orElse(null);
     }
 
+    /**
+     * Tạo đơn và giữ hàng. Lần đầu giữ hàng trên shard của người mua; nếu shard đó vừa bị đơn khác trừ hết
+     * ({@link InventoryService.StockContentionException}) thì transaction đã rollback và nhả khoá, đặt lại một lần
+     * theo thứ tự id dòng tồn kho. Đang nằm trong transaction bên ngoài thì không tự thử lại được, ném lỗi lên trên.
+     */
     public Order saveOrder(OrderRequest request) {
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        try {
+            return transaction.execute(status -> createOrder(request, true));
+        } catch (InventoryService.StockContentionException e) {
+            if (TransactionSynchronizationManager.isActualTransactionActive()) {
+                throw e;
+            }
+            log.info("🔁 {}, đặt lại đơn theo thứ tự dòng tồn kho", e.getReason());
+            return transaction.execute(status -> createOrder(request, false));
+        }
+    }
+
+    private Order createOrder(OrderRequest request, boolean striped) {
         User user = userRepository.findById(request.getUserId())
                 .orElseThrow(() -> new RuntimeException("User not found"));
 
@@ -75,32 +148,9 @@ public class OrderService {
         order.setPaymentStatus(PaymentStatus.PENDING);
 
         if (request.getOrderItems() != null) {
+            Map<Long, Product> products = loadOrderProducts(request.getOrderItems());
             for (OrderItemRequest itemReq : request.getOrderItems()) {
-                Product product = productRepository.findById(itemReq.getProductId())
-                        .orElseThrow(() -> new RuntimeException("Product not found: " + itemReq.getProductId()));
-
-                // Kiểm tra số lượng tồn kho
-                int availableStock = product.getStockQuantity();
-                if (availableStock < itemReq.getQuantity()) {
-                    throw new RuntimeException("Sản phẩm " + product.getName() + " chỉ còn " + availableStock + " trong kho");
-                }
-
-                // Trừ số lượng tồn kho
-                if (!product.getInventories().isEmpty()) {
-                    int remainingQuantity = itemReq.getQuantity();
-                    for (Inventory inventory : product.getInventories()) {
-                        if (remainingQuantity <= 0) break;
-                        
-                        int currentStock = inventory.getStock();
-                        int toDeduct = Math.min(currentStock, remainingQuantity);
-                        
-                        inventory.setStock(currentStock - toDeduct);
-                        remainingQuantity -= toDeduct;
-                        
-                        log.info("Trừ {} sản phẩm từ inventory #{}, còn lại: {}", 
-                                toDeduct, inventory.getId(), inventory.getStock());
-                    }
-                }
+                Product product = products.get(itemReq.getProductId());
 
                 OrderItem item = new OrderItem();
                 item.setOrder(order);
@@ -121,17 +171,41 @@ public class OrderService {
             }
         }
 
+        // Giữ hàng bằng UPDATE có điều kiện, gộp theo sản phẩm và theo thứ tự id để tránh deadlock
+        Map<Product, Integer> quantities = new TreeMap<>(Comparator.comparing(Product::getId));
+        for (OrderItem item : order.getOrderItems()) {
+            quantities.merge(item.getProduct(), item.getQuantity(), Integer::sum);
+        }
+        // Sản phẩm đang flash sale giữ hàng bằng bộ đếm trong bộ nhớ (ghi bù vào kho sau), còn lại trừ trực tiếp trên kho
+        Set<Long> deferredProductIds = new HashSet<>();
+        for (Iterator<Map.Entry<Product, Integer>> it = quantities.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Product, Integer> entry = it.next();
+            if (flashSaleAllocator.tryReserve(entry.getKey(), entry.getValue())) {
+                deferredProductIds.add(entry.getKey().getId());
+                it.remove();
+            }
+        }
+        for (OrderItem item : order.getOrderItems()) {
+            item.setStockDeferred(deferredProductIds.contains(item.getProduct().getId()));
+        }
+        inventoryService.reserveStock(quantities, striped ? user.getId() : null);
+
         Order savedOrder = orderRepository.save(order);
+        salesRollupService.recordCreated(savedOrder);
+        quantities.forEach((product, quantity) -> inventoryLedgerService.record(product.getId(), -quantity,
+                InventoryMovementType.ORDER_DEDUCTION, savedOrder.getId(), null, user.getUsername()));
         
-        // Chỉ gửi email xác nhận cho COD, VNPay sẽ gửi khi thanh toán thành công
+        // Chỉ gửi email xác nhận cho COD, VNPay sẽ gửi khi thanh toán thành công.
+        // Ghi vào outbox cùng transaction, email được gửi nền sau commit
         if (savedOrder.getPaymentMethod() == PaymentMethod.CASH) {
-            emailService.sendOrderConfirmationEmail(savedOrder);
+            outboxService.enqueue(OutboxEventType.ORDER_CONFIRMATION_EMAIL, savedOrder.getId());
         }
         
         log.info("✅ Đơn hàng #{} đã được tạo và số lượng đã được trừ khỏi kho", savedOrder.getId());
         return savedOrder;
     }
 
+    @Transactional
     public Order updateOrder(Long id, OrderRequest request) {
         Order existing = orderRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Order not found"));
@@ -146,9 +220,9 @@ public class OrderService {
 
         // Thêm orderItems mới
         if (request.getOrderItems() != null) {
+            Map<Long, Product> products = loadOrderProducts(request.getOrderItems());
             for (OrderItemRequest itemReq : request.getOrderItems()) {
-                Product product = productRepository.findById(itemReq.getProductId())
-                        .orElseThrow(() -> new RuntimeException("Product not found"));
+                Product product = products.get(itemReq.getProductId());
 
                 OrderItem item = new OrderItem();
                 item.setOrder(existing);
@@ -164,12 +238,43 @@ public class OrderService {
                 existing.getOrderItems().add(item);
             }
         }
+        existing.recalculateTotals();
 
-        return orderRepository.save(existing);
+        Order saved = orderRepository.saveAndFlush(existing);
+        // Dòng đơn bị thay toàn bộ: tính lại ngày của đơn từ bảng gốc
+        salesRollupService.refreshDay(saved.getCreatedAt().toLocalDate());
+        return saved;
     }
 
+    // Nạp mọi sản phẩm của đơn bằng một truy vấn, báo lỗi một lần cho tất cả id không tồn tại
+    private Map<Long, Product> loadOrderProducts(List<OrderItemRequest> items) {
+        Set<Long> productIds = new LinkedHashSet<>();
+        for (OrderItemRequest itemReq : items) {
+            if (itemReq.getProductId() == null) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "ProductId is required");
+            }
+            productIds.add(itemReq.getProductId());
+        }
+        if (productIds.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<Long, Product> products = productRepository.findAllForOrderByIdIn(productIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        List<Long> missing = productIds.stream().filter(id -> !products.containsKey(id)).toList();
+        if (!missing.isEmpty()) {
+            throw new RuntimeException("Product not found: " + missing.stream()
+                    .map(String::valueOf).collect(Collectors.joining(", ")));
+        }
+        return products;
+    }
+
+    @Transactional
     public void deleteOrder(Long id) {
-        orderRepository.deleteById(id);
+        orderRepository.findById(id).ifPresent(order -> {
+            salesRollupService.recordRemoved(order);
+            orderRepository.delete(order);
+        });
     }
 
     public Page<Order> searchOrders(
@@ -181,32 +286,8 @@ public class OrderService {
             Double minTotal, Double maxTotal,
             int page, int size, String sortBy, String sortDir
     ) {
-        Specification<Order> spec = (root, query, cb) -> cb.conjunction();
-
-        if (customerName != null) {
-            spec = spec.and(OrderSpecification.hasCustomerName(customerName));
-        }
-        if (username != null) {
-            spec = spec.and(OrderSpecification.hasUsername(username));
-        }
-        if (userId != null) {
-            spec = spec.and(OrderSpecification.hasUserId(userId));
-        }
-        if (status != null) {
-            spec = spec.and(OrderSpecification.hasStatus(status));
-        }
-        if (fromDate != null) {
-            spec = spec.and(OrderSpecification.createdAfter(fromDate));
-        }
-        if (toDate != null) {
-            spec = spec.and(OrderSpecification.createdBefore(toDate));
-        }
-        if (minTotal != null) {
-            spec = spec.and(OrderSpecification.hasTotalGreaterThanOrEqual(minTotal));
-        }
-        if (maxTotal != null) {
-            spec = spec.and(OrderSpecification.hasTotalLessThanOrEqual(maxTotal));
-        }
+        Specification<Order> spec = OrderSpecification.search(
+                customerName, username, userId, status, fromDate, toDate, minTotal, maxTotal);
 
         Sort sort = Sort.by(sortDir.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC, sortBy);
         Pageable pageable = PageRequest.of(page, size, sort);
@@ -214,6 +295,41 @@ public class OrderService {
         return orderRepository.findAll(spec, pageable);
     }
 
+    // Phân trang keyset: seek theo (sortBy, id) của con trỏ `after` thay vì OFFSET, không chạy count(*)
+    public CursorPageResponse<Order> searchOrdersAfter(
+            String customerName,
+            String username,
+            Long userId,
+            String status,
+            LocalDateTime fromDate, LocalDateTime toDate,
+            Double minTotal, Double maxTotal,
+            String after, int size, String sortBy, String sortDir
+    ) {
+        boolean descending = sortDir.equalsIgnoreCase("desc");
+        KeysetCursor cursor = KeysetCursor.decode(after, sortBy, descending);
+
+        Specification<Order> seek;
+        try {
+            seek = switch (sortBy) {
+                case "id" -> KeysetSpecification.seek((root, cb) -> root.<Long>get("id"),
+                        descending, cursor != null ? Long.valueOf(cursor.value()) : null, cursor != null ? cursor.id() : null);
+                case "createdAt" -> KeysetSpecification.seek((root, cb) -> root.<LocalDateTime>get("createdAt"),
+                        descending, cursor != null ? LocalDateTime.parse(cursor.value()) : null, cursor != null ? cursor.id() : null);
+                default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Cursor paging supports sortBy id or createdAt");
+            };
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+
+        Specification<Order> spec = OrderSpecification.search(
+                customerName, username, userId, status, fromDate, toDate, minTotal, maxTotal).and(seek);
+        List<Order> orders = orderRepository.findBy(spec, q -> q.limit(size + 1).all());
+
+        return CursorPageResponse.of(orders, size, order -> KeysetCursor.of(sortBy, descending, order.getId(),
+                "createdAt".equals(sortBy) ? order.getCreatedAt() : order.getId()).encode());
+    }
+
         public Page<OrderResponse> getAdminOrders(
             String customerName,
             String username,
@@ -229,7 +345,28 @@ public class OrderService {
             String sortDir
         ) {
         return searchOrders(customerName, username, userId, status, fromDate, toDate, minTotal, maxTotal, page, size, sortBy, sortDir)
-                .map(this::toOrderResponse);
+                .map(this::toOrderSummaryResponse);
+    }
+
+    public CursorPageResponse<OrderResponse> getAdminOrdersAfter(
+            String customerName,
+            String username,
+            Long userId,
+            String status,
+            LocalDateTime fromDate,
+            LocalDateTime toDate,
+            Double minTotal,
+            Double maxTotal,
+            String after,
+            int size,
+            String sortBy,
+            String sortDir
+    ) {
+        CursorPageResponse<Order> page = searchOrdersAfter(
+                customerName, username, userId, status, fromDate, toDate, minTotal, maxTotal, after, size, sortBy, sortDir);
+        return new CursorPageResponse<>(
+                page.getContent().stream().map(this::toOrderSummaryResponse).toList(),
+                page.getSize(), page.isHasNext(), page.getNextCursor());
     }
 
     public OrderResponse getOrderResponse(Long id) {
@@ -238,6 +375,7 @@ public class OrderService {
         return toOrderResponse(order);
     }
 
+    @Transactional
     public OrderResponse updateOrderStatus(Long id, OrderStatus status) {
         Order order = orderRepository.findById(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found"));
@@ -246,35 +384,28 @@ public class OrderService {
         
         // Nếu chuyển sang trạng thái CANCELLED, hoàn lại số lượng vào kho
         if (status == OrderStatus.CANCELLED && oldStatus != OrderStatus.CANCELLED) {
+            // Chuyển trạng thái có điều kiện để hai lần huỷ đồng thời không hoàn kho hai lần
+            if (orderRepository.updateStatusIfCurrent(id, oldStatus, OrderStatus.CANCELLED) == 0) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT, "Order status was changed by another request");
+            }
             log.info("🔄 Hủy đơn hàng #{}, hoàn lại số lượng vào kho", id);
-            
+
+            Map<Product, Integer> quantities = new TreeMap<>(Comparator.comparing(Product::getId));
             for (OrderItem item : order.getOrderItems()) {
-                Product product = item.getProduct();
-                int quantityToRestore = item.getQuantity();
-                
-                // Hoàn lại số lượng vào inventory đầu tiên
-                if (!product.getInventories().isEmpty()) {
-                    Inventory firstInventory = product.getInventories().get(0);
-                    firstInventory.setStock(firstInventory.getStock() + quantityToRestore);
-                    
-                    log.info("✅ Hoàn {} sản phẩm '{}' vào kho, tổng: {}", 
-                            quantityToRestore, product.getName(), firstInventory.getStock());
-                }
+                quantities.merge(item.getProduct(), item.getQuantity(), Integer::sum);
             }
+            quantities.forEach((product, quantity) -> inventoryService.releaseStock(product, quantity, id));
         }
 
         order.setStatus(status);
 
         Order saved = orderRepository.save(order);
+        salesRollupService.recordStatusChange(saved, oldStatus, status);
         
-        // Gửi thông báo cho user về thay đổi trạng thái đơn hàng
+        // Thông báo cho user về thay đổi trạng thái đơn hàng (qua outbox, không chặn request)
         if (oldStatus != status && order.getUser() != null) {
-            notificationService.createOrderStatusChangedNotification(
-                order.getUser(), 
-                order.getId(), 
-                oldStatus.name(), 
-                status.name()
-            );
+            outboxService.enqueue(OutboxEventType.ORDER_STATUS_NOTIFICATION, order.getId(),
+                    oldStatus.name() + ">" + status.name());
         }
         
         return toOrderResponse(saved);
@@ -286,7 +417,7 @@ public class OrderService {
      * @param paymentStatus New payment status
      * @param transactionNo VNPay transaction number
      */
-    @org.springframework.transaction.annotation.Transactional
+    @Transactional
     public void updatePaymentStatus(Long orderId, PaymentStatus paymentStatus, String transactionNo) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found"));
@@ -302,36 +433,10 @@ public class OrderService {
         try {
             orderRepository.save(order);
             
-            // Send confirmation email asynchronously to avoid blocking
+            // Xoá sản phẩm đã mua khỏi giỏ và gửi email xác nhận: ghi outbox cùng transaction, xử lý nền
             if (paymentStatus == PaymentStatus.PAID) {
-                // Fetch fresh order with all relationships loaded before async call
-                Order orderWithRelations = orderRepository.findById(orderId)
-                        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Order not found"));
-                // Force load relationships
-                orderWithRelations.getOrderItems().size();
-                orderWithRelations.getUser().getEmail();
-                
-                // Remove purchased products from user's cart
-                Long userId = orderWithRelations.getUser().getId();
-                log.info("🔄 Removing purchased products from cart for user #{}...", userId);
-                try {
-                    List<Long> productIds = orderWithRelations.getOrderItems().stream()
-                            .map(item -> item.getProduct().getId())
-                            .collect(Collectors.toList());
-                    cartService.removeProductsFromCart(userId, productIds);
-                    log.info("✅ Removed {} products from cart for user #{} after successful payment", productIds.size(), userId);
-                } catch (Exception e) {
-                    log.error("❌ Failed to remove products from cart for user #{}: {}", userId, e.getMessage(), e);
-                }
-                
-                final Order orderForEmail = orderWithRelations;
-                new Thread(() -> {
-                    try {
-                        emailService.sendOrderConfirmationEmail(orderForEmail);
-                    } catch (Exception e) {
-                        log.error("Failed to send order confirmation email for order #{}", orderId, e);
-                    }
-                }).start();
+                outboxService.enqueue(OutboxEventType.CART_CLEANUP, orderId);
+                outboxService.enqueue(OutboxEventType.ORDER_CONFIRMATION_EMAIL, orderId);
             }
         } catch (org.springframework.orm.ObjectOptimisticLockingFailureException e) {
             log.warn("⚠️ Order #{} was updated by another transaction, retrying...", orderId);
@@ -348,36 +453,54 @@ public class OrderService {
     }
 
     private OrderResponse toOrderResponse(Order order) {
-        BigDecimal total = order.getOrderItems().stream()
-                .map(item -> item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        int totalQuantity = order.getOrderItems().stream()
-                .mapToInt(OrderItem::getQuantity)
-                .sum();
-
-        List<OrderItemResponse> items = order.getOrderItems().stream()
-            .map(item -> {
-                Product product = item.getProduct();
-                Integer productStock = product != null ? product.getStockQuantity() : null;
-                String supplierName = null;
-                if (product != null && product.getSupplier() != null) {
-                supplierName = product.getSupplier().getName();
-                }
-                java.math.BigDecimal subtotal = item.getPrice().multiply(java.math.BigDecimal.valueOf(item.getQuantity()));
-
-                return OrderItemResponse.builder()
-                    .id(item.getId())
-                    .productId(product != null ? product.getId() : null)
-                    .productName(item.getProductName() != null ? item.getProductName() : (product != null ? product.getName() : null))
-                    .productImageUrl(item.getProductImageUrl() != null ? item.getProductImageUrl() : (product != null ? product.getPrimaryImageUrl() : null))
-                    .price(item.getPrice())
-                    .quantity(item.getQuantity())
-                    .subtotal(subtotal)
-                    .supplierName(supplierName)
-                    .productStock(productStock)
-                    .build();
-            })
+        return toOrderResponse(order, this::toItemResponse);
+    }
+
+    // Danh sách đơn (admin) chỉ cần tổng lưu sẵn trên orders, không nạp dòng đơn; items = null
+    private OrderResponse toOrderSummaryResponse(Order order) {
+        return toOrderResponse(order, null);
+    }
+
+    // Dòng đơn đầy đủ: đọc sản phẩm hiện tại để lấy nhà cung cấp và tồn kho (dùng cho trang chi tiết)
+    private OrderItemResponse toItemResponse(OrderItem item) {
+        Product product = item.getProduct();
+        Integer productStock = product != null ? product.getStockQuantity() : null;
+        String supplierName = null;
+        if (product != null && product.getSupplier() != null) {
+            supplierName = product.getSupplier().getName();
+        }
+        BigDecimal subtotal = item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
+
+        return OrderItemResponse.builder()
+            .id(item.getId())
+            .productId(product != null ? product.getId() : null)
+            .productName(item.getProductName() != null ? item.getProductName() : (product != null ? product.getName() : null))
+            .productImageUrl(item.getProductImageUrl() != null ? item.getProductImageUrl() : (product != null ? product.getPrimaryImageUrl() : null))
+            .price(item.getPrice())
+            .quantity(item.getQuantity())
+            .subtotal(subtotal)
+            .supplierName(supplierName)
+            .productStock(productStock)
+            .build();
+    }
+
+    // Dòng đơn từ snapshot trên order_items, không chạm tới sản phẩm
+    private OrderItemResponse toSnapshotItemResponse(OrderItem item, Integer productStock) {
+        return OrderItemResponse.builder()
+            .id(item.getId())
+            .productId(item.getProductId())
+            .productName(item.getProductName())
+            .productImageUrl(item.getProductImageUrl())
+            .price(item.getPrice())
+            .quantity(item.getQuantity())
+            .subtotal(item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
+            .productStock(productStock)
+            .build();
+    }
+
+    private OrderResponse toOrderResponse(Order order, Function<OrderItem, OrderItemResponse> itemMapper) {
+        List<OrderItemResponse> items = itemMapper == null ? null : order.getOrderItems().stream()
+            .map(itemMapper)
             .collect(Collectors.toList());
 
         User user = order.getUser();
@@ -402,8 +525,8 @@ public class OrderService {
             .paymentMethod(order.getPaymentMethod())
             .transactionId(order.getTransactionId())
             .paidAt(order.getPaidAt())
-            .totalAmount(total)
-            .totalQuantity(totalQuantity)
+            .totalAmount(order.getTotalAmount())
+            .totalQuantity(order.getTotalQuantity())
             .items(items)
             .build();
     }
@@ -0,0 +1,332 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.Order;
+import iuh.fit.se.backend.entity.OrderItem;
+import iuh.fit.se.backend.entity.OutboxEvent;
+import iuh.fit.se.backend.entity.enums.OutboxEventType;
+import iuh.fit.se.backend.entity.enums.OutboxStatus;
+import iuh.fit.se.backend.repository.OrderRepository;
+import iuh.fit.se.backend.repository.OutboxEventRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Xử lý bảng outbox: nhận lô sự kiện đến hạn, gom theo loại rồi chạy trên worker pool giới hạn.
+ * - Email: dựng mọi email của lô rồi gửi qua một kết nối SMTP.
+ * - Thông báo và dọn giỏ hàng: nạp tất cả đơn của lô trong một truy vấn.
+ * - Lỗi thì retry với backoff luỹ thừa; quá số lần cho phép thì đánh dấu FAILED.
+ * Chạy khi có sự kiện mới commit và theo chu kỳ để nhặt các lần retry.
+ */
+@Service
+@Slf4j
+public class OutboxDispatcher {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OrderRepository orderRepository;
+    private final EmailService emailService;
+    private final NotificationService notificationService;
+    private final CartService cartService;
+    private final TransactionTemplate transactionTemplate;
+
+    // false: node này không tự xử lý outbox (chỉ ghi), để dồn việc gửi email về các node worker
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration lease;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+
+    private final ThreadPoolExecutor workers;
+    // Một luồng riêng để drain ngay sau commit, không chiếm thread của request đặt hàng
+    private final ExecutorService trigger = Executors.newSingleThreadExecutor(daemonThreads("outbox-trigger"));
+    private final AtomicBoolean triggerPending = new AtomicBoolean();
+    private final ReentrantLock drainLock = new ReentrantLock();
+
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository,
+                            OrderRepository orderRepository,
+                            EmailService emailService,
+                            NotificationService notificationService,
+                            CartService cartService,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${app.outbox.enabled:true}") boolean enabled,
+                            @Value("${app.outbox.workers:4}") int workerCount,
+                            @Value("${app.outbox.batch-size:50}") int batchSize,
+                            @Value("${app.outbox.max-attempts:8}") int maxAttempts,
+                            @Value("${app.outbox.lease:5m}") Duration lease,
+                            @Value("${app.outbox.base-backoff:10s}") Duration baseBackoff,
+                            @Value("${app.outbox.max-backoff:1h}") Duration maxBackoff) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.orderRepository = orderRepository;
+        this.emailService = emailService;
+        this.notificationService = notificationService;
+        this.cartService = cartService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxAttempts = maxAttempts;
+        this.lease = lease;
+        this.baseBackoff = baseBackoff;
+        this.maxBackoff = maxBackoff;
+        // Số worker và hàng đợi cố định; drain chờ lô hiện tại xong mới nhận lô mới nên hàng đợi không đầy
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(OutboxEventType.values().length * 2), daemonThreads("outbox-worker"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onEnqueued(OutboxService.Enqueued event) {
+        // Nhiều đơn commit liên tiếp chỉ xếp một lượt drain
+        if (enabled && triggerPending.compareAndSet(false, true)) {
+            trigger.execute(() -> {
+                triggerPending.set(false);
+                drain();
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.outbox.poll-interval:5000}", initialDelayString = "${app.outbox.poll-interval:5000}")
+    public void poll() {
+        if (enabled) {
+            drain();
+        }
+    }
+
+    @Scheduled(cron = "${app.outbox.cleanup-cron:0 30 3 * * *}")
+    public void purgeProcessed() {
+        Integer deleted = transactionTemplate.execute(status ->
+                outboxEventRepository.deleteDoneBefore(LocalDateTime.now().minusDays(7)));
+        log.info("Outbox cleanup removed {} processed events", deleted);
+    }
+
+    /**
+     * Xử lý hết các sự kiện đến hạn theo từng lô. Nếu đang có lượt drain khác chạy thì bỏ qua.
+     *
+     * @return số sự kiện xử lý thành công
+     */
+    public int drain() {
+        if (!drainLock.tryLock()) {
+            return 0;
+        }
+        try {
+            int done = 0;
+            while (true) {
+                String token = UUID.randomUUID().toString();
+                List<OutboxEvent> batch = claimBatch(token);
+                if (batch.isEmpty()) {
+                    return done;
+                }
+                done += process(batch, token);
+                if (batch.size() < batchSize) {
+                    return done;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Outbox drain failed", e);
+            return 0;
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private List<OutboxEvent> claimBatch(String token) {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Long> ids = outboxEventRepository.findDueIds(now, PageRequest.of(0, batchSize));
+            if (ids.isEmpty()) {
+                return List.of();
+            }
+            outboxEventRepository.claim(ids, token, now, now.plus(lease));
+            return outboxEventRepository.findByClaimTokenOrderById(token);
+        });
+    }
+
+    private int process(List<OutboxEvent> batch, String token) {
+        Map<OutboxEventType, List<OutboxEvent>> byType = batch.stream()
+                .collect(Collectors.groupingBy(OutboxEvent::getType, LinkedHashMap::new, Collectors.toList()));
+
+        List<CompletableFuture<Map<Long, Exception>>> groups = new ArrayList<>();
+        byType.forEach((type, events) -> groups.add(CompletableFuture.supplyAsync(() -> {
+            try {
+                return switch (type) {
+                    case ORDER_CONFIRMATION_EMAIL -> sendConfirmationEmails(events);
+                    case ORDER_STATUS_NOTIFICATION -> sendStatusNotifications(events);
+                    case CART_CLEANUP -> cleanUpCarts(events);
+                };
+            } catch (Exception e) {
+                // Lỗi cả nhóm (ví dụ không nạp được đơn): retry toàn bộ sự kiện của nhóm
+                return events.stream().collect(Collectors.toMap(OutboxEvent::getId, event -> e));
+            }
+        }, workers)));
+
+        Map<Long, Exception> failures = new HashMap<>();
+        groups.forEach(group -> failures.putAll(group.join()));
+
+        List<Long> succeeded = batch.stream().map(OutboxEvent::getId).filter(id -> !failures.containsKey(id)).toList();
+        Map<Long, OutboxEvent> byId = batch.stream().collect(Collectors.toMap(OutboxEvent::getId, Function.identity()));
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (!succeeded.isEmpty()) {
+                outboxEventRepository.markDone(succeeded, token, now);
+            }
+            failures.forEach((id, error) -> reschedule(byId.get(id), token, error, now));
+        });
+        return succeeded.size();
+    }
+
+    private void reschedule(OutboxEvent event, String token, Exception error, LocalDateTime now) {
+        int attempts = event.getAttempts() + 1;
+        boolean giveUp = attempts >= maxAttempts;
+        String message = String.valueOf(error.getMessage());
+        outboxEventRepository.reschedule(event.getId(), token,
+                giveUp ? OutboxStatus.FAILED : OutboxStatus.PENDING,
+                attempts,
+                now.plus(backoff(attempts)),
+                message.length() > 1000 ? message.substring(0, 1000) : message);
+        if (giveUp) {
+            log.error("❌ Outbox event #{} ({}) for order #{} failed after {} attempts: {}",
+                    event.getId(), event.getType(), event.getAggregateId(), attempts, message);
+        } else {
+            log.warn("⚠️ Outbox event #{} ({}) for order #{} failed (attempt {}), retrying later: {}",
+                    event.getId(), event.getType(), event.getAggregateId(), attempts, message);
+        }
+    }
+
+    // 10s, 20s, 40s, ... tối đa maxBackoff
+    Duration backoff(int attempts) {
+        Duration delay = baseBackoff.multipliedBy(1L << Math.min(attempts - 1, 20));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private Map<Long, Exception> sendConfirmationEmails(List<OutboxEvent> events) {
+        Map<Long, Order> orders = loadOrders(events);
+        Map<SimpleMailMessage, Long> eventByMessage = new LinkedHashMap<>();
+        for (OutboxEvent event : events) {
+            SimpleMailMessage message = emailService.buildOrderConfirmationEmail(orders.get(event.getAggregateId()));
+            if (message != null) {
+                eventByMessage.put(message, event.getId());
+            }
+        }
+
+        Map<Long, Exception> failures = new HashMap<>();
+        try {
+            emailService.sendBatch(new ArrayList<>(eventByMessage.keySet()));
+        } catch (MailSendException e) {
+            if (e.getFailedMessages().isEmpty()) {
+                eventByMessage.values().forEach(id -> failures.put(id, e));
+            } else {
+                e.getFailedMessages().forEach((message, cause) -> {
+                    Long eventId = eventByMessage.get(message);
+                    if (eventId != null) {
+                        failures.put(eventId, cause);
+                    }
+                });
+            }
+        }
+        return failures;
+    }
+
+    private Map<Long, Exception> sendStatusNotifications(List<OutboxEvent> events) {
+        Map<Long, Order> orders = loadOrders(events);
+        Map<Long, Exception> failures = new HashMap<>();
+        for (OutboxEvent event : events) {
+            Order order = orders.get(event.getAggregateId());
+            if (order == null || order.getUser() == null || event.getPayload() == null) {
+                continue;
+            }
+            String[] transition = event.getPayload().split(">", 2);
+            try {
+                notificationService.createOrderStatusChangedNotification(
+                        order.getUser(), order.getId(), transition[0], transition[1]);
+            } catch (Exception e) {
+                failures.put(event.getId(), e);
+            }
+        }
+        return failures;
+    }
+
+    private Map<Long, Exception> cleanUpCarts(List<OutboxEvent> events) {
+        Map<Long, Order> orders = loadOrders(events);
+
+        // Gộp theo người dùng: mỗi giỏ hàng chỉ xoá một lần cho cả lô
+        Map<Long, Set<Long>> productsByUser = new LinkedHashMap<>();
+        Map<Long, List<Long>> eventsByUser = new HashMap<>();
+        for (OutboxEvent event : events) {
+            Order order = orders.get(event.getAggregateId());
+            if (order == null || order.getUser() == null) {
+                continue;
+            }
+            Long userId = order.getUser().getId();
+            Set<Long> productIds = productsByUser.computeIfAbsent(userId, id -> new LinkedHashSet<>());
+            for (OrderItem item : order.getOrderItems()) {
+                productIds.add(item.getProductId());
+            }
+            eventsByUser.computeIfAbsent(userId, id -> new ArrayList<>()).add(event.getId());
+        }
+
+        Map<Long, Exception> failures = new HashMap<>();
+        productsByUser.forEach((userId, productIds) -> {
+            try {
+                cartService.removeProductsFromCart(userId, new ArrayList<>(productIds));
+                log.info("✅ Removed {} products from cart for user #{} after successful payment", productIds.size(), userId);
+            } catch (Exception e) {
+                eventsByUser.get(userId).forEach(id -> failures.put(id, e));
+            }
+        });
+        return failures;
+    }
+
+    // Đơn đã bị xoá thì không có trong map: sự kiện tương ứng coi như xong
+    private Map<Long, Order> loadOrders(List<OutboxEvent> events) {
+        Set<Long> orderIds = events.stream().map(OutboxEvent::getAggregateId).collect(Collectors.toSet());
+        return transactionTemplate.execute(status -> orderRepository.findWithItemsByIdIn(orderIds).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity())));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        trigger.shutdownNow();
+        workers.shutdown();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,45 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.OutboxEvent;
+import iuh.fit.se.backend.entity.enums.OutboxEventType;
+import iuh.fit.se.backend.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ghi tác vụ phụ của đơn hàng vào bảng outbox trong chính transaction đang thay đổi đơn:
+ * đơn rollback thì tác vụ cũng biến mất, đơn commit thì tác vụ chắc chắn được OutboxDispatcher xử lý.
+ */
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OutboxEvent enqueue(OutboxEventType type, Long orderId) {
+        return enqueue(type, orderId, null);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public OutboxEvent enqueue(OutboxEventType type, Long orderId, String payload) {
+        OutboxEvent event = outboxEventRepository.save(OutboxEvent.builder()
+                .type(type)
+                .aggregateId(orderId)
+                .payload(payload)
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+        // Dispatcher nghe sự kiện này sau commit để xử lý ngay thay vì đợi lượt quét kế tiếp
+        eventPublisher.publishEvent(new Enqueued(event.getId(), type));
+        return event;
+    }
+
+    public record Enqueued(Long eventId, OutboxEventType type) {
+    }
+}
@@ -11,7 +11,6 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
-import java.math.BigDecimal;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Locale;
@@ -47,15 +46,10 @@ public class PaymentService {
     }
 
     private PaymentSummary orderToSummary(Order order) {
-        // Calculate total amount from order items
-        BigDecimal totalAmount = order.getOrderItems().stream()
-                .map(item -> item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity())))
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
         return new PaymentSummary(
                 order.getId(), // Use order ID as payment ID
                 order.getPaymentMethod(),
-                totalAmount,
+                order.getTotalAmount(), // tổng lưu sẵn, không nạp dòng đơn
                 order.getId(),
                 Optional.ofNullable(order.getFullName()).orElse(order.getUser() != null ? order.getUser().getFullName() : null),
                 order.getCreatedAt(),
@@ -0,0 +1,244 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.response.CacheStatsResponse;
+import iuh.fit.se.backend.dto.response.ProductResponse;
+import iuh.fit.se.backend.entity.Inventory;
+import iuh.fit.se.backend.entity.ProductImage;
+import iuh.fit.se.backend.entity.ProductPrice;
+import iuh.fit.se.backend.entity.ProductSpec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Cache trong bộ nhớ cho ProductResponse của trang chi tiết sản phẩm.
+ * - Giới hạn theo dung lượng ước tính (byte), đẩy ra theo LRU khi vượt ngưỡng.
+ * - Single-flight: nhiều request cùng lúc cho một sản phẩm chưa có trong cache chỉ load database một lần.
+ * - Bị xoá khi sản phẩm, tồn kho hoặc đơn hàng làm thay đổi dữ liệu sản phẩm; nếu đang trong transaction
+ *   thì xoá thêm một lần sau commit để request đọc song song không nạp lại dữ liệu cũ.
+ */
+@Service
+@Slf4j
+public class ProductDetailCache {
+
+    private final long maxWeightBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // accessOrder = true: phần tử đầu là phần tử ít được dùng gần đây nhất
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    // Tăng mỗi lần invalidate; kết quả load bắt đầu trước khi invalidate sẽ không được lưu
+    private final Map<Long, Long> versions = new HashMap<>();
+    private final ConcurrentHashMap<Long, CompletableFuture<ProductResponse>> loading = new ConcurrentHashMap<>();
+    private long weightBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public ProductDetailCache(@Value("${app.cache.product-detail.max-bytes:16777216}") long maxWeightBytes) {
+        this.maxWeightBytes = maxWeightBytes;
+    }
+
+    public ProductResponse get(Long productId, Function<Long, ProductResponse> loader) {
+        lock.lock();
+        try {
+            Entry entry = entries.get(productId);
+            if (entry != null) {
+                hits.increment();
+                return entry.value();
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+
+        CompletableFuture<ProductResponse> mine = new CompletableFuture<>();
+        CompletableFuture<ProductResponse> inFlight = loading.putIfAbsent(productId, mine);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+
+        try {
+            long version = currentVersion(productId);
+            loads.increment();
+            ProductResponse value = loader.apply(productId);
+            if (value != null) {
+                store(productId, value, version);
+            }
+            mine.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(productId, mine);
+        }
+    }
+
+    public void invalidate(Long productId) {
+        if (productId == null) {
+            return;
+        }
+        evict(productId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    evict(productId);
+                }
+            });
+        }
+    }
+
+    public void invalidateAll(Collection<Long> productIds) {
+        productIds.forEach(this::invalidate);
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            for (Long productId : entries.keySet()) {
+                versions.merge(productId, 1L, Long::sum);
+            }
+            invalidations.add(entries.size());
+            entries.clear();
+            weightBytes = 0;
+            loading.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public CacheStatsResponse stats() {
+        lock.lock();
+        try {
+            long hitCount = hits.sum();
+            long missCount = misses.sum();
+            return CacheStatsResponse.builder()
+                    .hits(hitCount)
+                    .misses(missCount)
+                    .loads(loads.sum())
+                    .evictions(evictions.sum())
+                    .invalidations(invalidations.sum())
+                    .entries(entries.size())
+                    .weightBytes(weightBytes)
+                    .maxWeightBytes(maxWeightBytes)
+                    .hitRate(hitCount + missCount > 0 ? (double) hitCount / (hitCount + missCount) : 0.0)
+                    .build();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict(Long productId) {
+        lock.lock();
+        try {
+            versions.merge(productId, 1L, Long::sum);
+            Entry removed = entries.remove(productId);
+            if (removed != null) {
+                weightBytes -= removed.weight();
+                invalidations.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+        // Request mới không được chờ lần load đang chạy vì nó có thể đã đọc dữ liệu cũ
+        loading.remove(productId);
+    }
+
+    private long currentVersion(Long productId) {
+        lock.lock();
+        try {
+            return versions.getOrDefault(productId, 0L);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void store(Long productId, ProductResponse value, long version) {
+        long weight = weigh(value);
+        if (weight > maxWeightBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (versions.getOrDefault(productId, 0L) != version) {
+                return;
+            }
+            Entry previous = entries.put(productId, new Entry(value, weight));
+            if (previous != null) {
+                weightBytes -= previous.weight();
+            }
+            weightBytes += weight;
+
+            Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+            while (weightBytes > maxWeightBytes && eldest.hasNext()) {
+                Entry evicted = eldest.next().getValue();
+                eldest.remove();
+                weightBytes -= evicted.weight();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ProductResponse await(CompletableFuture<ProductResponse> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Ước lượng kích thước theo số ký tự chuỗi (2 byte/ký tự) cộng chi phí cố định cho mỗi object
+    static long weigh(ProductResponse response) {
+        long weight = 256 + chars(response.getName()) + chars(response.getDescription())
+                + chars(response.getBrand()) + chars(response.getCategoryName())
+                + chars(response.getSupplierName()) + chars(response.getImageUrl());
+        for (ProductImage image : nullSafe(response.getProductImages())) {
+            weight += 64 + chars(image.getImageUrl());
+        }
+        for (ProductSpec spec : nullSafe(response.getProductSpecs())) {
+            weight += 64 + chars(spec.getKeyName()) + chars(spec.getValue());
+        }
+        for (ProductPrice ignored : nullSafe(response.getProductPrices())) {
+            weight += 96;
+        }
+        for (Inventory ignored : nullSafe(response.getInventories())) {
+            weight += 96;
+        }
+        return weight;
+    }
+
+    private static long chars(String value) {
+        return value != null ? 40 + 2L * value.length() : 0;
+    }
+
+    private static <T> List<T> nullSafe(List<T> list) {
+        return list != null ? list : List.of();
+    }
+
+    private record Entry(ProductResponse value, long weight) {
+    }
+}
@@ -0,0 +1,305 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.response.ProductFacetResponse;
+import iuh.fit.se.backend.dto.response.ProductFacetResponse.FacetCount;
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.enums.ProductStatus;
+import iuh.fit.se.backend.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Đếm facet (thương hiệu, danh mục, nhà cung cấp, khoảng giá) cho sidebar cửa hàng bằng bitmap nén.
+ * Mỗi sản phẩm được gán một ordinal; mỗi giá trị facet giữ một RoaringBitmap các ordinal có giá trị đó.
+ * Số lượng của một facet được tính trên giao của mọi bộ lọc khác (trừ chính facet đó),
+ * nên người dùng vẫn thấy các lựa chọn thay thế sau khi đã chọn một giá trị.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductFacetIndex {
+
+    // Ranh giới các khoảng giá (VND)
+    private static final BigDecimal[] PRICE_BOUNDS = {
+            BigDecimal.valueOf(2_000_000L),
+            BigDecimal.valueOf(5_000_000L),
+            BigDecimal.valueOf(10_000_000L),
+            BigDecimal.valueOf(20_000_000L),
+            BigDecimal.valueOf(50_000_000L)
+    };
+
+    private final ProductRepository productRepository;
+    private final ProductSearchIndex searchIndex;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Integer> ordinals = new HashMap<>();
+    // ordinal -> giá trị facet hiện tại của sản phẩm, để gỡ khỏi bitmap cũ khi cập nhật
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<Long, FacetValue> brands = new HashMap<>();
+    private final Map<Long, FacetValue> categories = new HashMap<>();
+    private final Map<Long, FacetValue> suppliers = new HashMap<>();
+    private final Map<ProductStatus, RoaringBitmap> statuses = new EnumMap<>(ProductStatus.class);
+    private final RoaringBitmap[] priceBuckets = newPriceBuckets();
+    private final RoaringBitmap all = new RoaringBitmap();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        List<Product> products = productRepository.findAll();
+        lock.writeLock().lock();
+        try {
+            ordinals.clear();
+            entries.clear();
+            brands.clear();
+            categories.clear();
+            suppliers.clear();
+            statuses.clear();
+            for (RoaringBitmap bucket : priceBuckets) {
+                bucket.clear();
+            }
+            all.clear();
+            products.forEach(this::put);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product facet index built: {} products, {} brands, {} categories, {} suppliers",
+                products.size(), brands.size(), categories.size(), suppliers.size());
+    }
+
+    public void index(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            put(product);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public ProductFacetResponse facets(String name, String category, String brand, String supplier,
+                                       Double minPrice, Double maxPrice, String status) {
+        // Khớp tên qua chỉ mục tìm kiếm trước khi khoá để không giữ read lock lâu
+        List<Long> textHits = name != null ? searchIndex.search(name, Integer.MAX_VALUE) : null;
+
+        lock.readLock().lock();
+        try {
+            RoaringBitmap textFilter = textHits != null ? toBitmap(textHits) : null;
+            // Mặc định chỉ đếm sản phẩm ACTIVE, giống searchProducts
+            RoaringBitmap statusFilter = statusFilter(status != null ? status : ProductStatus.ACTIVE.name());
+            RoaringBitmap brandFilter = brand != null ? byName(brands, brand) : null;
+            RoaringBitmap categoryFilter = category != null ? byName(categories, category) : null;
+            RoaringBitmap supplierFilter = supplier != null ? byName(suppliers, supplier) : null;
+            RoaringBitmap priceFilter = minPrice != null || maxPrice != null ? byPrice(minPrice, maxPrice) : null;
+
+            RoaringBitmap common = intersect(all, textFilter, statusFilter);
+            RoaringBitmap matching = intersect(common, brandFilter, categoryFilter, supplierFilter, priceFilter);
+
+            return ProductFacetResponse.builder()
+                    .total(matching.getLongCardinality())
+                    .brands(count(brands, intersect(common, categoryFilter, supplierFilter, priceFilter)))
+                    .categories(count(categories, intersect(common, brandFilter, supplierFilter, priceFilter)))
+                    .suppliers(count(suppliers, intersect(common, brandFilter, categoryFilter, priceFilter)))
+                    .priceRanges(countPrices(intersect(common, brandFilter, categoryFilter, supplierFilter)))
+                    .build();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void put(Product product) {
+        Integer ordinal = ordinals.get(product.getId());
+        if (ordinal == null) {
+            ordinal = entries.size();
+            ordinals.put(product.getId(), ordinal);
+            entries.add(null);
+        } else {
+            unset(ordinal, entries.get(ordinal));
+        }
+
+        Entry entry = new Entry(
+                product.getBrand() != null ? product.getBrand().getId() : null,
+                product.getCategory() != null ? product.getCategory().getId() : null,
+                product.getSupplier() != null ? product.getSupplier().getId() : null,
+                product.getStatus(),
+                product.getCurrentPrice());
+        entries.set(ordinal, entry);
+
+        all.add(ordinal);
+        if (entry.brandId() != null) {
+            set(brands, entry.brandId(), product.getBrand().getName(), ordinal);
+        }
+        if (entry.categoryId() != null) {
+            set(categories, entry.categoryId(), product.getCategory().getName(), ordinal);
+        }
+        if (entry.supplierId() != null) {
+            set(suppliers, entry.supplierId(), product.getSupplier().getName(), ordinal);
+        }
+        if (entry.status() != null) {
+            statuses.computeIfAbsent(entry.status(), s -> new RoaringBitmap()).add(ordinal);
+        }
+        if (entry.price() != null) {
+            priceBuckets[bucketOf(entry.price())].add(ordinal);
+        }
+    }
+
+    private void unset(int ordinal, Entry entry) {
+        if (entry.brandId() != null) {
+            brands.get(entry.brandId()).bitmap.remove(ordinal);
+        }
+        if (entry.categoryId() != null) {
+            categories.get(entry.categoryId()).bitmap.remove(ordinal);
+        }
+        if (entry.supplierId() != null) {
+            suppliers.get(entry.supplierId()).bitmap.remove(ordinal);
+        }
+        if (entry.status() != null) {
+            statuses.get(entry.status()).remove(ordinal);
+        }
+        if (entry.price() != null) {
+            priceBuckets[bucketOf(entry.price())].remove(ordinal);
+        }
+    }
+
+    private void set(Map<Long, FacetValue> facet, Long id, String name, int ordinal) {
+        FacetValue value = facet.computeIfAbsent(id, k -> new FacetValue());
+        // Luôn lấy tên mới nhất để phản ánh việc đổi tên thương hiệu/danh mục
+        value.name = name;
+        value.bitmap.add(ordinal);
+    }
+
+    private RoaringBitmap toBitmap(List<Long> productIds) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (Long productId : productIds) {
+            Integer ordinal = ordinals.get(productId);
+            if (ordinal != null) {
+                bitmap.add(ordinal);
+            }
+        }
+        return bitmap;
+    }
+
+    private RoaringBitmap statusFilter(String status) {
+        try {
+            RoaringBitmap bitmap = statuses.get(ProductStatus.valueOf(status));
+            return bitmap != null ? bitmap : new RoaringBitmap();
+        } catch (IllegalArgumentException e) {
+            return null; // trạng thái không hợp lệ -> bỏ qua bộ lọc, giống ProductSpecification.hasStatus
+        }
+    }
+
+    // Bộ lọc theo tên không phân biệt hoa thường, giống ProductSpecification.hasBrand/hasCategory/hasSupplier
+    private RoaringBitmap byName(Map<Long, FacetValue> facet, String name) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (FacetValue value : facet.values()) {
+            if (name.equalsIgnoreCase(value.name)) {
+                bitmap.or(value.bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    private RoaringBitmap byPrice(Double minPrice, Double maxPrice) {
+        BigDecimal min = minPrice != null ? BigDecimal.valueOf(minPrice) : null;
+        BigDecimal max = maxPrice != null ? BigDecimal.valueOf(maxPrice) : null;
+        RoaringBitmap bitmap = new RoaringBitmap();
+        for (int ordinal : all) {
+            BigDecimal price = entries.get(ordinal).price();
+            if (price != null
+                    && (min == null || price.compareTo(min) >= 0)
+                    && (max == null || price.compareTo(max) <= 0)) {
+                bitmap.add(ordinal);
+            }
+        }
+        return bitmap;
+    }
+
+    private static RoaringBitmap intersect(RoaringBitmap base, RoaringBitmap... filters) {
+        RoaringBitmap result = base;
+        for (RoaringBitmap filter : filters) {
+            if (filter != null) {
+                result = RoaringBitmap.and(result, filter);
+            }
+        }
+        return result;
+    }
+
+    private List<FacetCount> count(Map<Long, FacetValue> facet, RoaringBitmap base) {
+        List<FacetCount> counts = new ArrayList<>();
+        for (Map.Entry<Long, FacetValue> e : facet.entrySet()) {
+            long count = RoaringBitmap.andCardinality(base, e.getValue().bitmap);
+            if (count > 0) {
+                counts.add(FacetCount.builder().id(e.getKey()).name(e.getValue().name).count(count).build());
+            }
+        }
+        counts.sort(Comparator.comparingLong(FacetCount::getCount).reversed()
+                .thenComparing(FacetCount::getName, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER)));
+        return counts;
+    }
+
+    private List<FacetCount> countPrices(RoaringBitmap base) {
+        List<FacetCount> counts = new ArrayList<>();
+        for (int i = 0; i < priceBuckets.length; i++) {
+            BigDecimal min = i == 0 ? BigDecimal.ZERO : PRICE_BOUNDS[i - 1];
+            BigDecimal max = i < PRICE_BOUNDS.length ? PRICE_BOUNDS[i] : null;
+            counts.add(FacetCount.builder()
+                    .name(priceLabel(min, max))
+                    .minPrice(min)
+                    .maxPrice(max)
+                    .count(RoaringBitmap.andCardinality(base, priceBuckets[i]))
+                    .build());
+        }
+        return counts;
+    }
+
+    private static String priceLabel(BigDecimal min, BigDecimal max) {
+        long million = 1_000_000L;
+        if (max == null) {
+            return "Trên " + min.longValue() / million + " triệu";
+        }
+        if (min.signum() == 0) {
+            return "Dưới " + max.longValue() / million + " triệu";
+        }
+        return min.longValue() / million + " - " + max.longValue() / million + " triệu";
+    }
+
+    private static int bucketOf(BigDecimal price) {
+        int bucket = 0;
+        while (bucket < PRICE_BOUNDS.length && price.compareTo(PRICE_BOUNDS[bucket]) >= 0) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static RoaringBitmap[] newPriceBuckets() {
+        RoaringBitmap[] buckets = new RoaringBitmap[PRICE_BOUNDS.length + 1];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new RoaringBitmap();
+        }
+        return buckets;
+    }
+
+    private record Entry(Long brandId, Long categoryId, Long supplierId, ProductStatus status, BigDecimal price) {
+    }
+
+    private static class FacetValue {
+        private String name;
+        private final RoaringBitmap bitmap = new RoaringBitmap();
+    }
+}
@@ -0,0 +1,217 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.ProductSpec;
+import iuh.fit.se.backend.repository.ProductRepository;
+import iuh.fit.se.backend.util.TextNormalizer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Chỉ mục đảo ngược trong bộ nhớ cho tìm kiếm sản phẩm (tên, thương hiệu, danh mục, mô tả, thông số).
+ * Văn bản được chuẩn hoá không dấu như AiService, kết quả xếp hạng theo BM25.
+ * Dựng lại toàn bộ khi khởi động và cập nhật từng sản phẩm khi ProductService lưu.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProductSearchIndex {
+
+    // Tham số BM25 chuẩn
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // Trọng số theo trường: một lần xuất hiện trong tên được tính như 3 lần trong mô tả
+    private static final int NAME_WEIGHT = 3;
+    private static final int BRAND_WEIGHT = 2;
+    private static final int CATEGORY_WEIGHT = 2;
+    private static final int TEXT_WEIGHT = 1;
+
+    private final ProductRepository productRepository;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // term -> (productId -> tần suất có trọng số); TreeMap để tra cứu theo tiền tố
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    // productId -> các term của sản phẩm, dùng để gỡ khỏi postings khi cập nhật
+    private final Map<Long, Map<String, Integer>> documents = new HashMap<>();
+    private final Map<Long, Integer> documentLengths = new HashMap<>();
+    private long totalLength;
+    private volatile boolean ready;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        List<Product> products = productRepository.findAllWithSpecs();
+        lock.writeLock().lock();
+        try {
+            postings.clear();
+            documents.clear();
+            documentLengths.clear();
+            totalLength = 0;
+            for (Product product : products) {
+                addDocument(product.getId(), analyze(product));
+            }
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Product search index built: {} products, {} terms in {} ms",
+                products.size(), postings.size(), System.currentTimeMillis() - start);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void index(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        Map<String, Integer> terms = analyze(product);
+        lock.writeLock().lock();
+        try {
+            removeDocument(product.getId());
+            addDocument(product.getId(), terms);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long productId) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(productId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Trả về id sản phẩm khớp với mọi từ khoá, sắp theo điểm BM25 giảm dần.
+     * Mỗi từ khoá khớp các term bắt đầu bằng nó ("casi" khớp "casio"), term khớp trọn được điểm cao hơn.
+     */
+    public List<Long> search(String query, int limit) {
+        List<String> queryTerms = TextNormalizer.tokenize(query);
+        if (queryTerms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            int docCount = documents.size();
+            if (docCount == 0) {
+                return List.of();
+            }
+            double avgLength = (double) totalLength / docCount;
+
+            Map<Long, Double> scores = null;
+            for (String queryTerm : queryTerms.stream().distinct().toList()) {
+                Map<Long, Double> termScores = new HashMap<>();
+                for (Map.Entry<String, Map<Long, Integer>> entry : postings.tailMap(queryTerm, true).entrySet()) {
+                    String term = entry.getKey();
+                    if (!term.startsWith(queryTerm)) {
+                        break;
+                    }
+                    Map<Long, Integer> postingList = entry.getValue();
+                    double idf = Math.log(1 + (docCount - postingList.size() + 0.5) / (postingList.size() + 0.5));
+                    // Khớp tiền tố chỉ được một nửa điểm so với khớp trọn từ
+                    double boost = term.length() == queryTerm.length() ? 1.0 : 0.5;
+                    for (Map.Entry<Long, Integer> posting : postingList.entrySet()) {
+                        double tf = posting.getValue();
+                        double norm = K1 * (1 - B + B * documentLengths.get(posting.getKey()) / avgLength);
+                        termScores.merge(posting.getKey(), boost * idf * tf * (K1 + 1) / (tf + norm), Math::max);
+                    }
+                }
+
+                // Mọi từ khoá đều phải khớp (AND), giống cách LIKE trên cả cụm từ trước đây
+                if (scores == null) {
+                    scores = termScores;
+                } else {
+                    Map<Long, Double> previous = scores;
+                    scores = new HashMap<>();
+                    for (Map.Entry<Long, Double> e : termScores.entrySet()) {
+                        Double score = previous.get(e.getKey());
+                        if (score != null) {
+                            scores.put(e.getKey(), score + e.getValue());
+                        }
+                    }
+                }
+                if (scores.isEmpty()) {
+                    return List.of();
+                }
+            }
+
+            return scores.entrySet().stream()
+                    .sorted(Map.Entry.<Long, Double>comparingByValue().reversed()
+                            .thenComparing(Map.Entry.comparingByKey(Comparator.reverseOrder())))
+                    .limit(limit)
+                    .map(Map.Entry::getKey)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<String, Integer> analyze(Product product) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTokens(terms, product.getName(), NAME_WEIGHT);
+        addTokens(terms, product.getBrand() != null ? product.getBrand().getName() : null, BRAND_WEIGHT);
+        addTokens(terms, product.getCategory() != null ? product.getCategory().getName() : null, CATEGORY_WEIGHT);
+        addTokens(terms, product.getDescription(), TEXT_WEIGHT);
+        if (product.getProductSpecs() != null) {
+            for (ProductSpec spec : new ArrayList<>(product.getProductSpecs())) {
+                addTokens(terms, spec.getValue(), TEXT_WEIGHT);
+            }
+        }
+        return terms;
+    }
+
+    private void addTokens(Map<String, Integer> terms, String text, int weight) {
+        for (String token : TextNormalizer.tokenize(text)) {
+            terms.merge(token, weight, Integer::sum);
+        }
+    }
+
+    private void addDocument(Long productId, Map<String, Integer> terms) {
+        int length = 0;
+        for (Map.Entry<String, Integer> term : terms.entrySet()) {
+            postings.computeIfAbsent(term.getKey(), k -> new HashMap<>()).put(productId, term.getValue());
+            length += term.getValue();
+        }
+        documents.put(productId, terms);
+        documentLengths.put(productId, length);
+        totalLength += length;
+    }
+
+    private void removeDocument(Long productId) {
+        Map<String, Integer> terms = documents.remove(productId);
+        if (terms == null) {
+            return;
+        }
+        for (String term : terms.keySet()) {
+            Map<Long, Integer> postingList = postings.get(term);
+            if (postingList != null) {
+                postingList.remove(productId);
+                if (postingList.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= documentLengths.remove(productId);
+    }
+}
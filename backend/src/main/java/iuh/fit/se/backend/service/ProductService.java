@@ -1,30 +1,63 @@
 package iuh.fit.se.backend.service;
 
+import iuh.fit.se.backend.dto.response.CacheStatsResponse;
+import iuh.fit.se.backend.dto.response.CursorPageResponse;
+import iuh.fit.se.backend.dto.response.ProductCardResponse;
+import iuh.fit.se.backend.dto.response.ProductFacetResponse;
 import iuh.fit.se.backend.dto.response.ProductResponse;
 import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.ProductImage;
+import iuh.fit.se.backend.entity.ProductPrice;
+import iuh.fit.se.backend.entity.ProductRatingSummary;
+import iuh.fit.se.backend.entity.enums.InventoryMovementType;
 import iuh.fit.se.backend.entity.enums.ProductStatus;
+import iuh.fit.se.backend.repository.ProductRatingSummaryRepository;
 import iuh.fit.se.backend.repository.ProductRepository;
 import iuh.fit.se.backend.repository.ProductPriceRepository;
-import iuh.fit.se.backend.repository.ReviewRepository;
 import iuh.fit.se.backend.dto.response.PriceRangeResponse;
+import iuh.fit.se.backend.specification.KeysetSpecification;
 import iuh.fit.se.backend.specification.ProductSpecification;
+import iuh.fit.se.backend.util.KeysetCursor;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.domain.Specification;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
     private final ProductRepository productRepository;
     private final ProductPriceRepository productPriceRepository;
-    private final ReviewRepository reviewRepository;
+    private final ProductRatingSummaryRepository ratingSummaryRepository;
+    private final ProductSearchIndex searchIndex;
+    private final ProductFacetIndex facetIndex;
+    private final ProductDetailCache productDetailCache;
+    private final CategoryTreeCache categoryTreeCache;
+    private final InventoryService inventoryService;
+    private final PlatformTransactionManager transactionManager;
+
+    // Số kết quả tối đa lấy từ chỉ mục cho một truy vấn tìm kiếm
+    private static final int MAX_SEARCH_HITS = 1000;
 
     public List<Product> getAllProducts() {
         return productRepository.findAll();
@@ -34,30 +67,233 @@ public class ProductService {
         return productRepository.findById(id).orElse(null);
     }
 
+    // Trang chi tiết sản phẩm: đọc qua cache, chỉ load database khi chưa có hoặc đã bị invalidate
+    public ProductResponse getProductDetail(Long id) {
+        ProductResponse response = productDetailCache.get(id, this::loadProductDetail);
+        if (response == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Product not found");
+        }
+        return response;
+    }
+
+    public CacheStatsResponse getProductDetailCacheStats() {
+        return productDetailCache.stats();
+    }
+
+    private ProductResponse loadProductDetail(Long id) {
+        // Dựng response trong transaction riêng để mọi collection lazy được nạp trước khi đưa vào cache
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        return transaction.execute(status -> productRepository.findById(id)
+                .map(this::toProductDetail)
+                .orElse(null));
+    }
+
+    private ProductResponse toProductDetail(Product product) {
+        ProductResponse response = new ProductResponse();
+        response.setId(product.getId());
+        response.setName(product.getName());
+        response.setDescription(product.getDescription());
+        response.setStatus(product.getStatus().toString());
+
+        // Brand info
+        response.setBrand(product.getBrand().getName());
+        response.setBrandId(product.getBrand().getId());
+
+        // Category info
+        response.setCategoryName(product.getCategory().getName());
+        response.setCategoryId(product.getCategory().getId());
+
+        // Supplier info
+        response.setSupplierName(product.getSupplier().getName());
+        response.setSupplierId(product.getSupplier().getId());
+
+        // Price, stock, images (copied so the cached response holds no Hibernate collections)
+        response.setProductPrices(new ArrayList<>(product.getProductPrices()));
+        response.setInventories(new ArrayList<>(product.getInventories()));
+        response.setProductImages(new ArrayList<>(product.getProductImages()));
+        response.setProductSpecs(new ArrayList<>(product.getProductSpecs()));
+
+        // Current price and stock
+        if (!product.getProductPrices().isEmpty()) {
+            ProductPrice currentPrice = product.getProductPrices().stream()
+                .filter(p -> Boolean.TRUE.equals(p.getIsCurrent()))
+                .findFirst()
+                .orElse(product.getProductPrices().get(0));
+            response.setPrice(currentPrice.getPrice());
+        }
+
+        // Tổng mọi dòng tồn kho: sản phẩm đã chia shard có nhiều dòng
+        if (!product.getInventories().isEmpty()) {
+            response.setStockQuantity(product.getStockQuantity());
+        }
+
+        // Primary image
+        if (!product.getProductImages().isEmpty()) {
+            String primaryImage = product.getProductImages().stream()
+                .filter(img -> Boolean.TRUE.equals(img.getIsPrimary()))
+                .map(ProductImage::getImageUrl)
+                .findFirst()
+                .orElse(product.getProductImages().get(0).getImageUrl());
+            response.setImageUrl(primaryImage);
+        }
+
+        // CreatedAt
+        response.setCreatedAt(product.getCreatedAt());
+
+        return response;
+    }
+
     public List<Product> searchProducts(String name) {
-        return productRepository.findByNameContainingIgnoreCase(name);
+        if (!searchIndex.isReady()) {
+            return productRepository.findByNameContainingIgnoreCase(name);
+        }
+        List<Long> rankedIds = searchIndex.search(name, MAX_SEARCH_HITS);
+        Map<Long, Product> products = productRepository.findAllById(rankedIds).stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        return rankedIds.stream().map(products::get).filter(Objects::nonNull).toList();
     }
 
     public Product saveProduct(Product product) {
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        productDetailCache.invalidate(saved.getId());
+        afterCommit(() -> {
+            categoryTreeCache.onProductSaved(saved);
+            searchIndex.index(saved);
+            facetIndex.index(saved);
+        });
+        return saved;
+    }
+
+    // Các index trong bộ nhớ chỉ cập nhật khi thay đổi đã commit, tránh lệch khỏi DB nếu transaction rollback
+    private void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+
+    /**
+     * Lưu sản phẩm từ form admin và đặt tổng tồn kho ({@code stockQuantity} null = giữ nguyên) trong một transaction,
+     * để dòng sổ tồn kho (OPENING khi tạo, ADJUSTMENT khi sửa) commit hoặc rollback cùng thay đổi tồn kho.
+     */
+    @Transactional
+    public Product saveProduct(Product product, Integer stockQuantity) {
+        boolean created = product.getId() == null;
+        Product saved = saveProduct(product);
+        if (stockQuantity != null) {
+            inventoryService.setProductStock(saved, stockQuantity,
+                    created ? InventoryMovementType.OPENING : InventoryMovementType.ADJUSTMENT,
+                    created ? "Tạo sản phẩm" : "Cập nhật sản phẩm");
+        }
+        return saved;
     }
 
     public void deleteProduct(Long id) {
         Product product = productRepository.findById(id)
             .orElse(null);
         product.setStatus(ProductStatus.DISCONTINUED);
-        productRepository.save(product);
+        saveProduct(product);
     }
 
-        public Page<ProductResponse> searchProducts(
+    public Page<ProductResponse> searchProducts(
             String name, String category, String brand, String supplier,
-            Double minPrice, Double maxPrice, String status,
+            Double minPrice, Double maxPrice, Double minRating, String status,
             int page, int size, String sortBy, String order
-        ) {
+    ) {
+        Specification<Product> spec = buildSearchSpecification(
+                name, category, brand, supplier, minPrice, maxPrice, minRating, status, sortBy, order);
+        Page<Product> productPage = productRepository.findAll(spec, buildSearchPageable(page, size, sortBy, order));
+
+        // Load rating summaries for the whole page in one query
+        List<Long> productIds = productPage.getContent().stream().map(Product::getId).toList();
+        Map<Long, ProductRatingSummary> ratings = productIds.isEmpty() ? Map.of()
+                : ratingSummaryRepository.findByProductIdIn(productIds).stream()
+                        .collect(Collectors.toMap(ProductRatingSummary::getProductId, Function.identity()));
+
+        return productPage.map(p -> toProductResponse(p, ratings.get(p.getId())));
+    }
+
+    // Lean listing mode: one tuple projection per page instead of entities with lazy collections
+    public Page<ProductCardResponse> searchProductCards(
+            String name, String category, String brand, String supplier,
+            Double minPrice, Double maxPrice, Double minRating, String status,
+            int page, int size, String sortBy, String order
+    ) {
+        Specification<Product> spec = buildSearchSpecification(
+                name, category, brand, supplier, minPrice, maxPrice, minRating, status, sortBy, order);
+        return productRepository.findCards(spec, buildSearchPageable(page, size, sortBy, order));
+    }
+
+    // Keyset mode: seek past the `after` cursor instead of OFFSET, and never run a count query
+    public CursorPageResponse<ProductCardResponse> searchProductCardsAfter(
+            String name, String category, String brand, String supplier,
+            Double minPrice, Double maxPrice, Double minRating, String status,
+            String after, int size, String sortBy, String order
+    ) {
+        boolean descending = order.equalsIgnoreCase("desc");
+        Specification<Product> spec = buildSearchSpecification(
+                name, category, brand, supplier, minPrice, maxPrice, minRating, status, null, order)
+                .and(buildSeekSpecification(sortBy, descending, KeysetCursor.decode(after, sortBy, descending)));
+
+        return CursorPageResponse.of(productRepository.findCards(spec, size + 1), size,
+                card -> KeysetCursor.of(sortBy, descending, card.getId(), cursorValue(sortBy,
+                        card.getId(), card.getCreatedAt(), card.getName(), card.getPrice())).encode());
+    }
+
+    public CursorPageResponse<ProductResponse> searchProductsAfter(
+            String name, String category, String brand, String supplier,
+            Double minPrice, Double maxPrice, Double minRating, String status,
+            String after, int size, String sortBy, String order
+    ) {
+        boolean descending = order.equalsIgnoreCase("desc");
+        Specification<Product> spec = buildSearchSpecification(
+                name, category, brand, supplier, minPrice, maxPrice, minRating, status, null, order)
+                .and(buildSeekSpecification(sortBy, descending, KeysetCursor.decode(after, sortBy, descending)));
+
+        // Con trỏ dựng từ giá trị khoá sắp xếp của entity, không từ giá hiển thị (có fallback sang productPrices)
+        CursorPageResponse<Product> page = CursorPageResponse.of(
+                productRepository.findBy(spec, q -> q.limit(size + 1).all()), size,
+                p -> KeysetCursor.of(sortBy, descending, p.getId(), cursorValue(sortBy,
+                        p.getId(), p.getCreatedAt(), p.getName(), p.getSortPrice())).encode());
+        List<Long> productIds = page.getContent().stream().map(Product::getId).toList();
+        Map<Long, ProductRatingSummary> ratings = productIds.isEmpty() ? Map.of()
+                : ratingSummaryRepository.findByProductIdIn(productIds).stream()
+                        .collect(Collectors.toMap(ProductRatingSummary::getProductId, Function.identity()));
+
+        return new CursorPageResponse<>(
+                page.getContent().stream().map(p -> toProductResponse(p, ratings.get(p.getId()))).toList(),
+                page.getSize(), page.isHasNext(), page.getNextCursor());
+    }
+
+    // Đếm facet cho sidebar trong một lần gọi, dùng cùng bộ lọc với searchProducts
+    public ProductFacetResponse getFacets(String name, String category, String brand, String supplier,
+                                          Double minPrice, Double maxPrice, String status) {
+        return facetIndex.facets(name, category, brand, supplier, minPrice, maxPrice, status);
+    }
+
+    private Specification<Product> buildSearchSpecification(
+            String name, String category, String brand, String supplier,
+            Double minPrice, Double maxPrice, Double minRating, String status,
+            String sortBy, String order
+    ) {
         Specification<Product> spec = null;
+        List<Long> rankedIds = null;
 
         if (name != null) {
-            spec = ProductSpecification.hasName(name);
+            // Dùng chỉ mục không dấu + BM25; chỉ quay về LIKE khi chỉ mục chưa dựng xong
+            if (searchIndex.isReady()) {
+                rankedIds = searchIndex.search(name, MAX_SEARCH_HITS);
+                spec = ProductSpecification.hasIdIn(rankedIds);
+            } else {
+                spec = ProductSpecification.hasName(name);
+            }
         }
         if (category != null) {
             spec = (spec == null ? ProductSpecification.hasCategory(category)
@@ -75,6 +311,10 @@ public class ProductService {
             spec = (spec == null ? ProductSpecification.hasPriceBetween(minPrice, maxPrice)
                     : spec.and(ProductSpecification.hasPriceBetween(minPrice, maxPrice)));
         }
+        if (minRating != null) {
+            spec = (spec == null ? ProductSpecification.hasMinRating(minRating)
+                    : spec.and(ProductSpecification.hasMinRating(minRating)));
+        }
         // Default: only show ACTIVE products if status not specified
         if (status != null) {
             spec = (spec == null ? ProductSpecification.hasStatus(status)
@@ -85,86 +325,84 @@ public class ProductService {
                 : spec.and(ProductSpecification.hasStatus("ACTIVE")));
         }
 
-        // Handle sorting by price specially because `price` is not a direct Product field
-        if ("price".equalsIgnoreCase(sortBy)) {
-            // load all matching products, sort in-memory by current price, then page
-            List<Product> matched = productRepository.findAll(spec);
-            matched.sort((a, b) -> {
-                int cmp = a.getCurrentPrice().compareTo(b.getCurrentPrice());
-                return order.equalsIgnoreCase("desc") ? -cmp : cmp;
-            });
-            int start = page * size;
-            int end = Math.min(start + size, matched.size());
-            List<Product> pageContent = start >= matched.size() ? List.of() : matched.subList(start, end);
-            Page<Product> productPage = new PageImpl<>(pageContent, PageRequest.of(page, size), matched.size());
-
-            return productPage.map(p -> {
-                Double avg = reviewRepository.getAverageRating(p.getId());
-                Long total = reviewRepository.getTotalReviews(p.getId());
-
-                ProductResponse response = new ProductResponse();
-                response.setId(p.getId());
-                response.setName(p.getName());
-                response.setBrand(p.getBrand().getName());
-                response.setBrandId(p.getBrand().getId());
-                response.setDescription(p.getDescription());
-                response.setPrice(p.getCurrentPrice());
-                response.setImageUrl(p.getPrimaryImageUrl());
-                response.setCategoryName(p.getCategory() != null ? p.getCategory().getName() : null);
-                response.setCategoryId(p.getCategory() != null ? p.getCategory().getId() : null);
-                response.setSupplierName(p.getSupplier() != null ? p.getSupplier().getName() : null);
-                response.setSupplierId(p.getSupplier() != null ? p.getSupplier().getId() : null);
-                response.setStatus(p.getStatus() != null ? p.getStatus().toString() : null);
-                response.setCreatedAt(p.getCreatedAt());
-                response.setStockQuantity(p.getStockQuantity());
-                response.setRating(avg != null ? avg : 0.0);
-                response.setNumOfRating(total != null ? total : 0L);
-
-                // Include inventories for admin to edit stock
-                response.setInventories(p.getInventories());
-                response.setProductImages(p.getProductImages());
-                response.setProductPrices(p.getProductPrices());
-                response.setProductSpecs(p.getProductSpecs());
-
-                return response;
-            });
+        if ("rating".equalsIgnoreCase(sortBy)) {
+            // rating lives in product_rating_summaries, ordering is applied by the specification
+            spec = spec.and(ProductSpecification.orderByRating(order.equalsIgnoreCase("desc")));
+        } else if ("relevance".equalsIgnoreCase(sortBy) && rankedIds != null) {
+            spec = spec.and(ProductSpecification.orderByRank(rankedIds));
         }
+        return spec;
+    }
 
-        Sort sort = Sort.by(order.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC, sortBy);
-        Pageable pageable = PageRequest.of(page, size, sort);
-
-        Page<Product> productPage = productRepository.findAll(spec, pageable);
-
-        return productPage.map(p -> {
-            Double avg = reviewRepository.getAverageRating(p.getId());
-            Long total = reviewRepository.getTotalReviews(p.getId());
-            
-            ProductResponse response = new ProductResponse();
-            response.setId(p.getId());
-            response.setName(p.getName());
-            response.setBrand(p.getBrand().getName());
-            response.setBrandId(p.getBrand().getId());
-            response.setDescription(p.getDescription());
-            response.setPrice(p.getCurrentPrice());
-            response.setImageUrl(p.getPrimaryImageUrl());
-            response.setCategoryName(p.getCategory() != null ? p.getCategory().getName() : null);
-            response.setCategoryId(p.getCategory() != null ? p.getCategory().getId() : null);
-            response.setSupplierName(p.getSupplier() != null ? p.getSupplier().getName() : null);
-            response.setSupplierId(p.getSupplier() != null ? p.getSupplier().getId() : null);
-            response.setStatus(p.getStatus() != null ? p.getStatus().toString() : null);
-            response.setCreatedAt(p.getCreatedAt());
-            response.setStockQuantity(p.getStockQuantity());
-            response.setRating(avg != null ? avg : 0.0);
-            response.setNumOfRating(total != null ? total : 0L);
-            
-            // Include inventories for admin to edit stock
-            response.setInventories(p.getInventories());
-            response.setProductImages(p.getProductImages());
-            response.setProductPrices(p.getProductPrices());
-            response.setProductSpecs(p.getProductSpecs());
-            
-            return response;
-        });
+    // Khoá sắp xếp cho chế độ keyset; price dùng coalesce để dòng chưa có giá vẫn có vị trí xác định
+    private Specification<Product> buildSeekSpecification(String sortBy, boolean descending, KeysetCursor cursor) {
+        String value = cursor != null ? cursor.value() : null;
+        Long afterId = cursor != null ? cursor.id() : null;
+        try {
+            return switch (sortBy) {
+                case "id" -> KeysetSpecification.seek((root, cb) -> root.<Long>get("id"),
+                        descending, value != null ? Long.valueOf(value) : null, afterId);
+                case "createdAt" -> KeysetSpecification.seek((root, cb) -> root.<LocalDateTime>get("createdAt"),
+                        descending, value != null ? LocalDateTime.parse(value) : null, afterId);
+                case "name" -> KeysetSpecification.seek((root, cb) -> root.<String>get("name"),
+                        descending, value, afterId);
+                case "price" -> KeysetSpecification.seek(
+                        (root, cb) -> cb.coalesce(root.<BigDecimal>get("currentPrice"), BigDecimal.ZERO),
+                        descending, value != null ? new BigDecimal(value) : null, afterId);
+                default -> throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                        "Cursor paging supports sortBy id, createdAt, name or price");
+            };
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    private Object cursorValue(String sortBy, Long id, LocalDateTime createdAt, String name, BigDecimal price) {
+        return switch (sortBy) {
+            case "createdAt" -> createdAt;
+            case "name" -> name;
+            // cùng giá trị với coalesce(currentPrice, 0) của buildSeekSpecification
+            case "price" -> price != null ? price.toPlainString() : "0";
+            default -> id;
+        };
+    }
+
+    private Pageable buildSearchPageable(int page, int size, String sortBy, String order) {
+        if ("rating".equalsIgnoreCase(sortBy) || "relevance".equalsIgnoreCase(sortBy)) {
+            return PageRequest.of(page, size);
+        }
+        // `price` maps to the denormalized current price column so it can be sorted in SQL
+        String sortProperty = "price".equalsIgnoreCase(sortBy) ? "currentPrice" : sortBy;
+        Sort sort = Sort.by(order.equalsIgnoreCase("desc") ? Sort.Direction.DESC : Sort.Direction.ASC, sortProperty);
+        return PageRequest.of(page, size, sort);
+    }
+
+    private ProductResponse toProductResponse(Product p, ProductRatingSummary rating) {
+        ProductResponse response = new ProductResponse();
+        response.setId(p.getId());
+        response.setName(p.getName());
+        response.setBrand(p.getBrand().getName());
+        response.setBrandId(p.getBrand().getId());
+        response.setDescription(p.getDescription());
+        response.setPrice(p.getCurrentPrice());
+        response.setImageUrl(p.getPrimaryImageUrl());
+        response.setCategoryName(p.getCategory() != null ? p.getCategory().getName() : null);
+        response.setCategoryId(p.getCategory() != null ? p.getCategory().getId() : null);
+        response.setSupplierName(p.getSupplier() != null ? p.getSupplier().getName() : null);
+        response.setSupplierId(p.getSupplier() != null ? p.getSupplier().getId() : null);
+        response.setStatus(p.getStatus() != null ? p.getStatus().toString() : null);
+        response.setCreatedAt(p.getCreatedAt());
+        response.setStockQuantity(p.getStockQuantity());
+        response.setRating(rating != null ? rating.getAverageRating() : 0.0);
+        response.setNumOfRating(rating != null ? rating.getReviewCount() : 0L);
+
+        // Include inventories for admin to edit stock
+        response.setInventories(p.getInventories());
+        response.setProductImages(p.getProductImages());
+        response.setProductPrices(p.getProductPrices());
+        response.setProductSpecs(p.getProductSpecs());
+
+        return response;
     }
 
     public List<Product> getProductsByCategory(Long categoryId) {
@@ -0,0 +1,147 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.Order;
+import iuh.fit.se.backend.entity.User;
+import iuh.fit.se.backend.repository.DailySalesRollupRepository;
+import iuh.fit.se.backend.repository.OrderRepository;
+import iuh.fit.se.backend.specification.OrderSpecification;
+import iuh.fit.se.backend.util.CsvWriter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Export CSV cho admin: đọc bằng cursor chỉ tiến (fetch size {@value #FETCH_SIZE}), chọn cột thay vì entity
+ * và ghi từng dòng thẳng ra response, nên bộ nhớ không tăng theo số dòng. Transaction chỉ đọc giữ connection
+ * trong suốt quá trình ghi.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReportExportService {
+
+    static final int FETCH_SIZE = 500;
+
+    public static final Set<String> ORDER_SORT_FIELDS = Set.of("id", "createdAt", "totalAmount", "totalQuantity");
+
+    private final EntityManager entityManager;
+    private final OrderRepository orderRepository;
+    private final DailySalesRollupRepository dailySalesRollupRepository;
+
+    // Gọi trước khi ghi header của response, để tham số sai vẫn trả được 400
+    public static void validateOrderSort(String sortBy) {
+        if (!ORDER_SORT_FIELDS.contains(sortBy)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Export supports sortBy " + ORDER_SORT_FIELDS);
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public long exportOrders(String customerName, String username, Long userId, String status,
+                             LocalDateTime fromDate, LocalDateTime toDate, Double minTotal, Double maxTotal,
+                             String sortBy, String sortDir, OutputStream out) throws IOException {
+        validateOrderSort(sortBy);
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Order> root = query.from(Order.class);
+        Join<Order, User> user = root.join("user");
+        query.multiselect(root.get("id"), root.get("createdAt"), root.get("status"), root.get("paymentMethod"),
+                root.get("paymentStatus"), user.get("username"), user.get("email"), root.get("fullName"),
+                root.get("phone"), root.get("address"), root.get("city"), root.get("totalQuantity"), root.get("totalAmount"));
+        Predicate predicate = OrderSpecification.search(customerName, username, userId, status,
+                fromDate, toDate, minTotal, maxTotal).toPredicate(root, query, cb);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        boolean descending = sortDir.equalsIgnoreCase("desc");
+        Path<?> sortPath = root.get(sortBy);
+        query.orderBy(descending ? cb.desc(sortPath) : cb.asc(sortPath),
+                descending ? cb.desc(root.get("id")) : cb.asc(root.get("id")));
+
+        CsvWriter csv = new CsvWriter(out);
+        csv.row("id", "created_at", "status", "payment_method", "payment_status", "username", "email",
+                "recipient", "phone", "address", "city", "total_quantity", "total_amount");
+        try (Stream<Object[]> rows = entityManager.createQuery(query)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, FETCH_SIZE)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream()) {
+            return write(csv, rows);
+        }
+    }
+
+    /**
+     * Doanh thu/đơn hàng theo ngày trong [startDate, endDate], đọc từ daily_sales_rollups; ngày không có đơn ghi 0.
+     */
+    @Transactional(readOnly = true)
+    public long exportDailyRevenue(LocalDate startDate, LocalDate endDate, OutputStream out) throws IOException {
+        validateRange(startDate, endDate);
+        CsvWriter csv = new CsvWriter(out);
+        csv.row("date", "total_orders", "fulfilled_orders", "pending_orders", "cancelled_orders", "units_sold", "revenue");
+        long count = 0;
+        LocalDate next = startDate;
+        try (Stream<Object[]> rows = dailySalesRollupRepository.streamDays(startDate, endDate.plusDays(1))) {
+            Iterator<Object[]> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Object[] row = iterator.next();
+                LocalDate day = (LocalDate) row[0];
+                for (; next.isBefore(day); next = next.plusDays(1), count++) {
+                    csv.row(next, 0, 0, 0, 0, 0, 0);
+                }
+                csv.row(row);
+                next = day.plusDays(1);
+                count++;
+            }
+        }
+        for (; !next.isAfter(endDate); next = next.plusDays(1), count++) {
+            csv.row(next, 0, 0, 0, 0, 0, 0);
+        }
+        csv.flush();
+        return count;
+    }
+
+    // Khách hàng theo doanh thu (PAID/SHIPPED/COMPLETED) trong [startDate, endDate], giảm dần
+    @Transactional(readOnly = true)
+    public long exportCustomerRevenue(LocalDate startDate, LocalDate endDate, OutputStream out) throws IOException {
+        validateRange(startDate, endDate);
+        CsvWriter csv = new CsvWriter(out);
+        csv.row("customer_id", "full_name", "email", "revenue", "order_count");
+        try (Stream<Object[]> rows = orderRepository.streamCustomerRevenueInRange(startDate.atStartOfDay(),
+                endDate.plusDays(1).atStartOfDay(), SalesRollupService.FULFILLED_STATUSES)) {
+            return write(csv, rows);
+        }
+    }
+
+    private static long write(CsvWriter csv, Stream<Object[]> rows) throws IOException {
+        long count = 0;
+        for (Iterator<Object[]> iterator = rows.iterator(); iterator.hasNext(); count++) {
+            csv.row(iterator.next());
+        }
+        csv.flush();
+        return count;
+    }
+
+    private static void validateRange(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null) {
+            throw new IllegalArgumentException("Start date and end date are required");
+        }
+        if (startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("Start date must be before or equal to end date");
+        }
+    }
+}
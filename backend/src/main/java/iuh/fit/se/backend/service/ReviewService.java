@@ -5,6 +5,7 @@ import iuh.fit.se.backend.dto.response.ReviewResponse;
 import iuh.fit.se.backend.entity.Product;
 import iuh.fit.se.backend.entity.Review;
 import iuh.fit.se.backend.entity.User;
+import iuh.fit.se.backend.repository.ProductRatingSummaryRepository;
 import iuh.fit.se.backend.repository.ProductRepository;
 import iuh.fit.se.backend.repository.ReviewRepository;
 import iuh.fit.se.backend.repository.UserRepository;
@@ -12,6 +13,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.util.List;
@@ -24,6 +26,7 @@ public class ReviewService {
     private final ReviewRepository reviewRepository;
     private final UserRepository userRepository;
     private final ProductRepository productRepository;
+    private final ProductRatingSummaryRepository ratingSummaryRepository;
     private final NotificationService notificationService;
 
     public List<ReviewResponse> getAll() {
@@ -59,6 +62,7 @@ public class ReviewService {
                 .orElse(null);
     }
 
+    @Transactional
     public ReviewResponse createReview(ReviewRequest dto) {
         User user = userRepository.findById(dto.getUserId())
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
@@ -73,13 +77,18 @@ public class ReviewService {
                 .build();
 
         Review saved = reviewRepository.save(review);
+        applyRatingDelta(product.getId(), saved.getRating(), 1);
         return toResponse(saved);
     }
 
+    @Transactional
     public ReviewResponse updateReview(Long id, ReviewRequest dto) {
         Review review = reviewRepository.findByIdWithUserAndProduct(id)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Review not found"));
 
+        Long oldProductId = review.getProduct().getId();
+        int oldRating = review.getRating();
+
         if (dto.getComment() != null) {
             review.setComment(dto.getComment());
         }
@@ -98,9 +107,17 @@ public class ReviewService {
         }
 
         Review saved = reviewRepository.save(review);
+
+        // Chuyển đánh giá cũ ra khỏi tổng hợp và cộng đánh giá mới vào
+        Long newProductId = saved.getProduct().getId();
+        if (!oldProductId.equals(newProductId) || oldRating != saved.getRating()) {
+            applyRatingDelta(oldProductId, oldRating, -1);
+            applyRatingDelta(newProductId, saved.getRating(), 1);
+        }
         return toResponse(saved);
     }
 
+    @Transactional
     public void deleteReview(Long id, String reason) {
         if (reason == null || reason.trim().isEmpty()) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Deletion reason is required");
@@ -113,10 +130,15 @@ public class ReviewService {
         Product product = review.getProduct();
 
         reviewRepository.delete(review);
+        applyRatingDelta(product.getId(), review.getRating(), -1);
         notificationService.createReviewDeletedNotification(user, product, reason.trim());
         log.info("Review {} deleted by admin. Reason: {}", id, reason.trim());
     }
 
+    private void applyRatingDelta(Long productId, int rating, int countDelta) {
+        ratingSummaryRepository.applyRatingDelta(productId, rating, countDelta);
+    }
+
     private ReviewResponse toResponse(Review review) {
         if (review == null) {
             return null;
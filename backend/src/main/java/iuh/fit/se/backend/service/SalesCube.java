@@ -0,0 +1,442 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.response.SalesCubeResponse;
+import iuh.fit.se.backend.repository.OrderItemRepository;
+import iuh.fit.se.backend.repository.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Khối dữ liệu bán hàng dạng cột trong bộ nhớ, để cắt lát tuỳ ý theo ngày/tháng/năm, sản phẩm, thương hiệu,
+ * danh mục, nhà cung cấp và khách hàng mà không phải viết thêm truy vấn SQL cho từng kiểu nhóm.
+ * Mỗi dòng là một dòng đơn của đơn PAID/SHIPPED/COMPLETED, lưu trong các mảng nguyên thuỷ song song; doanh thu
+ * lưu bằng đơn vị nhỏ nhất (x100) để cộng bằng long. Truy vấn chia các dòng thành khối và gom song song.
+ * <p>
+ * Đơn vào/ra nhóm được tính doanh thu được nối thêm dòng có số lượng dương/âm sau khi commit, nên mảng chỉ tăng;
+ * ngày bị SalesRollupService tính lại từ bảng gốc được nạp lại ở lần truy vấn kế tiếp, và toàn bộ khối được
+ * nạp lại mỗi đêm để xoá sai lệch.
+ */
+@Service
+@Slf4j
+public class SalesCube {
+
+    private static final int CHUNK_SIZE = 1 << 16;
+    private static final int MAX_LIMIT = 1000;
+
+    public enum Dimension {
+        DAY, MONTH, YEAR, PRODUCT, BRAND, CATEGORY, SUPPLIER, CUSTOMER;
+
+        public static Dimension parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("Unknown cube dimension '" + value + "', expected one of "
+                        + Arrays.toString(values()).toLowerCase(Locale.ROOT));
+            }
+        }
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    // Đơn đã commit vào (sign = 1) hoặc ra khỏi (sign = -1) nhóm được tính doanh thu
+    public record OrderLines(LocalDate day, Long customerId, int sign, List<Line> lines) {
+    }
+
+    public record Line(Long productId, Long brandId, Long categoryId, Long supplierId, int quantity, BigDecimal revenue) {
+    }
+
+    // Ngày vừa được tính lại từ orders/order_items
+    public record DayChanged(LocalDate day) {
+    }
+
+    private final OrderItemRepository orderItemRepository;
+    private final OrderRepository orderRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Set<LocalDate> staleDays = ConcurrentHashMap.newKeySet();
+    private Columns columns = new Columns();
+    // Ngày có đơn thay đổi trong lúc rebuild đang nạp (null khi không rebuild); chỉ đọc/ghi khi giữ write lock
+    private Set<LocalDate> changedDuringRebuild;
+
+    public SalesCube(OrderItemRepository orderItemRepository,
+                     OrderRepository orderRepository,
+                     PlatformTransactionManager transactionManager) {
+        this.orderItemRepository = orderItemRepository;
+        this.orderRepository = orderRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Nạp lại toàn bộ khối từ bảng gốc rồi tráo vào. Đơn commit trong lúc đang nạp có thể đã hoặc chưa nằm trong
+     * ảnh chụp mới, nên ngày của chúng được đánh dấu cũ sau khi tráo và nạp lại chính xác ở truy vấn kế tiếp;
+     * chỉ bỏ đánh dấu của những ngày đã bị tính lại trước khi bắt đầu nạp.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${app.reports.cube-rebuild-cron:0 0 4 * * *}")
+    public void rebuild() {
+        Set<LocalDate> covered;
+        lock.writeLock().lock();
+        try {
+            covered = new HashSet<>(staleDays);
+            changedDuringRebuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Columns loaded = new Columns();
+        try {
+            LocalDateTime earliest = orderRepository.findEarliestCreatedAt();
+            if (earliest != null) {
+                load(loaded, earliest.toLocalDate(), LocalDate.now().plusDays(1));
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().lock();
+            try {
+                changedDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            throw e;
+        }
+        lock.writeLock().lock();
+        try {
+            columns = loaded;
+            staleDays.removeAll(covered);
+            staleDays.addAll(changedDuringRebuild);
+            changedDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("📊 Sales cube built: {} order lines", loaded.size);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderLines(OrderLines event) {
+        int day = (int) event.day().toEpochDay();
+        long customer = id(event.customerId());
+        lock.writeLock().lock();
+        try {
+            for (Line line : event.lines()) {
+                columns.append(day, id(line.productId()), id(line.brandId()), id(line.categoryId()),
+                        id(line.supplierId()), customer, event.sign() * line.quantity(),
+                        event.sign() * toMinor(line.revenue()));
+            }
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(event.day());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDayChanged(DayChanged event) {
+        lock.writeLock().lock();
+        try {
+            staleDays.add(event.day());
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(event.day());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gom các dòng trong [startDate, endDate] (null = không giới hạn) khớp mọi bộ lọc theo các chiều groupBy,
+     * sắp theo doanh thu giảm dần. groupBy rỗng trả về một ô tổng.
+     */
+    public SalesCubeResponse query(List<Dimension> groupBy, LocalDate startDate, LocalDate endDate,
+                                   Map<Dimension, ? extends Set<Long>> filters, int limit) {
+        if (startDate != null && endDate != null && startDate.isAfter(endDate)) {
+            throw new IllegalArgumentException("Start date must be before or equal to end date");
+        }
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        Dimension[] dimensions = groupBy.stream().distinct().toArray(Dimension[]::new);
+        int startDay = startDate != null ? (int) startDate.toEpochDay() : Integer.MIN_VALUE;
+        int endDay = endDate != null ? (int) endDate.toEpochDay() : Integer.MAX_VALUE;
+        long[][] idFilters = new long[Dimension.values().length][];
+        filters.forEach((dimension, ids) -> {
+            if (ids != null && !ids.isEmpty()) {
+                idFilters[dimension.ordinal()] = ids.stream().mapToLong(Long::longValue).sorted().toArray();
+            }
+        });
+
+        if (!staleDays.isEmpty()) {
+            reloadStaleDays();
+        }
+        Map<Key, long[]> groups;
+        lock.readLock().lock();
+        try {
+            Columns data = columns;
+            int chunks = (data.size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            groups = IntStream.range(0, chunks).parallel()
+                    .mapToObj(chunk -> data.aggregate(chunk * CHUNK_SIZE, Math.min(data.size, (chunk + 1) * CHUNK_SIZE),
+                            dimensions, startDay, endDay, idFilters))
+                    .reduce(SalesCube::merge)
+                    .orElseGet(HashMap::new);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return toResponse(dimensions, groups, limit);
+    }
+
+    // Bỏ mọi dòng của các ngày bị tính lại (kể cả dòng vừa nối thêm) rồi nạp lại từ bảng gốc
+    private void reloadStaleDays() {
+        lock.writeLock().lock();
+        try {
+            List<LocalDate> days = new ArrayList<>(staleDays);
+            staleDays.removeAll(days);
+            if (days.isEmpty()) {
+                return;
+            }
+            int[] epochDays = days.stream().mapToInt(day -> (int) day.toEpochDay()).sorted().toArray();
+            columns.removeDays(epochDays);
+            for (LocalDate day : days) {
+                load(columns, day, day.plusDays(1));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void load(Columns target, LocalDate from, LocalDate to) {
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = orderItemRepository.streamSalesFacts(from.atStartOfDay(), to.atStartOfDay(),
+                    SalesRollupService.FULFILLED_STATUSES)) {
+                rows.forEach(row -> {
+                    int quantity = ((Number) row[6]).intValue();
+                    target.append((int) ((LocalDateTime) row[0]).toLocalDate().toEpochDay(),
+                            id(row[1]), id(row[2]), id(row[3]), id(row[4]), id(row[5]), quantity,
+                            toMinor(((BigDecimal) row[7]).multiply(BigDecimal.valueOf(quantity))));
+                });
+            }
+        });
+    }
+
+    private static Map<Key, long[]> merge(Map<Key, long[]> left, Map<Key, long[]> right) {
+        Map<Key, long[]> smaller = left.size() < right.size() ? left : right;
+        Map<Key, long[]> larger = smaller == left ? right : left;
+        smaller.forEach((key, metrics) -> larger.merge(key, metrics, (a, b) -> {
+            for (int i = 0; i < a.length; i++) {
+                a[i] += b[i];
+            }
+            return a;
+        }));
+        return larger;
+    }
+
+    private static SalesCubeResponse toResponse(Dimension[] dimensions, Map<Key, long[]> groups, int limit) {
+        // Nhóm mà các dòng âm đã triệt tiêu hết (đơn vào rồi ra khỏi nhóm doanh thu) thì bỏ
+        groups.values().removeIf(metrics -> metrics[0] == 0 && metrics[1] == 0 && metrics[2] == 0);
+        long totalQuantity = 0;
+        long totalRevenue = 0;
+        for (long[] metrics : groups.values()) {
+            totalQuantity += metrics[1];
+            totalRevenue += metrics[2];
+        }
+        List<SalesCubeResponse.Cell> cells = groups.entrySet().stream()
+                .sorted(Comparator.comparingLong((Map.Entry<Key, long[]> entry) -> entry.getValue()[2]).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .limit(limit)
+                .map(entry -> SalesCubeResponse.Cell.builder()
+                        .key(describe(dimensions, entry.getKey()))
+                        .lines(entry.getValue()[0])
+                        .quantity(entry.getValue()[1])
+                        .revenue(fromMinor(entry.getValue()[2]))
+                        .build())
+                .toList();
+        return SalesCubeResponse.builder()
+                .groupBy(Arrays.stream(dimensions).map(Dimension::key).toList())
+                .groups(groups.size())
+                .totalQuantity(totalQuantity)
+                .totalRevenue(fromMinor(totalRevenue))
+                .cells(cells)
+                .build();
+    }
+
+    private static Map<String, Object> describe(Dimension[] dimensions, Key key) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < dimensions.length; i++) {
+            long value = key.values()[i];
+            values.put(dimensions[i].key(), switch (dimensions[i]) {
+                case DAY -> LocalDate.ofEpochDay(value);
+                case MONTH -> YearMonth.of((int) (value / 100), (int) (value % 100));
+                case YEAR -> (int) value;
+                // 0 = không có (sản phẩm không gán thương hiệu, ...)
+                default -> value != 0 ? value : null;
+            });
+        }
+        return values;
+    }
+
+    private static long id(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
+
+    private static long toMinor(BigDecimal amount) {
+        return amount.movePointRight(2).setScale(0, RoundingMode.HALF_UP).longValueExact();
+    }
+
+    private static BigDecimal fromMinor(long amount) {
+        return BigDecimal.valueOf(amount, 2);
+    }
+
+    // Giá trị các chiều của một nhóm, theo thứ tự groupBy
+    private record Key(long[] values) implements Comparable<Key> {
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && Arrays.equals(values, key.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(values);
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            return Arrays.compare(values, other.values);
+        }
+    }
+
+    /**
+     * Các cột song song, chỉ sửa khi giữ write lock. Ngày lưu dạng epoch day; id null lưu là 0.
+     */
+    private static final class Columns {
+
+        private int size;
+        private int[] days = new int[1024];
+        private long[] products = new long[1024];
+        private long[] brands = new long[1024];
+        private long[] categories = new long[1024];
+        private long[] suppliers = new long[1024];
+        private long[] customers = new long[1024];
+        private int[] quantities = new int[1024];
+        private long[] revenues = new long[1024];
+
+        void append(int day, long product, long brand, long category, long supplier, long customer,
+                    int quantity, long revenue) {
+            if (size == days.length) {
+                int capacity = size * 2;
+                days = Arrays.copyOf(days, capacity);
+                products = Arrays.copyOf(products, capacity);
+                brands = Arrays.copyOf(brands, capacity);
+                categories = Arrays.copyOf(categories, capacity);
+                suppliers = Arrays.copyOf(suppliers, capacity);
+                customers = Arrays.copyOf(customers, capacity);
+                quantities = Arrays.copyOf(quantities, capacity);
+                revenues = Arrays.copyOf(revenues, capacity);
+            }
+            days[size] = day;
+            products[size] = product;
+            brands[size] = brand;
+            categories[size] = category;
+            suppliers[size] = supplier;
+            customers[size] = customer;
+            quantities[size] = quantity;
+            revenues[size] = revenue;
+            size++;
+        }
+
+        // Dồn các dòng còn giữ lên đầu mảng; sortedDays đã sắp xếp
+        void removeDays(int[] sortedDays) {
+            int kept = 0;
+            for (int i = 0; i < size; i++) {
+                if (Arrays.binarySearch(sortedDays, days[i]) >= 0) {
+                    continue;
+                }
+                days[kept] = days[i];
+                products[kept] = products[i];
+                brands[kept] = brands[i];
+                categories[kept] = categories[i];
+                suppliers[kept] = suppliers[i];
+                customers[kept] = customers[i];
+                quantities[kept] = quantities[i];
+                revenues[kept] = revenues[i];
+                kept++;
+            }
+            size = kept;
+        }
+
+        // metrics = {số dòng đơn (ròng), số lượng, doanh thu x100}
+        Map<Key, long[]> aggregate(int from, int to, Dimension[] dimensions, int startDay, int endDay, long[][] idFilters) {
+            Map<Key, long[]> groups = new HashMap<>();
+            for (int i = from; i < to; i++) {
+                int day = days[i];
+                if (day < startDay || day > endDay || !matches(i, idFilters)) {
+                    continue;
+                }
+                long[] values = new long[dimensions.length];
+                for (int d = 0; d < dimensions.length; d++) {
+                    values[d] = value(i, dimensions[d]);
+                }
+                long[] metrics = groups.computeIfAbsent(new Key(values), key -> new long[3]);
+                metrics[0] += Integer.signum(quantities[i]);
+                metrics[1] += quantities[i];
+                metrics[2] += revenues[i];
+            }
+            return groups;
+        }
+
+        private boolean matches(int row, long[][] idFilters) {
+            for (Dimension dimension : Dimension.values()) {
+                long[] allowed = idFilters[dimension.ordinal()];
+                if (allowed != null && Arrays.binarySearch(allowed, value(row, dimension)) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long value(int row, Dimension dimension) {
+            return switch (dimension) {
+                case DAY -> days[row];
+                case MONTH -> {
+                    LocalDate date = LocalDate.ofEpochDay(days[row]);
+                    yield date.getYear() * 100L + date.getMonthValue();
+                }
+                case YEAR -> LocalDate.ofEpochDay(days[row]).getYear();
+                case PRODUCT -> products[row];
+                case BRAND -> brands[row];
+                case CATEGORY -> categories[row];
+                case SUPPLIER -> suppliers[row];
+                case CUSTOMER -> customers[row];
+            };
+        }
+    }
+}
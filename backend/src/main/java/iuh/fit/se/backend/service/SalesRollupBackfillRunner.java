@@ -0,0 +1,51 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Backfill bảng tổng hợp doanh số khi khởi động với {@code --backfill-sales-rollup}
+ * (tuỳ chọn {@code --from=yyyy-MM-dd --to=yyyy-MM-dd}, mặc định từ đơn đầu tiên tới hôm nay).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SalesRollupBackfillRunner implements ApplicationRunner {
+
+    static final String OPTION = "backfill-sales-rollup";
+
+    private final SalesRollupService salesRollupService;
+    private final OrderRepository orderRepository;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!args.containsOption(OPTION)) {
+            return;
+        }
+        LocalDate to = option(args, "to");
+        LocalDate from = option(args, "from");
+        if (from == null) {
+            LocalDateTime earliest = orderRepository.findEarliestCreatedAt();
+            if (earliest == null) {
+                log.info("📊 No orders found, skipping sales rollup backfill");
+                return;
+            }
+            from = earliest.toLocalDate();
+        }
+        LocalDate end = (to != null ? to : LocalDate.now()).plusDays(1);
+        salesRollupService.rebuild(from, end);
+    }
+
+    private static LocalDate option(ApplicationArguments args, String name) {
+        List<String> values = args.getOptionValues(name);
+        return values == null || values.isEmpty() ? null : LocalDate.parse(values.get(0));
+    }
+}
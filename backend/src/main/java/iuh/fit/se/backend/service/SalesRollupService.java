@@ -0,0 +1,258 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.Order;
+import iuh.fit.se.backend.entity.OrderItem;
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.repository.DailyProductSalesRepository;
+import iuh.fit.se.backend.repository.DailySalesRollupRepository;
+import iuh.fit.se.backend.repository.OrderItemRepository;
+import iuh.fit.se.backend.repository.OrderRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Duy trì daily_sales_rollups và daily_product_sales theo ngày tạo đơn.
+ * Đơn mới, đổi trạng thái và xoá đơn cộng/trừ delta bằng upsert nguyên tử trong transaction của đơn;
+ * thay đổi khó tính delta (sửa dòng đơn) thì tính lại cả ngày từ bảng gốc. {@link #rebuild} dùng để backfill.
+ */
+@Service
+@Slf4j
+public class SalesRollupService {
+
+    // Các trạng thái được tính doanh thu / số lượng bán, khớp với các service báo cáo
+    public static final List<OrderStatus> FULFILLED_STATUSES = List.of(
+            OrderStatus.PAID,
+            OrderStatus.SHIPPED,
+            OrderStatus.COMPLETED
+    );
+
+    private final DailySalesRollupRepository dailySalesRollupRepository;
+    private final DailyProductSalesRepository dailyProductSalesRepository;
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public SalesRollupService(DailySalesRollupRepository dailySalesRollupRepository,
+                              DailyProductSalesRepository dailyProductSalesRepository,
+                              OrderRepository orderRepository,
+                              OrderItemRepository orderItemRepository,
+                              PlatformTransactionManager transactionManager,
+                              ApplicationEventPublisher eventPublisher) {
+        this.dailySalesRollupRepository = dailySalesRollupRepository;
+        this.dailyProductSalesRepository = dailyProductSalesRepository;
+        this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(Order order) {
+        apply(order, null, order.getStatus());
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordStatusChange(Order order, OrderStatus from, OrderStatus to) {
+        if (from != to) {
+            apply(order, from, to);
+        }
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRemoved(Order order) {
+        apply(order, order.getStatus(), null);
+    }
+
+    /**
+     * Đổi trạng thái hàng loạt (UPDATE theo lô, không nạp đơn): chỉ số đơn theo trạng thái thay đổi nên chỉ
+     * cần số đơn theo ngày; nếu chuyển qua lại nhóm được tính doanh thu thì tính lại các ngày bị ảnh hưởng.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordBulkStatusChange(Collection<Long> orderIds, OrderStatus from, OrderStatus to) {
+        if (orderIds.isEmpty() || from == to) {
+            return;
+        }
+        eventPublisher.publishEvent(new DashboardReportService.DataChanged("orders"));
+        List<Object[]> rows = orderRepository.countByCreatedDateForIds(orderIds);
+        if (isFulfilled(from) != isFulfilled(to)) {
+            rows.forEach(row -> refreshDay(toLocalDate(row[0])));
+            return;
+        }
+        for (Object[] row : rows) {
+            long count = ((Number) row[1]).longValue();
+            long[] buckets = new long[3];
+            buckets[bucket(from)] -= count;
+            buckets[bucket(to)] += count;
+            dailySalesRollupRepository.applyDelta(toLocalDate(row[0]), 0,
+                    buckets[0], buckets[1], buckets[2], BigDecimal.ZERO, 0);
+        }
+    }
+
+    /**
+     * Tính lại một ngày từ orders/order_items. Khoá dòng của ngày trước, rồi so dòng ngày với bảng gốc và cộng
+     * phần chênh lệch (như CustomerLeaderboardService) thay vì ghi đè: ở REPEATABLE READ dòng ngày và bảng gốc được
+     * đọc từ cùng một ảnh chụp, nên delta của đơn commit sau ảnh chụp (đã nằm trong dòng) được giữ nguyên; ở
+     * READ COMMITTED khoá dòng giữ cho đơn khác không ghi xen vào giữa hai lần đọc.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void refreshDay(LocalDate day) {
+        eventPublisher.publishEvent(new DashboardReportService.DataChanged("orders"));
+        eventPublisher.publishEvent(new SalesCube.DayChanged(day));
+        dailySalesRollupRepository.lockDay(day);
+        LocalDateTime start = day.atStartOfDay();
+        LocalDateTime end = day.plusDays(1).atStartOfDay();
+
+        Object[] summary = orderRepository.summarizeCreatedBetween(start, end, FULFILLED_STATUSES,
+                OrderStatus.PENDING, OrderStatus.CANCELLED).get(0);
+        Object[] current = dailySalesRollupRepository.findTotals(day).stream().findFirst()
+                .orElse(new Object[]{0L, 0L, 0L, 0L, BigDecimal.ZERO, 0L});
+        dailySalesRollupRepository.applyDelta(day,
+                toLong(summary[0]) - toLong(current[0]),
+                toLong(summary[1]) - toLong(current[1]),
+                toLong(summary[2]) - toLong(current[2]),
+                toLong(summary[3]) - toLong(current[3]),
+                toBigDecimal(summary[4]).subtract(toBigDecimal(current[4])),
+                toLong(summary[5]) - toLong(current[5]));
+
+        // productId -> {số lượng, doanh thu}; theo thứ tự id để các transaction khoá dòng cùng một thứ tự
+        Map<Long, Object[]> deltas = new TreeMap<>();
+        for (Object[] row : orderItemRepository.sumByProductForOrdersCreatedBetween(start, end, FULFILLED_STATUSES)) {
+            deltas.put((Long) row[0], new Object[]{toLong(row[1]), toBigDecimal(row[2])});
+        }
+        for (Object[] row : dailyProductSalesRepository.findTotals(day)) {
+            Object[] delta = deltas.computeIfAbsent((Long) row[0], id -> new Object[]{0L, BigDecimal.ZERO});
+            delta[0] = (Long) delta[0] - toLong(row[1]);
+            delta[1] = ((BigDecimal) delta[1]).subtract(toBigDecimal(row[2]));
+        }
+        deltas.forEach((productId, delta) -> {
+            if ((Long) delta[0] != 0 || ((BigDecimal) delta[1]).signum() != 0) {
+                dailyProductSalesRepository.applyDelta(day, productId, (Long) delta[0], (BigDecimal) delta[1]);
+            }
+        });
+        dailyProductSalesRepository.deleteEmpty(day);
+    }
+
+    /**
+     * Backfill: tính lại mọi ngày trong [from, to) có đơn hoặc đã có dòng tổng hợp, mỗi ngày một transaction
+     * để không giữ khoá lâu.
+     * @return số ngày đã tính lại
+     */
+    public int rebuild(LocalDate from, LocalDate to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Start date must be before end date");
+        }
+        Set<LocalDate> days = new TreeSet<>(dailySalesRollupRepository.findDatesBetween(from, to));
+        for (Object value : orderRepository.findOrderDatesBetween(from.atStartOfDay(), to.atStartOfDay())) {
+            days.add(toLocalDate(value));
+        }
+        for (LocalDate day : days) {
+            transactionTemplate.executeWithoutResult(status -> refreshDay(day));
+        }
+        log.info("📊 Rebuilt daily sales rollup for {} days in [{}, {})", days.size(), from, to);
+        return days.size();
+    }
+
+    // Delta của đơn khi chuyển từ trạng thái from sang to (null = chưa tồn tại / đã bị xoá)
+    private void apply(Order order, OrderStatus from, OrderStatus to) {
+        // Mọi thay đổi đơn hàng đều đi qua đây, nên đây cũng là nơi báo dashboard bỏ snapshot
+        eventPublisher.publishEvent(new DashboardReportService.DataChanged("orders"));
+        LocalDate day = order.getCreatedAt().toLocalDate();
+        long[] buckets = new long[3];
+        long total = 0;
+        if (from != null) {
+            buckets[bucket(from)]--;
+            total--;
+        }
+        if (to != null) {
+            buckets[bucket(to)]++;
+            total++;
+        }
+        int sign = Integer.compare(isFulfilled(to) ? 1 : 0, isFulfilled(from) ? 1 : 0);
+        BigDecimal revenue = BigDecimal.ZERO;
+        long units = 0;
+        if (sign != 0) {
+            revenue = order.getTotalAmount().multiply(BigDecimal.valueOf(sign));
+            units = (long) sign * order.getTotalQuantity();
+        }
+        dailySalesRollupRepository.applyDelta(day, total, buckets[0], buckets[1], buckets[2], revenue, units);
+        if (sign == 0) {
+            return;
+        }
+        // Theo thứ tự id sản phẩm để các transaction khoá dòng cùng một thứ tự
+        Map<Long, long[]> unitsByProduct = new TreeMap<>();
+        Map<Long, BigDecimal> revenueByProduct = new TreeMap<>();
+        List<SalesCube.Line> lines = new ArrayList<>();
+        for (OrderItem item : order.getOrderItems()) {
+            Product product = item.getProduct();
+            BigDecimal itemRevenue = item.getPrice().multiply(BigDecimal.valueOf(item.getQuantity()));
+            unitsByProduct.computeIfAbsent(product.getId(), id -> new long[1])[0] += item.getQuantity();
+            revenueByProduct.merge(product.getId(), itemRevenue, BigDecimal::add);
+            lines.add(new SalesCube.Line(product.getId(),
+                    product.getBrand() != null ? product.getBrand().getId() : null,
+                    product.getCategory() != null ? product.getCategory().getId() : null,
+                    product.getSupplier() != null ? product.getSupplier().getId() : null,
+                    item.getQuantity(), itemRevenue));
+        }
+        eventPublisher.publishEvent(new SalesCube.OrderLines(day,
+                order.getUser() != null ? order.getUser().getId() : null, sign, lines));
+        unitsByProduct.forEach((productId, productUnits) ->
+                dailyProductSalesRepository.applyDelta(day, productId, sign * productUnits[0],
+                        revenueByProduct.get(productId).multiply(BigDecimal.valueOf(sign))));
+    }
+
+    // 0 = chờ xử lý, 1 = hoàn tất (được tính doanh thu), 2 = đã huỷ
+    private static int bucket(OrderStatus status) {
+        if (status == OrderStatus.PENDING) {
+            return 0;
+        }
+        return status == OrderStatus.CANCELLED ? 2 : 1;
+    }
+
+    private static boolean isFulfilled(OrderStatus status) {
+        return status != null && FULFILLED_STATUSES.contains(status);
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate localDate) {
+            return localDate;
+        }
+        if (value instanceof Date sqlDate) {
+            return sqlDate.toLocalDate();
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime.toLocalDate();
+        }
+        throw new IllegalArgumentException("Unsupported date value: " + value);
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+
+    // Không đi qua double để không mất độ chính xác của số tiền
+    private static BigDecimal toBigDecimal(Object value) {
+        if (value instanceof BigDecimal decimal) {
+            return decimal;
+        }
+        return value instanceof Number number ? new BigDecimal(number.toString()) : BigDecimal.ZERO;
+    }
+}
@@ -0,0 +1,135 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.DailySalesSketch;
+import iuh.fit.se.backend.repository.DailySalesSketchRepository;
+import iuh.fit.se.backend.repository.OrderItemRepository;
+import iuh.fit.se.backend.repository.OrderRepository;
+import iuh.fit.se.backend.util.HyperLogLog;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Duy trì daily_sales_sketches (HyperLogLog sản phẩm / khách hàng theo ngày tạo đơn) và gộp chúng để đếm
+ * xấp xỉ số phân biệt của một khoảng: chi phí chỉ phụ thuộc số ngày, không phụ thuộc số đơn.
+ * Đơn mới được gộp vào sketch ngay trước khi transaction của đơn commit, đọc dòng của ngày có khoá nên thấy
+ * bản đã commit mới nhất (đọc thường ở REPEATABLE READ trả về ảnh chụp cũ và ghi đè mất phần của đơn khác).
+ * HyperLogLog không xoá được phần tử nên đơn rời nhóm doanh thu / ngày được tính lại thì dựng lại sketch của
+ * cả ngày sau khi commit, trong transaction mới: khoá dòng trước rồi mới đọc bảng gốc nên thấy mọi đơn đã commit.
+ */
+@Service
+public class SalesSketchService {
+
+    public record DistinctCounts(long products, long customers) {
+    }
+
+    private static final byte[] EMPTY = new HyperLogLog().toBytes();
+
+    private final DailySalesSketchRepository dailySalesSketchRepository;
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    public SalesSketchService(DailySalesSketchRepository dailySalesSketchRepository,
+                              OrderRepository orderRepository,
+                              OrderItemRepository orderItemRepository,
+                              PlatformTransactionManager transactionManager) {
+        this.dailySalesSketchRepository = dailySalesSketchRepository;
+        this.orderRepository = orderRepository;
+        this.orderItemRepository = orderItemRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onOrderLines(SalesCube.OrderLines event) {
+        if (event.sign() < 0) {
+            return;
+        }
+        DailySalesSketch sketch = lockDay(event.day());
+        HyperLogLog products = HyperLogLog.fromBytes(sketch.getProducts());
+        event.lines().forEach(line -> products.add(line.productId()));
+        HyperLogLog customers = HyperLogLog.fromBytes(sketch.getCustomers());
+        if (event.customerId() != null) {
+            customers.add(event.customerId());
+        }
+        sketch.setProducts(products.toBytes());
+        sketch.setCustomers(customers.toBytes());
+        dailySalesSketchRepository.save(sketch);
+    }
+
+    // Đơn rời nhóm doanh thu: tính lại sketch của cả ngày
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onOrderLinesRemoved(SalesCube.OrderLines event) {
+        if (event.sign() < 0) {
+            transactionTemplate.executeWithoutResult(status -> refreshDay(event.day()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onDayChanged(SalesCube.DayChanged event) {
+        transactionTemplate.executeWithoutResult(status -> refreshDay(event.day()));
+    }
+
+    // Dựng lại sketch của một ngày từ orders/order_items; ngày không còn đơn nào được tính thì xoá dòng
+    private void refreshDay(LocalDate day) {
+        DailySalesSketch sketch = lockDay(day);
+        HyperLogLog products = new HyperLogLog();
+        for (Object[] row : orderItemRepository.sumByProductForOrdersCreatedBetween(day.atStartOfDay(),
+                day.plusDays(1).atStartOfDay(), SalesRollupService.FULFILLED_STATUSES)) {
+            products.add((Long) row[0]);
+        }
+        HyperLogLog customers = new HyperLogLog();
+        for (Long customerId : orderRepository.findCustomerIdsCreatedBetween(day.atStartOfDay(),
+                day.plusDays(1).atStartOfDay(), SalesRollupService.FULFILLED_STATUSES)) {
+            customers.add(customerId);
+        }
+        if (products.isEmpty() && customers.isEmpty()) {
+            dailySalesSketchRepository.delete(sketch);
+            return;
+        }
+        sketch.setProducts(products.toBytes());
+        sketch.setCustomers(customers.toBytes());
+        dailySalesSketchRepository.save(sketch);
+    }
+
+    // Dòng của ngày (tạo rỗng nếu chưa có), đã khoá tới khi transaction kết thúc
+    private DailySalesSketch lockDay(LocalDate day) {
+        dailySalesSketchRepository.insertIfAbsent(day, EMPTY);
+        return dailySalesSketchRepository.findByIdForUpdate(day).orElseThrow();
+    }
+
+    // Số sản phẩm / khách hàng khác nhau xấp xỉ trong [start, end)
+    @Transactional(readOnly = true)
+    public DistinctCounts estimate(LocalDate start, LocalDate end) {
+        HyperLogLog products = new HyperLogLog();
+        HyperLogLog customers = new HyperLogLog();
+        for (DailySalesSketch sketch : dailySalesSketchRepository.findBySalesDateGreaterThanEqualAndSalesDateLessThan(start, end)) {
+            products.merge(HyperLogLog.fromBytes(sketch.getProducts()));
+            customers.merge(HyperLogLog.fromBytes(sketch.getCustomers()));
+        }
+        return new DistinctCounts(products.estimate(), customers.estimate());
+    }
+
+    // Số sản phẩm khác nhau xấp xỉ theo từng nhóm ngày (tháng, năm, ...) trong [start, end)
+    @Transactional(readOnly = true)
+    public <K> Map<K, Long> estimateDistinctProducts(LocalDate start, LocalDate end, Function<LocalDate, K> bucket) {
+        Map<K, HyperLogLog> sketches = new HashMap<>();
+        for (Object[] row : dailySalesSketchRepository.findProductSketches(start, end)) {
+            sketches.computeIfAbsent(bucket.apply((LocalDate) row[0]), key -> new HyperLogLog())
+                    .merge(HyperLogLog.fromBytes((byte[]) row[1]));
+        }
+        Map<K, Long> estimates = new HashMap<>();
+        sketches.forEach((key, sketch) -> estimates.put(key, sketch.estimate()));
+        return estimates;
+    }
+}
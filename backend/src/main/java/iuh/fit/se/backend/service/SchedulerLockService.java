@@ -0,0 +1,69 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.SchedulerLock;
+import iuh.fit.se.backend.repository.SchedulerLockRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Lease trong database (bảng scheduler_locks) để một tác vụ @Scheduled chỉ chạy trên một node tại một thời điểm.
+ * Mỗi thao tác chạy trong transaction riêng để lease có hiệu lực ngay với các node khác.
+ */
+@Service
+@Slf4j
+public class SchedulerLockService {
+
+    private final SchedulerLockRepository schedulerLockRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Định danh node hiện tại: tên JVM (pid@host) + hậu tố ngẫu nhiên để hai instance trên cùng máy không trùng
+    private final String owner = ManagementFactory.getRuntimeMXBean().getName() + "/" + UUID.randomUUID().toString().substring(0, 8);
+
+    public SchedulerLockService(SchedulerLockRepository schedulerLockRepository,
+                                PlatformTransactionManager transactionManager) {
+        this.schedulerLockRepository = schedulerLockRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public boolean tryAcquire(String name, Duration lease) {
+        if (acquire(name, lease)) {
+            return true;
+        }
+        // Lần đầu chưa có dòng lease: tạo dòng đã hết hạn rồi thử lại; node khác tạo trước thì bỏ qua lỗi trùng khoá
+        if (!Boolean.TRUE.equals(transactionTemplate.execute(status -> schedulerLockRepository.existsById(name)))) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> schedulerLockRepository.saveAndFlush(
+                        SchedulerLock.builder().name(name).lockedUntil(LocalDateTime.now().minusSeconds(1)).build()));
+            } catch (DataIntegrityViolationException e) {
+                log.debug("Scheduler lock {} was created by another node", name);
+            }
+            return acquire(name, lease);
+        }
+        return false;
+    }
+
+    public void release(String name) {
+        transactionTemplate.executeWithoutResult(status ->
+                schedulerLockRepository.release(name, owner, LocalDateTime.now()));
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    private boolean acquire(String name, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        Integer updated = transactionTemplate.execute(status ->
+                schedulerLockRepository.tryAcquire(name, owner, now, now.plus(lease)));
+        return updated != null && updated == 1;
+    }
+}
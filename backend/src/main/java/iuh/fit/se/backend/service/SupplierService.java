@@ -12,6 +12,7 @@ import java.util.List;
 @RequiredArgsConstructor
 public class SupplierService {
     private final SupplierRepository supplierRepository;
+    private final ProductDetailCache productDetailCache;
 
     public List<Supplier> getAllSuppliers() {
         return supplierRepository.findAll();
@@ -26,7 +27,10 @@ public class SupplierService {
         if (supplier.getStatus() == null) {
             supplier.setStatus(Status.ACTIVE);
         }
-        return supplierRepository.save(supplier);
+        Supplier saved = supplierRepository.save(supplier);
+        // Tên nhà cung cấp nằm trong ProductResponse đã cache, đổi tên thì xoá toàn bộ (thao tác admin hiếm)
+        productDetailCache.clear();
+        return saved;
     }
 
     public void deleteSupplier(Long id) {
@@ -7,6 +7,7 @@ import iuh.fit.se.backend.entity.Order;
 import iuh.fit.se.backend.entity.Payment;
 import iuh.fit.se.backend.entity.enums.OrderStatus;
 import iuh.fit.se.backend.entity.enums.PaymentMethod;
+import iuh.fit.se.backend.entity.enums.PaymentStatus;
 import iuh.fit.se.backend.repository.OrderRepository;
 import iuh.fit.se.backend.repository.PaymentRepository;
 import iuh.fit.se.backend.util.VNPayUtil;
@@ -33,6 +34,18 @@ public class VNPayService {
     private final OrderRepository orderRepository;
     private final PaymentRepository paymentRepository;
     private final OrderService orderService;
+    private final IdempotencyStore idempotencyStore;
+    private final SalesRollupService salesRollupService;
+
+    /**
+     * Tạo URL thanh toán theo Idempotency-Key: retry cùng key nhận lại đúng URL (và vnp_TxnRef) lần đầu
+     * thay vì sinh mã giao dịch mới ghi đè lên đơn. Chỉ giữ kết quả thành công (code "00").
+     */
+    public IdempotencyStore.Result<VNPayPaymentResponse> createPayment(
+            VNPayPaymentRequest request, HttpServletRequest httpRequest, String idempotencyKey) {
+        return idempotencyStore.execute("vnpay:" + request.getOrderId(), idempotencyKey, request, VNPayPaymentResponse.class,
+                () -> createPayment(request, httpRequest), response -> "00".equals(response.getCode()));
+    }
 
     public VNPayPaymentResponse createPayment(VNPayPaymentRequest request, HttpServletRequest httpRequest) {
         try {
@@ -50,11 +63,8 @@ public class VNPayService {
                 // Amount from frontend (already in VND)
                 amount = request.getAmount() * 100;
             } else {
-                // Calculate total amount from order items
-                BigDecimal totalAmount = order.getOrderItems().stream()
-                        .map(item -> item.getPrice().multiply(new BigDecimal(item.getQuantity())))
-                        .reduce(BigDecimal.ZERO, BigDecimal::add);
-                amount = totalAmount.multiply(new BigDecimal(100)).longValue();
+                // Tổng tiền lưu sẵn trên đơn
+                amount = order.getTotalAmount().multiply(new BigDecimal(100)).longValue();
             }
             
             log.info("Order {} - VNPay amount: {} (raw: {})", order.getId(), amount, request.getAmount());
@@ -214,13 +224,31 @@ public class VNPayService {
                         return result;
                     }
                     
+                    BigDecimal amount = new BigDecimal(vnp_Amount).divide(new BigDecimal(100));
+                    
+                    // Chuyển PENDING → PAID có điều kiện: nếu job huỷ đơn quá hạn đã huỷ đơn (và hoàn kho) trước hoặc
+                    // commit xen giữa lúc đọc và lúc ghi thì UPDATE trả về 0, không được ghi đè đơn thành PAID
+                    if (order.getStatus() != OrderStatus.PENDING
+                            || orderRepository.updateStatusIfCurrent(order.getId(), OrderStatus.PENDING, OrderStatus.PAID) == 0) {
+                        flagForRefund(order, amount, vnp_TransactionNo);
+                        
+                        result.put("code", "02");
+                        result.put("message", "Order was cancelled before payment completed, refund pending");
+                        result.put("orderId", order.getId().toString());
+                        result.put("vnp_TxnRef", vnp_TxnRef);
+                        result.put("vnp_Amount", vnp_Amount);
+                        result.put("vnp_BankCode", vnp_BankCode);
+                        result.put("vnp_TransactionNo", vnp_TransactionNo);
+                        return result;
+                    }
+                    
                     // Payment successful - use OrderService to handle all post-payment logic
                     order.setStatus(OrderStatus.PAID);
                     order.setTransactionId(vnp_TransactionNo);
                     orderRepository.save(order);
+                    salesRollupService.recordStatusChange(order, OrderStatus.PENDING, OrderStatus.PAID);
                     
                     // Create payment record (only if not exists)
-                    BigDecimal amount = new BigDecimal(vnp_Amount).divide(new BigDecimal(100));
                     Payment payment = Payment.builder()
                             .method(PaymentMethod.VNPAY)
                             .amount(amount)
@@ -229,7 +257,7 @@ public class VNPayService {
                     paymentRepository.save(payment);
                     
                     // Trigger post-payment logic (clear cart, send email)
-                    orderService.updatePaymentStatus(order.getId(), iuh.fit.se.backend.entity.enums.PaymentStatus.PAID, vnp_TransactionNo);
+                    orderService.updatePaymentStatus(order.getId(), PaymentStatus.PAID, vnp_TransactionNo);
                     
                     result.put("code", "00");
                     result.put("message", "Payment successful");
@@ -237,9 +265,12 @@ public class VNPayService {
                     
                     log.info("VNPay payment successful for order {}, transaction: {}", order.getId(), vnp_TransactionNo);
                 } else {
-                    // Payment failed
-                    order.setStatus(OrderStatus.CANCELLED);
-                    orderRepository.save(order);
+                    // Payment failed: huỷ qua OrderService (chuyển trạng thái có điều kiện + hoàn kho); đơn đã bị huỷ
+                    // hoặc đã thanh toán thì giữ nguyên
+                    if (order.getStatus() == OrderStatus.PENDING) {
+                        orderService.updateOrderStatus(order.getId(), OrderStatus.CANCELLED);
+                        orderService.updatePaymentStatus(order.getId(), PaymentStatus.FAILED, vnp_TransactionNo);
+                    }
                     
                     result.put("code", vnp_ResponseCode);
                     result.put("message", "Payment failed");
@@ -267,4 +298,20 @@ public class VNPayService {
         
         return result;
     }
+
+    // Tiền đã về nhưng đơn đã bị huỷ và hàng đã hoàn kho: không hồi sinh đơn, ghi nhận thanh toán và đánh dấu chờ hoàn tiền.
+    // Cập nhật bằng UPDATE riêng cột thanh toán để không ghi đè trạng thái đơn bằng bản đọc cũ
+    private void flagForRefund(Order order, BigDecimal amount, String transactionNo) {
+        if (order.getPaymentStatus() == PaymentStatus.REFUND_PENDING) {
+            log.warn("Order {} already flagged for refund, skipping duplicate payment processing", order.getId());
+            return;
+        }
+        orderRepository.updatePaymentStatus(order.getId(), PaymentStatus.REFUND_PENDING, transactionNo);
+        paymentRepository.save(Payment.builder()
+                .method(PaymentMethod.VNPAY)
+                .amount(amount)
+                .order(order)
+                .build());
+        log.warn("VNPay payment {} arrived after order {} was cancelled, flagged for refund", transactionNo, order.getId());
+    }
 }
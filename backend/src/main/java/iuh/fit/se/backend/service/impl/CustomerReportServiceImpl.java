@@ -62,7 +62,7 @@ public class CustomerReportServiceImpl implements CustomerReportService {
         }
 
         LocalDateTime start = startDate.atStartOfDay();
-        LocalDateTime end = endDate.plusDays(1).atStartOfDay().minusNanos(1);
+        LocalDateTime end = endDate.plusDays(1).atStartOfDay();
 
         List<Object[]> rows = userRepository.countNewUsersByDayRange(start, end);
         Map<LocalDate, Long> aggregated = new HashMap<>();
@@ -85,7 +85,8 @@ public class CustomerReportServiceImpl implements CustomerReportService {
     @Override
     @Transactional(readOnly = true)
     public List<CustomerMonthlySignupPoint> getMonthlySignups(int year) {
-        List<Object[]> rows = userRepository.countNewUsersByMonth(year);
+        LocalDateTime start = LocalDate.of(year, 1, 1).atStartOfDay();
+        List<Object[]> rows = userRepository.countNewUsersByMonth(start, start.plusYears(1));
         Map<Integer, Long> aggregated = new HashMap<>();
         for (Object[] row : rows) {
             Integer month = convertToInteger(row[1]);
@@ -108,7 +109,9 @@ public class CustomerReportServiceImpl implements CustomerReportService {
             throw new IllegalArgumentException("Start year must be before or equal to end year");
         }
 
-        List<Object[]> rows = userRepository.countNewUsersByYearRange(startYear, endYear);
+        List<Object[]> rows = userRepository.countNewUsersByYearRange(
+                LocalDate.of(startYear, 1, 1).atStartOfDay(),
+                LocalDate.of(endYear + 1, 1, 1).atStartOfDay());
         Map<Integer, Long> aggregated = new HashMap<>();
         for (Object[] row : rows) {
             Integer year = convertToInteger(row[0]);
@@ -0,0 +1,134 @@
+package iuh.fit.se.backend.service.impl;
+
+import iuh.fit.se.backend.dto.CustomerSummaryReport;
+import iuh.fit.se.backend.dto.DashboardSnapshot;
+import iuh.fit.se.backend.dto.InventorySummaryReport;
+import iuh.fit.se.backend.dto.OrderSummaryReport;
+import iuh.fit.se.backend.dto.RevenueSummaryReport;
+import iuh.fit.se.backend.service.CustomerReportService;
+import iuh.fit.se.backend.service.DashboardReportService;
+import iuh.fit.se.backend.service.InventoryReportService;
+import iuh.fit.se.backend.service.OrderReportService;
+import iuh.fit.se.backend.service.RevenueReportService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Gom bốn báo cáo tổng quan vào một snapshot: mỗi báo cáo chạy trên một virtual thread (transaction và connection
+ * riêng) nên thời gian tải bằng báo cáo chậm nhất thay vì tổng cả bốn. Snapshot được cache trong
+ * {@code app.reports.dashboard-ttl} và bị bỏ ngay khi đơn hàng hoặc người dùng thay đổi.
+ */
+@Service
+@Slf4j
+public class DashboardReportServiceImpl implements DashboardReportService {
+
+    private final RevenueReportService revenueReportService;
+    private final OrderReportService orderReportService;
+    private final InventoryReportService inventoryReportService;
+    private final CustomerReportService customerReportService;
+    private final long ttlNanos;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    // Tăng mỗi lần invalidate: snapshot tính xong sau một lần invalidate thì không được cache
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Cached cached;
+
+    public DashboardReportServiceImpl(RevenueReportService revenueReportService,
+                                      OrderReportService orderReportService,
+                                      InventoryReportService inventoryReportService,
+                                      CustomerReportService customerReportService,
+                                      @Value("${app.reports.dashboard-ttl:30s}") Duration ttl) {
+        this.revenueReportService = revenueReportService;
+        this.orderReportService = orderReportService;
+        this.inventoryReportService = inventoryReportService;
+        this.customerReportService = customerReportService;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    @Override
+    public DashboardSnapshot getDashboard() {
+        Cached current = cached;
+        if (isFresh(current)) {
+            return current.snapshot();
+        }
+        // Chỉ một request tính lại, các request đồng thời chờ và dùng chung kết quả
+        synchronized (this) {
+            current = cached;
+            if (isFresh(current)) {
+                return current.snapshot();
+            }
+            long startGeneration = generation.get();
+            DashboardSnapshot snapshot = load();
+            if (generation.get() == startGeneration) {
+                cached = new Cached(snapshot, System.nanoTime());
+            }
+            return snapshot;
+        }
+    }
+
+    @Override
+    public void invalidate() {
+        generation.incrementAndGet();
+        cached = null;
+    }
+
+    // fallbackExecution: nơi phát sự kiện ngoài transaction (đăng nhập Google/Facebook tạo user) thì bỏ cache ngay
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDataChanged(DataChanged event) {
+        invalidate();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private DashboardSnapshot load() {
+        long start = System.nanoTime();
+        CompletableFuture<RevenueSummaryReport> revenue = submit(revenueReportService::getRevenueSummary);
+        CompletableFuture<OrderSummaryReport> orders = submit(orderReportService::getOrderSummary);
+        CompletableFuture<InventorySummaryReport> inventory = submit(inventoryReportService::getInventorySummary);
+        CompletableFuture<CustomerSummaryReport> customers = submit(customerReportService::getCustomerSummary);
+        try {
+            CompletableFuture.allOf(revenue, orders, inventory, customers).join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+        DashboardSnapshot snapshot = DashboardSnapshot.builder()
+                .revenue(revenue.join())
+                .orders(orders.join())
+                .inventory(inventory.join())
+                .customers(customers.join())
+                .generatedAt(LocalDateTime.now())
+                .build();
+        log.debug("Dashboard snapshot loaded in {} ms", Duration.ofNanos(System.nanoTime() - start).toMillis());
+        return snapshot;
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> report) {
+        return CompletableFuture.supplyAsync(report, executor);
+    }
+
+    private boolean isFresh(Cached current) {
+        return current != null && System.nanoTime() - current.loadedAt() < ttlNanos;
+    }
+
+    private record Cached(DashboardSnapshot snapshot, long loadedAt) {
+    }
+}
@@ -2,12 +2,17 @@ package iuh.fit.se.backend.service.impl;
 
 import iuh.fit.se.backend.dto.InventoryDailyPoint;
 import iuh.fit.se.backend.dto.InventoryMonthlyPoint;
+import iuh.fit.se.backend.dto.InventoryStockPoint;
 import iuh.fit.se.backend.dto.InventorySummaryReport;
 import iuh.fit.se.backend.dto.InventoryYearlyPoint;
-import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.entity.DailySalesRollup;
+import iuh.fit.se.backend.repository.DailyProductSalesRepository;
+import iuh.fit.se.backend.repository.DailySalesRollupRepository;
 import iuh.fit.se.backend.repository.InventoryRepository;
-import iuh.fit.se.backend.repository.OrderRepository;
+import iuh.fit.se.backend.repository.ProductRepository;
+import iuh.fit.se.backend.service.InventoryLedgerService;
 import iuh.fit.se.backend.service.InventoryReportService;
+import iuh.fit.se.backend.service.SalesSketchService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -22,21 +27,20 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 @Service
 @RequiredArgsConstructor
 public class InventoryReportServiceImpl implements InventoryReportService {
 
-    private static final List<OrderStatus> FULFILLED_STATUSES = List.of(
-            OrderStatus.PAID,
-            OrderStatus.SHIPPED,
-            OrderStatus.COMPLETED
-    );
-
     private static final int LOW_STOCK_THRESHOLD = 10;
 
     private final InventoryRepository inventoryRepository;
-    private final OrderRepository orderRepository;
+    private final DailySalesRollupRepository dailySalesRollupRepository;
+    private final DailyProductSalesRepository dailyProductSalesRepository;
+    private final SalesSketchService salesSketchService;
+    private final InventoryLedgerService inventoryLedgerService;
+    private final ProductRepository productRepository;
 
     @Override
     @Transactional(readOnly = true)
@@ -69,49 +73,63 @@ public class InventoryReportServiceImpl implements InventoryReportService {
     public List<InventoryDailyPoint> getDailyInventory(LocalDate startDate, LocalDate endDate) {
         validateDateRange(startDate, endDate);
 
-        List<Object[]> rows = orderRepository.sumUnitsSoldByDayRange(startDate, endDate, FULFILLED_STATUSES);
+        // Đọc từ bảng tổng hợp theo ngày thay vì aggregate lại orders ⨝ order_items
+        LocalDate endExclusive = endDate.plusDays(1);
+        Map<LocalDate, Long> distinctByDay = new HashMap<>();
+        for (Object[] row : dailyProductSalesRepository.countDistinctProductsByDay(startDate, endExclusive)) {
+            distinctByDay.put(convertToLocalDate(row[0]), convertToLong(row[1]));
+        }
         Map<LocalDate, InventoryDailyPoint> aggregated = new HashMap<>();
-        for (Object[] row : rows) {
-            LocalDate date = convertToLocalDate(row[0]);
-            long unitsSold = convertToLong(row[1]);
-            long distinctProducts = convertToLong(row[2]);
-            long ordersCount = convertToLong(row[3]);
+        for (DailySalesRollup rollup : dailySalesRollupRepository
+                .findBySalesDateGreaterThanEqualAndSalesDateLessThanOrderBySalesDate(startDate, endExclusive)) {
+            LocalDate date = rollup.getSalesDate();
             aggregated.put(date, InventoryDailyPoint.builder()
                     .date(date)
-                    .unitsSold(unitsSold)
-                    .distinctProductsSold(distinctProducts)
-                    .ordersCount(ordersCount)
+                    .unitsSold(rollup.getUnitsSold())
+                    .distinctProductsSold(distinctByDay.getOrDefault(date, 0L))
+                    .ordersCount(rollup.getFulfilledOrders())
                     .build());
         }
+        Map<LocalDate, Long> unitsOnHand = inventoryLedgerService.getUnitsOnHandByDay(startDate, endExclusive);
 
         List<InventoryDailyPoint> result = new ArrayList<>();
         long days = ChronoUnit.DAYS.between(startDate, endDate);
         for (int i = 0; i <= days; i++) {
             LocalDate current = startDate.plusDays(i);
             InventoryDailyPoint point = aggregated.get(current);
-            if (point != null) {
-                result.add(point);
-            } else {
-                result.add(InventoryDailyPoint.builder()
+            if (point == null) {
+                point = InventoryDailyPoint.builder()
                         .date(current)
                         .unitsSold(0L)
                         .distinctProductsSold(0L)
                         .ordersCount(0L)
-                        .build());
+                        .build();
             }
+            point.setUnitsOnHand(unitsOnHand.getOrDefault(current, 0L));
+            result.add(point);
         }
         return result;
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<InventoryMonthlyPoint> getMonthlyInventory(int year) {
-        List<Object[]> rows = orderRepository.sumUnitsSoldByMonth(year, FULFILLED_STATUSES);
+    public List<InventoryMonthlyPoint> getMonthlyInventory(int year, boolean approximate) {
+        LocalDate start = LocalDate.of(year, 1, 1);
+        LocalDate end = start.plusYears(1);
+        Map<Integer, Long> distinctByMonth = new HashMap<>();
+        if (approximate) {
+            distinctByMonth = salesSketchService.estimateDistinctProducts(start, end, LocalDate::getMonthValue);
+        } else {
+            for (Object[] row : dailyProductSalesRepository.countDistinctProductsByMonth(start, end)) {
+                distinctByMonth.put(convertToInteger(row[0]), convertToLong(row[1]));
+            }
+        }
+        List<Object[]> rows = dailySalesRollupRepository.sumByMonth(start, end);
         Map<Integer, InventoryMonthlyPoint> aggregated = new HashMap<>();
         for (Object[] row : rows) {
-            Integer month = convertToInteger(row[1]);
+            Integer month = convertToInteger(row[0]);
             long unitsSold = convertToLong(row[2]);
-            long distinctProducts = convertToLong(row[3]);
+            long distinctProducts = distinctByMonth.getOrDefault(month, 0L);
             aggregated.put(month, InventoryMonthlyPoint.builder()
                     .month(month)
                     .unitsSold(unitsSold)
@@ -137,17 +155,27 @@ public class InventoryReportServiceImpl implements InventoryReportService {
 
     @Override
     @Transactional(readOnly = true)
-    public List<InventoryYearlyPoint> getYearlyInventory(int startYear, int endYear) {
+    public List<InventoryYearlyPoint> getYearlyInventory(int startYear, int endYear, boolean approximate) {
         if (startYear > endYear) {
             throw new IllegalArgumentException("Start year must be before or equal to end year");
         }
 
-        List<Object[]> rows = orderRepository.sumUnitsSoldByYearRange(startYear, endYear, FULFILLED_STATUSES);
+        LocalDate start = LocalDate.of(startYear, 1, 1);
+        LocalDate end = LocalDate.of(endYear + 1, 1, 1);
+        Map<Integer, Long> distinctByYear = new HashMap<>();
+        if (approximate) {
+            distinctByYear = salesSketchService.estimateDistinctProducts(start, end, LocalDate::getYear);
+        } else {
+            for (Object[] row : dailyProductSalesRepository.countDistinctProductsByYear(start, end)) {
+                distinctByYear.put(convertToInteger(row[0]), convertToLong(row[1]));
+            }
+        }
+        List<Object[]> rows = dailySalesRollupRepository.sumByYear(start, end);
         Map<Integer, InventoryYearlyPoint> aggregated = new HashMap<>();
         for (Object[] row : rows) {
             Integer year = convertToInteger(row[0]);
-            long unitsSold = convertToLong(row[1]);
-            long distinctProducts = convertToLong(row[2]);
+            long unitsSold = convertToLong(row[2]);
+            long distinctProducts = distinctByYear.getOrDefault(year, 0L);
             aggregated.put(year, InventoryYearlyPoint.builder()
                     .year(year)
                     .unitsSold(unitsSold)
@@ -171,6 +199,28 @@ public class InventoryReportServiceImpl implements InventoryReportService {
         return result;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public List<InventoryStockPoint> getStockOnDate(LocalDate date) {
+        if (date == null) {
+            throw new IllegalArgumentException("Date is required");
+        }
+        Map<Long, Long> stock = new TreeMap<>(inventoryLedgerService.getStockOnDate(date));
+        Map<Long, String> names = new HashMap<>();
+        if (!stock.isEmpty()) {
+            for (Object[] row : productRepository.findNamesByIdIn(stock.keySet())) {
+                names.put((Long) row[0], (String) row[1]);
+            }
+        }
+        List<InventoryStockPoint> result = new ArrayList<>();
+        stock.forEach((productId, units) -> result.add(InventoryStockPoint.builder()
+                .productId(productId)
+                .productName(names.get(productId))
+                .stock(units)
+                .build()));
+        return result;
+    }
+
     private void validateDateRange(LocalDate startDate, LocalDate endDate) {
         if (startDate == null || endDate == null) {
             throw new IllegalArgumentException("Start date and end date are required");
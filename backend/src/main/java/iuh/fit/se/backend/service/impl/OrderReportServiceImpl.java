@@ -1,14 +1,20 @@
 package iuh.fit.se.backend.service.impl;
 
+import iuh.fit.se.backend.dto.DistinctCountReport;
 import iuh.fit.se.backend.dto.OrderDailyPoint;
 import iuh.fit.se.backend.dto.OrderMonthlyPoint;
 import iuh.fit.se.backend.dto.OrderSummaryReport;
 import iuh.fit.se.backend.dto.OrderUserSummary;
 import iuh.fit.se.backend.dto.OrderYearlyPoint;
+import iuh.fit.se.backend.entity.DailySalesRollup;
 import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.repository.DailySalesRollupRepository;
+import iuh.fit.se.backend.repository.OrderItemRepository;
 import iuh.fit.se.backend.repository.OrderRepository;
 import iuh.fit.se.backend.service.OrderReportService;
+import iuh.fit.se.backend.service.SalesSketchService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -37,6 +43,9 @@ public class OrderReportServiceImpl implements OrderReportService {
     private static final OrderStatus CANCELLED_STATUS = OrderStatus.CANCELLED;
 
     private final OrderRepository orderRepository;
+    private final DailySalesRollupRepository dailySalesRollupRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final SalesSketchService salesSketchService;
 
     @Override
     @Transactional(readOnly = true)
@@ -76,27 +85,17 @@ public class OrderReportServiceImpl implements OrderReportService {
     public List<OrderDailyPoint> getDailyOrders(LocalDate startDate, LocalDate endDate) {
         validateRange(startDate, endDate);
 
-        List<Object[]> rows = orderRepository.countOrdersByDayRange(
-                startDate,
-                endDate,
-                FULFILLED_STATUSES,
-                PENDING_STATUS,
-                CANCELLED_STATUS
-        );
+        // Đọc từ daily_sales_rollups thay vì đếm lại trên bảng orders
         Map<LocalDate, OrderDailyPoint> aggregated = new HashMap<>();
-        for (Object[] row : rows) {
-            LocalDate date = toLocalDate(row[0]);
-            long totalOrders = toLong(row[1]);
-            long fulfilledOrders = toLong(row[2]);
-            long pendingOrders = toLong(row[3]);
-            long cancelledOrders = toLong(row[4]);
+        for (DailySalesRollup rollup : dailySalesRollupRepository
+                .findBySalesDateGreaterThanEqualAndSalesDateLessThanOrderBySalesDate(startDate, endDate.plusDays(1))) {
             OrderDailyPoint point = new OrderDailyPoint();
-            point.setDate(date);
-            point.setTotalOrders(totalOrders);
-            point.setFulfilledOrders(fulfilledOrders);
-            point.setPendingOrders(pendingOrders);
-            point.setCancelledOrders(cancelledOrders);
-            aggregated.put(date, point);
+            point.setDate(rollup.getSalesDate());
+            point.setTotalOrders(rollup.getTotalOrders());
+            point.setFulfilledOrders(rollup.getFulfilledOrders());
+            point.setPendingOrders(rollup.getPendingOrders());
+            point.setCancelledOrders(rollup.getCancelledOrders());
+            aggregated.put(rollup.getSalesDate(), point);
         }
 
         List<OrderDailyPoint> result = new ArrayList<>();
@@ -120,19 +119,14 @@ public class OrderReportServiceImpl implements OrderReportService {
     @Override
     @Transactional(readOnly = true)
     public List<OrderMonthlyPoint> getMonthlyOrders(int year) {
-        List<Object[]> rows = orderRepository.countOrdersByMonth(
-                year,
-                FULFILLED_STATUSES,
-                PENDING_STATUS,
-                CANCELLED_STATUS
-        );
+        List<Object[]> rows = dailySalesRollupRepository.sumByMonth(LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1));
         Map<Integer, OrderMonthlyPoint> aggregated = new HashMap<>();
         for (Object[] row : rows) {
-            int month = toInt(row[1]);
-            long totalOrders = toLong(row[2]);
-            long fulfilledOrders = toLong(row[3]);
-            long pendingOrders = toLong(row[4]);
-            long cancelledOrders = toLong(row[5]);
+            int month = toInt(row[0]);
+            long totalOrders = toLong(row[3]);
+            long fulfilledOrders = toLong(row[4]);
+            long pendingOrders = toLong(row[5]);
+            long cancelledOrders = toLong(row[6]);
             OrderMonthlyPoint point = new OrderMonthlyPoint();
             point.setMonth(month);
             point.setTotalOrders(totalOrders);
@@ -165,20 +159,14 @@ public class OrderReportServiceImpl implements OrderReportService {
             throw new IllegalArgumentException("Start year must be before or equal to end year");
         }
 
-        List<Object[]> rows = orderRepository.countOrdersByYearRange(
-                startYear,
-                endYear,
-                FULFILLED_STATUSES,
-                PENDING_STATUS,
-                CANCELLED_STATUS
-        );
+        List<Object[]> rows = dailySalesRollupRepository.sumByYear(LocalDate.of(startYear, 1, 1), LocalDate.of(endYear + 1, 1, 1));
         Map<Integer, OrderYearlyPoint> aggregated = new HashMap<>();
         for (Object[] row : rows) {
             int year = toInt(row[0]);
-            long totalOrders = toLong(row[1]);
-            long fulfilledOrders = toLong(row[2]);
-            long pendingOrders = toLong(row[3]);
-            long cancelledOrders = toLong(row[4]);
+            long totalOrders = toLong(row[3]);
+            long fulfilledOrders = toLong(row[4]);
+            long pendingOrders = toLong(row[5]);
+            long cancelledOrders = toLong(row[6]);
             OrderYearlyPoint point = new OrderYearlyPoint();
             point.setYear(year);
             point.setTotalOrders(totalOrders);
@@ -208,13 +196,9 @@ public class OrderReportServiceImpl implements OrderReportService {
     @Transactional(readOnly = true)
     public List<OrderUserSummary> getOrdersByUser(LocalDateTime startDate, LocalDateTime endDate, int limit) {
         int resolvedLimit = limit > 0 ? limit : 10;
-        List<Object[]> rows = orderRepository.summarizeOrdersByUser(startDate, endDate);
+        List<Object[]> rows = orderRepository.summarizeOrdersByUser(startDate, endDate, PageRequest.ofSize(resolvedLimit));
         List<OrderUserSummary> result = new ArrayList<>();
-        int index = 0;
         for (Object[] row : rows) {
-            if (index >= resolvedLimit) {
-                break;
-            }
             Long userId = toLong(row[0]);
             String username = row[1] != null ? row[1].toString() : null;
             String fullName = row[2] != null ? row[2].toString() : null;
@@ -235,11 +219,35 @@ public class OrderReportServiceImpl implements OrderReportService {
                     .latestOrderAt(latestOrderAt)
                     .build();
             result.add(summary);
-            index++;
         }
         return result;
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public DistinctCountReport getDistinctCounts(LocalDate startDate, LocalDate endDate, boolean approximate) {
+        validateRange(startDate, endDate);
+        long distinctProducts;
+        long distinctCustomers;
+        if (approximate) {
+            SalesSketchService.DistinctCounts estimate = salesSketchService.estimate(startDate, endDate.plusDays(1));
+            distinctProducts = estimate.products();
+            distinctCustomers = estimate.customers();
+        } else {
+            LocalDateTime start = startDate.atStartOfDay();
+            LocalDateTime end = endDate.plusDays(1).atStartOfDay();
+            distinctProducts = orderItemRepository.countDistinctProductsForOrdersCreatedBetween(start, end, FULFILLED_STATUSES);
+            distinctCustomers = orderRepository.countDistinctCustomersCreatedBetween(start, end, FULFILLED_STATUSES);
+        }
+        return DistinctCountReport.builder()
+                .startDate(startDate)
+                .endDate(endDate)
+                .distinctProducts(distinctProducts)
+                .distinctCustomers(distinctCustomers)
+                .approximate(approximate)
+                .build();
+    }
+
     private void validateRange(LocalDate startDate, LocalDate endDate) {
         if (startDate == null || endDate == null) {
             throw new IllegalArgumentException("Start date and end date are required");
@@ -263,22 +271,6 @@ public class OrderReportServiceImpl implements OrderReportService {
         return 0;
     }
 
-    private LocalDate toLocalDate(Object value) {
-        if (value instanceof LocalDate localDate) {
-            return localDate;
-        }
-        if (value instanceof LocalDateTime dateTime) {
-            return dateTime.toLocalDate();
-        }
-        if (value instanceof Date sqlDate) {
-            return sqlDate.toLocalDate();
-        }
-        if (value instanceof Timestamp timestamp) {
-            return timestamp.toLocalDateTime().toLocalDate();
-        }
-        throw new IllegalArgumentException("Unsupported date value: " + value);
-    }
-
     private BigDecimal toBigDecimal(Object value) {
         if (value == null) {
             return BigDecimal.ZERO;
@@ -5,8 +5,12 @@ import iuh.fit.se.backend.dto.RevenueDailyPoint;
 import iuh.fit.se.backend.dto.RevenueMonthlyPoint;
 import iuh.fit.se.backend.dto.RevenueSummaryReport;
 import iuh.fit.se.backend.dto.RevenueYearlyPoint;
+import iuh.fit.se.backend.entity.CustomerPeriodSales;
+import iuh.fit.se.backend.entity.DailySalesRollup;
 import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.repository.DailySalesRollupRepository;
 import iuh.fit.se.backend.repository.OrderRepository;
+import iuh.fit.se.backend.service.CustomerLeaderboardService;
 import iuh.fit.se.backend.service.RevenueReportService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -15,8 +19,6 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.RoundingMode;
-import java.sql.Date;
-import java.sql.Timestamp;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -38,6 +40,8 @@ public class RevenueReportServiceImpl implements RevenueReportService {
     private static final int DEFAULT_CUSTOMER_LIMIT = 10;
 
     private final OrderRepository orderRepository;
+    private final DailySalesRollupRepository dailySalesRollupRepository;
+    private final CustomerLeaderboardService customerLeaderboardService;
 
     @Override
     @Transactional(readOnly = true)
@@ -46,12 +50,12 @@ public class RevenueReportServiceImpl implements RevenueReportService {
 
         LocalDate today = LocalDate.now();
         LocalDateTime startOfToday = today.atStartOfDay();
-        LocalDateTime endOfToday = startOfToday.plusDays(1).minusNanos(1);
+        LocalDateTime endOfToday = startOfToday.plusDays(1);
         BigDecimal revenueToday = defaultZero(orderRepository.sumRevenueInRange(startOfToday, endOfToday, REVENUE_STATUSES));
 
         LocalDate firstDayOfMonth = today.withDayOfMonth(1);
         LocalDateTime startOfMonth = firstDayOfMonth.atStartOfDay();
-        LocalDateTime endOfMonth = startOfMonth.plusMonths(1).minusNanos(1);
+        LocalDateTime endOfMonth = startOfMonth.plusMonths(1);
         BigDecimal revenueThisMonth = defaultZero(orderRepository.sumRevenueInRange(startOfMonth, endOfMonth, REVENUE_STATUSES));
 
         long totalPaidOrders = orderRepository.countByStatusIn(REVENUE_STATUSES);
@@ -78,12 +82,10 @@ public class RevenueReportServiceImpl implements RevenueReportService {
             throw new IllegalArgumentException("Start date must be before or equal to end date");
         }
 
-        List<Object[]> rows = orderRepository.sumRevenueByDayRange(startDate, endDate, REVENUE_STATUSES);
         Map<LocalDate, BigDecimal> aggregated = new HashMap<>();
-        for (Object[] row : rows) {
-            LocalDate date = convertToLocalDate(row[0]);
-            BigDecimal revenue = convertToBigDecimal(row[1]);
-            aggregated.put(date, revenue);
+        for (DailySalesRollup rollup : dailySalesRollupRepository
+                .findBySalesDateGreaterThanEqualAndSalesDateLessThanOrderBySalesDate(startDate, endDate.plusDays(1))) {
+            aggregated.put(rollup.getSalesDate(), rollup.getRevenue());
         }
 
         List<RevenueDailyPoint> result = new ArrayList<>();
@@ -99,11 +101,12 @@ public class RevenueReportServiceImpl implements RevenueReportService {
     @Override
     @Transactional(readOnly = true)
     public List<RevenueMonthlyPoint> getMonthlyRevenue(int year) {
-        List<Object[]> rows = orderRepository.sumRevenueByMonth(year, REVENUE_STATUSES);
+        // Đọc từ daily_sales_rollups thay vì aggregate lại orders ⨝ order_items
+        List<Object[]> rows = dailySalesRollupRepository.sumByMonth(LocalDate.of(year, 1, 1), LocalDate.of(year + 1, 1, 1));
         Map<Integer, BigDecimal> aggregated = new HashMap<>();
         for (Object[] row : rows) {
-            Integer month = convertToInteger(row[1]);
-            BigDecimal revenue = convertToBigDecimal(row[2]);
+            Integer month = convertToInteger(row[0]);
+            BigDecimal revenue = convertToBigDecimal(row[1]);
             aggregated.put(month, revenue);
         }
 
@@ -122,7 +125,7 @@ public class RevenueReportServiceImpl implements RevenueReportService {
             throw new IllegalArgumentException("Start year must be before or equal to end year");
         }
 
-        List<Object[]> rows = orderRepository.sumRevenueByYearRange(startYear, endYear, REVENUE_STATUSES);
+        List<Object[]> rows = dailySalesRollupRepository.sumByYear(LocalDate.of(startYear, 1, 1), LocalDate.of(endYear + 1, 1, 1));
         Map<Integer, BigDecimal> aggregated = new HashMap<>();
         for (Object[] row : rows) {
             Integer year = convertToInteger(row[0]);
@@ -145,57 +148,33 @@ public class RevenueReportServiceImpl implements RevenueReportService {
             throw new IllegalArgumentException("Month must be between 1 and 12");
         }
         int sanitizedLimit = limit > 0 ? limit : DEFAULT_CUSTOMER_LIMIT;
-
-        List<Object[]> rows = orderRepository.sumCustomerRevenueByMonth(year, month, REVENUE_STATUSES);
-        return mapCustomerRevenue(rows, sanitizedLimit);
+        return mapCustomerRevenue(customerLeaderboardService.top(CustomerPeriodSales.Period.MONTH,
+                LocalDate.of(year, month, 1), sanitizedLimit));
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<CustomerRevenuePoint> getCustomerRevenueByYear(int year, int limit) {
         int sanitizedLimit = limit > 0 ? limit : DEFAULT_CUSTOMER_LIMIT;
-        List<Object[]> rows = orderRepository.sumCustomerRevenueByYear(year, REVENUE_STATUSES);
-        return mapCustomerRevenue(rows, sanitizedLimit);
+        return mapCustomerRevenue(customerLeaderboardService.top(CustomerPeriodSales.Period.YEAR,
+                LocalDate.of(year, 1, 1), sanitizedLimit));
     }
 
-    private List<CustomerRevenuePoint> mapCustomerRevenue(List<Object[]> rows, int limit) {
-        List<CustomerRevenuePoint> result = new ArrayList<>();
-        int count = 0;
-        for (Object[] row : rows) {
-            if (count >= limit) {
-                break;
-            }
-            Long customerId = convertToLong(row[0]);
-            String customerName = convertToString(row[1]);
-            String email = convertToString(row[2]);
-            BigDecimal revenue = convertToBigDecimal(row[3]);
-            long orderCount = convertToLong(row[4]);
-            result.add(new CustomerRevenuePoint(customerId, customerName, email, orderCount, revenue));
-            count++;
-        }
-        return result;
+    private List<CustomerRevenuePoint> mapCustomerRevenue(List<Object[]> rows) {
+        return rows.stream()
+                .map(row -> new CustomerRevenuePoint(
+                        convertToLong(row[0]),
+                        convertToString(row[1]),
+                        convertToString(row[2]),
+                        convertToLong(row[4]),
+                        convertToBigDecimal(row[3])))
+                .toList();
     }
 
     private BigDecimal defaultZero(BigDecimal value) {
         return value != null ? value : BigDecimal.ZERO;
     }
 
-    private LocalDate convertToLocalDate(Object value) {
-        if (value instanceof LocalDate localDate) {
-            return localDate;
-        }
-        if (value instanceof LocalDateTime dateTime) {
-            return dateTime.toLocalDate();
-        }
-        if (value instanceof Date sqlDate) {
-            return sqlDate.toLocalDate();
-        }
-        if (value instanceof Timestamp timestamp) {
-            return timestamp.toLocalDateTime().toLocalDate();
-        }
-        throw new IllegalArgumentException("Unsupported date value: " + value);
-    }
-
     private Integer convertToInteger(Object value) {
         if (value instanceof Integer intValue) {
             return intValue;
@@ -5,6 +5,7 @@ import iuh.fit.se.backend.dto.UserSummary;
 import iuh.fit.se.backend.entity.User;
 import iuh.fit.se.backend.entity.enums.Role;
 import iuh.fit.se.backend.repository.UserRepository;
+import iuh.fit.se.backend.service.DashboardReportService;
 import iuh.fit.se.backend.service.EmailService;
 import iuh.fit.se.backend.service.UserService;
 import org.springframework.data.domain.Page;
@@ -12,6 +13,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.server.ResponseStatusException;
@@ -25,11 +27,14 @@ public class UserServiceImpl implements UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
     private final EmailService emailService;
+    private final ApplicationEventPublisher eventPublisher;
 
-    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, EmailService emailService) {
+    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, EmailService emailService,
+                           ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.emailService = emailService;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -92,6 +97,7 @@ public class UserServiceImpl implements UserService {
             .build();
 
         User saved = userRepository.save(user);
+        eventPublisher.publishEvent(new DashboardReportService.DataChanged("users"));
 
         // Send welcome email (best-effort). Exceptions from mail sending should not
         // prevent user creation; catch and log them.
@@ -197,6 +203,7 @@ public class UserServiceImpl implements UserService {
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "User not found"));
 
         user.setActive(active);
+        eventPublisher.publishEvent(new DashboardReportService.DataChanged("users"));
         return toSummary(userRepository.save(user));
     }
 
@@ -0,0 +1,37 @@
+package iuh.fit.se.backend.specification;
+
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.function.BiFunction;
+
+public class KeysetSpecification {
+
+    /**
+     * Phân trang keyset: chỉ lấy các dòng đứng sau (sortKey, id) của con trỏ và sắp theo đúng thứ tự đó,
+     * để database seek thẳng tới vị trí thay vì OFFSET. afterValue null nghĩa là trang đầu tiên.
+     */
+    public static <T, Y extends Comparable<? super Y>> Specification<T> seek(
+            BiFunction<Root<T>, CriteriaBuilder, Expression<Y>> sortKey,
+            boolean descending, Y afterValue, Long afterId
+    ) {
+        return (root, query, cb) -> {
+            Expression<Y> key = sortKey.apply(root, cb);
+            Expression<Long> id = root.get("id");
+            if (!Long.class.equals(query.getResultType()) && !long.class.equals(query.getResultType())) {
+                query.orderBy(descending ? cb.desc(key) : cb.asc(key), descending ? cb.desc(id) : cb.asc(id));
+            }
+            if (afterValue == null || afterId == null) {
+                return null;
+            }
+            if (descending) {
+                return cb.or(cb.lessThan(key, afterValue),
+                        cb.and(cb.equal(key, afterValue), cb.lessThan(id, afterId)));
+            }
+            return cb.or(cb.greaterThan(key, afterValue),
+                    cb.and(cb.equal(key, afterValue), cb.greaterThan(id, afterId)));
+        };
+    }
+}
@@ -3,10 +3,49 @@ package iuh.fit.se.backend.specification;
 import iuh.fit.se.backend.entity.Order;
 import org.springframework.data.jpa.domain.Specification;
 
+import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
 public class OrderSpecification {
 
+    // Bộ lọc tìm kiếm đơn của admin, dùng chung cho danh sách, phân trang keyset và export CSV
+    public static Specification<Order> search(
+            String customerName,
+            String username,
+            Long userId,
+            String status,
+            LocalDateTime fromDate, LocalDateTime toDate,
+            Double minTotal, Double maxTotal
+    ) {
+        Specification<Order> spec = (root, query, cb) -> cb.conjunction();
+
+        if (customerName != null) {
+            spec = spec.and(hasCustomerName(customerName));
+        }
+        if (username != null) {
+            spec = spec.and(hasUsername(username));
+        }
+        if (userId != null) {
+            spec = spec.and(hasUserId(userId));
+        }
+        if (status != null) {
+            spec = spec.and(hasStatus(status));
+        }
+        if (fromDate != null) {
+            spec = spec.and(createdAfter(fromDate));
+        }
+        if (toDate != null) {
+            spec = spec.and(createdBefore(toDate));
+        }
+        if (minTotal != null) {
+            spec = spec.and(hasTotalGreaterThanOrEqual(minTotal));
+        }
+        if (maxTotal != null) {
+            spec = spec.and(hasTotalLessThanOrEqual(maxTotal));
+        }
+        return spec;
+    }
+
     public static Specification<Order> hasCustomerName(String customerName) {
         return (root, query, cb) -> {
             if (customerName == null || customerName.isBlank()) {
@@ -56,12 +95,12 @@ public class OrderSpecification {
 
     public static Specification<Order> hasTotalGreaterThanOrEqual(Double minTotal) {
         return (root, query, cb) ->
-                cb.greaterThanOrEqualTo(root.get("totalAmount"), minTotal);
+                cb.greaterThanOrEqualTo(root.<BigDecimal>get("totalAmount"), BigDecimal.valueOf(minTotal));
     }
 
     public static Specification<Order> hasTotalLessThanOrEqual(Double maxTotal) {
         return (root, query, cb) ->
-                cb.lessThanOrEqualTo(root.get("totalAmount"), maxTotal);
+                cb.lessThanOrEqualTo(root.<BigDecimal>get("totalAmount"), BigDecimal.valueOf(maxTotal));
     }
 
 }
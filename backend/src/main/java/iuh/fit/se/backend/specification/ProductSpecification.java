@@ -1,10 +1,15 @@
 package iuh.fit.se.backend.specification;
 
 import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.ProductRatingSummary;
 import iuh.fit.se.backend.entity.enums.ProductStatus;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import org.springframework.data.jpa.domain.Specification;
 
 public class ProductSpecification {
@@ -14,6 +19,11 @@ public class ProductSpecification {
                 name == null ? null : cb.like(cb.lower(root.get("name")), "%" + name.toLowerCase() + "%");
     }
 
+    // Giới hạn theo danh sách id lấy từ ProductSearchIndex; danh sách rỗng nghĩa là không có kết quả
+    public static Specification<Product> hasIdIn(Collection<Long> ids) {
+        return (root, query, cb) -> ids.isEmpty() ? cb.disjunction() : root.get("id").in(ids);
+    }
+
     public static Specification<Product> hasCategory(String categoryName) {
         return (root, query, cb) -> {
             if (categoryName == null) return null;
@@ -42,26 +52,13 @@ public class ProductSpecification {
         return (root, query, cb) -> {
             if (minPrice == null && maxPrice == null) return null;
 
-            // join productPrices and filter by price; prefer current prices if available
-            Join<Object, Object> prices = root.join("productPrices", JoinType.LEFT);
-            // ensure we don't return duplicate products when joining
-            query.distinct(true);
-
+            // filter on the denormalized current price column, no join needed
             if (minPrice != null && maxPrice != null) {
-                return cb.and(
-                        cb.equal(prices.get("isCurrent"), true),
-                        cb.between(prices.get("price"), BigDecimal.valueOf(minPrice), BigDecimal.valueOf(maxPrice))
-                );
+                return cb.between(root.get("currentPrice"), BigDecimal.valueOf(minPrice), BigDecimal.valueOf(maxPrice));
             } else if (minPrice != null) {
-                return cb.and(
-                        cb.equal(prices.get("isCurrent"), true),
-                        cb.greaterThanOrEqualTo(prices.get("price"), BigDecimal.valueOf(minPrice))
-                );
+                return cb.greaterThanOrEqualTo(root.get("currentPrice"), BigDecimal.valueOf(minPrice));
             } else {
-                return cb.and(
-                        cb.equal(prices.get("isCurrent"), true),
-                        cb.lessThanOrEqualTo(prices.get("price"), BigDecimal.valueOf(maxPrice))
-                );
+                return cb.lessThanOrEqualTo(root.get("currentPrice"), BigDecimal.valueOf(maxPrice));
             }
         };
     }
@@ -77,4 +74,56 @@ public class ProductSpecification {
             }
         };
     }
+
+    public static Specification<Product> hasMinRating(Double minRating) {
+        return (root, query, cb) -> {
+            if (minRating == null) return null;
+
+            // ratingSum >= minRating * reviewCount, read from the rating summary instead of scanning reviews
+            Subquery<Long> summary = query.subquery(Long.class);
+            Root<ProductRatingSummary> s = summary.from(ProductRatingSummary.class);
+            summary.select(s.get("productId")).where(
+                    cb.equal(s.get("productId"), root.get("id")),
+                    cb.greaterThan(s.get("reviewCount"), 0L),
+                    cb.greaterThanOrEqualTo(
+                            cb.toDouble(s.get("ratingSum")),
+                            cb.prod(cb.toDouble(s.get("reviewCount")), minRating))
+            );
+            return cb.exists(summary);
+        };
+    }
+
+    public static Specification<Product> orderByRating(boolean descending) {
+        return (root, query, cb) -> {
+            // count queries have no ordering; only apply to the content query
+            if (Long.class.equals(query.getResultType()) || long.class.equals(query.getResultType())) {
+                return null;
+            }
+
+            Subquery<Double> average = query.subquery(Double.class);
+            Root<ProductRatingSummary> s = average.from(ProductRatingSummary.class);
+            average.select(cb.quot(cb.toDouble(s.get("ratingSum")), cb.toDouble(s.get("reviewCount"))).as(Double.class))
+                    .where(cb.equal(s.get("productId"), root.get("id")), cb.greaterThan(s.get("reviewCount"), 0L));
+
+            var rating = cb.coalesce(average, 0.0);
+            query.orderBy(descending ? cb.desc(rating) : cb.asc(rating), cb.desc(root.get("id")));
+            return null;
+        };
+    }
+
+    // Giữ nguyên thứ tự xếp hạng của chỉ mục tìm kiếm: CASE id WHEN ... THEN vị trí
+    public static Specification<Product> orderByRank(List<Long> rankedIds) {
+        return (root, query, cb) -> {
+            if (rankedIds.isEmpty()
+                    || Long.class.equals(query.getResultType()) || long.class.equals(query.getResultType())) {
+                return null;
+            }
+            var rank = cb.<Long, Integer>selectCase(root.get("id"));
+            for (int i = 0; i < rankedIds.size(); i++) {
+                rank = rank.when(rankedIds.get(i), i);
+            }
+            query.orderBy(cb.asc(rank.otherwise(rankedIds.size())), cb.desc(root.get("id")));
+            return null;
+        };
+    }
 }
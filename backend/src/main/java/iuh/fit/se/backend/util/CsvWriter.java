@@ -0,0 +1,52 @@
+package iuh.fit.se.backend.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Ghi CSV (RFC 4180) thẳng ra output stream, từng dòng một, không giữ dữ liệu trong bộ nhớ.
+ * Bắt đầu bằng BOM UTF-8 để Excel đọc đúng tiếng Việt; không đóng stream bên dưới.
+ */
+public final class CsvWriter {
+
+    private final Writer writer;
+
+    public CsvWriter(OutputStream out) throws IOException {
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write('\uFEFF');
+    }
+
+    public CsvWriter row(Object... values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(escape(values[i]));
+        }
+        writer.write("\r\n");
+        return this;
+    }
+
+    public void flush() throws IOException {
+        writer.flush();
+    }
+
+    static String escape(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        // Chuỗi do người dùng nhập bắt đầu bằng = + - @ bị Excel hiểu là công thức
+        if (value instanceof CharSequence && !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+            return '"' + text.replace("\"", "\"\"") + '"';
+        }
+        return text;
+    }
+}
@@ -0,0 +1,104 @@
+package iuh.fit.se.backend.util;
+
+import java.util.Arrays;
+
+/**
+ * Bộ đếm số phần tử khác nhau xấp xỉ (HyperLogLog, 2^12 thanh ghi một byte, sai số chuẩn ~1.6%).
+ * Kích thước cố định 4 KB bất kể số phần tử, và gộp hai sketch (lấy max từng thanh ghi) cho ra đúng sketch
+ * của hợp hai tập, nên sketch theo ngày cộng được thành tháng/năm. Chỉ thêm được, không xoá được phần tử.
+ */
+public final class HyperLogLog {
+
+    public static final int PRECISION = 12;
+    public static final int SIZE = 1 << PRECISION;
+
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / SIZE);
+
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(new byte[SIZE]);
+    }
+
+    private HyperLogLog(byte[] registers) {
+        this.registers = registers;
+    }
+
+    // null hoặc rỗng = sketch trống
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        if (bytes == null || bytes.length == 0) {
+            return new HyperLogLog();
+        }
+        if (bytes.length != SIZE) {
+            throw new IllegalArgumentException("HyperLogLog sketch must be " + SIZE + " bytes, got " + bytes.length);
+        }
+        return new HyperLogLog(bytes.clone());
+    }
+
+    public byte[] toBytes() {
+        return registers.clone();
+    }
+
+    public void add(long value) {
+        long hash = mix(value);
+        int index = (int) (hash >>> (Long.SIZE - PRECISION));
+        // Vị trí bit 1 đầu tiên của phần còn lại; bit chặn giới hạn rank tối đa 64 - PRECISION + 1
+        byte rank = (byte) (Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public HyperLogLog merge(HyperLogLog other) {
+        for (int i = 0; i < SIZE; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+        return this;
+    }
+
+    public long estimate() {
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double estimate = ALPHA * SIZE * SIZE / sum;
+        // Ít phần tử: đếm tuyến tính theo số thanh ghi còn trống chính xác hơn
+        if (estimate <= 2.5 * SIZE && zeros > 0) {
+            estimate = SIZE * Math.log((double) SIZE / zeros);
+        }
+        return Math.round(estimate);
+    }
+
+    public boolean isEmpty() {
+        for (byte register : registers) {
+            if (register != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Trộn bit (SplitMix64) để id liên tiếp rải đều trên các thanh ghi
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof HyperLogLog sketch && Arrays.equals(registers, sketch.registers);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(registers);
+    }
+}
@@ -0,0 +1,47 @@
+package iuh.fit.se.backend.util;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Con trỏ phân trang keyset: mã hoá khoá sắp xếp và id của phần tử cuối trang
+ * thành chuỗi base64 mờ để client chỉ việc gửi lại nguyên văn.
+ */
+public record KeysetCursor(String sortBy, boolean descending, Long id, String value) {
+
+    private static final String SEPARATOR = "|";
+
+    public static KeysetCursor of(String sortBy, boolean descending, Long id, Object value) {
+        return new KeysetCursor(sortBy, descending, id, value != null ? value.toString() : null);
+    }
+
+    public String encode() {
+        // value đặt cuối cùng vì có thể chứa ký tự phân cách (ví dụ tên sản phẩm)
+        String raw = sortBy + SEPARATOR + (descending ? "desc" : "asc") + SEPARATOR + id + SEPARATOR
+                + (value != null ? value : "");
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Giải mã con trỏ và kiểm tra nó được tạo với cùng kiểu sắp xếp; chuỗi rỗng nghĩa là trang đầu tiên.
+     */
+    public static KeysetCursor decode(String token, String sortBy, boolean descending) {
+        if (token == null || token.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String[] parts = raw.split("\\|", 4);
+            KeysetCursor cursor = new KeysetCursor(parts[0], "desc".equals(parts[1]), Long.valueOf(parts[2]), parts[3]);
+            if (!cursor.sortBy().equalsIgnoreCase(sortBy) || cursor.descending() != descending) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor does not match the requested sort order");
+            }
+            return cursor;
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
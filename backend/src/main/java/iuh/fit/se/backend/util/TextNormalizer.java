@@ -0,0 +1,37 @@
+package iuh.fit.se.backend.util;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Chuẩn hoá chuỗi tiếng Việt để so khớp không dấu: NFD, bỏ dấu, "đ" -> "d", chữ thường.
+ */
+public final class TextNormalizer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-z0-9]+");
+
+    private TextNormalizer() {
+    }
+
+    public static String fold(String value) {
+        if (value == null || value.isBlank()) {
+            return "";
+        }
+        String normalized = DIACRITICS.matcher(Normalizer.normalize(value, Normalizer.Form.NFD)).replaceAll("");
+        // "đ" không có dạng phân tách trong Unicode nên NFD không tách được
+        return normalized.replace('đ', 'd').replace('Đ', 'D').toLowerCase();
+    }
+
+    public static List<String> tokenize(String value) {
+        List<String> tokens = new ArrayList<>();
+        for (String token : NON_ALPHANUMERIC.split(fold(value))) {
+            if (!token.isEmpty()) {
+                tokens.add(token);
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,240 @@
+package iuh.fit.se.backend.repository;
+
+import iuh.fit.se.backend.entity.Brand;
+import iuh.fit.se.backend.entity.Category;
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.Supplier;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.service.SalesRollupService;
+import jakarta.persistence.EntityManager;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Hồi quy plan của các truy vấn báo cáo: seed vài chục nghìn đơn/user vào H2, EXPLAIN đúng câu SQL Hibernate sinh ra
+ * và yêu cầu created_at được range scan trên index (không bị bọc trong date()/year()/month()),
+ * đồng thời mỗi truy vấn phải chạy trong ngân sách thời gian ({@code -Dreport.query.budget-ms}, mặc định 300ms).
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties =
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=iuh.fit.se.backend.repository.ReportQueryPlanTest$SqlCapture")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ReportQueryPlanTest {
+
+    private static final int ORDER_COUNT = 30_000;
+    private static final int USER_COUNT = 6_000;
+    private static final LocalDateTime FIRST_DAY = LocalDate.of(2023, 1, 1).atStartOfDay();
+    private static final long BUDGET_MS = Long.getLong("report.query.budget-ms", 300);
+
+    // Bảng orders/users phải có một index được dùng với điều kiện created_at >= ... (range scan)
+    private static final Pattern RANGE_SCAN = Pattern.compile(
+            "/\\*\\s*public\\.idx_\\w+:[^*]*created_at\\s*>=", Pattern.CASE_INSENSITIVE);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeAll
+    void seed() {
+        Long productId = transactionTemplate.execute(status -> {
+            Brand brand = new Brand();
+            brand.setName("Seiko");
+            entityManager.persist(brand);
+            Category category = new Category();
+            category.setName("Presage");
+            entityManager.persist(category);
+            Supplier supplier = new Supplier();
+            supplier.setName("Seiko VN");
+            entityManager.persist(supplier);
+            Product product = new Product();
+            product.setName("Cocktail Time");
+            product.setBrand(brand);
+            product.setCategory(category);
+            product.setSupplier(supplier);
+            product.setCurrentPrice(BigDecimal.valueOf(12_000_000L));
+            entityManager.persist(product);
+            return product.getId();
+        });
+
+        // Dữ liệu trải đều 3 năm 2023-2025
+        long minutesSpan = 3L * 365 * 24 * 60;
+        List<Object[]> users = new ArrayList<>();
+        for (int i = 0; i < USER_COUNT; i++) {
+            users.add(new Object[]{"plan" + i, "secret", "plan" + i + "@example.com", "Plan " + i, "USER",
+                    Timestamp.valueOf(FIRST_DAY.plusMinutes(minutesSpan * i / USER_COUNT))});
+        }
+        jdbcTemplate.batchUpdate("insert into users (username, password, email, full_name, role, is_active, created_at) "
+                + "values (?, ?, ?, ?, ?, true, ?)", users);
+        List<Long> userIds = jdbcTemplate.queryForList("select id from users order by id", Long.class);
+
+        OrderStatus[] statuses = OrderStatus.values();
+        List<Object[]> orders = new ArrayList<>();
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            orders.add(new Object[]{userIds.get(i % userIds.size()), statuses[i % statuses.length].name(),
+                    Timestamp.valueOf(FIRST_DAY.plusMinutes(minutesSpan * i / ORDER_COUNT)),
+                    BigDecimal.valueOf(12_000_000L * (1 + i % 2)), 1 + i % 2});
+        }
+        jdbcTemplate.batchUpdate("insert into orders (user_id, status, created_at, total_amount, total_quantity) "
+                + "values (?, ?, ?, ?, ?)", orders);
+        jdbcTemplate.update("insert into order_items (order_id, product_id, quantity, price, stock_deferred) "
+                + "select id, ?, total_quantity, 12000000, false from orders", productId);
+        jdbcTemplate.execute("analyze");
+    }
+
+    @AfterAll
+    void cleanUp() {
+        for (String table : new String[]{"order_items", "orders", "users", "products", "brands", "categories", "suppliers"}) {
+            jdbcTemplate.update("delete from " + table);
+        }
+    }
+
+    @Test
+    void orderReportQueriesRangeScanCreatedAt() {
+        LocalDateTime week = LocalDate.of(2024, 3, 1).atStartOfDay();
+        LocalDateTime month = LocalDate.of(2024, 6, 1).atStartOfDay();
+        LocalDateTime year = LocalDate.of(2024, 1, 1).atStartOfDay();
+        List<OrderStatus> fulfilled = SalesRollupService.FULFILLED_STATUSES;
+
+        assertPlan("countOrdersByDayRange", () -> orderRepository.countOrdersByDayRange(week, week.plusDays(7),
+                fulfilled, OrderStatus.PENDING, OrderStatus.CANCELLED));
+        assertPlan("countOrdersByMonth", () -> orderRepository.countOrdersByMonth(year, year.plusYears(1),
+                fulfilled, OrderStatus.PENDING, OrderStatus.CANCELLED));
+        assertPlan("countOrdersByYearRange", () -> orderRepository.countOrdersByYearRange(year, year.plusYears(1),
+                fulfilled, OrderStatus.PENDING, OrderStatus.CANCELLED));
+        assertPlan("sumRevenueInRange", () -> orderRepository.sumRevenueInRange(month, month.plusMonths(1), fulfilled));
+        // Truy vấn stream cần transaction giữ cursor
+        assertPlan("streamCustomerRevenueInRange", () -> transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = orderRepository.streamCustomerRevenueInRange(month, month.plusMonths(1), fulfilled)) {
+                assertThat(rows.count()).isPositive();
+            }
+        }));
+        assertPlan("summarizeCreatedBetween", () -> orderRepository.summarizeCreatedBetween(week, week.plusDays(1),
+                fulfilled, OrderStatus.PENDING, OrderStatus.CANCELLED));
+        assertPlan("findOrderDatesBetween", () -> orderRepository.findOrderDatesBetween(week, week.plusDays(7)));
+    }
+
+    @Test
+    void signupReportQueriesRangeScanCreatedAt() {
+        LocalDateTime week = LocalDate.of(2024, 3, 1).atStartOfDay();
+        LocalDateTime year = LocalDate.of(2024, 1, 1).atStartOfDay();
+
+        assertPlan("countNewUsersByDayRange", () -> userRepository.countNewUsersByDayRange(week, week.plusDays(7)));
+        assertPlan("countNewUsersByMonth", () -> userRepository.countNewUsersByMonth(year, year.plusYears(1)));
+        assertPlan("countNewUsersByYearRange", () -> userRepository.countNewUsersByYearRange(year, year.plusYears(1)));
+    }
+
+    @Test
+    void halfOpenRangesPutMidnightInTheNextPeriod() {
+        LocalDateTime newYear = LocalDate.of(2025, 1, 1).atStartOfDay();
+        jdbcTemplate.update("update orders set created_at = ? where id = (select min(id) from orders)", Timestamp.valueOf(newYear));
+        try {
+            List<Object[]> rows = orderRepository.countOrdersByYearRange(FIRST_DAY, newYear.plusYears(1),
+                    SalesRollupService.FULFILLED_STATUSES, OrderStatus.PENDING, OrderStatus.CANCELLED);
+            long total = rows.stream().mapToLong(row -> ((Number) row[1]).longValue()).sum();
+            assertThat(total).isEqualTo(ORDER_COUNT);
+            assertThat(orderRepository.countOrdersByDayRange(newYear, newYear.plusDays(1), SalesRollupService.FULFILLED_STATUSES,
+                    OrderStatus.PENDING, OrderStatus.CANCELLED)).singleElement()
+                    .satisfies(row -> assertThat(((Number) row[1]).longValue()).isPositive());
+            assertThat(orderRepository.countOrdersByDayRange(newYear.minusDays(1), newYear, SalesRollupService.FULFILLED_STATUSES,
+                    OrderStatus.PENDING, OrderStatus.CANCELLED)).singleElement()
+                    .satisfies(row -> assertThat(((Number) row[1]).longValue())
+                            .isEqualTo(countBetween(newYear.minusDays(1), newYear)));
+        } finally {
+            jdbcTemplate.update("update orders set created_at = ? where id = (select min(id) from orders)", Timestamp.valueOf(FIRST_DAY));
+        }
+    }
+
+    private void assertPlan(String name, Runnable query) {
+        query.run(); // warm-up: parse/plan cache
+        SqlCapture.STATEMENTS.clear();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            query.run();
+            best = Math.min(best, (System.nanoTime() - start) / 1_000_000);
+        }
+        String sql = SqlCapture.STATEMENTS.get(SqlCapture.STATEMENTS.size() - 1);
+        String plan = explain(sql);
+
+        assertThat(RANGE_SCAN.matcher(plan).find())
+                .as("%s should range-scan created_at on an index, plan was:%n%s", name, plan)
+                .isTrue();
+        assertThat(best).as("%s took %dms (budget %dms)", name, best, BUDGET_MS).isLessThanOrEqualTo(BUDGET_MS);
+    }
+
+    private String explain(String sql) {
+        return jdbcTemplate.execute((ConnectionCallback<String>) connection -> {
+            // H2 lập plan cho câu có tham số chưa bind, nên EXPLAIN được đúng câu SQL đã chạy
+            try (PreparedStatement statement = connection.prepareStatement("explain " + sql);
+                 ResultSet rs = statement.executeQuery()) {
+                StringBuilder plan = new StringBuilder();
+                while (rs.next()) {
+                    plan.append(rs.getString(1)).append('\n');
+                }
+                return plan.toString();
+            }
+        });
+    }
+
+    private long countBetween(LocalDateTime start, LocalDateTime end) {
+        Map<String, Object> row = jdbcTemplate.queryForMap("select count(*) as c from orders where created_at >= ? and created_at < ?",
+                Timestamp.valueOf(start), Timestamp.valueOf(end));
+        return ((Number) row.get("c")).longValue();
+    }
+
+    /**
+     * Ghi lại các câu SQL Hibernate chuẩn bị chạy (đăng ký qua hibernate.session_factory.statement_inspector).
+     */
+    public static class SqlCapture implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
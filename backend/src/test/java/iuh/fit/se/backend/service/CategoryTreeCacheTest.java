@@ -0,0 +1,160 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.response.CategoryResponse;
+import iuh.fit.se.backend.entity.Brand;
+import iuh.fit.se.backend.entity.Category;
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.Supplier;
+import iuh.fit.se.backend.entity.enums.ProductStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Số sản phẩm theo danh mục: một truy vấn group by khi nạp, đọc từ bộ nhớ, cập nhật khi thay đổi sản phẩm đã commit.
+ */
+@OrderPipelineTest
+@Import(CategoryService.class)
+class CategoryTreeCacheTest {
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CategoryTreeCache categoryTreeCache;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    private Category automatic;
+    private Category quartz;
+    private Long discontinuedId;
+    private Long activeId;
+
+    @BeforeEach
+    void seedCatalog() {
+        transactionTemplate.executeWithoutResult(status -> seed());
+        // cache singleton phải nạp lại theo dữ liệu của từng test
+        categoryTreeCache.invalidate();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        fixtures.truncateAll();
+    }
+
+    private void seed() {
+        Brand brand = new Brand();
+        brand.setName("Orient");
+        entityManager.persist(brand);
+        Supplier supplier = new Supplier();
+        supplier.setName("Orient VN");
+        entityManager.persist(supplier);
+        automatic = new Category();
+        automatic.setName("Automatic");
+        entityManager.persist(automatic);
+        quartz = new Category();
+        quartz.setName("Quartz");
+        entityManager.persist(quartz);
+
+        for (int i = 0; i < 5; i++) {
+            Product product = new Product();
+            product.setName("Bambino " + i);
+            product.setBrand(brand);
+            product.setSupplier(supplier);
+            product.setCategory(i < 3 ? automatic : quartz);
+            product.setStatus(i == 4 ? ProductStatus.DISCONTINUED : ProductStatus.ACTIVE);
+            entityManager.persist(product);
+            if (i == 0) {
+                activeId = product.getId();
+            } else if (i == 4) {
+                discontinuedId = product.getId();
+            }
+        }
+    }
+
+    @Test
+    void listsActiveCountsFromMemoryAfterOneLoad() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Map<String, Integer> counts = counts();
+        // findAll categories + một truy vấn group by, không load sản phẩm
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isEqualTo(2);
+        assertThat(counts).containsEntry("Automatic", 3).containsEntry("Quartz", 1);
+
+        statistics.clear();
+        counts();
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void updatesCountsWhenProductsChange() {
+        counts();
+
+        Product moved = productService.getProduct(activeId);
+        moved.setCategory(entityManager.find(Category.class, quartz.getId()));
+        productService.saveProduct(moved);
+        assertThat(counts()).containsEntry("Automatic", 2).containsEntry("Quartz", 2);
+
+        productService.deleteProduct(activeId);
+        assertThat(counts()).containsEntry("Automatic", 2).containsEntry("Quartz", 1);
+
+        Product restored = productService.getProduct(discontinuedId);
+        restored.setStatus(ProductStatus.ACTIVE);
+        productService.saveProduct(restored);
+        assertThat(counts()).containsEntry("Automatic", 2).containsEntry("Quartz", 2);
+
+        Product created = new Product();
+        created.setName("Kamasu");
+        created.setBrand(restored.getBrand());
+        created.setSupplier(restored.getSupplier());
+        created.setCategory(entityManager.find(Category.class, automatic.getId()));
+        productService.saveProduct(created);
+        assertThat(counts()).containsEntry("Automatic", 3).containsEntry("Quartz", 2);
+    }
+
+    @Test
+    void rolledBackSaveLeavesCountsUnchanged() {
+        counts();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Product moved = productService.getProduct(activeId);
+            moved.setCategory(entityManager.find(Category.class, quartz.getId()));
+            productService.saveProduct(moved, null);
+            status.setRollbackOnly();
+        });
+
+        assertThat(counts()).containsEntry("Automatic", 3).containsEntry("Quartz", 1);
+    }
+
+    private Map<String, Integer> counts() {
+        return categoryService.getAllCategories().stream()
+                .collect(Collectors.toMap(CategoryResponse::getName, CategoryResponse::getProductCount));
+    }
+}
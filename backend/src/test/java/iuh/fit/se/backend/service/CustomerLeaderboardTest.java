@@ -0,0 +1,174 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.CustomerRevenuePoint;
+import iuh.fit.se.backend.dto.OrderUserSummary;
+import iuh.fit.se.backend.dto.request.OrderItemRequest;
+import iuh.fit.se.backend.dto.request.OrderRequest;
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.repository.OrderRepository;
+import iuh.fit.se.backend.service.impl.OrderReportServiceImpl;
+import iuh.fit.se.backend.service.impl.RevenueReportServiceImpl;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bảng xếp hạng khách theo tháng/năm được duy trì theo vòng đời đơn, khớp với truy vấn gộp trên bảng gốc,
+ * không đổi khi tính lại ngày, và LIMIT được áp dụng trong câu truy vấn.
+ */
+@OrderPipelineTest
+class CustomerLeaderboardTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private RevenueReportServiceImpl revenueReportService;
+
+    @Autowired
+    private OrderReportServiceImpl orderReportService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    private final LocalDate today = LocalDate.now();
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        userIds.clear();
+        productIds.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String name : new String[]{"an", "binh", "chi", "dung"}) {
+                userIds.add(fixtures.user(name).getId());
+            }
+
+            Brand brand = fixtures.brand("Seiko");
+            Category category = fixtures.category("Automatic");
+            Supplier supplier = fixtures.supplier("Seiko VN");
+            long[] prices = {100_000L, 200_000L, 500_000L, 1_000_000L};
+            for (int i = 0; i < prices.length; i++) {
+                productIds.add(fixtures.product("SKX00" + i, prices[i], brand, category, supplier, 100).getId());
+            }
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        fixtures.truncateAll();
+    }
+
+    @Test
+    void leaderboardFollowsOrderLifecycleAndMatchesExactRanking() {
+        Order removed = pay(orderRequest(userIds.get(0), 3));                 // an: 1.000.000, sau đó bị xoá
+        pay(orderRequest(userIds.get(1), 2, 1));                              // binh: 700.000
+        pay(orderRequest(userIds.get(2), 0));                                 // chi: 100.000
+        pay(orderRequest(userIds.get(3), 3, 2));                              // dung: 1.500.000
+        Order cancelled = pay(orderRequest(userIds.get(3), 1));               // dung: bị huỷ
+        orderService.saveOrder(orderRequest(userIds.get(2), 3));              // chờ thanh toán, không tính
+
+        assertMatchesExact();
+
+        orderService.updateOrderStatus(cancelled.getId(), OrderStatus.CANCELLED);
+        orderService.updateOrderStatus(removed.getId(), OrderStatus.COMPLETED);
+        assertMatchesExact();
+        orderService.deleteOrder(removed.getId());
+        assertMatchesExact();
+
+        List<CustomerRevenuePoint> top = revenueReportService.getCustomerRevenueByMonth(today.getYear(), today.getMonthValue(), 2);
+        assertThat(top).extracting(CustomerRevenuePoint::getCustomerId).containsExactly(userIds.get(3), userIds.get(1));
+        assertThat(top.get(0).getTotalRevenue()).isEqualByComparingTo("1500000");
+        assertThat(top.get(0).getOrderCount()).isEqualTo(1);
+
+        // Tính lại ngày từ bảng gốc không làm lệch bảng xếp hạng
+        salesRollupService.rebuild(today, today.plusDays(1));
+        assertMatchesExact();
+
+        orderService.updateOrderStatus(findOrderOf(userIds.get(2), OrderStatus.PAID), OrderStatus.CANCELLED);
+        assertThat(revenueReportService.getCustomerRevenueByYear(today.getYear(), 10))
+                .extracting(CustomerRevenuePoint::getCustomerId)
+                .containsExactly(userIds.get(3), userIds.get(1));
+    }
+
+    @Test
+    void ordersByUserAppliesLimitInQuery() {
+        pay(orderRequest(userIds.get(0), 0));
+        pay(orderRequest(userIds.get(1), 3));
+        pay(orderRequest(userIds.get(2), 2));
+        orderService.saveOrder(orderRequest(userIds.get(2), 1));
+
+        List<OrderUserSummary> top = orderReportService.getOrdersByUser(today.atStartOfDay(), today.plusDays(1).atStartOfDay(), 2);
+        assertThat(top).extracting(OrderUserSummary::getUserId).containsExactly(userIds.get(2), userIds.get(1));
+        assertThat(top.get(0).getOrdersCount()).isEqualTo(2);
+    }
+
+    private void assertMatchesExact() {
+        List<String> exact = transactionTemplate.execute(status -> {
+            try (Stream<Object[]> rows = orderRepository.streamCustomerRevenueInRange(
+                    today.withDayOfMonth(1).atStartOfDay(), today.withDayOfMonth(1).plusMonths(1).atStartOfDay(),
+                    SalesRollupService.FULFILLED_STATUSES)) {
+                return rows.map(row -> row[0] + ":" + ((Number) row[3]).longValue() + ":" + ((Number) row[4]).longValue()).toList();
+            }
+        });
+        List<String> byMonth = revenueReportService.getCustomerRevenueByMonth(today.getYear(), today.getMonthValue(), 10).stream()
+                .map(CustomerLeaderboardTest::describe)
+                .toList();
+        List<String> byYear = revenueReportService.getCustomerRevenueByYear(today.getYear(), 10).stream()
+                .map(CustomerLeaderboardTest::describe)
+                .toList();
+        assertThat(byMonth).isEqualTo(exact);
+        assertThat(byYear).isEqualTo(exact);
+        assertThat(revenueReportService.getCustomerRevenueByMonth(today.getYear(), today.getMonthValue(), 1))
+                .hasSize(Math.min(1, exact.size()));
+    }
+
+    private static String describe(CustomerRevenuePoint point) {
+        return point.getCustomerId() + ":" + point.getTotalRevenue().longValue() + ":" + point.getOrderCount();
+    }
+
+    private Order pay(OrderRequest request) {
+        Order order = orderService.saveOrder(request);
+        orderService.updateOrderStatus(order.getId(), OrderStatus.PAID);
+        return order;
+    }
+
+    private Long findOrderOf(Long userId, OrderStatus status) {
+        return entityManager.createQuery("select o.id from Order o where o.user.id = :userId and o.status = :status", Long.class)
+                .setParameter("userId", userId)
+                .setParameter("status", status)
+                .getSingleResult();
+    }
+
+    // Mỗi sản phẩm (theo vị trí trong productIds) một cái
+    private OrderRequest orderRequest(Long userId, int... products) {
+        List<OrderItemRequest> items = new ArrayList<>();
+        for (int product : products) {
+            items.add(OrderFixtures.item(productIds.get(product), 1));
+        }
+        return OrderFixtures.orderRequest(userId, items);
+    }
+}
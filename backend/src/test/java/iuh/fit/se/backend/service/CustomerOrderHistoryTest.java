@@ -0,0 +1,183 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.response.CursorPageResponse;
+import iuh.fit.se.backend.dto.response.OrderItemResponse;
+import iuh.fit.se.backend.dto.response.OrderResponse;
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.PaymentMethod;
+import iuh.fit.se.backend.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Đếm số câu SQL của trang "đơn hàng của tôi": số câu cố định, không phụ thuộc số đơn, dòng đơn hay sản phẩm.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(OrderPipelineTestConfig.class)
+class CustomerOrderHistoryTest {
+
+    private static final int ORDER_COUNT = 25;
+    private static final int PRODUCT_COUNT = 5;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long userId;
+
+    @BeforeEach
+    void seed() {
+        User user = new User();
+        user.setUsername("loyal");
+        user.setPassword("secret");
+        user.setEmail("loyal@example.com");
+        user.setFullName("Loyal Customer");
+        entityManager.persist(user);
+        userId = user.getId();
+
+        Brand brand = new Brand();
+        brand.setName("Hamilton");
+        entityManager.persist(brand);
+        Category category = new Category();
+        category.setName("Field");
+        entityManager.persist(category);
+        Supplier supplier = new Supplier();
+        supplier.setName("Hamilton VN");
+        entityManager.persist(supplier);
+
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < PRODUCT_COUNT; i++) {
+            Product product = new Product();
+            product.setName("Khaki " + i);
+            product.setBrand(brand);
+            product.setCategory(category);
+            product.setSupplier(supplier);
+            product.setCurrentPrice(BigDecimal.valueOf(12_000_000L));
+            product.getInventories().add(Inventory.builder().product(product).stock(4).build());
+            product.getInventories().add(Inventory.builder().product(product).stock(3).build());
+            entityManager.persist(product);
+            products.add(product);
+        }
+
+        for (int o = 0; o < ORDER_COUNT; o++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setPaymentMethod(PaymentMethod.CASH);
+            for (int i = 0; i < 3; i++) {
+                Product product = products.get((o + i) % PRODUCT_COUNT);
+                order.getOrderItems().add(OrderItem.builder().order(order).product(product)
+                        .quantity(1).price(product.getCurrentPrice())
+                        .productName("Snapshot " + product.getName()).productImageUrl("https://img/" + product.getId())
+                        .build());
+            }
+            entityManager.persist(order);
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void pageIsServedWithConstantQueries() {
+        Statistics statistics = statistics();
+        statistics.clear();
+
+        Page<OrderResponse> page = orderService.getOrdersByUser(userId, 0, 10, false);
+
+        // Trang id + count + một truy vấn fetch join đơn/dòng đơn/user
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+        assertThat(page.getTotalElements()).isEqualTo(ORDER_COUNT);
+        assertThat(page.getContent()).hasSize(10);
+        assertThat(page.getContent()).extracting(OrderResponse::getId)
+                .isSortedAccordingTo(Comparator.reverseOrder());
+
+        OrderItemResponse item = page.getContent().get(0).getItems().get(0);
+        assertThat(item.getProductName()).startsWith("Snapshot Khaki");
+        assertThat(item.getProductImageUrl()).startsWith("https://img/");
+        assertThat(item.getProductStock()).isNull();
+    }
+
+    @Test
+    void liveStockCostsOneExtraQuery() {
+        Statistics statistics = statistics();
+        statistics.clear();
+
+        Page<OrderResponse> page = orderService.getOrdersByUser(userId, 1, 10, true);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(4);
+        assertThat(page.getContent()).flatExtracting(OrderResponse::getItems)
+                .extracting(OrderItemResponse::getProductStock)
+                .containsOnly(7);
+    }
+
+    @Test
+    void fullHistoryIsOneQuery() {
+        Statistics statistics = statistics();
+        statistics.clear();
+
+        List<OrderResponse> orders = orderService.getOrdersByUser(userId, false);
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(orders).hasSize(ORDER_COUNT);
+        assertThat(orders).allSatisfy(order -> assertThat(order.getItems()).hasSize(3));
+    }
+
+    @Test
+    void adminCursorWalksOrdersCreatedAtTheSameInstantOnce() {
+        // Hai nhóm đơn trùng thời điểm tạo (có phần micro giây): trong mỗi nhóm chỉ id còn phân biệt thứ tự
+        LocalDateTime first = LocalDateTime.of(2026, 3, 1, 9, 30, 15, 123_456_000);
+        entityManager.createQuery("update Order o set o.createdAt = case when mod(o.id, 2) = 0 then :first else :second end")
+                .setParameter("first", first)
+                .setParameter("second", first.plusMinutes(5))
+                .executeUpdate();
+        entityManager.clear();
+
+        for (String sortBy : new String[]{"id", "createdAt"}) {
+            for (String sortDir : new String[]{"asc", "desc"}) {
+                List<Long> ids = new ArrayList<>();
+                String after = "";
+                do {
+                    CursorPageResponse<OrderResponse> page = orderService.getAdminOrdersAfter(
+                            null, null, null, null, null, null, null, null, after, 7, sortBy, sortDir);
+                    page.getContent().forEach(order -> ids.add(order.getId()));
+                    after = page.getNextCursor();
+                    if (after != null) {
+                        // Con trỏ giải mã lại trỏ đúng đơn cuối của trang vừa đọc
+                        assertThat(KeysetCursor.decode(after, sortBy, sortDir.equals("desc")).id())
+                                .isEqualTo(ids.get(ids.size() - 1));
+                    }
+                } while (after != null);
+
+                assertThat(ids).as("%s %s", sortBy, sortDir).hasSize(ORDER_COUNT).doesNotHaveDuplicates();
+            }
+        }
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
@@ -0,0 +1,114 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.CustomerSummaryReport;
+import iuh.fit.se.backend.dto.DashboardSnapshot;
+import iuh.fit.se.backend.dto.InventorySummaryReport;
+import iuh.fit.se.backend.dto.OrderSummaryReport;
+import iuh.fit.se.backend.dto.RevenueSummaryReport;
+import iuh.fit.se.backend.service.impl.DashboardReportServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Dashboard gom bốn báo cáo tổng quan: chạy song song trên virtual thread, cache theo TTL,
+ * và bỏ cache khi có thay đổi (kể cả khi thay đổi xảy ra lúc đang tính).
+ */
+class DashboardReportServiceTest {
+
+    private static final long REPORT_MILLIS = 300;
+
+    private final RevenueReportService revenueReportService = mock(RevenueReportService.class);
+    private final OrderReportService orderReportService = mock(OrderReportService.class);
+    private final InventoryReportService inventoryReportService = mock(InventoryReportService.class);
+    private final CustomerReportService customerReportService = mock(CustomerReportService.class);
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    private DashboardReportServiceImpl dashboard;
+
+    @BeforeEach
+    void setUp() {
+        dashboard = new DashboardReportServiceImpl(revenueReportService, orderReportService,
+                inventoryReportService, customerReportService, Duration.ofMinutes(1));
+        when(revenueReportService.getRevenueSummary()).thenAnswer(slow(RevenueSummaryReport.builder()
+                .totalRevenue(BigDecimal.valueOf(42_000_000L)).build()));
+        when(orderReportService.getOrderSummary()).thenAnswer(slow(OrderSummaryReport.builder().totalOrders(7).build()));
+        when(inventoryReportService.getInventorySummary()).thenAnswer(slow(new InventorySummaryReport()));
+        when(customerReportService.getCustomerSummary()).thenAnswer(slow(new CustomerSummaryReport()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        dashboard.shutdown();
+    }
+
+    @Test
+    void summariesRunConcurrentlyOnVirtualThreads() {
+        long start = System.nanoTime();
+        DashboardSnapshot snapshot = dashboard.getDashboard();
+        long elapsed = Duration.ofNanos(System.nanoTime() - start).toMillis();
+
+        // Bốn báo cáo 300ms chạy tuần tự sẽ mất 1.2s
+        assertThat(elapsed).isLessThan(REPORT_MILLIS * 3);
+        assertThat(threads).hasSize(4).allMatch(Thread::isVirtual);
+        assertThat(snapshot.getRevenue().getTotalRevenue()).isEqualByComparingTo("42000000");
+        assertThat(snapshot.getOrders().getTotalOrders()).isEqualTo(7);
+        assertThat(snapshot.getGeneratedAt()).isNotNull();
+    }
+
+    @Test
+    void snapshotIsCachedUntilDataChanges() {
+        DashboardSnapshot first = dashboard.getDashboard();
+        assertThat(dashboard.getDashboard()).isSameAs(first);
+        verify(orderReportService, times(1)).getOrderSummary();
+
+        dashboard.onDataChanged(new DashboardReportService.DataChanged("orders"));
+
+        assertThat(dashboard.getDashboard()).isNotSameAs(first);
+        verify(orderReportService, times(2)).getOrderSummary();
+    }
+
+    @Test
+    void changeDuringLoadIsNotCached() {
+        // Đơn hàng thay đổi trong lúc đang tính: kết quả vẫn trả về nhưng không được cache
+        when(customerReportService.getCustomerSummary()).thenAnswer(invocation -> {
+            dashboard.invalidate();
+            return new CustomerSummaryReport();
+        });
+
+        dashboard.getDashboard();
+        dashboard.getDashboard();
+
+        verify(revenueReportService, times(2)).getRevenueSummary();
+    }
+
+    @Test
+    void failingReportFailsTheRequest() {
+        when(inventoryReportService.getInventorySummary()).thenThrow(new IllegalStateException("inventory down"));
+
+        assertThatThrownBy(() -> dashboard.getDashboard())
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessage("inventory down");
+    }
+
+    private <T> Answer<T> slow(T value) {
+        return invocation -> {
+            threads.add(Thread.currentThread());
+            Thread.sleep(REPORT_MILLIS);
+            return value;
+        };
+    }
+}
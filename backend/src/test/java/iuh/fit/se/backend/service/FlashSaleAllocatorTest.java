@@ -0,0 +1,189 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.request.OrderRequest;
+import iuh.fit.se.backend.dto.response.FlashSaleStatusResponse;
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.repository.FlashSaleRepository;
+import iuh.fit.se.backend.repository.InventoryRepository;
+import iuh.fit.se.backend.repository.OrderItemRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Flash sale giữ hàng bằng bộ đếm trong bộ nhớ: không bán vượt, không UPDATE kho lúc đặt hàng,
+ * ghi bù theo lô và nạp lại đúng sau khi khởi động lại.
+ */
+@OrderPipelineTest
+class FlashSaleAllocatorTest {
+
+    private static final int STOCK = 50;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private FlashSaleAllocator flashSaleAllocator;
+
+    @Autowired
+    private FlashSaleRepository flashSaleRepository;
+
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private ProductDetailCache productDetailCache;
+
+    @Autowired
+    private InventoryLedgerService inventoryLedgerService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long userId;
+    private Long saleId;
+    private Long soldOutId;
+
+    @BeforeEach
+    void seed() {
+        transactionTemplate.executeWithoutResult(status -> {
+            userId = fixtures.user("flash").getId();
+            Brand brand = fixtures.brand("Swatch");
+            Category category = fixtures.category("Collab");
+            Supplier supplier = fixtures.supplier("Swatch VN");
+            saleId = fixtures.product("MoonSwatch", 6_500_000L, brand, category, supplier, STOCK).getId();
+            soldOutId = fixtures.product("Scuba Fifty Fathoms", 6_500_000L, brand, category, supplier, 0).getId();
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        flashSaleAllocator.disable(saleId);
+        fixtures.truncateAll();
+    }
+
+    @Test
+    void parallelCheckoutsAreAdmittedInMemoryAndWrittenBackInBatches() throws Exception {
+        flashSaleAllocator.enable(saleId, null);
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < 200; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        orderService.saveOrder(orderRequest(saleId, 1));
+                        return 1;
+                    } catch (RuntimeException e) {
+                        assertThat(e.getMessage()).contains("trong kho");
+                        return 0;
+                    }
+                }));
+            }
+            start.countDown();
+            int sold = 0;
+            for (Future<Integer> result : results) {
+                sold += result.get(60, TimeUnit.SECONDS);
+            }
+            assertThat(sold).isEqualTo(STOCK);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Đặt hàng không đụng tới inventories; số đã bán nằm trong order_items chờ ghi bù
+        assertThat(stock(saleId)).isEqualTo(STOCK);
+        FlashSaleStatusResponse status = flashSaleAllocator.reconcile(saleId);
+        assertThat(status.getAvailable()).isZero();
+        assertThat(status.getPendingWriteBack()).isZero();
+        assertThat(stock(saleId)).isZero();
+        assertThat(flashSaleAllocator.writeBack()).isZero();
+    }
+
+    @Test
+    void rolledBackOrdersGiveTheirUnitsBack() {
+        flashSaleAllocator.enable(saleId, null);
+
+        // Dòng thứ hai hết hàng: cả đơn rollback, bộ đếm phải trả lại 3 cái đã giữ
+        assertThatThrownBy(() -> orderService.saveOrder(orderRequest(List.of(saleId, soldOutId), 3)))
+                .hasMessageContaining("trong kho");
+
+        assertThat(flashSaleAllocator.statuses()).singleElement()
+                .satisfies(s -> {
+                    assertThat(s.getAvailable()).isEqualTo(STOCK);
+                    assertThat(s.getInFlight()).isZero();
+                });
+    }
+
+    @Test
+    void restartRestoresTheCounterFromUnwrittenSales() {
+        flashSaleAllocator.enable(saleId, null);
+        Order order = orderService.saveOrder(orderRequest(saleId, 5));
+        orderService.saveOrder(orderRequest(saleId, 2));
+
+        // Node khởi động lại trước khi kịp ghi bù: bộ đếm mới = 50 - 7 chưa ghi bù
+        FlashSaleAllocator restarted = new FlashSaleAllocator(flashSaleRepository, orderItemRepository,
+                inventoryRepository, productDetailCache, inventoryLedgerService, transactionManager, 1, 500);
+        restarted.restore();
+        assertThat(restarted.isActive(saleId)).isTrue();
+        assertThat(restarted.statuses().get(0).getAvailable()).isEqualTo(43);
+
+        // Huỷ đơn trước khi ghi bù: kho cộng 5 rồi ghi bù trừ 7, bộ đếm cộng lại 5
+        orderService.updateOrderStatus(order.getId(), OrderStatus.CANCELLED);
+        assertThat(flashSaleAllocator.statuses().get(0).getAvailable()).isEqualTo(48);
+        assertThat(restarted.writeBack()).isEqualTo(7);
+        assertThat(stock(saleId)).isEqualTo(48);
+    }
+
+    @Test
+    void reconcilePicksUpStockEditedDuringTheSale() {
+        flashSaleAllocator.enable(saleId, null);
+        orderService.saveOrder(orderRequest(saleId, 4));
+        transactionTemplate.executeWithoutResult(status ->
+                inventoryRepository.findByProductIdForUpdate(saleId).get(0).setStock(STOCK + 20));
+
+        FlashSaleStatusResponse status = flashSaleAllocator.reconcile(saleId);
+
+        assertThat(status.getAvailable()).isEqualTo(STOCK + 20 - 4);
+        assertThat(status.getDatabaseStock()).isEqualTo(STOCK + 20 - 4);
+    }
+
+    private OrderRequest orderRequest(Long productId, int quantity) {
+        return orderRequest(List.of(productId), quantity);
+    }
+
+    private OrderRequest orderRequest(List<Long> productIds, int quantity) {
+        return OrderFixtures.orderRequest(userId, productIds.stream().map(id -> OrderFixtures.item(id, quantity)).toList());
+    }
+
+    private int stock(Long productId) {
+        return inventoryRepository.findAll().stream()
+                .filter(inv -> inv.getProduct().getId().equals(productId))
+                .mapToInt(Inventory::getStock).sum();
+    }
+}
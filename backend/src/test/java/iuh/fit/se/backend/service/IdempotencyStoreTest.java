@@ -0,0 +1,161 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.response.VNPayPaymentResponse;
+import iuh.fit.se.backend.repository.IdempotencyRecordRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Kiểm tra Idempotency-Key: request trùng chờ kết quả lần đầu (kể cả trên node khác), key dùng lại với nội dung
+ * khác bị từ chối, lần đầu lỗi thì được phép thử lại, key hết hạn được nhận lại và dọn đi.
+ */
+@OrderPipelineTest
+class IdempotencyStoreTest {
+
+    @Autowired
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    @AfterEach
+    void cleanUp() {
+        fixtures.truncateAll();
+    }
+
+    @Test
+    void concurrentDuplicatesOnTwoNodesWaitForFirstResult() throws Exception {
+        IdempotencyStore[] nodes = {node(Duration.ofHours(1)), node(Duration.ofHours(1))};
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<IdempotencyStore.Result<Long>>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                IdempotencyStore store = nodes[i % 2];
+                results.add(pool.submit(() -> store.execute("orders:1", "click-1", 42, Long.class, () -> {
+                    runs.incrementAndGet();
+                    await(release);
+                    return 1001L;
+                })));
+            }
+            Thread.sleep(500);
+            release.countDown();
+
+            int replayed = 0;
+            for (Future<IdempotencyStore.Result<Long>> result : results) {
+                IdempotencyStore.Result<Long> r = result.get(10, TimeUnit.SECONDS);
+                assertThat(r.value()).isEqualTo(1001L);
+                replayed += r.replayed() ? 1 : 0;
+            }
+            assertThat(runs).hasValue(1);
+            assertThat(replayed).isEqualTo(15);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        // Retry sau khi đã xong, trên node nào cũng nhận lại kết quả cũ
+        IdempotencyStore.Result<Long> retry = nodes[1].execute("orders:1", "click-1", 42, Long.class, () -> 2002L);
+        assertThat(retry.value()).isEqualTo(1001L);
+        assertThat(retry.replayed()).isTrue();
+    }
+
+    @Test
+    void storedResponsesAreReplayedFromTheDatabase() {
+        IdempotencyStore store = node(Duration.ofHours(1));
+        VNPayPaymentResponse first = store.execute("vnpay:7", "pay-1", 7, VNPayPaymentResponse.class,
+                () -> new VNPayPaymentResponse("00", "Success", "https://sandbox.vnpayment.vn/?vnp_TxnRef=1")).value();
+
+        IdempotencyStore.Result<VNPayPaymentResponse> replay = node(Duration.ofHours(1)).execute("vnpay:7", "pay-1", 7,
+                VNPayPaymentResponse.class, () -> new VNPayPaymentResponse("00", "Success", "https://other"));
+        assertThat(replay.replayed()).isTrue();
+        assertThat(replay.value()).isEqualTo(first);
+    }
+
+    @Test
+    void reusingKeyWithDifferentPayloadIsRejected() {
+        IdempotencyStore store = node(Duration.ofHours(1));
+        store.execute("orders:1", "k", 1, Long.class, () -> 1L);
+
+        assertThatThrownBy(() -> store.execute("orders:1", "k", 2, Long.class, () -> 2L))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("422");
+        // Cùng key nhưng khác người dùng là một key khác
+        assertThat(store.execute("orders:2", "k", 2, Long.class, () -> 2L).replayed()).isFalse();
+    }
+
+    @Test
+    void failedOrUnkeptResultsCanBeRetried() {
+        IdempotencyStore store = node(Duration.ofHours(1));
+        assertThatThrownBy(() -> store.execute("orders:1", "k", 1, Long.class, () -> {
+            throw new RuntimeException("Sản phẩm A chỉ còn 0 trong kho");
+        })).hasMessageContaining("trong kho");
+        assertThat(store.execute("orders:1", "k", 1, Long.class, () -> 7L).value()).isEqualTo(7L);
+
+        assertThat(store.execute("vnpay:1", "k", 1, String.class, () -> "99", "00"::equals).value()).isEqualTo("99");
+        IdempotencyStore.Result<String> retry = store.execute("vnpay:1", "k", 1, String.class, () -> "00", "00"::equals);
+        assertThat(retry.value()).isEqualTo("00");
+        assertThat(retry.replayed()).isFalse();
+    }
+
+    @Test
+    void expiredKeysAreClaimedAgainAndPurged() throws Exception {
+        IdempotencyStore store = node(Duration.ofMillis(1));
+        store.execute("orders:1", "k", 1, Long.class, () -> 1L);
+        store.execute("orders:1", "other", 1, Long.class, () -> 1L);
+        Thread.sleep(20);
+
+        // Hết hạn thì key cũ dùng được cho request mới
+        IdempotencyStore.Result<Long> reused = store.execute("orders:1", "k", 2, Long.class, () -> 2L);
+        assertThat(reused.value()).isEqualTo(2L);
+        assertThat(reused.replayed()).isFalse();
+
+        Thread.sleep(20);
+        store.purgeExpired();
+        assertThat(idempotencyRecordRepository.count()).isZero();
+    }
+
+    @Test
+    void requestsWithoutKeyAlwaysRun() {
+        IdempotencyStore store = node(Duration.ofHours(1));
+        AtomicInteger runs = new AtomicInteger();
+        store.execute("orders:1", null, 1, Integer.class, runs::incrementAndGet);
+        store.execute("orders:1", " ", 1, Integer.class, runs::incrementAndGet);
+
+        assertThat(runs).hasValue(2);
+        assertThat(idempotencyRecordRepository.count()).isZero();
+    }
+
+    // Mỗi instance đóng vai một node dùng chung database
+    private IdempotencyStore node(Duration ttl) {
+        return new IdempotencyStore(idempotencyRecordRepository, transactionManager, ttl, Duration.ofSeconds(10));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
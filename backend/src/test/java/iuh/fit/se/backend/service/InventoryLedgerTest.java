@@ -0,0 +1,210 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.request.OrderItemRequest;
+import iuh.fit.se.backend.dto.request.OrderRequest;
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.InventoryMovementType;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * Sổ biến động tồn kho khớp với inventories qua đặt đơn, huỷ đơn và admin sửa kho; được ghi theo lô lúc commit;
+ * và tồn kho theo ngày phát lại từ ảnh chụp gần nhất.
+ */
+@OrderPipelineTest
+class InventoryLedgerTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private InventoryLedgerService inventoryLedgerService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    private final LocalDate today = LocalDate.now();
+    private final List<Long> productIds = new ArrayList<>();
+    private Long buyerId;
+    private User admin;
+
+    @BeforeEach
+    void seed() {
+        productIds.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            buyerId = fixtures.user("buyer").getId();
+            admin = fixtures.user("admin");
+
+            Brand brand = fixtures.brand("Orient");
+            Category category = fixtures.category("Diver");
+            Supplier supplier = fixtures.supplier("Orient VN");
+            for (String name : new String[]{"Kamasu", "Mako", "Ray"}) {
+                Product product = fixtures.product(name, 3_000_000L, brand, category, supplier, 100);
+                productIds.add(product.getId());
+                // Số dư đầu sổ như migration backfill
+                inventoryLedgerService.record(product.getId(), 100, InventoryMovementType.OPENING, null, null, "migration");
+            }
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        fixtures.truncateAll();
+    }
+
+    @Test
+    void ledgerFollowsOrdersCancellationsAndAdjustments() {
+        Order order = orderService.saveOrder(orderRequest(Map.of(0, 2, 1, 1, 2, 3)));
+        Order cancelled = orderService.saveOrder(orderRequest(Map.of(0, 5)));
+        orderService.updateOrderStatus(cancelled.getId(), OrderStatus.CANCELLED);
+        inventoryService.updateStock(inventoryIdOf(productIds.get(1)), 40, admin, "Kiểm kê");
+
+        // Đơn không đủ hàng rollback: không để lại dòng sổ nào
+        assertThatThrownBy(() -> orderService.saveOrder(orderRequest(Map.of(2, 1_000)))).isInstanceOf(RuntimeException.class);
+
+        List<InventoryMovement> first = inventoryLedgerService.getMovements(productIds.get(0), 10);
+        assertThat(first).extracting(InventoryMovement::getType).containsExactly(
+                InventoryMovementType.ORDER_CANCELLATION, InventoryMovementType.ORDER_DEDUCTION,
+                InventoryMovementType.ORDER_DEDUCTION, InventoryMovementType.OPENING);
+        assertThat(first).extracting(InventoryMovement::getQuantity).containsExactly(5, -5, -2, 100);
+        assertThat(first.get(0).getOrderId()).isEqualTo(cancelled.getId());
+        assertThat(first.get(2).getOrderId()).isEqualTo(order.getId());
+        assertThat(first.get(2).getActor()).isEqualTo("buyer");
+
+        InventoryMovement adjustment = inventoryLedgerService.getMovements(productIds.get(1), 1).get(0);
+        assertThat(adjustment.getType()).isEqualTo(InventoryMovementType.ADJUSTMENT);
+        assertThat(adjustment.getQuantity()).isEqualTo(40 - 99);
+        assertThat(adjustment.getReason()).isEqualTo("Kiểm kê");
+        assertThat(adjustment.getActor()).isEqualTo("admin");
+
+        // Phát lại sổ cho đúng tồn kho hiện tại
+        assertThat(inventoryLedgerService.getStockOnDate(today)).isEqualTo(currentStock());
+        assertThat(currentStock()).containsEntry(productIds.get(0), 98L).containsEntry(productIds.get(1), 40L)
+                .containsEntry(productIds.get(2), 97L);
+    }
+
+    @Test
+    void productFormStockIsLedgeredAgainstTheCurrentStock() {
+        Product template = productService.getProduct(productIds.get(0));
+        Product created = new Product();
+        created.setName("Bambino");
+        created.setBrand(template.getBrand());
+        created.setCategory(template.getCategory());
+        created.setSupplier(template.getSupplier());
+        created.setCurrentPrice(BigDecimal.valueOf(4_000_000L));
+        Long createdId = productService.saveProduct(created, 50).getId();
+        productIds.add(createdId);
+
+        // Tồn kho trên form đã cũ: đơn trừ 5 sau khi admin mở form, chênh lệch tính theo tồn kho trong DB
+        Product edited = productService.getProduct(createdId);
+        orderService.saveOrder(orderRequest(Map.of(3, 5)));
+        productService.saveProduct(edited, 30);
+
+        assertThat(inventoryLedgerService.getMovements(createdId, 10))
+                .extracting(InventoryMovement::getType, InventoryMovement::getQuantity)
+                .containsExactly(tuple(InventoryMovementType.ADJUSTMENT, 30 - 45),
+                        tuple(InventoryMovementType.ORDER_DEDUCTION, -5),
+                        tuple(InventoryMovementType.OPENING, 50));
+        assertThat(inventoryLedgerService.getStockOnDate(today)).isEqualTo(currentStock());
+        assertThat(currentStock()).containsEntry(createdId, 30L);
+    }
+
+    @Test
+    void movementsOfOneTransactionAreInsertedAsOneBatch() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 20; i++) {
+                inventoryLedgerService.record(productIds.get(i % 3), -1, InventoryMovementType.ADJUSTMENT, null, null, "admin");
+            }
+        });
+        assertThat(statistics.getEntityInsertCount()).isEqualTo(20);
+        // Một câu INSERT theo lô (cộng lần lấy khối id từ sequence) thay vì 20 câu
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(5);
+    }
+
+    @Test
+    void stockOnDateReplaysFromNearestSnapshot() {
+        // Số dư đầu sổ từ 3 ngày trước, ảnh chụp đầu ngày hôm qua
+        shiftMovementsTo(today.minusDays(3));
+        assertThat(inventoryLedgerService.takeSnapshot(today.minusDays(1))).isEqualTo(3);
+
+        orderService.saveOrder(orderRequest(Map.of(0, 4, 2, 6)));
+        inventoryService.updateStock(inventoryIdOf(productIds.get(1)), 120, admin, "Nhập thêm");
+
+        assertThat(inventoryLedgerService.getUnitsOnHandByDay(today.minusDays(3), today.plusDays(1)))
+                .containsExactly(Map.entry(today.minusDays(3), 300L), Map.entry(today.minusDays(2), 300L),
+                        Map.entry(today.minusDays(1), 300L), Map.entry(today, 310L));
+
+        // Bỏ các dòng sổ trước ảnh chụp: kết quả vẫn đúng vì chỉ phát lại từ ảnh chụp
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createQuery("delete from InventoryMovement m where m.createdAt < :cutoff")
+                .setParameter("cutoff", today.minusDays(1).atStartOfDay())
+                .executeUpdate());
+
+        assertThat(inventoryLedgerService.getStockOnDate(today)).isEqualTo(currentStock());
+        assertThat(inventoryLedgerService.getStockOnDate(today.minusDays(1)))
+                .containsOnlyKeys(productIds)
+                .containsValues(100L);
+        assertThat(inventoryLedgerService.getUnitsOnHandByDay(today.minusDays(1), today.plusDays(1)))
+                .containsExactly(Map.entry(today.minusDays(1), 300L), Map.entry(today, 310L));
+    }
+
+    private Map<Long, Long> currentStock() {
+        Map<Long, Long> stock = new HashMap<>();
+        inventoryService.getStockByProductIds(productIds).forEach((productId, units) -> stock.put(productId, units.longValue()));
+        return stock;
+    }
+
+    private Long inventoryIdOf(Long productId) {
+        return inventoryService.getByProduct(productId).getId();
+    }
+
+    private void shiftMovementsTo(LocalDate day) {
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createQuery("update InventoryMovement m set m.createdAt = :createdAt")
+                .setParameter("createdAt", day.atTime(9, 0))
+                .executeUpdate());
+    }
+
+    // Số lượng theo vị trí sản phẩm trong productIds
+    private OrderRequest orderRequest(Map<Integer, Integer> quantities) {
+        List<OrderItemRequest> items = new ArrayList<>();
+        quantities.forEach((product, quantity) -> items.add(OrderFixtures.item(productIds.get(product), quantity)));
+        return OrderFixtures.orderRequest(buyerId, items);
+    }
+}
@@ -0,0 +1,236 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.request.OrderRequest;
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.repository.InventoryRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Chia tồn kho của một SKU ra nhiều shard: tổng không đổi, đơn hàng tản ra các shard và không bán vượt.
+ * Có kèm đo thông lượng đặt hàng song song trên một SKU với 1 dòng và 8 shard (ghi log, không so sánh tốc độ).
+ */
+@OrderPipelineTest
+@Slf4j
+class InventoryStripingTest {
+
+    private static final int BUYERS = 64;
+    private static final int CHECKOUTS = 400;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    private final List<Long> userIds = new ArrayList<>();
+    private Long productId;
+
+    @BeforeEach
+    void seed() {
+        userIds.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < BUYERS; i++) {
+                userIds.add(fixtures.user("flash" + i).getId());
+            }
+            productId = fixtures.product("GA-2100 CasiOak", 3_000_000L, fixtures.brand("Casio"), fixtures.category("G-Shock"),
+                    fixtures.supplier("Casio VN"), CHECKOUTS).getId();
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        fixtures.truncateAll();
+    }
+
+    @Test
+    void stripingKeepsTotalAndSpreadsEvenly() {
+        inventoryService.stripeStock(productId, 7, null);
+        assertThat(stockRows()).containsExactly(58, 57, 57, 57, 57, 57, 57);
+
+        inventoryService.stripeStock(productId, 3, null);
+        assertThat(stockRows()).containsExactly(134, 133, 133);
+        assertThat(productStock()).isEqualTo(CHECKOUTS);
+    }
+
+    @Test
+    void productDetailShowsStockOfAllShards() {
+        assertThat(productService.getProductDetail(productId).getStockQuantity()).isEqualTo(CHECKOUTS);
+
+        inventoryService.stripeStock(productId, 8, null);
+        orderService.saveOrder(orderRequest(userIds.get(0), 3));
+
+        assertThat(productService.getProductDetail(productId).getStockQuantity()).isEqualTo(CHECKOUTS - 3);
+    }
+
+    @Test
+    void buyersStartOnDifferentShardsAndFallBackWhenTheirsRunsDry() {
+        inventoryService.stripeStock(productId, 4, null);
+        // Dồn gần hết hàng về shard cuối: ai hash vào shard rỗng cũng phải xoay sang shard khác
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Inventory> rows = inventoryRepository.findByProductIdForUpdate(productId);
+            for (int i = 0; i < rows.size(); i++) {
+                rows.get(i).setStock(i == rows.size() - 1 ? 10 : 0);
+            }
+        });
+
+        for (int i = 0; i < 10; i++) {
+            orderService.saveOrder(orderRequest(userIds.get(i), 1));
+        }
+        assertThat(stockRows()).containsOnly(0);
+
+        // Các dòng đều không đủ một mình thì vẫn gom được từ nhiều dòng
+        inventoryService.stripeStock(productId, 1, null);
+        transactionTemplate.executeWithoutResult(status ->
+                inventoryRepository.findByProductIdForUpdate(productId).get(0).setStock(3));
+        inventoryService.stripeStock(productId, 3, null);
+        orderService.saveOrder(orderRequest(userIds.get(0), 3));
+        assertThat(productStock()).isZero();
+    }
+
+    @Test
+    void shardTakenConcurrentlyRetriesTheOrderInIdOrder() throws Exception {
+        inventoryService.stripeStock(productId, 4, null);
+        List<Long> rowIds = transactionTemplate.execute(status -> entityManager
+                .createQuery("select i.id from Inventory i where i.product.id = :id order by i.id", Long.class)
+                .setParameter("id", productId)
+                .getResultList());
+        // Người mua có shard khác shard đầu và shard kề sau, để phân biệt xoay vòng với gom theo thứ tự id
+        Long buyer = userIds.stream().filter(id -> InventoryService.shardIndex(id, 4) == 2).findFirst().orElseThrow();
+
+        // Một đơn khác đang trừ hết shard của người mua nhưng chưa commit
+        CountDownLatch taken = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> other = pool.submit(() -> transactionTemplate.executeWithoutResult(status -> {
+                inventoryRepository.decrementStock(rowIds.get(2), 100);
+                taken.countDown();
+                await(commit);
+            }));
+            assertThat(taken.await(10, TimeUnit.SECONDS)).isTrue();
+            Future<Order> order = pool.submit(() -> orderService.saveOrder(orderRequest(buyer, 1)));
+            Thread.sleep(1000);
+            commit.countDown();
+            other.get(10, TimeUnit.SECONDS);
+
+            // UPDATE trên shard đã chọn không khớp: đơn được đặt lại và lấy từ dòng đầu tiên theo id
+            assertThat(order.get(10, TimeUnit.SECONDS).getId()).isNotNull();
+            assertThat(stockRows()).containsExactly(99, 100, 0, 100);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void benchmarkCheckoutThroughputOnOneSku() throws Exception {
+        double single = runCheckouts();
+        reset(8);
+        double striped = runCheckouts();
+
+        assertThat(single).isPositive();
+        assertThat(striped).isPositive();
+        log.info("{} checkouts on one SKU: 1 row {} orders/s, 8 shards {} orders/s (x{})",
+                CHECKOUTS, Math.round(single), Math.round(striped), String.format("%.2f", striped / single));
+    }
+
+    // Bắn CHECKOUTS lượt mua song song, kiểm tra không bán vượt và trả về số đơn/giây
+    private double runCheckouts() throws Exception {
+        int initialStock = productStock();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < CHECKOUTS; i++) {
+                Long userId = userIds.get(i % BUYERS);
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        orderService.saveOrder(orderRequest(userId, 1));
+                        return 1;
+                    } catch (RuntimeException e) {
+                        return 0;
+                    }
+                }));
+            }
+            long began = System.nanoTime();
+            start.countDown();
+            int sold = 0;
+            for (Future<Integer> result : results) {
+                sold += result.get(120, TimeUnit.SECONDS);
+            }
+            double seconds = (System.nanoTime() - began) / 1e9;
+
+            assertThat(sold + productStock()).isEqualTo(initialStock);
+            assertThat(stockRows()).allSatisfy(stock -> assertThat(stock).isNotNegative());
+            return sold / seconds;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void reset(int shards) {
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.createQuery("delete from OutboxEvent").executeUpdate();
+            entityManager.createQuery("delete from OrderItem").executeUpdate();
+            entityManager.createQuery("delete from Order").executeUpdate();
+        });
+        inventoryService.stripeStock(productId, 1, null);
+        transactionTemplate.executeWithoutResult(status ->
+                inventoryRepository.findByProductIdForUpdate(productId).get(0).setStock(CHECKOUTS));
+        inventoryService.stripeStock(productId, shards, null);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private OrderRequest orderRequest(Long userId, int quantity) {
+        return OrderFixtures.orderRequest(userId, List.of(OrderFixtures.item(productId, quantity)));
+    }
+
+    private List<Integer> stockRows() {
+        return transactionTemplate.execute(status -> entityManager
+                .createQuery("select i.stock from Inventory i where i.product.id = :id order by i.id", Integer.class)
+                .setParameter("id", productId)
+                .getResultList());
+    }
+
+    private int productStock() {
+        return stockRows().stream().mapToInt(Integer::intValue).sum();
+    }
+}
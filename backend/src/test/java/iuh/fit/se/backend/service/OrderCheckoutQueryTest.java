@@ -0,0 +1,149 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.request.OrderItemRequest;
+import iuh.fit.se.backend.dto.request.OrderRequest;
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.PaymentMethod;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Đếm số câu SQL khi đặt đơn nhiều dòng: phần đọc sản phẩm/tồn kho phải cố định, chỉ INSERT dòng đơn
+ * và UPDATE trừ kho tăng theo số dòng.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(OrderPipelineTestConfig.class)
+class OrderCheckoutQueryTest {
+
+    private static final int PRODUCT_COUNT = 20;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Long userId;
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        User user = new User();
+        user.setUsername("collector");
+        user.setPassword("secret");
+        user.setEmail("collector@example.com");
+        user.setFullName("Collector");
+        entityManager.persist(user);
+        userId = user.getId();
+
+        Brand brand = new Brand();
+        brand.setName("Orient");
+        entityManager.persist(brand);
+        Category category = new Category();
+        category.setName("Dress");
+        entityManager.persist(category);
+        Supplier supplier = new Supplier();
+        supplier.setName("Orient VN");
+        entityManager.persist(supplier);
+
+        productIds.clear();
+        for (int i = 0; i < PRODUCT_COUNT; i++) {
+            Product product = new Product();
+            product.setName("Bambino " + i);
+            product.setBrand(brand);
+            product.setCategory(category);
+            product.setSupplier(supplier);
+            product.setCurrentPrice(BigDecimal.valueOf(5_000_000L + i));
+            product.getInventories().add(Inventory.builder().product(product).stock(10).build());
+            for (int img = 0; img < 2; img++) {
+                product.getProductImages().add(ProductImage.builder().product(product)
+                        .imageUrl("https://img/" + i + "/" + img).isPrimary(img == 0).build());
+            }
+            entityManager.persist(product);
+            productIds.add(product.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void statementCountGrowsOnlyByWritesPerLine() {
+        long small = statementsFor(productIds.subList(0, 5));
+        long large = statementsFor(productIds);
+
+        // Mỗi dòng thêm đúng một INSERT order_items và một UPDATE inventories
+        assertThat(large - small).isEqualTo(2L * (PRODUCT_COUNT - 5));
+    }
+
+    @Test
+    void snapshotsImageWithoutLazyLoading() {
+        Statistics statistics = statistics();
+        statistics.clear();
+
+        Order order = orderService.saveOrder(orderRequest(productIds));
+        entityManager.flush();
+
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+        assertThat(order.getOrderItems()).allSatisfy(item ->
+                assertThat(item.getProductImageUrl()).endsWith("/0"));
+    }
+
+    @Test
+    void reportsAllMissingProductsAtOnce() {
+        List<Long> ids = new ArrayList<>(productIds.subList(0, 3));
+        ids.add(-1L);
+        ids.add(-2L);
+
+        assertThatThrownBy(() -> orderService.saveOrder(orderRequest(ids)))
+                .hasMessageContaining("Product not found: -1, -2");
+    }
+
+    private long statementsFor(List<Long> ids) {
+        entityManager.clear();
+        Statistics statistics = statistics();
+        statistics.clear();
+        orderService.saveOrder(orderRequest(ids));
+        entityManager.flush();
+        return statistics.getPrepareStatementCount();
+    }
+
+    private OrderRequest orderRequest(List<Long> ids) {
+        List<OrderItemRequest> items = new ArrayList<>();
+        for (Long id : ids) {
+            OrderItemRequest item = new OrderItemRequest();
+            item.setProductId(id);
+            item.setQuantity(1);
+            items.add(item);
+        }
+        OrderRequest request = new OrderRequest();
+        request.setUserId(userId);
+        request.setPaymentMethod(PaymentMethod.CASH);
+        request.setOrderItems(items);
+        return request;
+    }
+
+    private Statistics statistics() {
+        return entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+}
@@ -0,0 +1,226 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.entity.enums.OutboxEventType;
+import iuh.fit.se.backend.entity.enums.PaymentMethod;
+import iuh.fit.se.backend.entity.enums.PaymentStatus;
+import iuh.fit.se.backend.repository.DailySalesRollupRepository;
+import iuh.fit.se.backend.repository.OrderRepository;
+import iuh.fit.se.backend.repository.OutboxEventRepository;
+import iuh.fit.se.backend.repository.SchedulerLockRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Quét đơn VNPay bỏ dở: chỉ huỷ đơn VNPay chưa thanh toán quá hạn, hoàn kho theo lô và chỉ một node được chạy.
+ * Lô nhỏ (batch-size=2) để một lượt quét đi qua nhiều lô. Callback VNPay đến sau khi đơn đã bị huỷ không hồi sinh đơn.
+ */
+@OrderPipelineTest
+@TestPropertySource(properties = {"app.orders.vnpay-expiry=15m", "app.orders.expiry-batch-size=2"})
+class OrderExpirySweeperTest {
+
+    @Autowired
+    private OrderExpiryService orderExpiryService;
+
+    @Autowired
+    private SchedulerLockService schedulerLockService;
+
+    @Autowired
+    private VNPayService vnPayService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private DailySalesRollupRepository dailySalesRollupRepository;
+
+    @Autowired
+    private SchedulerLockRepository schedulerLockRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    private final List<Long> expiredIds = new ArrayList<>();
+    private Long freshId;
+    private Long paidId;
+    private Long cashId;
+    private Long productA;
+    private Long productB;
+
+    @BeforeEach
+    void seed() {
+        expiredIds.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = fixtures.user("abandon");
+            Brand brand = fixtures.brand("Orient");
+            Category category = fixtures.category("Diver");
+            Supplier supplier = fixtures.supplier("Orient VN");
+            Product a = fixtures.product("Kamasu", 5_000_000L, brand, category, supplier, 10, 4);
+            Product b = fixtures.product("Mako", 5_000_000L, brand, category, supplier, 10, 4);
+            productA = a.getId();
+            productB = b.getId();
+
+            // 5 đơn VNPay bỏ dở (mỗi đơn 2 A + 1 B), 1 đơn VNPay mới tạo, 1 đơn đã thanh toán và 1 đơn COD cũ
+            for (int i = 0; i < 5; i++) {
+                expiredIds.add(order(user, PaymentMethod.VNPAY, PaymentStatus.PENDING, a, b).getId());
+            }
+            freshId = order(user, PaymentMethod.VNPAY, PaymentStatus.PENDING, a, b).getId();
+            paidId = order(user, PaymentMethod.VNPAY, PaymentStatus.PAID, a, b).getId();
+            cashId = order(user, PaymentMethod.CASH, PaymentStatus.PENDING, a, b).getId();
+            entityManager.flush();
+
+            List<Long> stale = new ArrayList<>(expiredIds);
+            stale.add(paidId);
+            stale.add(cashId);
+            entityManager.createQuery("update Order o set o.updatedAt = :at where o.id in :ids")
+                    .setParameter("at", LocalDateTime.now().minusMinutes(30))
+                    .setParameter("ids", stale)
+                    .executeUpdate();
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        fixtures.truncateAll();
+    }
+
+    @Test
+    void expiresOnlyStaleUnpaidVnPayOrdersAndReleasesTheirStock() {
+        assertThat(orderExpiryService.expireUnpaidOrders()).isEqualTo(5);
+
+        for (Long id : expiredIds) {
+            Order order = orderRepository.findById(id).orElseThrow();
+            assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+            assertThat(order.getPaymentStatus()).isEqualTo(PaymentStatus.FAILED);
+        }
+        assertThat(orderRepository.findById(freshId).orElseThrow().getStatus()).isEqualTo(OrderStatus.PENDING);
+        assertThat(orderRepository.findById(paidId).orElseThrow().getPaymentStatus()).isEqualTo(PaymentStatus.PAID);
+        assertThat(orderRepository.findById(cashId).orElseThrow().getStatus()).isEqualTo(OrderStatus.PENDING);
+
+        // Hoàn vào dòng tồn kho đầu tiên của từng sản phẩm: 5 đơn x 2 A, 5 đơn x 1 B
+        assertThat(stockRows(productA)).containsExactly(10 + 10, 4);
+        assertThat(stockRows(productB)).containsExactly(10 + 5, 4);
+
+        assertThat(outboxEventRepository.findAll())
+                .filteredOn(e -> e.getType() == OutboxEventType.ORDER_STATUS_NOTIFICATION)
+                .extracting(OutboxEvent::getAggregateId)
+                .containsExactlyInAnyOrderElementsOf(expiredIds);
+
+        // Lượt sau không còn gì để huỷ, kho không bị cộng thêm
+        assertThat(orderExpiryService.expireUnpaidOrders()).isZero();
+        assertThat(stockRows(productA)).containsExactly(20, 4);
+    }
+
+    @Test
+    void leaseHeldByAnotherNodeSkipsTheSweep() {
+        SchedulerLockService otherNode = new SchedulerLockService(schedulerLockRepository, transactionManager);
+        assertThat(otherNode.tryAcquire(OrderExpiryService.LOCK_NAME, Duration.ofMinutes(5))).isTrue();
+
+        assertThat(orderExpiryService.expireUnpaidOrders()).isZero();
+        assertThat(orderRepository.findById(expiredIds.get(0)).orElseThrow().getStatus()).isEqualTo(OrderStatus.PENDING);
+
+        // Node kia nhả lease thì node này chạy được; lease của chính mình thì gia hạn được
+        otherNode.release(OrderExpiryService.LOCK_NAME);
+        assertThat(orderExpiryService.expireUnpaidOrders()).isEqualTo(5);
+        assertThat(schedulerLockService.tryAcquire(OrderExpiryService.LOCK_NAME, Duration.ofMinutes(5))).isTrue();
+        assertThat(schedulerLockService.tryAcquire(OrderExpiryService.LOCK_NAME, Duration.ofMinutes(5))).isTrue();
+        assertThat(otherNode.tryAcquire(OrderExpiryService.LOCK_NAME, Duration.ofMinutes(5))).isFalse();
+    }
+
+    @Test
+    void lateVnPaySuccessAfterExpiryFlagsRefundInsteadOfRevivingTheOrder() {
+        Long expiredId = expiredIds.get(0);
+        assertThat(orderExpiryService.expireUnpaidOrders()).isEqualTo(5);
+        List<Integer> stockA = stockRows(productA);
+        List<Integer> stockB = stockRows(productB);
+        DailySalesRollup rollup = dailySalesRollupRepository.findById(LocalDate.now()).orElseThrow();
+
+        // Khách thanh toán xong sau khi sweeper đã huỷ đơn và hoàn kho
+        Map<String, String> result = vnPayService.handlePaymentReturn(returnParams(expiredId, "00"));
+        assertThat(result.get("code")).isEqualTo("02");
+
+        Order order = orderRepository.findById(expiredId).orElseThrow();
+        assertThat(order.getStatus()).isEqualTo(OrderStatus.CANCELLED);
+        assertThat(order.getPaymentStatus()).isEqualTo(PaymentStatus.REFUND_PENDING);
+        assertThat(order.getTransactionId()).isEqualTo("VNP" + expiredId);
+        assertThat(stockRows(productA)).isEqualTo(stockA);
+        assertThat(stockRows(productB)).isEqualTo(stockB);
+        DailySalesRollup after = dailySalesRollupRepository.findById(LocalDate.now()).orElseThrow();
+        assertThat(after.getFulfilledOrders()).isEqualTo(rollup.getFulfilledOrders());
+        assertThat(after.getCancelledOrders()).isEqualTo(rollup.getCancelledOrders());
+        assertThat(after.getRevenue()).isEqualByComparingTo(rollup.getRevenue());
+
+        // IPN lặp lại không ghi thêm thanh toán; đơn còn hạn vẫn thanh toán bình thường
+        vnPayService.handlePaymentReturn(returnParams(expiredId, "00"));
+        assertThat(paymentCount(expiredId)).isEqualTo(1);
+        assertThat(vnPayService.handlePaymentReturn(returnParams(freshId, "00")).get("code")).isEqualTo("00");
+        assertThat(orderRepository.findById(freshId).orElseThrow().getStatus()).isEqualTo(OrderStatus.PAID);
+    }
+
+    private Map<String, String> returnParams(Long orderId, String responseCode) {
+        Map<String, String> params = new HashMap<>();
+        params.put("vnp_ResponseCode", responseCode);
+        params.put("vnp_TxnRef", "TXN" + orderId);
+        params.put("vnp_Amount", "1200000000");
+        params.put("vnp_OrderInfo", "Thanh toan don hang " + orderId);
+        params.put("vnp_TransactionNo", "VNP" + orderId);
+        params.put("vnp_BankCode", "NCB");
+        params.put("vnp_SecureHash", "sandbox");
+        return params;
+    }
+
+    private long paymentCount(Long orderId) {
+        return entityManager.createQuery("select count(p) from Payment p where p.order.id = :id", Long.class)
+                .setParameter("id", orderId)
+                .getSingleResult();
+    }
+
+    private List<Integer> stockRows(Long productId) {
+        return entityManager.createQuery("select i.stock from Inventory i where i.product.id = :id order by i.id", Integer.class)
+                .setParameter("id", productId)
+                .getResultList();
+    }
+
+    private Order order(User user, PaymentMethod method, PaymentStatus paymentStatus, Product a, Product b) {
+        Order order = new Order();
+        order.setUser(user);
+        order.setPaymentMethod(method);
+        order.setPaymentStatus(paymentStatus);
+        if (paymentStatus == PaymentStatus.PAID) {
+            order.setStatus(OrderStatus.PAID);
+        }
+        order.getOrderItems().add(OrderItem.builder().order(order).product(a).quantity(2).price(a.getCurrentPrice()).build());
+        order.getOrderItems().add(OrderItem.builder().order(order).product(b).quantity(1).price(b.getCurrentPrice()).build());
+        entityManager.persist(order);
+        return order;
+    }
+}
@@ -0,0 +1,112 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.request.OrderItemRequest;
+import iuh.fit.se.backend.dto.request.OrderRequest;
+import iuh.fit.se.backend.entity.Brand;
+import iuh.fit.se.backend.entity.Category;
+import iuh.fit.se.backend.entity.Inventory;
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.Supplier;
+import iuh.fit.se.backend.entity.User;
+import iuh.fit.se.backend.entity.enums.PaymentMethod;
+import jakarta.persistence.EntityManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Dữ liệu mẫu dùng chung cho các test luồng đặt hàng. Các hàm tạo entity chạy trong transaction đang mở của test;
+ * {@link #truncateAll()} xoá sạch mọi bảng sau mỗi test.
+ */
+public class OrderFixtures {
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+
+    public OrderFixtures(EntityManager entityManager, PlatformTransactionManager transactionManager) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    public User user(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("secret");
+        user.setEmail(username + "@example.com");
+        user.setFullName(username);
+        entityManager.persist(user);
+        return user;
+    }
+
+    public Brand brand(String name) {
+        Brand brand = new Brand();
+        brand.setName(name);
+        entityManager.persist(brand);
+        return brand;
+    }
+
+    public Category category(String name) {
+        Category category = new Category();
+        category.setName(name);
+        entityManager.persist(category);
+        return category;
+    }
+
+    public Supplier supplier(String name) {
+        Supplier supplier = new Supplier();
+        supplier.setName(name);
+        entityManager.persist(supplier);
+        return supplier;
+    }
+
+    // Mỗi số trong stockRows là một dòng inventories (shard) của sản phẩm
+    public Product product(String name, long price, Brand brand, Category category, Supplier supplier, int... stockRows) {
+        Product product = new Product();
+        product.setName(name);
+        product.setBrand(brand);
+        product.setCategory(category);
+        product.setSupplier(supplier);
+        product.setCurrentPrice(BigDecimal.valueOf(price));
+        for (int stock : stockRows) {
+            product.getInventories().add(Inventory.builder().product(product).stock(stock).build());
+        }
+        entityManager.persist(product);
+        return product;
+    }
+
+    public static OrderItemRequest item(Long productId, int quantity) {
+        OrderItemRequest item = new OrderItemRequest();
+        item.setProductId(productId);
+        item.setQuantity(quantity);
+        return item;
+    }
+
+    // Đơn thanh toán tiền mặt
+    public static OrderRequest orderRequest(Long userId, List<OrderItemRequest> items) {
+        OrderRequest request = new OrderRequest();
+        request.setUserId(userId);
+        request.setPaymentMethod(PaymentMethod.CASH);
+        request.setOrderItems(items);
+        return request;
+    }
+
+    /**
+     * Xoá dữ liệu của mọi bảng (H2), kể cả bảng do service mới thêm vào, nên test không phải giữ danh sách entity
+     * theo đúng thứ tự khoá ngoại.
+     */
+    @SuppressWarnings("unchecked")
+    public void truncateAll() {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<String> tables = entityManager.createNativeQuery("select table_name from information_schema.tables"
+                            + " where table_schema = current_schema and table_type = 'BASE TABLE'")
+                    .getResultList();
+            entityManager.createNativeQuery("set referential_integrity false").executeUpdate();
+            for (String table : tables) {
+                entityManager.createNativeQuery("truncate table \"" + table + "\"").executeUpdate();
+            }
+            entityManager.createNativeQuery("set referential_integrity true").executeUpdate();
+        });
+    }
+}
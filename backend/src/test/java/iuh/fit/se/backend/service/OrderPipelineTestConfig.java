@@ -0,0 +1,23 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.config.VNPayConfig;
+import iuh.fit.se.backend.service.impl.InventoryReportServiceImpl;
+import iuh.fit.se.backend.service.impl.OrderReportServiceImpl;
+import iuh.fit.se.backend.service.impl.RevenueReportServiceImpl;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Import;
+
+/**
+ * Toàn bộ luồng đặt hàng cho các test @DataJpaTest: đặt/huỷ đơn, giữ kho, sổ kho, outbox, các bảng tổng hợp báo cáo,
+ * thanh toán VNPay và danh mục sản phẩm. Thêm service mới vào luồng thì khai báo ở đây, không sửa @Import của từng test.
+ */
+@TestConfiguration
+@Import({OrderService.class, OrderItemService.class, FlashSaleAllocator.class, IdempotencyStore.class,
+        InventoryService.class, InventoryLedgerService.class, SchedulerLockService.class, OrderExpiryService.class,
+        OutboxService.class, SalesRollupService.class, SalesSketchService.class, CustomerLeaderboardService.class, SalesCube.class,
+        RevenueReportServiceImpl.class, OrderReportServiceImpl.class, InventoryReportServiceImpl.class,
+        VNPayService.class, VNPayConfig.class,
+        ProductService.class, ProductDetailCache.class, ProductSearchIndex.class, ProductFacetIndex.class, CategoryTreeCache.class,
+        OrderFixtures.class})
+public class OrderPipelineTestConfig {
+}
@@ -0,0 +1,175 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.request.OrderRequest;
+import iuh.fit.se.backend.entity.Inventory;
+import iuh.fit.se.backend.entity.Order;
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.repository.InventoryRepository;
+import iuh.fit.se.backend.repository.OrderRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.reset;
+
+/**
+ * Bắn hàng trăm lượt đặt hàng song song vào cùng một sản phẩm và kiểm tra không bán vượt tồn kho.
+ * Không bọc trong transaction của test để mỗi lượt đặt hàng commit độc lập như request thật.
+ */
+@OrderPipelineTest
+class OrderStockReservationTest {
+
+    private static final int CHECKOUTS = 300;
+    private static final int[] INVENTORY_ROWS = {20, 15, 15};
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @MockitoSpyBean
+    private InventoryRepository inventoryRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private InventoryService inventoryService;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    private Long userId;
+    private Long productId;
+
+    @BeforeEach
+    void seed() {
+        transactionTemplate.executeWithoutResult(status -> {
+            userId = fixtures.user("buyer").getId();
+            productId = fixtures.product("Snowflake SBGA211", 150_000_000L, fixtures.brand("Grand Seiko"),
+                    fixtures.category("Limited"), fixtures.supplier("Seiko VN"), INVENTORY_ROWS).getId();
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        fixtures.truncateAll();
+    }
+
+    @Test
+    void parallelCheckoutsNeverOversell() throws Exception {
+        int initialStock = totalStock();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(32);
+        List<Future<Integer>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < CHECKOUTS; i++) {
+                // mỗi lượt thứ ba mua 2 cái để phải trừ qua ranh giới giữa các dòng tồn kho
+                int quantity = i % 3 == 0 ? 2 : 1;
+                results.add(pool.submit(() -> {
+                    start.await();
+                    try {
+                        orderService.saveOrder(orderRequest(quantity));
+                        return quantity;
+                    } catch (RuntimeException e) {
+                        assertThat(e.getMessage()).contains("trong kho");
+                        return 0;
+                    }
+                }));
+            }
+            start.countDown();
+
+            int sold = 0;
+            for (Future<Integer> result : results) {
+                sold += result.get(60, TimeUnit.SECONDS);
+            }
+
+            int remaining = totalStock();
+            assertThat(sold + remaining).isEqualTo(initialStock);
+            assertThat(remaining).isBetween(0, 1);
+            assertThat(inventoryRepository.findAll()).allSatisfy(inv -> assertThat(inv.getStock()).isNotNegative());
+            assertThat(orderedQuantity()).isEqualTo(sold);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void cancellingRestoresStockOnlyOnce() throws Exception {
+        Order order = orderService.saveOrder(orderRequest(3));
+        assertThat(totalStock()).isEqualTo(47);
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> cancels = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                cancels.add(pool.submit(() -> {
+                    try {
+                        orderService.updateOrderStatus(order.getId(), OrderStatus.CANCELLED);
+                    } catch (RuntimeException ignored) {
+                        // request thua cuộc nhận CONFLICT hoặc thấy đơn đã huỷ
+                    }
+                }));
+            }
+            for (Future<?> cancel : cancels) {
+                cancel.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(totalStock()).isEqualTo(50);
+        assertThat(orderRepository.findById(order.getId()).orElseThrow().getStatus()).isEqualTo(OrderStatus.CANCELLED);
+    }
+
+    @Test
+    void retryAfterConcurrentDecrementReadsCommittedStockNotTheSnapshot() {
+        List<Object[]> snapshot = inventoryRepository.findStockRowsByProductId(productId);
+        Long firstRow = (Long) snapshot.get(0)[0];
+        // Đơn khác đã commit trừ 18 ở dòng đầu (còn 2); transaction ở REPEATABLE READ vẫn đọc thường ra ảnh chụp cũ
+        transactionTemplate.executeWithoutResult(status -> inventoryRepository.decrementStock(firstRow, 18));
+        doReturn(snapshot).when(inventoryRepository).findStockRowsByProductId(productId);
+        doReturn(20).when(inventoryRepository).findStockById(firstRow);
+
+        transactionTemplate.executeWithoutResult(status ->
+                inventoryService.reserveStock(entityManager.find(Product.class, productId), 3));
+
+        reset(inventoryRepository);
+        assertThat(inventoryRepository.findStockRowsByProductId(productId))
+                .extracting(row -> row[1])
+                .containsExactly(0, 14, 15);
+    }
+
+    private OrderRequest orderRequest(int quantity) {
+        return OrderFixtures.orderRequest(userId, List.of(OrderFixtures.item(productId, quantity)));
+    }
+
+    private int totalStock() {
+        return inventoryRepository.findAll().stream().mapToInt(Inventory::getStock).sum();
+    }
+
+    private int orderedQuantity() {
+        return transactionTemplate.execute(status -> entityManager
+                .createQuery("select coalesce(sum(i.quantity), 0) from OrderItem i", Long.class)
+                .getSingleResult().intValue());
+    }
+}
@@ -0,0 +1,132 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.response.OrderResponse;
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.PaymentMethod;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tổng tiền/số lượng lưu sẵn trên orders: được duy trì khi dòng đơn đổi và dùng để lọc, sắp xếp trong SQL.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(OrderPipelineTestConfig.class)
+class OrderTotalsTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderItemService orderItemService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Long> orderIds = new ArrayList<>();
+    private Product product;
+
+    @BeforeEach
+    void seed() {
+        User user = new User();
+        user.setUsername("totals");
+        user.setPassword("secret");
+        user.setEmail("totals@example.com");
+        user.setFullName("Totals");
+        entityManager.persist(user);
+
+        Brand brand = new Brand();
+        brand.setName("Tissot");
+        entityManager.persist(brand);
+        Category category = new Category();
+        category.setName("Classic");
+        entityManager.persist(category);
+        Supplier supplier = new Supplier();
+        supplier.setName("Tissot VN");
+        entityManager.persist(supplier);
+
+        product = new Product();
+        product.setName("PRX");
+        product.setBrand(brand);
+        product.setCategory(category);
+        product.setSupplier(supplier);
+        product.setCurrentPrice(BigDecimal.valueOf(1_000_000L));
+        entityManager.persist(product);
+
+        // Đơn i có i+1 sản phẩm giá 1 triệu: tổng 1, 2, ..., 6 triệu
+        orderIds.clear();
+        for (int i = 0; i < 6; i++) {
+            Order order = new Order();
+            order.setUser(user);
+            order.setPaymentMethod(PaymentMethod.CASH);
+            order.getOrderItems().add(OrderItem.builder().order(order).product(product)
+                    .quantity(i + 1).price(product.getCurrentPrice()).build());
+            entityManager.persist(order);
+            orderIds.add(order.getId());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void totalsArePersistedOnCreate() {
+        Order order = entityManager.find(Order.class, orderIds.get(2));
+
+        assertThat(order.getTotalAmount()).isEqualByComparingTo("3000000");
+        assertThat(order.getTotalQuantity()).isEqualTo(3);
+    }
+
+    @Test
+    void minMaxTotalFilterAndSortRunInSql() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        Page<OrderResponse> page = orderService.getAdminOrders(null, "totals", null, null, null, null,
+                2_000_000d, 4_500_000d, 0, 10, "totalAmount", "desc");
+
+        assertThat(page.getContent()).extracting(OrderResponse::getTotalQuantity).containsExactly(4, 3, 2);
+        assertThat(page.getContent()).allSatisfy(response -> assertThat(response.getItems()).isNull());
+        // Danh sách chỉ đọc tổng lưu sẵn, không nạp collection dòng đơn
+        assertThat(statistics.getCollectionFetchCount()).isZero();
+    }
+
+    @Test
+    void editingItemsDirectlyRefreshesTotals() {
+        Order order = entityManager.find(Order.class, orderIds.get(0));
+        OrderItem extra = OrderItem.builder().order(order).product(product)
+                .quantity(2).price(BigDecimal.valueOf(250_000L)).build();
+        orderItemService.save(extra);
+        entityManager.clear();
+
+        Order refreshed = entityManager.find(Order.class, orderIds.get(0));
+        assertThat(refreshed.getTotalAmount()).isEqualByComparingTo("1500000");
+        assertThat(refreshed.getTotalQuantity()).isEqualTo(3);
+
+        orderItemService.delete(extra.getId());
+        entityManager.clear();
+
+        refreshed = entityManager.find(Order.class, orderIds.get(0));
+        assertThat(refreshed.getTotalAmount()).isEqualByComparingTo("1000000");
+        assertThat(refreshed.getTotalQuantity()).isEqualTo(1);
+    }
+}
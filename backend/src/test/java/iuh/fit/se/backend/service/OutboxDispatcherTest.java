@@ -0,0 +1,233 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.OutboxEventType;
+import iuh.fit.se.backend.entity.enums.OutboxStatus;
+import iuh.fit.se.backend.entity.enums.PaymentMethod;
+import iuh.fit.se.backend.repository.OutboxEventRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Kiểm tra outbox: ghi cùng transaction, xử lý theo lô và retry khi lỗi.
+ * Tắt tự drain sau commit để test gọi drain() một cách xác định; backoff 0s để lần drain sau retry ngay.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {"app.outbox.enabled=false", "app.outbox.base-backoff=0s", "app.outbox.max-attempts=3"})
+@Import({OutboxService.class, OutboxDispatcher.class})
+class OutboxDispatcherTest {
+
+    @Autowired
+    private OutboxService outboxService;
+
+    @Autowired
+    private OutboxDispatcher outboxDispatcher;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @MockitoBean
+    private EmailService emailService;
+
+    @MockitoBean
+    private NotificationService notificationService;
+
+    @MockitoBean
+    private CartService cartService;
+
+    private Long userId;
+    private final List<Long> orderIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        orderIds.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            User user = new User();
+            user.setUsername("outbox");
+            user.setPassword("secret");
+            user.setEmail("outbox@example.com");
+            user.setFullName("Outbox");
+            entityManager.persist(user);
+            userId = user.getId();
+
+            Brand brand = new Brand();
+            brand.setName("Citizen");
+            entityManager.persist(brand);
+            Category category = new Category();
+            category.setName("Eco-Drive");
+            entityManager.persist(category);
+            Supplier supplier = new Supplier();
+            supplier.setName("Citizen VN");
+            entityManager.persist(supplier);
+
+            List<Product> products = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                Product product = new Product();
+                product.setName("Promaster " + i);
+                product.setBrand(brand);
+                product.setCategory(category);
+                product.setSupplier(supplier);
+                product.setCurrentPrice(BigDecimal.valueOf(8_000_000L));
+                entityManager.persist(product);
+                products.add(product);
+            }
+
+            for (int o = 0; o < 3; o++) {
+                Order order = new Order();
+                order.setUser(user);
+                order.setPaymentMethod(PaymentMethod.CASH);
+                for (Product product : products) {
+                    order.getOrderItems().add(OrderItem.builder().order(order).product(product)
+                            .quantity(1).price(product.getCurrentPrice()).build());
+                }
+                entityManager.persist(order);
+                orderIds.add(order.getId());
+            }
+        });
+
+        when(emailService.buildOrderConfirmationEmail(any())).thenAnswer(invocation -> {
+            Order order = invocation.getArgument(0);
+            SimpleMailMessage message = new SimpleMailMessage();
+            message.setTo(order.getUser().getEmail());
+            message.setSubject("Order #" + order.getId());
+            return message;
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String entity : new String[]{"OutboxEvent", "OrderItem", "Order", "Product", "Brand", "Category", "Supplier", "User"}) {
+                entityManager.createQuery("delete from " + entity).executeUpdate();
+            }
+        });
+    }
+
+    @Test
+    void enqueueRequiresTheCallersTransaction() {
+        assertThatThrownBy(() -> outboxService.enqueue(OutboxEventType.CART_CLEANUP, orderIds.get(0)))
+                .isInstanceOf(IllegalTransactionStateException.class);
+
+        // Transaction của đơn rollback thì sự kiện cũng không còn
+        transactionTemplate.executeWithoutResult(status -> {
+            outboxService.enqueue(OutboxEventType.CART_CLEANUP, orderIds.get(0));
+            status.setRollbackOnly();
+        });
+        assertThat(outboxEventRepository.count()).isZero();
+    }
+
+    @Test
+    void drainsEachTypeInOneBatch() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Long orderId : orderIds) {
+                outboxService.enqueue(OutboxEventType.ORDER_CONFIRMATION_EMAIL, orderId);
+                outboxService.enqueue(OutboxEventType.CART_CLEANUP, orderId);
+            }
+            outboxService.enqueue(OutboxEventType.ORDER_STATUS_NOTIFICATION, orderIds.get(0), "PENDING>SHIPPING");
+        });
+
+        assertThat(outboxDispatcher.drain()).isEqualTo(7);
+
+        // Ba email đi chung một lần gửi, ba đơn của cùng một user chỉ dọn giỏ một lần
+        verify(emailService, times(1)).sendBatch(eq(List.of(mail(0), mail(1), mail(2))));
+        verify(cartService, times(1)).removeProductsFromCart(eq(userId), anyList());
+        verify(notificationService).createOrderStatusChangedNotification(any(), eq(orderIds.get(0)), eq("PENDING"), eq("SHIPPING"));
+        assertThat(outboxEventRepository.countByStatus(OutboxStatus.DONE)).isEqualTo(7);
+    }
+
+    @Test
+    void failedEventsAreRetriedOnlyForTheFailedMessages() {
+        transactionTemplate.executeWithoutResult(status -> orderIds.forEach(orderId ->
+                outboxService.enqueue(OutboxEventType.ORDER_CONFIRMATION_EMAIL, orderId)));
+        doThrow(new MailSendException(Map.of(mail(1), new RuntimeException("mailbox full"))))
+                .doNothing()
+                .when(emailService).sendBatch(anyList());
+
+        assertThat(outboxDispatcher.drain()).isEqualTo(2);
+        OutboxEvent failed = outboxEventRepository.findAll().stream()
+                .filter(e -> e.getStatus() == OutboxStatus.PENDING).findFirst().orElseThrow();
+        assertThat(failed.getAggregateId()).isEqualTo(orderIds.get(1));
+        assertThat(failed.getAttempts()).isEqualTo(1);
+        assertThat(failed.getLastError()).contains("mailbox full");
+
+        assertThat(outboxDispatcher.drain()).isEqualTo(1);
+        verify(emailService).sendBatch(eq(List.of(mail(1))));
+        assertThat(outboxEventRepository.countByStatus(OutboxStatus.DONE)).isEqualTo(3);
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        transactionTemplate.executeWithoutResult(status ->
+                outboxService.enqueue(OutboxEventType.CART_CLEANUP, orderIds.get(0)));
+        doThrow(new RuntimeException("cart service down")).when(cartService).removeProductsFromCart(any(), anyList());
+
+        for (int i = 0; i < 5; i++) {
+            outboxDispatcher.drain();
+        }
+
+        verify(cartService, times(3)).removeProductsFromCart(eq(userId), anyList());
+        OutboxEvent event = outboxEventRepository.findAll().get(0);
+        assertThat(event.getStatus()).isEqualTo(OutboxStatus.FAILED);
+        assertThat(event.getAttempts()).isEqualTo(3);
+    }
+
+    @Test
+    void backoffDoublesUpToTheCap() {
+        OutboxDispatcher dispatcher = new OutboxDispatcher(null, null, null, null, null, null,
+                false, 1, 10, 8, Duration.ofMinutes(5), Duration.ofSeconds(10), Duration.ofMinutes(1));
+        try {
+            assertThat(dispatcher.backoff(1)).isEqualTo(Duration.ofSeconds(10));
+            assertThat(dispatcher.backoff(3)).isEqualTo(Duration.ofSeconds(40));
+            assertThat(dispatcher.backoff(10)).isEqualTo(Duration.ofMinutes(1));
+        } finally {
+            dispatcher.shutdown();
+        }
+    }
+
+    private SimpleMailMessage mail(int index) {
+        SimpleMailMessage message = new SimpleMailMessage();
+        message.setTo("outbox@example.com");
+        message.setSubject("Order #" + orderIds.get(index));
+        return message;
+    }
+}
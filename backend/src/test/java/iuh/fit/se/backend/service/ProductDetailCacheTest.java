@@ -0,0 +1,101 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.response.CacheStatsResponse;
+import iuh.fit.se.backend.dto.response.ProductResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Kiểm tra cache chi tiết sản phẩm: single-flight, invalidate trong lúc đang load và giới hạn dung lượng.
+ */
+class ProductDetailCacheTest {
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        ProductDetailCache cache = new ProductDetailCache(1_000_000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<ProductResponse>> results = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                results.add(pool.submit(() -> cache.get(1L, id -> {
+                    loads.incrementAndGet();
+                    await(release);
+                    return product(id, "Casio");
+                })));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<ProductResponse> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS).getName()).isEqualTo("Casio");
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(cache.get(1L, id -> product(id, "reloaded")).getName()).isEqualTo("Casio");
+        CacheStatsResponse stats = cache.stats();
+        assertThat(stats.getLoads()).isEqualTo(1);
+        assertThat(stats.getHits()).isEqualTo(1);
+    }
+
+    @Test
+    void invalidationDuringLoadDiscardsStaleValue() {
+        ProductDetailCache cache = new ProductDetailCache(1_000_000);
+
+        ProductResponse stale = cache.get(1L, id -> {
+            // sản phẩm được cập nhật trong khi request này vẫn đang đọc dữ liệu cũ
+            cache.invalidate(id);
+            return product(id, "old");
+        });
+
+        assertThat(stale.getName()).isEqualTo("old");
+        assertThat(cache.get(1L, id -> product(id, "new")).getName()).isEqualTo("new");
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWhenOverWeight() {
+        long oneEntry = ProductDetailCache.weigh(product(1L, "Casio"));
+        ProductDetailCache cache = new ProductDetailCache(oneEntry * 2);
+
+        cache.get(1L, id -> product(id, "Casio"));
+        cache.get(2L, id -> product(id, "Seiko"));
+        cache.get(1L, id -> product(id, "Casio"));   // 1 vừa được dùng, 2 là phần tử cũ nhất
+        cache.get(3L, id -> product(id, "Rolex"));
+
+        CacheStatsResponse stats = cache.stats();
+        assertThat(stats.getEntries()).isEqualTo(2);
+        assertThat(stats.getEvictions()).isEqualTo(1);
+        assertThat(stats.getWeightBytes()).isLessThanOrEqualTo(oneEntry * 2);
+        assertThat(cache.get(1L, id -> product(id, "reloaded")).getName()).isEqualTo("Casio");
+        assertThat(cache.get(2L, id -> product(id, "reloaded")).getName()).isEqualTo("reloaded");
+    }
+
+    private static ProductResponse product(Long id, String name) {
+        ProductResponse response = new ProductResponse();
+        response.setId(id);
+        response.setName(name);
+        return response;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.response.ProductFacetResponse;
+import iuh.fit.se.backend.dto.response.ProductFacetResponse.FacetCount;
+import iuh.fit.se.backend.entity.Brand;
+import iuh.fit.se.backend.entity.Category;
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.Supplier;
+import iuh.fit.se.backend.entity.enums.ProductStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Kiểm tra đếm facet bằng bitmap: giao bộ lọc, bỏ qua chính facet đang đếm và cập nhật khi sản phẩm đổi.
+ */
+class ProductFacetIndexTest {
+
+    private final Brand casio = brand(1L, "Casio");
+    private final Brand seiko = brand(2L, "Seiko");
+    private final Category sport = category(1L, "Thể thao");
+    private final Category dress = category(2L, "Dạ tiệc");
+    private final Supplier supplier = new Supplier();
+
+    private ProductSearchIndex searchIndex;
+    private ProductFacetIndex facetIndex;
+
+    @BeforeEach
+    void setUp() {
+        supplier.setId(1L);
+        supplier.setName("Đông Á");
+        searchIndex = new ProductSearchIndex(null);
+        facetIndex = new ProductFacetIndex(null, searchIndex);
+
+        save(product(1L, "G-Shock GA-2100", casio, sport, 3_500_000, ProductStatus.ACTIVE));
+        save(product(2L, "Edifice EFR-526", casio, dress, 4_200_000, ProductStatus.ACTIVE));
+        save(product(3L, "Seiko 5 Sports", seiko, sport, 8_500_000, ProductStatus.ACTIVE));
+        save(product(4L, "Presage Cocktail", seiko, dress, 15_000_000, ProductStatus.ACTIVE));
+        save(product(5L, "G-Shock cũ", casio, sport, 1_500_000, ProductStatus.DISCONTINUED));
+    }
+
+    @Test
+    void countsEveryFacetForActiveProducts() {
+        ProductFacetResponse facets = facetIndex.facets(null, null, null, null, null, null, null);
+
+        assertThat(facets.getTotal()).isEqualTo(4);
+        assertThat(counts(facets.getBrands())).containsEntry("Casio", 2L).containsEntry("Seiko", 2L);
+        assertThat(counts(facets.getCategories())).containsEntry("Thể thao", 2L).containsEntry("Dạ tiệc", 2L);
+        assertThat(counts(facets.getSuppliers())).containsEntry("Đông Á", 4L);
+        assertThat(counts(facets.getPriceRanges()))
+                .containsEntry("Dưới 2 triệu", 0L)
+                .containsEntry("2 - 5 triệu", 2L)
+                .containsEntry("5 - 10 triệu", 1L)
+                .containsEntry("10 - 20 triệu", 1L);
+    }
+
+    @Test
+    void facetIgnoresItsOwnFilter() {
+        ProductFacetResponse facets = facetIndex.facets(null, "thể thao", "casio", null, null, null, null);
+
+        assertThat(facets.getTotal()).isEqualTo(1);
+        // Thương hiệu đếm trong danh mục "Thể thao", danh mục đếm trong thương hiệu "Casio"
+        assertThat(counts(facets.getBrands())).containsEntry("Casio", 1L).containsEntry("Seiko", 1L);
+        assertThat(counts(facets.getCategories())).containsEntry("Thể thao", 1L).containsEntry("Dạ tiệc", 1L);
+    }
+
+    @Test
+    void combinesTextAndPriceFilters() {
+        ProductFacetResponse facets = facetIndex.facets("g shock", null, null, null, null, null, "DISCONTINUED");
+        assertThat(facets.getTotal()).isEqualTo(1);
+
+        facets = facetIndex.facets(null, null, null, null, 4_000_000.0, 10_000_000.0, null);
+        assertThat(facets.getTotal()).isEqualTo(2);
+        assertThat(counts(facets.getBrands())).containsEntry("Casio", 1L).containsEntry("Seiko", 1L);
+    }
+
+    @Test
+    void updatesWhenProductChanges() {
+        save(product(3L, "Seiko 5 Sports", casio, sport, 1_800_000, ProductStatus.ACTIVE));
+        save(product(4L, "Presage Cocktail", seiko, dress, 15_000_000, ProductStatus.DISCONTINUED));
+
+        ProductFacetResponse facets = facetIndex.facets(null, null, null, null, null, null, null);
+        assertThat(facets.getTotal()).isEqualTo(3);
+        assertThat(counts(facets.getBrands())).containsEntry("Casio", 3L).doesNotContainKey("Seiko");
+        assertThat(counts(facets.getPriceRanges())).containsEntry("Dưới 2 triệu", 1L).containsEntry("5 - 10 triệu", 0L);
+    }
+
+    private void save(Product product) {
+        searchIndex.index(product);
+        facetIndex.index(product);
+    }
+
+    private Map<String, Long> counts(List<FacetCount> facet) {
+        return facet.stream().collect(Collectors.toMap(FacetCount::getName, FacetCount::getCount));
+    }
+
+    private Product product(Long id, String name, Brand brand, Category category, long price, ProductStatus status) {
+        Product product = Product.builder()
+                .id(id)
+                .name(name)
+                .brand(brand)
+                .category(category)
+                .supplier(supplier)
+                .currentPrice(BigDecimal.valueOf(price))
+                .build();
+        product.setStatus(status);
+        return product;
+    }
+
+    private static Brand brand(Long id, String name) {
+        Brand brand = new Brand();
+        brand.setId(id);
+        brand.setName(name);
+        return brand;
+    }
+
+    private static Category category(Long id, String name) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        return category;
+    }
+}
@@ -0,0 +1,220 @@
+package iuh.fit.se.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import iuh.fit.se.backend.dto.response.CursorPageResponse;
+import iuh.fit.se.backend.dto.response.ProductCardResponse;
+import iuh.fit.se.backend.dto.response.ProductResponse;
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.ProductStatus;
+import iuh.fit.se.backend.util.KeysetCursor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * So sánh số câu SQL và kích thước payload giữa listing dạng thẻ (mặc định) và dạng đầy đủ (admin).
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(OrderPipelineTestConfig.class)
+class ProductListingQueryTest {
+
+    private static final int PRODUCT_COUNT = 48;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    @BeforeEach
+    void seedCatalog() {
+        Brand brand = new Brand();
+        brand.setName("Seiko");
+        entityManager.persist(brand);
+        Category category = new Category();
+        category.setName("Automatic");
+        entityManager.persist(category);
+        Supplier supplier = new Supplier();
+        supplier.setName("Seiko VN");
+        entityManager.persist(supplier);
+
+        for (int i = 0; i < PRODUCT_COUNT; i++) {
+            Product product = new Product();
+            product.setName("Watch " + i);
+            product.setDescription("Mechanical watch number " + i);
+            product.setStatus(ProductStatus.ACTIVE);
+            product.setBrand(brand);
+            product.setCategory(category);
+            product.setSupplier(supplier);
+            product.setCurrentPrice(BigDecimal.valueOf(1_000_000L + i));
+            for (int p = 0; p < 3; p++) {
+                product.getProductPrices().add(ProductPrice.builder().product(product).priceType("REGULAR")
+                        .price(BigDecimal.valueOf(900_000L + p)).startDate(LocalDateTime.now()).isCurrent(p == 2).build());
+            }
+            for (int inv = 0; inv < 2; inv++) {
+                product.getInventories().add(Inventory.builder().product(product).stock(5).build());
+            }
+            for (int img = 0; img < 3; img++) {
+                product.getProductImages().add(ProductImage.builder().product(product)
+                        .imageUrl("https://cdn.example.com/watch-" + i + "-" + img + ".jpg").isPrimary(img == 0).build());
+            }
+            for (int spec = 0; spec < 4; spec++) {
+                ProductSpec productSpec = new ProductSpec();
+                productSpec.setProduct(product);
+                productSpec.setKeyName("Spec " + spec);
+                productSpec.setValue("Value " + spec);
+                product.getProductSpecs().add(productSpec);
+            }
+            entityManager.persist(product);
+            entityManager.persist(ProductRatingSummary.builder().productId(product.getId())
+                    .reviewCount(2).ratingSum(9).fourStar(1).fiveStar(1).build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void cardModeUsesConstantStatementsAndSmallerPayload() throws Exception {
+        for (int size : new int[]{12, 48}) {
+            Measurement full = measure(() -> productService.searchProducts(
+                    null, null, null, null, null, null, null, null, 0, size, "id", "desc"));
+            Measurement card = measure(() -> productService.searchProductCards(
+                    null, null, null, null, null, null, null, null, 0, size, "id", "desc"));
+
+            assertThat(card.statements).isLessThanOrEqualTo(2);
+            assertThat(card.statements).isLessThan(full.statements);
+            assertThat(card.bytes).isLessThan(full.bytes);
+        }
+    }
+
+    @Test
+    void cardModeMatchesFullModeValues() {
+        Page<ProductResponse> full = productService.searchProducts(
+                null, null, null, null, null, null, null, null, 0, 12, "price", "asc");
+        entityManager.clear();
+        Page<ProductCardResponse> cards = productService.searchProductCards(
+                null, null, null, null, null, null, null, null, 0, 12, "price", "asc");
+
+        assertThat(cards.getTotalElements()).isEqualTo(full.getTotalElements());
+        for (int i = 0; i < cards.getContent().size(); i++) {
+            ProductResponse expected = full.getContent().get(i);
+            ProductCardResponse actual = cards.getContent().get(i);
+            assertThat(actual.getId()).isEqualTo(expected.getId());
+            assertThat(actual.getPrice()).isEqualByComparingTo(expected.getPrice());
+            assertThat(actual.getImageUrl()).isEqualTo(expected.getImageUrl());
+            assertThat(actual.getStockQuantity()).isEqualTo(expected.getStockQuantity());
+            assertThat(actual.getRating()).isEqualTo(expected.getRating());
+            assertThat(actual.getNumOfRating()).isEqualTo(expected.getNumOfRating());
+        }
+    }
+
+    @Test
+    void cursorModeWalksEveryProductOnceWithoutCount() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        for (String sortBy : new String[]{"price", "createdAt", "name"}) {
+            Set<Long> seen = new LinkedHashSet<>();
+            String after = "";
+            int pages = 0;
+            do {
+                statistics.clear();
+                CursorPageResponse<ProductCardResponse> page = productService.searchProductCardsAfter(
+                        null, null, null, null, null, null, null, null, after, 10, sortBy, "desc");
+                // một câu SQL mỗi trang, không có count(*)
+                assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+                page.getContent().forEach(card -> assertThat(seen.add(card.getId())).isTrue());
+                after = page.getNextCursor();
+                pages++;
+            } while (after != null);
+
+            assertThat(seen).hasSize(PRODUCT_COUNT);
+            assertThat(pages).isEqualTo(5);
+        }
+    }
+
+    @Test
+    void cursorWalksTiesOnTheSortKeyInFullAndCardMode() {
+        // Mọi sản phẩm trùng tên và thời điểm tạo, giá chia ba nhóm (một nhóm chưa có giá): chỉ id còn phân biệt thứ tự
+        LocalDateTime createdAt = LocalDateTime.of(2026, 3, 1, 9, 30, 15, 123_456_000);
+        entityManager.createQuery("update Product p set p.name = 'Watch', p.createdAt = :createdAt, p.currentPrice = :price")
+                .setParameter("createdAt", createdAt)
+                .setParameter("price", BigDecimal.valueOf(1_000_000L))
+                .executeUpdate();
+        entityManager.createQuery("update Product p set p.currentPrice = null where mod(p.id, 3) = 1").executeUpdate();
+        entityManager.createQuery("update Product p set p.currentPrice = :price where mod(p.id, 3) = 2")
+                .setParameter("price", BigDecimal.valueOf(2_500_000L))
+                .executeUpdate();
+        entityManager.clear();
+
+        for (String sortBy : new String[]{"id", "price", "createdAt", "name"}) {
+            for (String order : new String[]{"asc", "desc"}) {
+                List<Long> full = walk(sortBy, order, after -> productService.searchProductsAfter(
+                        null, null, null, null, null, null, null, null, after, 7, sortBy, order), ProductResponse::getId);
+                List<Long> cards = walk(sortBy, order, after -> productService.searchProductCardsAfter(
+                        null, null, null, null, null, null, null, null, after, 7, sortBy, order), ProductCardResponse::getId);
+
+                assertThat(full).as("%s %s", sortBy, order).hasSize(PRODUCT_COUNT).doesNotHaveDuplicates();
+                assertThat(cards).as("%s %s", sortBy, order).isEqualTo(full);
+            }
+        }
+    }
+
+    // Đi hết các trang; con trỏ giải mã lại phải trỏ đúng phần tử cuối của trang vừa đọc
+    private <T> List<Long> walk(String sortBy, String order, Function<String, CursorPageResponse<T>> listing,
+                                Function<T, Long> idOf) {
+        List<Long> ids = new ArrayList<>();
+        String after = "";
+        do {
+            CursorPageResponse<T> page = listing.apply(after);
+            page.getContent().forEach(row -> ids.add(idOf.apply(row)));
+            after = page.getNextCursor();
+            if (after != null) {
+                assertThat(KeysetCursor.decode(after, sortBy, order.equals("desc")).id())
+                        .isEqualTo(ids.get(ids.size() - 1));
+            }
+        } while (after != null);
+        return ids;
+    }
+
+    private Measurement measure(ThrowingSupplier<Page<?>> listing) throws Exception {
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        // serialize inside the session so lazy collections are loaded the same way the controller would
+        byte[] payload = objectMapper.writeValueAsBytes(listing.get());
+        return new Measurement(statistics.getPrepareStatementCount(), payload.length);
+    }
+
+    private record Measurement(long statements, long bytes) {
+    }
+
+    @FunctionalInterface
+    private interface ThrowingSupplier<T> {
+        T get() throws Exception;
+    }
+}
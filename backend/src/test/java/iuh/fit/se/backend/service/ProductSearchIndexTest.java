@@ -0,0 +1,77 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.Brand;
+import iuh.fit.se.backend.entity.Category;
+import iuh.fit.se.backend.entity.Product;
+import iuh.fit.se.backend.entity.ProductSpec;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Kiểm tra chỉ mục tìm kiếm: so khớp không dấu, xếp hạng BM25 và cập nhật từng sản phẩm.
+ */
+class ProductSearchIndexTest {
+
+    private ProductSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex(null);
+        index.index(product(1L, "Đồng hồ Casio Edifice", "Casio", "Đồng hồ nam", "Mặt kính sapphire", "Thép không gỉ"));
+        index.index(product(2L, "Seiko Presage Cocktail", "Seiko", "Đồng hồ cơ", "Phong cách Casio cổ điển", "Dây da"));
+        index.index(product(3L, "Orient Bambino", "Orient", "Đồng hồ cơ", "Thiết kế tối giản", "Dây da"));
+    }
+
+    @Test
+    void matchesWithoutDiacritics() {
+        assertThat(index.search("dong ho nam", 10)).containsExactly(1L);
+        assertThat(index.search("DÂY DA", 10)).containsExactlyInAnyOrder(2L, 3L);
+        assertThat(index.search("thep khong gi", 10)).containsExactly(1L);
+    }
+
+    @Test
+    void ranksNameMatchesAboveDescriptionMatches() {
+        assertThat(index.search("casio", 10)).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void matchesPrefixesAndRequiresEveryTerm() {
+        assertThat(index.search("bamb", 10)).containsExactly(3L);
+        assertThat(index.search("seiko bambino", 10)).isEmpty();
+    }
+
+    @Test
+    void reindexReplacesPreviousTerms() {
+        index.index(product(3L, "Orient Star", "Orient", "Đồng hồ cơ", "Dạ quang", "Dây thép"));
+
+        assertThat(index.search("bambino", 10)).isEmpty();
+        assertThat(index.search("orient star", 10)).containsExactly(3L);
+
+        index.remove(3L);
+        assertThat(index.search("orient", 10)).isEmpty();
+    }
+
+    private Product product(Long id, String name, String brandName, String categoryName,
+                            String description, String specValue) {
+        Brand brand = new Brand();
+        brand.setName(brandName);
+        Category category = new Category();
+        category.setName(categoryName);
+        Product product = Product.builder()
+                .id(id)
+                .name(name)
+                .brand(brand)
+                .category(category)
+                .description(description)
+                .build();
+        ProductSpec spec = new ProductSpec();
+        spec.setKeyName("Chất liệu");
+        spec.setValue(specValue);
+        product.setProductSpecs(List.of(spec));
+        return product;
+    }
+}
@@ -0,0 +1,183 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.entity.enums.PaymentMethod;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Export CSV: cùng bộ lọc với tìm kiếm đơn, đọc dạng cột qua cursor (không nạp entity), escape đúng CSV
+ * và điền ngày trống cho báo cáo doanh thu.
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(ReportExportService.class)
+class ReportExportServiceTest {
+
+    @Autowired
+    private ReportExportService reportExportService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final LocalDate today = LocalDate.now();
+
+    @BeforeEach
+    void seed() {
+        transactionTemplate.executeWithoutResult(status -> {
+            User alice = user("alice", "Alice Nguyễn");
+            User bob = user("bob", "Bob Trần");
+            Product watch = product();
+
+            // Tổng tiền 1..6 triệu, xen kẽ PAID/PENDING; tên người nhận có dấu phẩy, ngoặc kép và dạng công thức
+            for (int i = 1; i <= 6; i++) {
+                Order order = new Order();
+                order.setUser(i <= 3 ? alice : bob);
+                order.setPaymentMethod(PaymentMethod.CASH);
+                order.setStatus(i % 2 == 0 ? OrderStatus.PAID : OrderStatus.PENDING);
+                order.setFullName(i == 6 ? "Nguyễn Văn \"Tí\", Q1" : i == 4 ? "=HYPERLINK(\"x\")" : "Người nhận " + i);
+                order.getOrderItems().add(OrderItem.builder().order(order).product(watch).quantity(i).build());
+                entityManager.persist(order);
+            }
+
+            entityManager.persist(DailySalesRollup.builder().salesDate(today.minusDays(3))
+                    .totalOrders(2).fulfilledOrders(1).pendingOrders(1).revenue(BigDecimal.valueOf(5_000_000L)).unitsSold(3).build());
+            entityManager.persist(DailySalesRollup.builder().salesDate(today.minusDays(1))
+                    .totalOrders(1).cancelledOrders(1).build());
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String entity : new String[]{"DailySalesRollup", "OrderItem", "Order", "Product", "Brand", "Category", "Supplier", "User"}) {
+                entityManager.createQuery("delete from " + entity).executeUpdate();
+            }
+        });
+    }
+
+    @Test
+    void ordersExportAppliesSearchFiltersWithoutLoadingEntities() throws Exception {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = reportExportService.exportOrders(null, "bob", null, "PAID", null, null,
+                1_500_000d, null, "totalAmount", "desc", out);
+
+        assertThat(rows).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+        List<String> lines = lines(out);
+        assertThat(lines.get(0)).startsWith("﻿id,created_at,status");
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(1)).contains(",PAID,CASH,,bob,bob@example.com,\"Nguyễn Văn \"\"Tí\"\", Q1\",")
+                .endsWith(",6,6000000.00");
+        assertThat(lines.get(2)).contains(",\"'=HYPERLINK(\"\"x\"\")\",").endsWith(",4,4000000.00");
+    }
+
+    @Test
+    void dailyRevenueExportFillsDaysWithoutOrders() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = reportExportService.exportDailyRevenue(today.minusDays(4), today, out);
+
+        assertThat(rows).isEqualTo(5);
+        assertThat(lines(out)).containsExactly(
+                "﻿date,total_orders,fulfilled_orders,pending_orders,cancelled_orders,units_sold,revenue",
+                today.minusDays(4) + ",0,0,0,0,0,0",
+                today.minusDays(3) + ",2,1,1,0,3,5000000.00",
+                today.minusDays(2) + ",0,0,0,0,0,0",
+                today.minusDays(1) + ",1,0,0,1,0,0.00",
+                today + ",0,0,0,0,0,0");
+    }
+
+    @Test
+    void customerRevenueExportIsRankedByRevenue() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = reportExportService.exportCustomerRevenue(today, today, out);
+
+        // Chỉ tính đơn PAID: bob 4 + 6 triệu (2 đơn), alice 2 triệu (1 đơn)
+        assertThat(rows).isEqualTo(2);
+        List<String> lines = lines(out);
+        assertThat(lines.get(1)).contains(",Bob Trần,bob@example.com,10000000").endsWith(",2");
+        assertThat(lines.get(2)).contains(",Alice Nguyễn,alice@example.com,2000000").endsWith(",1");
+    }
+
+    @Test
+    void unsupportedSortIsRejectedBeforeWriting() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertThatThrownBy(() -> reportExportService.exportOrders(null, null, null, null, null, null,
+                null, null, "user.password", "asc", out))
+                .isInstanceOf(ResponseStatusException.class);
+        assertThat(out.size()).isZero();
+    }
+
+    private User user(String username, String fullName) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("secret");
+        user.setEmail(username + "@example.com");
+        user.setFullName(fullName);
+        entityManager.persist(user);
+        return user;
+    }
+
+    private Product product() {
+        Brand brand = new Brand();
+        brand.setName("Tissot");
+        entityManager.persist(brand);
+        Category category = new Category();
+        category.setName("Classic");
+        entityManager.persist(category);
+        Supplier supplier = new Supplier();
+        supplier.setName("Tissot VN");
+        entityManager.persist(supplier);
+
+        Product product = new Product();
+        product.setName("Le Locle");
+        product.setBrand(brand);
+        product.setCategory(category);
+        product.setSupplier(supplier);
+        product.setCurrentPrice(BigDecimal.valueOf(1_000_000L));
+        entityManager.persist(product);
+        return product;
+    }
+
+    private static List<String> lines(ByteArrayOutputStream out) {
+        return List.of(out.toString(StandardCharsets.UTF_8).split("\r\n"));
+    }
+}
@@ -0,0 +1,133 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.request.ReviewRequest;
+import iuh.fit.se.backend.dto.response.ReviewResponse;
+import iuh.fit.se.backend.entity.Brand;
+import iuh.fit.se.backend.entity.Category;
+import iuh.fit.se.backend.entity.ProductRatingSummary;
+import iuh.fit.se.backend.entity.Supplier;
+import iuh.fit.se.backend.repository.ProductRatingSummaryRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Tổng hợp đánh giá được cộng dồn bằng upsert: nhiều đánh giá đầu tiên đồng thời trên một sản phẩm chưa có
+ * dòng tổng hợp đều được tính, không request nào lỗi khoá chính; sửa / xoá đánh giá chuyển đúng histogram.
+ */
+@OrderPipelineTest
+@Import(ReviewService.class)
+class ReviewRatingSummaryTest {
+
+    private static final int REVIEWERS = 10;
+
+    @Autowired
+    private ReviewService reviewService;
+
+    @Autowired
+    private ProductRatingSummaryRepository ratingSummaryRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    @MockitoBean
+    private NotificationService notificationService;
+
+    private Long productId;
+    private final List<Long> userIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        userIds.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            Brand brand = fixtures.brand("Orient");
+            Category category = fixtures.category("Automatic");
+            Supplier supplier = fixtures.supplier("Orient VN");
+            productId = fixtures.product("Bambino", 4_000_000L, brand, category, supplier, 10).getId();
+            for (int i = 0; i < REVIEWERS; i++) {
+                userIds.add(fixtures.user("reviewer" + i).getId());
+            }
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        fixtures.truncateAll();
+    }
+
+    @Test
+    void concurrentFirstReviewsAreAllCounted() throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(REVIEWERS);
+        try {
+            List<Future<ReviewResponse>> results = new ArrayList<>();
+            for (int i = 0; i < REVIEWERS; i++) {
+                Long userId = userIds.get(i);
+                int rating = i % 5 + 1;
+                results.add(pool.submit(() -> {
+                    start.await(5, TimeUnit.SECONDS);
+                    return reviewService.createReview(request(userId, rating));
+                }));
+            }
+            start.countDown();
+            for (Future<ReviewResponse> result : results) {
+                result.get(10, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        ProductRatingSummary summary = ratingSummaryRepository.findById(productId).orElseThrow();
+        assertThat(summary.getReviewCount()).isEqualTo(REVIEWERS);
+        assertThat(summary.getRatingSum()).isEqualTo(2 * (1 + 2 + 3 + 4 + 5));
+        assertThat(List.of(summary.getOneStar(), summary.getTwoStar(), summary.getThreeStar(),
+                summary.getFourStar(), summary.getFiveStar())).containsOnly(2L);
+    }
+
+    @Test
+    void updatesAndDeletesMoveRatingsBetweenBuckets() {
+        ReviewResponse first = reviewService.createReview(request(userIds.get(0), 5));
+        ReviewResponse second = reviewService.createReview(request(userIds.get(1), 4));
+
+        reviewService.updateReview(first.getId(), request(userIds.get(0), 2));
+        reviewService.deleteReview(second.getId(), "Spam");
+
+        ProductRatingSummary summary = ratingSummaryRepository.findById(productId).orElseThrow();
+        assertThat(summary.getReviewCount()).isEqualTo(1);
+        assertThat(summary.getRatingSum()).isEqualTo(2);
+        assertThat(summary.getTwoStar()).isEqualTo(1);
+        assertThat(summary.getFourStar()).isZero();
+        assertThat(summary.getFiveStar()).isZero();
+    }
+
+    private ReviewRequest request(Long userId, int rating) {
+        ReviewRequest.IdReference user = new ReviewRequest.IdReference();
+        user.setId(userId);
+        ReviewRequest.IdReference product = new ReviewRequest.IdReference();
+        product.setId(productId);
+
+        ReviewRequest request = new ReviewRequest();
+        request.setComment("Đồng hồ đẹp");
+        request.setRating(rating);
+        request.setUser(user);
+        request.setProduct(product);
+        return request;
+    }
+}
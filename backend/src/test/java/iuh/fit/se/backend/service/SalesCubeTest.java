@@ -0,0 +1,209 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.request.OrderItemRequest;
+import iuh.fit.se.backend.dto.request.OrderRequest;
+import iuh.fit.se.backend.dto.response.SalesCubeResponse;
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.repository.OrderItemRepository;
+import iuh.fit.se.backend.service.SalesCube.Dimension;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mockingDetails;
+
+/**
+ * Khối dữ liệu bán hàng trong bộ nhớ: theo dõi vòng đời đơn sau commit, khớp với lần nạp lại từ bảng gốc,
+ * và gom song song nhiều khối cho ra đúng tổng.
+ */
+@OrderPipelineTest
+class SalesCubeTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private SalesCube salesCube;
+
+    @MockitoSpyBean
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    private final LocalDate today = LocalDate.now();
+    private Long userId;
+    private Long omegaBrandId;
+    private Long seikoBrandId;
+    private Long speedmasterId;
+    private Long presageId;
+
+    @BeforeEach
+    void seed() {
+        transactionTemplate.executeWithoutResult(status -> {
+            userId = fixtures.user("cube").getId();
+            Category category = fixtures.category("Dress");
+            Supplier supplier = fixtures.supplier("Đăng Quang");
+            Brand omega = fixtures.brand("Omega");
+            Brand seiko = fixtures.brand("Seiko");
+            omegaBrandId = omega.getId();
+            seikoBrandId = seiko.getId();
+            speedmasterId = fixtures.product("Speedmaster", 5_000_000L, omega, category, supplier, 100).getId();
+            presageId = fixtures.product("Presage", 1_500_000L, seiko, category, supplier, 100).getId();
+        });
+        salesCube.rebuild();
+    }
+
+    @AfterEach
+    void cleanUp() {
+        fixtures.truncateAll();
+        salesCube.rebuild();
+    }
+
+    @Test
+    void committedOrderChangesAreSlicedByBrandAndMatchAReload() {
+        Order paid = orderService.saveOrder(orderRequest(2, 1));       // 11.5 triệu
+        Order cancelled = orderService.saveOrder(orderRequest(0, 3));  // 4.5 triệu, được trả rồi huỷ
+        Order shipped = orderService.saveOrder(orderRequest(0, 1));    // 1.5 triệu
+        orderService.saveOrder(orderRequest(1, 0));                    // còn chờ, không tính
+
+        orderService.updateOrderStatus(paid.getId(), OrderStatus.PAID);
+        orderService.updateOrderStatus(cancelled.getId(), OrderStatus.PAID);
+        orderService.updateOrderStatus(cancelled.getId(), OrderStatus.CANCELLED);
+        orderService.updateOrderStatus(shipped.getId(), OrderStatus.PAID);
+        orderService.updateOrderStatus(shipped.getId(), OrderStatus.SHIPPED);
+
+        SalesCubeResponse byBrand = byBrand();
+        assertThat(byBrand.getGroups()).isEqualTo(2);
+        assertThat(byBrand.getTotalQuantity()).isEqualTo(4);
+        assertThat(byBrand.getTotalRevenue()).isEqualByComparingTo("13000000");
+        assertThat(byBrand.getCells()).extracting(cell -> cell.getKey().get("brand"))
+                .containsExactly(omegaBrandId, seikoBrandId);
+        assertThat(byBrand.getCells()).extracting(SalesCubeResponse.Cell::getQuantity).containsExactly(2L, 2L);
+        assertThat(byBrand.getCells()).extracting(SalesCubeResponse.Cell::getLines).containsExactly(1L, 2L);
+
+        // Lọc theo thương hiệu và nhóm theo ngày + sản phẩm
+        SalesCubeResponse seikoByDay = salesCube.query(List.of(Dimension.DAY, Dimension.PRODUCT), today, today,
+                Map.of(Dimension.BRAND, Set.of(seikoBrandId)), 10);
+        assertThat(seikoByDay.getCells()).singleElement().satisfies(cell -> {
+            assertThat(cell.getKey()).containsEntry("day", today).containsEntry("product", presageId);
+            assertThat(cell.getRevenue()).isEqualByComparingTo("3000000");
+        });
+
+        // Tính lại ngày từ bảng gốc: nạp lại lười ở truy vấn kế tiếp, không cộng trùng
+        salesRollupService.rebuild(today, today.plusDays(1));
+        assertThat(byBrand()).isEqualTo(byBrand);
+
+        salesCube.rebuild();
+        assertThat(byBrand()).isEqualTo(byBrand);
+    }
+
+    @Test
+    void orderPaidWhileTheCubeIsLoadingIsNotLost() {
+        Order early = orderService.saveOrder(orderRequest(1, 0));
+        orderService.updateOrderStatus(early.getId(), OrderStatus.PAID);
+        Order late = orderService.saveOrder(orderRequest(0, 2));
+
+        // Đơn được trả tiền sau khi lần nạp lại đã đọc bảng gốc nhưng trước khi khối mới được tráo vào
+        // Repository là JDK proxy: spy gọi hàm thật qua answer mặc định (uỷ quyền cho bean gốc)
+        Answer<?> real = mockingDetails(orderItemRepository).getMockCreationSettings().getDefaultAnswer();
+        AtomicBoolean loading = new AtomicBoolean(true);
+        doAnswer(invocation -> {
+            Object rows = real.answer(invocation);
+            if (loading.getAndSet(false)) {
+                CompletableFuture.runAsync(() -> orderService.updateOrderStatus(late.getId(), OrderStatus.PAID))
+                        .get(10, TimeUnit.SECONDS);
+            }
+            return rows;
+        }).when(orderItemRepository).streamSalesFacts(any(), any(), any());
+        salesCube.rebuild();
+
+        SalesCubeResponse byBrand = byBrand();
+        assertThat(byBrand.getTotalQuantity()).isEqualTo(3);
+        assertThat(byBrand.getTotalRevenue()).isEqualByComparingTo("8000000");
+    }
+
+    @Test
+    void parallelChunksAddUpToTheSameTotals() {
+        // 200k dòng đơn (4 khối) trải trên 12 tháng, 2 thương hiệu và 4 sản phẩm
+        LocalDate first = LocalDate.of(2024, 1, 15);
+        long expectedOmegaRevenue = 0;
+        for (int month = 0; month < 12; month++) {
+            List<SalesCube.Line> lines = new ArrayList<>();
+            for (int i = 0; i < 200_000 / 12; i++) {
+                long brand = i % 2 == 0 ? omegaBrandId : seikoBrandId;
+                int quantity = 1 + i % 3;
+                BigDecimal revenue = BigDecimal.valueOf(1_000 + i % 7, 2).multiply(BigDecimal.valueOf(quantity));
+                if (brand == omegaBrandId) {
+                    expectedOmegaRevenue += revenue.movePointRight(2).longValueExact();
+                }
+                lines.add(new SalesCube.Line(100L + i % 4, brand, 1L, 1L, quantity, revenue));
+            }
+            salesCube.onOrderLines(new SalesCube.OrderLines(first.plusMonths(month), userId, 1, lines));
+        }
+
+        SalesCubeResponse omegaByMonth = salesCube.query(List.of(Dimension.MONTH), null, null,
+                Map.of(Dimension.BRAND, Set.of(omegaBrandId)), 100);
+
+        assertThat(omegaByMonth.getGroups()).isEqualTo(12);
+        assertThat(omegaByMonth.getTotalRevenue()).isEqualByComparingTo(BigDecimal.valueOf(expectedOmegaRevenue, 2));
+        assertThat(omegaByMonth.getCells()).extracting(cell -> cell.getKey().get("month"))
+                .contains(YearMonth.of(2024, 1), YearMonth.of(2024, 12));
+        long lines = omegaByMonth.getCells().stream().mapToLong(SalesCubeResponse.Cell::getLines).sum();
+        assertThat(lines).isEqualTo(12L * ((200_000 / 12 + 1) / 2));
+
+        SalesCubeResponse total = salesCube.query(List.of(), null, null, Map.of(), 1);
+        assertThat(total.getCells()).singleElement()
+                .satisfies(cell -> assertThat(cell.getLines()).isEqualTo(12L * (200_000 / 12)));
+    }
+
+    @Test
+    void invalidQueriesAreRejected() {
+        assertThatThrownBy(() -> Dimension.parse("colour")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> salesCube.query(List.of(), today, today.minusDays(1), Map.of(), 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> salesCube.query(List.of(), null, null, Map.of(), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private SalesCubeResponse byBrand() {
+        return salesCube.query(List.of(Dimension.BRAND), null, null, Map.of(), 10);
+    }
+
+    private OrderRequest orderRequest(int speedmasters, int presages) {
+        List<OrderItemRequest> items = new ArrayList<>();
+        if (speedmasters > 0) {
+            items.add(OrderFixtures.item(speedmasterId, speedmasters));
+        }
+        if (presages > 0) {
+            items.add(OrderFixtures.item(presageId, presages));
+        }
+        return OrderFixtures.orderRequest(userId, items);
+    }
+}
@@ -0,0 +1,222 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.InventoryMonthlyPoint;
+import iuh.fit.se.backend.dto.OrderMonthlyPoint;
+import iuh.fit.se.backend.dto.RevenueYearlyPoint;
+import iuh.fit.se.backend.dto.request.OrderItemRequest;
+import iuh.fit.se.backend.dto.request.OrderRequest;
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.repository.DailyProductSalesRepository;
+import iuh.fit.se.backend.repository.DailySalesRollupRepository;
+import iuh.fit.se.backend.repository.OrderItemRepository;
+import iuh.fit.se.backend.repository.OrderRepository;
+import iuh.fit.se.backend.service.impl.InventoryReportServiceImpl;
+import iuh.fit.se.backend.service.impl.OrderReportServiceImpl;
+import iuh.fit.se.backend.service.impl.RevenueReportServiceImpl;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doReturn;
+
+/**
+ * Bảng tổng hợp doanh số theo ngày: được cập nhật theo delta khi đơn đổi trạng thái, khớp với lần tính lại
+ * từ bảng gốc, và báo cáo tháng/năm đọc đúng từ đó.
+ */
+@OrderPipelineTest
+class SalesRollupTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @MockitoSpyBean
+    private DailySalesRollupRepository dailySalesRollupRepository;
+
+    @MockitoSpyBean
+    private DailyProductSalesRepository dailyProductSalesRepository;
+
+    @MockitoSpyBean
+    private OrderRepository orderRepository;
+
+    @MockitoSpyBean
+    private OrderItemRepository orderItemRepository;
+
+    @Autowired
+    private RevenueReportServiceImpl revenueReportService;
+
+    @Autowired
+    private OrderReportServiceImpl orderReportService;
+
+    @Autowired
+    private InventoryReportServiceImpl inventoryReportService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    private final LocalDate today = LocalDate.now();
+    private Long userId;
+    private Long dialId;
+    private Long strapId;
+
+    @BeforeEach
+    void seed() {
+        transactionTemplate.executeWithoutResult(status -> {
+            userId = fixtures.user("rollup").getId();
+            Brand brand = fixtures.brand("Longines");
+            Category category = fixtures.category("Heritage");
+            Supplier supplier = fixtures.supplier("Longines VN");
+            dialId = fixtures.product("Spirit", 3_000_000L, brand, category, supplier, 100).getId();
+            strapId = fixtures.product("Strap", 500_000L, brand, category, supplier, 100).getId();
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        fixtures.truncateAll();
+    }
+
+    @Test
+    void deltasTrackOrderLifecycleAndMatchARebuild() {
+        Order paid = orderService.saveOrder(orderRequest(2, 1));      // 6.5 triệu, 3 cái
+        Order shipped = orderService.saveOrder(orderRequest(1, 0));   // 3 triệu
+        Order cancelled = orderService.saveOrder(orderRequest(1, 4)); // 5 triệu
+        Order removed = orderService.saveOrder(orderRequest(0, 2));   // 1 triệu
+        orderService.saveOrder(orderRequest(1, 1));                   // còn chờ
+
+        orderService.updateOrderStatus(paid.getId(), OrderStatus.PAID);
+        orderService.updateOrderStatus(shipped.getId(), OrderStatus.PAID);
+        orderService.updateOrderStatus(shipped.getId(), OrderStatus.SHIPPED);
+        orderService.updateOrderStatus(cancelled.getId(), OrderStatus.PAID);
+        orderService.updateOrderStatus(cancelled.getId(), OrderStatus.CANCELLED);
+        orderService.updateOrderStatus(removed.getId(), OrderStatus.COMPLETED);
+        orderService.deleteOrder(removed.getId());
+
+        DailySalesRollup rollup = dailySalesRollupRepository.findById(today).orElseThrow();
+        assertThat(rollup.getTotalOrders()).isEqualTo(4);
+        assertThat(rollup.getPendingOrders()).isEqualTo(1);
+        assertThat(rollup.getFulfilledOrders()).isEqualTo(2);
+        assertThat(rollup.getCancelledOrders()).isEqualTo(1);
+        assertThat(rollup.getRevenue()).isEqualByComparingTo("9500000");
+        assertThat(rollup.getUnitsSold()).isEqualTo(4);
+        assertThat(productUnits()).containsExactly(3L, 1L);
+
+        // Xoá bảng tổng hợp rồi tính lại từ orders phải ra đúng các con số trên
+        transactionTemplate.executeWithoutResult(status -> {
+            dailyProductSalesRepository.deleteAllInBatch();
+            dailySalesRollupRepository.deleteAllInBatch();
+        });
+        assertThat(salesRollupService.rebuild(today, today.plusDays(1))).isEqualTo(1);
+
+        DailySalesRollup rebuilt = dailySalesRollupRepository.findById(today).orElseThrow();
+        assertThat(rebuilt.getTotalOrders()).isEqualTo(4);
+        assertThat(rebuilt.getFulfilledOrders()).isEqualTo(2);
+        assertThat(rebuilt.getRevenue()).isEqualByComparingTo(rollup.getRevenue());
+        assertThat(rebuilt.getUnitsSold()).isEqualTo(4);
+        assertThat(productUnits()).containsExactly(3L, 1L);
+    }
+
+    @Test
+    void refreshKeepsOrdersCommittedAfterTheTransactionSnapshot() {
+        Order first = orderService.saveOrder(orderRequest(1, 0));
+        orderService.updateOrderStatus(first.getId(), OrderStatus.PAID);
+
+        // Ảnh chụp REPEATABLE READ của transaction tính lại: mới chỉ có đơn đầu
+        LocalDateTime start = today.atStartOfDay();
+        LocalDateTime end = today.plusDays(1).atStartOfDay();
+        List<Object[]> summary = orderRepository.summarizeCreatedBetween(start, end,
+                SalesRollupService.FULFILLED_STATUSES, OrderStatus.PENDING, OrderStatus.CANCELLED);
+        List<Object[]> productSales = orderItemRepository.sumByProductForOrdersCreatedBetween(start, end,
+                SalesRollupService.FULFILLED_STATUSES);
+        List<Object[]> rollupRow = dailySalesRollupRepository.findTotals(today);
+        List<Object[]> productRows = dailyProductSalesRepository.findTotals(today);
+
+        // Đơn khác commit sau ảnh chụp: delta của nó đã nằm trong dòng ngày nhưng không thấy trong ảnh chụp
+        Order second = orderService.saveOrder(orderRequest(0, 2));
+        orderService.updateOrderStatus(second.getId(), OrderStatus.PAID);
+
+        doReturn(summary).when(orderRepository).summarizeCreatedBetween(any(), any(), any(), any(), any());
+        doReturn(productSales).when(orderItemRepository).sumByProductForOrdersCreatedBetween(any(), any(), any());
+        doReturn(rollupRow).when(dailySalesRollupRepository).findTotals(today);
+        doReturn(productRows).when(dailyProductSalesRepository).findTotals(today);
+        transactionTemplate.executeWithoutResult(status -> salesRollupService.refreshDay(today));
+
+        DailySalesRollup rollup = dailySalesRollupRepository.findById(today).orElseThrow();
+        assertThat(rollup.getTotalOrders()).isEqualTo(2);
+        assertThat(rollup.getFulfilledOrders()).isEqualTo(2);
+        assertThat(rollup.getRevenue()).isEqualByComparingTo("4000000");
+        assertThat(rollup.getUnitsSold()).isEqualTo(3);
+        assertThat(productUnits()).containsExactly(2L, 1L);
+    }
+
+    @Test
+    void periodReportsAreServedFromTheRollup() {
+        Order lastYear = orderService.saveOrder(orderRequest(1, 2));
+        orderService.updateOrderStatus(lastYear.getId(), OrderStatus.COMPLETED);
+        Order thisYear = orderService.saveOrder(orderRequest(2, 0));
+        orderService.updateOrderStatus(thisYear.getId(), OrderStatus.PAID);
+        orderService.saveOrder(orderRequest(0, 1));
+
+        // Dời đơn đầu về năm trước bằng UPDATE trực tiếp rồi backfill cả hai ngày
+        LocalDate backdated = today.minusYears(1);
+        transactionTemplate.executeWithoutResult(status -> entityManager
+                .createQuery("update Order o set o.createdAt = :at where o.id = :id")
+                .setParameter("at", backdated.atTime(10, 0))
+                .setParameter("id", lastYear.getId())
+                .executeUpdate());
+        assertThat(salesRollupService.rebuild(backdated, today.plusDays(1))).isEqualTo(2);
+
+        List<RevenueYearlyPoint> yearly = revenueReportService.getYearlyRevenue(backdated.getYear(), today.getYear());
+        assertThat(yearly).extracting(RevenueYearlyPoint::getRevenue)
+                .usingElementComparator(BigDecimal::compareTo)
+                .containsExactly(new BigDecimal("4000000"), new BigDecimal("6000000"));
+
+        OrderMonthlyPoint month = orderReportService.getMonthlyOrders(today.getYear()).get(today.getMonthValue() - 1);
+        assertThat(month.getTotalOrders()).isEqualTo(2);
+        assertThat(month.getFulfilledOrders()).isEqualTo(1);
+        assertThat(month.getPendingOrders()).isEqualTo(1);
+
+        InventoryMonthlyPoint units = inventoryReportService.getMonthlyInventory(today.getYear(), false).get(today.getMonthValue() - 1);
+        assertThat(units.getUnitsSold()).isEqualTo(2);
+        assertThat(units.getDistinctProductsSold()).isEqualTo(1);
+    }
+
+    private List<Long> productUnits() {
+        return dailyProductSalesRepository.findAll().stream()
+                .sorted((a, b) -> Long.compare(b.getUnitsSold(), a.getUnitsSold()))
+                .map(DailyProductSales::getUnitsSold)
+                .toList();
+    }
+
+    private OrderRequest orderRequest(int dials, int straps) {
+        List<OrderItemRequest> items = new ArrayList<>();
+        if (dials > 0) {
+            items.add(OrderFixtures.item(dialId, dials));
+        }
+        if (straps > 0) {
+            items.add(OrderFixtures.item(strapId, straps));
+        }
+        return OrderFixtures.orderRequest(userId, items);
+    }
+}
@@ -0,0 +1,199 @@
+package iuh.fit.se.backend.service;
+
+import iuh.fit.se.backend.dto.DistinctCountReport;
+import iuh.fit.se.backend.dto.InventoryMonthlyPoint;
+import iuh.fit.se.backend.dto.request.OrderItemRequest;
+import iuh.fit.se.backend.dto.request.OrderRequest;
+import iuh.fit.se.backend.entity.*;
+import iuh.fit.se.backend.entity.enums.OrderStatus;
+import iuh.fit.se.backend.repository.DailySalesSketchRepository;
+import iuh.fit.se.backend.service.impl.InventoryReportServiceImpl;
+import iuh.fit.se.backend.service.impl.OrderReportServiceImpl;
+import iuh.fit.se.backend.util.HyperLogLog;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Sketch HyperLogLog theo ngày: sai số trong giới hạn, gộp được, được cập nhật theo vòng đời đơn
+ * và cho cùng kết quả với count(distinct) khi số phần tử nhỏ.
+ */
+@OrderPipelineTest
+class SalesSketchTest {
+
+    @Autowired
+    private OrderService orderService;
+
+    @Autowired
+    private OrderReportServiceImpl orderReportService;
+
+    @Autowired
+    private InventoryReportServiceImpl inventoryReportService;
+
+    @Autowired
+    private DailySalesSketchRepository dailySalesSketchRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private OrderFixtures fixtures;
+
+    private final LocalDate today = LocalDate.now();
+    private final List<Long> userIds = new ArrayList<>();
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        userIds.clear();
+        productIds.clear();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String name : new String[]{"an", "binh", "chi"}) {
+                userIds.add(fixtures.user(name).getId());
+            }
+
+            Brand brand = fixtures.brand("Casio");
+            Category category = fixtures.category("Digital");
+            Supplier supplier = fixtures.supplier("Casio VN");
+            for (String name : new String[]{"F-91W", "A168", "GA-2100", "DW-5600"}) {
+                productIds.add(fixtures.product(name, 500_000L, brand, category, supplier, 100).getId());
+            }
+        });
+    }
+
+    @AfterEach
+    void cleanUp() {
+        fixtures.truncateAll();
+    }
+
+    @Test
+    void estimatesStayWithinErrorAndMergeAsUnion() {
+        HyperLogLog evens = new HyperLogLog();
+        HyperLogLog firstHalf = new HyperLogLog();
+        for (long id = 1; id <= 200_000; id++) {
+            if (id % 2 == 0) {
+                evens.add(id);
+            }
+            if (id <= 100_000) {
+                firstHalf.add(id);
+            }
+        }
+        assertThat((double) evens.estimate()).isCloseTo(100_000, within(5_000.0));
+
+        // Chẵn ∪ nửa đầu = 150k phần tử; gộp sketch cho cùng kết quả với sketch dựng từ hợp
+        HyperLogLog union = HyperLogLog.fromBytes(evens.toBytes()).merge(firstHalf);
+        assertThat((double) union.estimate()).isCloseTo(150_000, within(7_500.0));
+        HyperLogLog direct = new HyperLogLog();
+        for (long id = 1; id <= 200_000; id++) {
+            if (id % 2 == 0 || id <= 100_000) {
+                direct.add(id);
+            }
+        }
+        assertThat(union).isEqualTo(direct);
+    }
+
+    @Test
+    void sketchesFollowOrderLifecycleAndMatchExactCounts() {
+        Order first = pay(orderRequest(userIds.get(0), 0, 1));
+        pay(orderRequest(userIds.get(1), 1, 2));
+        Order cancelled = pay(orderRequest(userIds.get(2), 3));
+        orderService.saveOrder(orderRequest(userIds.get(2), 3));      // chờ thanh toán, không tính
+
+        assertDistinct(4, 3);
+
+        // Huỷ và xoá đơn làm sketch của ngày được dựng lại từ bảng gốc
+        orderService.updateOrderStatus(cancelled.getId(), OrderStatus.CANCELLED);
+        assertDistinct(3, 2);
+        orderService.updateOrderStatus(first.getId(), OrderStatus.COMPLETED);
+        orderService.deleteOrder(first.getId());
+        assertDistinct(2, 1);
+
+        InventoryMonthlyPoint exact = inventoryReportService.getMonthlyInventory(today.getYear(), false).get(today.getMonthValue() - 1);
+        InventoryMonthlyPoint approximate = inventoryReportService.getMonthlyInventory(today.getYear(), true).get(today.getMonthValue() - 1);
+        assertThat(approximate.getDistinctProductsSold()).isEqualTo(exact.getDistinctProductsSold()).isEqualTo(2);
+
+        orderService.updateOrderStatus(findOrderOf(userIds.get(1)), OrderStatus.CANCELLED);
+        assertThat(dailySalesSketchRepository.findById(today)).isEmpty();
+    }
+
+    @Test
+    void concurrentFirstOrdersOfTheDayAreAllMergedIntoTheSketch() throws Exception {
+        List<Long> buyers = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < 12; i++) {
+                buyers.add(fixtures.user("buyer" + i).getId());
+            }
+        });
+
+        // Đơn đầu tiên của ngày tạo dòng sketch; các đơn khác gộp vào dòng đã commit, không ghi đè nhau
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(buyers.size());
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < buyers.size(); i++) {
+                OrderRequest request = orderRequest(buyers.get(i), i % productIds.size());
+                results.add(pool.submit(() -> {
+                    start.await(5, TimeUnit.SECONDS);
+                    return pay(request);
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertDistinct(productIds.size(), buyers.size());
+    }
+
+    private void assertDistinct(long products, long customers) {
+        DistinctCountReport exact = orderReportService.getDistinctCounts(today, today, false);
+        DistinctCountReport approximate = orderReportService.getDistinctCounts(today, today, true);
+        assertThat(exact.getDistinctProducts()).isEqualTo(products);
+        assertThat(exact.getDistinctCustomers()).isEqualTo(customers);
+        assertThat(approximate.isApproximate()).isTrue();
+        assertThat(approximate.getDistinctProducts()).isEqualTo(products);
+        assertThat(approximate.getDistinctCustomers()).isEqualTo(customers);
+    }
+
+    private Order pay(OrderRequest request) {
+        Order order = orderService.saveOrder(request);
+        orderService.updateOrderStatus(order.getId(), OrderStatus.PAID);
+        return order;
+    }
+
+    private Long findOrderOf(Long userId) {
+        return entityManager.createQuery("select o.id from Order o where o.user.id = :userId", Long.class)
+                .setParameter("userId", userId)
+                .getSingleResult();
+    }
+
+    // Mỗi sản phẩm (theo vị trí trong productIds) một cái
+    private OrderRequest orderRequest(Long userId, int... products) {
+        List<OrderItemRequest> items = new ArrayList<>();
+        for (int product : products) {
+            items.add(OrderFixtures.item(productIds.get(product), 1));
+        }
+        return OrderFixtures.orderRequest(userId, items);
+    }
+}
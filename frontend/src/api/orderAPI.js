@@ -1,4 +1,5 @@
 import axiosInstance from "./axiosConfig";
+import { IDEMPOTENCY_HEADER } from "@/lib/payment";
 
 const ORDER_URL = "/orders";
 
@@ -91,8 +92,10 @@ export const updateOrderStatus = async (id, status) => {
     return response.data;
 };
 
-export const createOrder = async (orderData) => {
-    const response = await axiosInstance.post(ORDER_URL, orderData);
+export const createOrder = async (orderData, idempotencyKey) => {
+    const response = await axiosInstance.post(ORDER_URL, orderData, {
+        headers: idempotencyKey ? { [IDEMPOTENCY_HEADER]: idempotencyKey } : undefined,
+    });
     return response.data;
 };
 
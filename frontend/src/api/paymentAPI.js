@@ -1,4 +1,5 @@
 import axiosInstance from "./axiosConfig";
+import { IDEMPOTENCY_HEADER } from "@/lib/payment";
 
 const PAYMENT_URL = "/payments";
 
@@ -36,9 +37,11 @@ export const getPaymentMethods = async () => {
 };
 
 // VNPay Integration
-export const createVNPayPayment = async (payload) => {
+export const createVNPayPayment = async (payload, idempotencyKey) => {
   try {
-    const response = await axiosInstance.post("/vnpay/create-payment", payload);
+    const response = await axiosInstance.post("/vnpay/create-payment", payload, {
+      headers: idempotencyKey ? { [IDEMPOTENCY_HEADER]: idempotencyKey } : undefined,
+    });
     return response?.data?.data;
   } catch (error) {
     console.error("Failed to create VNPay payment:", error);
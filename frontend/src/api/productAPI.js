@@ -18,6 +18,7 @@ export const getProducts = async (params = {}) => {
       status = "",
       sortBy = "id",
       order = "desc", // Sort mới nhất lên đầu
+      view = "", // "full" để lấy đầy đủ inventories/images/prices/specs (trang admin)
     } = params;
 
     const queryParams = new URLSearchParams();
@@ -34,6 +35,7 @@ export const getProducts = async (params = {}) => {
     if (status) queryParams.append("status", status);
     queryParams.append("sortBy", sortBy);
     queryParams.append("order", order);
+    if (view) queryParams.append("view", view);
 
     const res = await axiosInstance.get(`${PRODUCT_URL}?${queryParams}`);
     const data = res?.data;
@@ -11,3 +11,12 @@ export const PAYMENT_METHOD_LABELS = {
 
 export const getPaymentMethodLabel = (method) =>
     method ? PAYMENT_METHOD_LABELS[method] ?? method : "--";
+
+// Header Idempotency-Key: gửi lại cùng key khi thử lại thì server trả kết quả lần đầu thay vì tạo đơn mới
+export const IDEMPOTENCY_HEADER = "Idempotency-Key";
+
+// crypto.randomUUID chỉ có trong secure context (https, localhost)
+export const newIdempotencyKey = () =>
+    typeof crypto !== "undefined" && typeof crypto.randomUUID === "function"
+        ? crypto.randomUUID()
+        : `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}${Math.random().toString(36).slice(2)}`;
@@ -76,6 +76,7 @@ export const AdminProduct = () => {
       const params = {
         page: page - 1,
         size: 10,
+        view: "full",
       };
 
       if (debouncedSearch) params.name = debouncedSearch;
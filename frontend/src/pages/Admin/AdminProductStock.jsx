@@ -98,6 +98,7 @@ export const AdminProductStock = () => {
         name: searchTerm,
         sortBy: "id", // Sort by id instead of stockQuantity (since it's computed)
         order: "desc",
+        view: "full", // cần inventories để sửa tồn kho
       };
 
       const response = await getProducts(params);
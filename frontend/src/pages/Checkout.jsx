@@ -1,8 +1,9 @@
-import { useState, useEffect } from "react";
+import { useState, useEffect, useRef } from "react";
 import { useLocation, useNavigate } from "react-router-dom";
 import { createOrder } from "../api/orderAPI";
 import { removeCartItem } from "../api/cartAPI";
 import { createVNPayPayment } from "../api/paymentAPI";
+import { newIdempotencyKey } from "@/lib/payment";
 import { parseStoredUser } from "@/utils/storage";
 import {
   getProvinces,
@@ -67,6 +68,8 @@ export default function Checkout() {
   });
 
   const [loading, setLoading] = useState(false);
+  // Lượt đặt hàng hiện tại: bấm lại / thử lại với cùng nội dung dùng lại key, đổi nội dung thì là lượt mới
+  const checkoutAttemptRef = useRef(null);
   const [provinces, setProvinces] = useState([]);
   const [districts, setDistricts] = useState([]);
   const [wards, setWards] = useState([]);
@@ -230,7 +233,17 @@ export default function Checkout() {
         paymentMethod: formData.paymentMethod,
       };
 
-      const response = await createOrder(orderRequest);
+      const requestBody = JSON.stringify(orderRequest);
+      if (checkoutAttemptRef.current?.requestBody !== requestBody) {
+        checkoutAttemptRef.current = {
+          requestBody,
+          orderKey: newIdempotencyKey(),
+          paymentKey: newIdempotencyKey(),
+        };
+      }
+      const attempt = checkoutAttemptRef.current;
+
+      const response = await createOrder(orderRequest, attempt.orderKey);
       const order = response?.data || response;
 
       if (formData.paymentMethod === "VNPAY") {
@@ -244,7 +257,7 @@ export default function Checkout() {
             amount: Math.round(totalPrice), // VNPay thanh toán số tiền cuối cùng
             orderInfo: `Thanh toan don hang ${order.id}`,
             returnUrl: `${window.location.origin}/payment/vnpay-return`,
-          });
+          }, attempt.paymentKey);
 
           if (vnpayResponse?.code === "00" && vnpayResponse?.paymentUrl) {
             toast.dismiss(loadingToast);
@@ -271,6 +284,7 @@ export default function Checkout() {
         console.error("Lỗi xóa giỏ hàng:", error);
       }
 
+      checkoutAttemptRef.current = null;
       toast.dismiss(loadingToast);
       toast.success("Đặt hàng thành công!");
       navigate("/orders", { state: { orderId: order?.id } });